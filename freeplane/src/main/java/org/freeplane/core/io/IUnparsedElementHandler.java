@@ -0,0 +1,27 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io;
+
+/**
+ * Element handler which can keep elements it has created unparsed.
+ * Attributes and content of such elements are not processed, the handler receives the whole element as xml text.
+ */
+public interface IUnparsedElementHandler extends IElementDOMHandler {
+	boolean keepsUnparsed(Object element);
+
+	void endUnparsedElement(Object parent, String tag, Object element, String xml);
+}
@@ -0,0 +1,13 @@
+package org.freeplane.core.io.xml;
+
+import org.freeplane.n3.nanoxml.XMLException;
+
+/**
+ * Parser driving a {@link TreeXmlReader}.
+ */
+interface ITreeXmlParser {
+	/** makes the parser pass the content of the current element to the reader as unparsed text */
+	void notParseNextElementContent();
+
+	Object parse() throws XMLException;
+}
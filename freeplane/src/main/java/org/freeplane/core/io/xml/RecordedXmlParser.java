@@ -0,0 +1,144 @@
+package org.freeplane.core.io.xml;
+
+import static org.freeplane.core.io.xml.XmlEventRecorder.ATTRIBUTE;
+import static org.freeplane.core.io.xml.XmlEventRecorder.ATTRIBUTES_PROCESSED;
+import static org.freeplane.core.io.xml.XmlEventRecorder.ELEMENT_CONTENT;
+import static org.freeplane.core.io.xml.XmlEventRecorder.END_ELEMENT;
+import static org.freeplane.core.io.xml.XmlEventRecorder.NEW_NAME;
+import static org.freeplane.core.io.xml.XmlEventRecorder.NULL_STRING;
+import static org.freeplane.core.io.xml.XmlEventRecorder.PC_DATA;
+import static org.freeplane.core.io.xml.XmlEventRecorder.PROCESSING_INSTRUCTION;
+import static org.freeplane.core.io.xml.XmlEventRecorder.START_ELEMENT;
+import static org.freeplane.core.io.xml.XmlEventRecorder.UTF8;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import org.freeplane.n3.nanoxml.XMLException;
+import org.freeplane.n3.nanoxml.XMLParseException;
+
+/**
+ * Replays xml events recorded by {@link XmlEventRecorder}.
+ * Element content requested unparsed must have been recorded unparsed, otherwise the replay fails.
+ */
+class RecordedXmlParser implements ITreeXmlParser {
+	final private TreeXmlReader builder;
+	final private DataInputStream in;
+	final private ArrayList<String> names = new ArrayList<String>();
+	private boolean skipNextElementContent;
+	private int lineNr = 1;
+
+	RecordedXmlParser(final TreeXmlReader builder, final InputStream in) {
+		this.builder = builder;
+		this.in = new DataInputStream(new BufferedInputStream(in));
+	}
+
+	public void notParseNextElementContent() {
+		skipNextElementContent = true;
+	}
+
+	public Object parse() throws XMLException {
+		try {
+			builder.startBuilding(null, lineNr);
+			replay();
+			return builder.getResult();
+		}
+		catch (final XMLException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void replay() throws Exception {
+		for (int event = in.read(); event != -1; event = in.read()) {
+			switch (event) {
+				case START_ELEMENT: {
+					final String name = readName();
+					final String nsPrefix = readName();
+					final String nsURI = readName();
+					lineNr = in.readInt();
+					builder.startElement(name, nsPrefix, nsURI, null, lineNr);
+					break;
+				}
+				case ATTRIBUTE: {
+					final String key = readName();
+					final String nsPrefix = readName();
+					final String nsURI = readName();
+					final String value = readString();
+					builder.addAttribute(key, nsPrefix, nsURI, value, readName());
+					break;
+				}
+				case ATTRIBUTES_PROCESSED:
+					builder.elementAttributesProcessed(readName(), readName(), readName());
+					if (skipNextElementContent) {
+						skipNextElementContent = false;
+						replayUnparsedContent();
+					}
+					break;
+				case PC_DATA: {
+					final String data = readString();
+					lineNr = in.readInt();
+					builder.addPCData(new StringReader(data), null, lineNr);
+					break;
+				}
+				case END_ELEMENT:
+					builder.endElement(readName(), readName(), readName());
+					break;
+				case PROCESSING_INSTRUCTION: {
+					final String target = readString();
+					builder.newProcessingInstruction(target, new StringReader(readString()));
+					break;
+				}
+				case ELEMENT_CONTENT:
+					throw mismatch();
+				default:
+					throw new XMLParseException(null, lineNr, "Unknown recorded event " + event);
+			}
+		}
+	}
+
+	private void replayUnparsedContent() throws Exception {
+		int event = in.read();
+		if (event == ELEMENT_CONTENT) {
+			builder.setElementContent(readString());
+			event = in.read();
+		}
+		if (event != END_ELEMENT) {
+			throw mismatch();
+		}
+		builder.endElement(readName(), readName(), readName());
+	}
+
+	private XMLParseException mismatch() {
+		return new XMLParseException(null, lineNr, "Recorded element content does not match element handlers");
+	}
+
+	private String readName() throws IOException {
+		final int index = in.readInt();
+		if (index == NULL_STRING) {
+			return null;
+		}
+		if (index == NEW_NAME) {
+			final String name = readString();
+			names.add(name);
+			return name;
+		}
+		return names.get(index);
+	}
+
+	private String readString() throws IOException {
+		final int length = in.readInt();
+		if (length == NULL_STRING) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,757 @@
+package org.freeplane.core.io.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.freeplane.n3.nanoxml.IXMLBuilder;
+import org.freeplane.n3.nanoxml.XMLException;
+import org.freeplane.n3.nanoxml.XMLParseException;
+
+/**
+ * Streaming replacement of nanoxml's StdXMLParser for loading maps.
+ *
+ * The input is read in large blocks and scanned directly in the buffer without pushback readers.
+ * Element and attribute names are shared using a small name table,
+ * and no collections are created per element for its attributes or namespaces.
+ * The builder receives the same events as from the nanoxml parser.
+ * Document type declarations are skipped, so only predefined entities and character references are resolved.
+ */
+class StreamingXmlParser implements ITreeXmlParser {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int NAME_TABLE_SIZE = 512;
+
+	private static class ElementScope {
+		String fullName;
+		String name;
+		String prefix;
+		String nsURI;
+		String defaultNamespace;
+		Map<String, String> namespaces;
+	}
+
+	final private IXMLBuilder builder;
+	final private Reader reader;
+	final private char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private boolean skipLineFeed;
+	private int lineNr = 1;
+	final private String[] nameTable = new String[NAME_TABLE_SIZE];
+	final private StringBuilder text = new StringBuilder();
+	final private StringBuilder reference = new StringBuilder();
+	private String[] attributeNames = new String[16];
+	private String[] attributeValues = new String[16];
+	private int attributeCount;
+	final private ArrayList<ElementScope> scopes = new ArrayList<ElementScope>();
+	private int depth;
+	private boolean skipNextElementContent;
+
+	StreamingXmlParser(final IXMLBuilder builder, final Reader reader) {
+		this.builder = builder;
+		this.reader = reader;
+	}
+
+	public void notParseNextElementContent() {
+		skipNextElementContent = true;
+	}
+
+	public Object parse() throws XMLException {
+		try {
+			builder.startBuilding(null, lineNr);
+			scanData();
+			return builder.getResult();
+		}
+		catch (final XMLException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void scanData() throws Exception {
+		while (builder.getResult() == null) {
+			final int ch = read();
+			switch (ch) {
+				case -1:
+					return;
+				case '<':
+					scanTopLevelTag();
+					break;
+				case ' ':
+				case '\t':
+				case '\n':
+				case '\uFEFF':
+					break;
+				default:
+					throw error("Invalid input: `" + (char) ch + "' (0x" + Integer.toHexString(ch) + ')');
+			}
+		}
+	}
+
+	private void scanTopLevelTag() throws Exception {
+		final int ch = read();
+		if (ch == '?') {
+			scanProcessingInstruction();
+		}
+		else if (ch == '!') {
+			scanSpecialTag(false);
+		}
+		else {
+			unread();
+			scanElement();
+		}
+	}
+
+	private void scanElement() throws Exception {
+		final int parentDepth = depth;
+		scanStartTag();
+		while (depth > parentDepth) {
+			scanText();
+			final int ch = read();
+			if (ch == '/') {
+				scanEndTag();
+			}
+			else if (ch == '!') {
+				scanSpecialTag(true);
+			}
+			else if (ch == '?') {
+				scanProcessingInstruction();
+			}
+			else {
+				unread();
+				scanStartTag();
+			}
+		}
+	}
+
+	private void scanStartTag() throws Exception {
+		final String fullName = scanName();
+		if (fullName.length() == 0) {
+			throw error("Expected: name");
+		}
+		attributeCount = 0;
+		boolean isEmpty = false;
+		for (;;) {
+			skipWhitespace();
+			final int ch = read();
+			if (ch == '>') {
+				break;
+			}
+			if (ch == '/') {
+				expect('>');
+				isEmpty = true;
+				break;
+			}
+			if (ch == -1) {
+				throw unexpectedEndOfData();
+			}
+			unread();
+			final String attributeName = scanName();
+			if (attributeName.length() == 0) {
+				throw error("Invalid input: `" + (char) ch + "'");
+			}
+			skipWhitespace();
+			expect('=');
+			skipWhitespace();
+			addAttribute(attributeName, scanAttributeValue());
+		}
+		final ElementScope parent = depth > 0 ? scopes.get(depth - 1) : null;
+		final Map<String, String> inheritedNamespaces = parent != null ? parent.namespaces : Collections
+		    .<String, String> emptyMap();
+		String defaultNamespace = parent != null ? parent.defaultNamespace : null;
+		Map<String, String> namespaces = inheritedNamespaces;
+		for (int i = 0; i < attributeCount; i++) {
+			final String key = attributeNames[i];
+			if (key.equals("xmlns")) {
+				defaultNamespace = attributeValues[i];
+			}
+			else if (key.startsWith("xmlns:")) {
+				if (namespaces == inheritedNamespaces) {
+					namespaces = new HashMap<String, String>(inheritedNamespaces);
+				}
+				namespaces.put(key.substring(6), attributeValues[i]);
+			}
+		}
+		String name = fullName;
+		String prefix = null;
+		final int colonIndex = fullName.indexOf(':');
+		if (colonIndex > 0) {
+			prefix = fullName.substring(0, colonIndex);
+			name = fullName.substring(colonIndex + 1);
+		}
+		final String nsURI = prefix == null ? defaultNamespace : namespaces.get(prefix);
+		builder.startElement(name, prefix, nsURI, null, lineNr);
+		for (int i = 0; i < attributeCount; i++) {
+			final String key = attributeNames[i];
+			if (key.startsWith("xmlns")) {
+				continue;
+			}
+			final int attributeColonIndex = key.indexOf(':');
+			if (attributeColonIndex > 0) {
+				final String attributePrefix = key.substring(0, attributeColonIndex);
+				builder.addAttribute(key.substring(attributeColonIndex + 1), attributePrefix,
+				    namespaces.get(attributePrefix), attributeValues[i], "CDATA");
+			}
+			else {
+				builder.addAttribute(key, null, null, attributeValues[i], "CDATA");
+			}
+			attributeValues[i] = null;
+		}
+		builder.elementAttributesProcessed(name, prefix, nsURI);
+		if (isEmpty) {
+			skipNextElementContent = false;
+			builder.endElement(name, prefix, nsURI);
+			return;
+		}
+		pushScope(fullName, name, prefix, nsURI, defaultNamespace, namespaces);
+		if (skipNextElementContent) {
+			skipNextElementContent = false;
+			builder.setElementContent(scanUnparsedContent());
+			scanEndTag();
+		}
+	}
+
+	private void addAttribute(final String attributeName, final String value) {
+		if (attributeCount == attributeNames.length) {
+			final String[] names = new String[attributeCount * 2];
+			System.arraycopy(attributeNames, 0, names, 0, attributeCount);
+			attributeNames = names;
+			final String[] values = new String[attributeCount * 2];
+			System.arraycopy(attributeValues, 0, values, 0, attributeCount);
+			attributeValues = values;
+		}
+		attributeNames[attributeCount] = attributeName;
+		attributeValues[attributeCount] = value;
+		attributeCount++;
+	}
+
+	private void pushScope(final String fullName, final String name, final String prefix, final String nsURI,
+	                       final String defaultNamespace, final Map<String, String> namespaces) {
+		final ElementScope scope;
+		if (depth == scopes.size()) {
+			scope = new ElementScope();
+			scopes.add(scope);
+		}
+		else {
+			scope = scopes.get(depth);
+		}
+		scope.fullName = fullName;
+		scope.name = name;
+		scope.prefix = prefix;
+		scope.nsURI = nsURI;
+		scope.defaultNamespace = defaultNamespace;
+		scope.namespaces = namespaces;
+		depth++;
+	}
+
+	/** called after the characters &lt;/ */
+	private void scanEndTag() throws Exception {
+		skipWhitespace();
+		final String fullName = scanName();
+		final ElementScope scope = scopes.get(depth - 1);
+		if (!fullName.equals(scope.fullName)) {
+			throw error("Closing tag does not match opening tag: `" + fullName + "' != `" + scope.fullName + "'");
+		}
+		skipWhitespace();
+		if (read() != '>') {
+			throw error("Closing tag must be empty");
+		}
+		depth--;
+		scope.namespaces = null;
+		builder.endElement(scope.name, scope.prefix, scope.nsURI);
+	}
+
+	/** reads character data up to and including the next &lt; */
+	private void scanText() throws Exception {
+		text.setLength(0);
+		boolean whitespaceOnly = true;
+		int textLineNr = lineNr;
+		for (;;) {
+			if (position == limit && !fill()) {
+				throw unexpectedEndOfData();
+			}
+			final int start = position;
+			char ch = 0;
+			while (position < limit) {
+				ch = buffer[position];
+				if (ch == '<' || ch == '&') {
+					break;
+				}
+				if (ch == '\n') {
+					lineNr++;
+				}
+				else if (whitespaceOnly && ch != ' ' && ch != '\t') {
+					whitespaceOnly = false;
+					textLineNr = lineNr;
+				}
+				position++;
+			}
+			text.append(buffer, start, position - start);
+			if (position == limit) {
+				continue;
+			}
+			position++;
+			if (ch == '<') {
+				break;
+			}
+			if (whitespaceOnly) {
+				whitespaceOnly = false;
+				textLineNr = lineNr;
+			}
+			appendReference(text);
+		}
+		if (!whitespaceOnly) {
+			addPCData(text.toString(), textLineNr);
+		}
+	}
+
+	private void addPCData(final String data, final int dataLineNr) throws Exception {
+		final Reader dataReader = new StringReader(data);
+		builder.addPCData(dataReader, null, dataLineNr);
+		dataReader.close();
+	}
+
+	/** reads the content of the current element up to its closing tag without parsing it */
+	private String scanUnparsedContent() throws Exception {
+		final StringBuilder content = new StringBuilder();
+		int level = 1;
+		for (;;) {
+			appendUntil(content, '<');
+			final int ch = read();
+			if (ch == -1) {
+				throw unexpectedEndOfData();
+			}
+			if (ch == '/') {
+				level--;
+				if (level == 0) {
+					return content.toString();
+				}
+				content.append("</");
+			}
+			else if (ch == '!') {
+				content.append("<!");
+				if (lookingAt("--")) {
+					content.append("--");
+					appendThrough(content, "-->");
+				}
+				else if (lookingAt("[CDATA[")) {
+					content.append("[CDATA[");
+					appendThrough(content, "]]>");
+				}
+				else {
+					appendThrough(content, ">");
+				}
+			}
+			else if (ch == '?') {
+				content.append("<?");
+				appendThrough(content, "?>");
+			}
+			else {
+				unread();
+				content.append('<');
+				if (appendStartTag(content)) {
+					level++;
+				}
+			}
+		}
+	}
+
+	/** appends characters up to the given one, which is consumed but not appended */
+	private void appendUntil(final StringBuilder out, final char delimiter) throws Exception {
+		for (;;) {
+			if (position == limit && !fill()) {
+				throw unexpectedEndOfData();
+			}
+			final int start = position;
+			while (position < limit) {
+				final char ch = buffer[position];
+				if (ch == delimiter) {
+					break;
+				}
+				if (ch == '\n') {
+					lineNr++;
+				}
+				position++;
+			}
+			out.append(buffer, start, position - start);
+			if (position < limit) {
+				position++;
+				return;
+			}
+		}
+	}
+
+	private void appendThrough(final StringBuilder out, final String terminator) throws Exception {
+		final int start = out.length();
+		final char last = terminator.charAt(terminator.length() - 1);
+		for (;;) {
+			appendUntil(out, last);
+			out.append(last);
+			if (endsWith(out, start, terminator)) {
+				return;
+			}
+		}
+	}
+
+	/** returns false for empty elements */
+	private boolean appendStartTag(final StringBuilder out) throws Exception {
+		char quote = 0;
+		char previous = 0;
+		for (;;) {
+			final int ch = read();
+			if (ch == -1) {
+				throw unexpectedEndOfData();
+			}
+			out.append((char) ch);
+			if (quote != 0) {
+				if (ch == quote) {
+					quote = 0;
+				}
+			}
+			else if (ch == '"' || ch == '\'') {
+				quote = (char) ch;
+			}
+			else if (ch == '>') {
+				return previous != '/';
+			}
+			previous = (char) ch;
+		}
+	}
+
+	private static boolean endsWith(final StringBuilder text, final int start, final String suffix) {
+		final int offset = text.length() - suffix.length();
+		if (offset < start) {
+			return false;
+		}
+		for (int i = 0; i < suffix.length(); i++) {
+			if (text.charAt(offset + i) != suffix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** called after the characters &lt;! */
+	private void scanSpecialTag(final boolean inElementContent) throws Exception {
+		final int ch = read();
+		if (ch == '-') {
+			expect('-');
+			skipThrough("-->");
+		}
+		else if (ch == '[' && inElementContent) {
+			expectLiteral("CDATA[");
+			final int dataLineNr = lineNr;
+			text.setLength(0);
+			appendThrough(text, "]]>");
+			text.setLength(text.length() - 3);
+			addPCData(text.toString(), dataLineNr);
+		}
+		else if (ch == 'D') {
+			expectLiteral("OCTYPE");
+			skipDocumentType();
+		}
+		else {
+			throw error("Invalid input: <!" + (char) ch);
+		}
+	}
+
+	private void skipDocumentType() throws Exception {
+		char quote = 0;
+		int bracketLevel = 0;
+		for (;;) {
+			final int ch = read();
+			if (ch == -1) {
+				throw unexpectedEndOfData();
+			}
+			if (quote != 0) {
+				if (ch == quote) {
+					quote = 0;
+				}
+			}
+			else if (ch == '"' || ch == '\'') {
+				quote = (char) ch;
+			}
+			else if (ch == '[') {
+				bracketLevel++;
+			}
+			else if (ch == ']') {
+				bracketLevel--;
+			}
+			else if (ch == '>' && bracketLevel == 0) {
+				return;
+			}
+		}
+	}
+
+	/** called after the characters &lt;? */
+	private void scanProcessingInstruction() throws Exception {
+		final String target = scanName();
+		skipWhitespace();
+		text.setLength(0);
+		appendThrough(text, "?>");
+		text.setLength(text.length() - 2);
+		if (!target.equalsIgnoreCase("xml")) {
+			final Reader dataReader = new StringReader(text.toString());
+			builder.newProcessingInstruction(target, dataReader);
+			dataReader.close();
+		}
+	}
+
+	private void skipThrough(final String terminator) throws Exception {
+		text.setLength(0);
+		appendThrough(text, terminator);
+	}
+
+	private String scanAttributeValue() throws Exception {
+		final int delimiter = read();
+		if (delimiter != '"' && delimiter != '\'') {
+			throw error("Expected: delimited string");
+		}
+		text.setLength(0);
+		for (;;) {
+			if (position == limit && !fill()) {
+				throw unexpectedEndOfData();
+			}
+			final int start = position;
+			char ch = 0;
+			while (position < limit) {
+				ch = buffer[position];
+				if (ch == delimiter || ch == '&' || ch == '\n' || ch == '\t') {
+					break;
+				}
+				position++;
+			}
+			if (position == limit) {
+				text.append(buffer, start, position - start);
+				continue;
+			}
+			position++;
+			if (ch == delimiter) {
+				if (text.length() == 0) {
+					return new String(buffer, start, position - 1 - start);
+				}
+				text.append(buffer, start, position - 1 - start);
+				return text.toString();
+			}
+			text.append(buffer, start, position - 1 - start);
+			if (ch == '&') {
+				appendReference(text);
+			}
+			else {
+				if (ch == '\n') {
+					lineNr++;
+				}
+				text.append(' ');
+			}
+		}
+	}
+
+	/** called after the character &amp; */
+	private void appendReference(final StringBuilder out) throws Exception {
+		reference.setLength(0);
+		for (;;) {
+			final int ch = read();
+			if (ch == -1) {
+				throw unexpectedEndOfData();
+			}
+			if (ch == ';') {
+				break;
+			}
+			reference.append((char) ch);
+		}
+		if (reference.length() > 1 && reference.charAt(0) == '#') {
+			try {
+				if (reference.charAt(1) == 'x') {
+					out.appendCodePoint(Integer.parseInt(reference.substring(2), 16));
+				}
+				else {
+					out.appendCodePoint(Integer.parseInt(reference.substring(1), 10));
+				}
+				return;
+			}
+			catch (final IllegalArgumentException e) {
+				throw error("Invalid character reference: `&" + reference + ";'");
+			}
+		}
+		final String entity = reference.toString();
+		if (entity.equals("amp")) {
+			out.append('&');
+		}
+		else if (entity.equals("lt")) {
+			out.append('<');
+		}
+		else if (entity.equals("gt")) {
+			out.append('>');
+		}
+		else if (entity.equals("quot")) {
+			out.append('"');
+		}
+		else if (entity.equals("apos")) {
+			out.append('\'');
+		}
+		else {
+			throw error("Invalid entity: `&" + entity + ";'");
+		}
+	}
+
+	private String scanName() throws Exception {
+		if (position == limit && !fill()) {
+			return "";
+		}
+		final int start = position;
+		while (position < limit && isNameCharacter(buffer[position])) {
+			position++;
+		}
+		if (position < limit) {
+			return sharedName(start, position - start);
+		}
+		final StringBuilder name = new StringBuilder();
+		name.append(buffer, start, position - start);
+		while (fill()) {
+			final int chunkStart = position;
+			while (position < limit && isNameCharacter(buffer[position])) {
+				position++;
+			}
+			name.append(buffer, chunkStart, position - chunkStart);
+			if (position < limit) {
+				break;
+			}
+		}
+		return name.toString();
+	}
+
+	private String sharedName(final int start, final int length) {
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		final int index = (hash ^ (hash >>> 16)) & (NAME_TABLE_SIZE - 1);
+		final String candidate = nameTable[index];
+		if (candidate != null && candidate.length() == length) {
+			int i = 0;
+			while (i < length && candidate.charAt(i) == buffer[start + i]) {
+				i++;
+			}
+			if (i == length) {
+				return candidate;
+			}
+		}
+		final String name = new String(buffer, start, length);
+		nameTable[index] = name;
+		return name;
+	}
+
+	private static boolean isNameCharacter(final char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_'
+		        || ch == ':' || ch == '-' || ch == '.' || ch > '~';
+	}
+
+	private void skipWhitespace() throws Exception {
+		for (;;) {
+			final int ch = read();
+			if (ch != ' ' && ch != '\t' && ch != '\n') {
+				if (ch != -1) {
+					unread();
+				}
+				return;
+			}
+		}
+	}
+
+	private boolean lookingAt(final String literal) throws Exception {
+		for (int i = 0; i < literal.length(); i++) {
+			final int ch = read();
+			if (ch != literal.charAt(i)) {
+				if (ch != -1) {
+					unread();
+				}
+				if (i > 0) {
+					throw error("Invalid input: `" + literal.substring(0, i) + (char) ch + "'");
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void expectLiteral(final String literal) throws Exception {
+		for (int i = 0; i < literal.length(); i++) {
+			expect(literal.charAt(i));
+		}
+	}
+
+	private void expect(final char expected) throws Exception {
+		final int ch = read();
+		if (ch == -1) {
+			throw unexpectedEndOfData();
+		}
+		if (ch != expected) {
+			throw error("Expected: `" + expected + "'");
+		}
+	}
+
+	private int read() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		final char ch = buffer[position++];
+		if (ch == '\n') {
+			lineNr++;
+		}
+		return ch;
+	}
+
+	/** steps back over the last character returned by {@link #read()} */
+	private void unread() {
+		position--;
+		if (buffer[position] == '\n') {
+			lineNr--;
+		}
+	}
+
+	private boolean fill() throws IOException {
+		position = 0;
+		limit = 0;
+		while (limit == 0) {
+			final int count = reader.read(buffer, 0, buffer.length);
+			if (count < 0) {
+				return false;
+			}
+			limit = normalizeLineEnds(count);
+		}
+		return true;
+	}
+
+	/** replaces \r\n and \r by \n as LineNumberReader used by nanoxml does */
+	private int normalizeLineEnds(final int count) {
+		int length = 0;
+		for (int i = 0; i < count; i++) {
+			final char ch = buffer[i];
+			if (ch == '\r') {
+				buffer[length++] = '\n';
+				skipLineFeed = true;
+			}
+			else {
+				if (ch != '\n' || !skipLineFeed) {
+					buffer[length++] = ch;
+				}
+				skipLineFeed = false;
+			}
+		}
+		return length;
+	}
+
+	private XMLParseException error(final String message) {
+		return new XMLParseException(null, lineNr, message);
+	}
+
+	private XMLParseException unexpectedEndOfData() {
+		return error("Unexpected end of data");
+	}
+}
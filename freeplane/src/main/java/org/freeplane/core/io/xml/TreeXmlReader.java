@@ -20,7 +20,11 @@
 package org.freeplane.core.io.xml;
 
 import java.awt.Point;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -33,6 +37,7 @@ import org.freeplane.core.io.IAttributeHandler;
 import org.freeplane.core.io.IElementContentHandler;
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.IUnparsedElementHandler;
 import org.freeplane.core.io.ListHashTable;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.util.LogUtils;
@@ -90,8 +95,10 @@ public class TreeXmlReader implements IXMLBuilder {
 	final private LinkedList<IElementHandler> nodeCreatorStack = new LinkedList<IElementHandler>();
 	private Object parentElement;
 	final private ReadManager parseManager;
-	private XMLParser parser;
+	private ITreeXmlParser parser;
+	private XmlEventRecorder recorder;
 	private XMLElement saveAsXmlUntil;
+	private boolean streamingParserEnabled = false;
 	private String tag;
 	private StdXMLBuilder xmlBuilder;
 
@@ -124,6 +131,9 @@ public class TreeXmlReader implements IXMLBuilder {
 	 */
 	public void addAttribute(final String key, final String nsPrefix, final String nsURI, final String value,
 	                         final String type) throws Exception {
+		if (recorder != null) {
+			recorder.addAttribute(key, nsPrefix, nsURI, value, type);
+		}
 		if (!addAttribute(key, value)) {
 			xmlBuilder.addAttribute(key, nsPrefix, nsURI, value, type);
 		}
@@ -136,6 +146,10 @@ public class TreeXmlReader implements IXMLBuilder {
 	 * , java.lang.String, int)
 	 */
 	public void addPCData(final Reader reader, final String systemID, final int lineNr) throws Exception {
+		if (recorder != null) {
+			xmlBuilder.addPCData(new StringReader(recorder.addPCData(reader, lineNr)), systemID, lineNr);
+			return;
+		}
 		xmlBuilder.addPCData(reader, systemID, lineNr);
 	}
 
@@ -147,6 +161,9 @@ public class TreeXmlReader implements IXMLBuilder {
 	 */
 	public void elementAttributesProcessed(final String name, final String nsPrefix, final String nsURI)
 	        throws Exception {
+		if (recorder != null) {
+			recorder.elementAttributesProcessed(name, nsPrefix, nsURI);
+		}
 		xmlBuilder.elementAttributesProcessed(name, nsPrefix, nsURI);
 		if (saveAsXmlUntil != null || nodeCreator != null) {
 			return;
@@ -162,6 +179,11 @@ public class TreeXmlReader implements IXMLBuilder {
 			}
 		}
 		if (currentElement != null) {
+			if (isKeptUnparsed()) {
+				parser.notParseNextElementContent();
+				attributeHandlersForTag = null;
+				return;
+			}
 			if (nodeCreator instanceof IElementContentHandler) {
 				parser.notParseNextElementContent();
 			}
@@ -191,6 +213,9 @@ public class TreeXmlReader implements IXMLBuilder {
 	 * .String, java.lang.String, java.lang.String)
 	 */
 	public void endElement(final String name, final String nsPrefix, final String nsURI) throws Exception {
+		if (recorder != null) {
+			recorder.endElement(name, nsPrefix, nsURI);
+		}
 		final XMLElement lastBuiltElement = xmlBuilder.getParentElement();
 		xmlBuilder.endElement(name, nsPrefix, nsURI);
 		if (saveAsXmlUntil == lastBuiltElement) {
@@ -206,7 +231,12 @@ public class TreeXmlReader implements IXMLBuilder {
 		final Object element = currentElement;
 		currentElement = elementStack.removeLast();
 		try {
-			if (nodeCreator instanceof IElementContentHandler) {
+			if (nodeCreator instanceof IUnparsedElementHandler
+			        && ((IUnparsedElementHandler) nodeCreator).keepsUnparsed(element)) {
+				((IUnparsedElementHandler) nodeCreator).endUnparsedElement(currentElement, name, element,
+				    toXml(lastBuiltElement, elementContentAsString));
+			}
+			else if (nodeCreator instanceof IElementContentHandler) {
 				((IElementContentHandler) nodeCreator).endElement(currentElement, name, element, lastBuiltElement,
 						elementContentAsString);
 			}
@@ -225,6 +255,23 @@ public class TreeXmlReader implements IXMLBuilder {
 		elementContentAsString = null;
 	}
 
+	private boolean isKeptUnparsed() {
+		return nodeCreator instanceof IUnparsedElementHandler
+		        && ((IUnparsedElementHandler) nodeCreator).keepsUnparsed(currentElement);
+	}
+
+	private String toXml(final XMLElement element, final String content) throws IOException {
+		final StringWriter xml = new StringWriter();
+		final XMLWriter writer = new XMLWriter(xml);
+		writer.startElement(element);
+		if (content != null) {
+			writer.writeSerialized(content);
+		}
+		writer.endElement(element.getFullName(), true);
+		writer.flush();
+		return xml.toString();
+	}
+
 	private Hashtable<String, Hashtable<String, IAttributeHandler>> getAttributeLoaders() {
 		return parseManager.getAttributeHandlers();
 	}
@@ -246,14 +293,37 @@ public class TreeXmlReader implements IXMLBuilder {
 	 * @see freeplane.persistence.Reader#load()
 	 */
 	public void load(final Reader reader) throws XMLException {
-		parser = new XMLParser();
-		final IXMLReader nanoxmlReader = new StdXMLReader(reader);
-		parser.setReader(nanoxmlReader);
-		parser.setBuilder(this);
-		parser.setValidator(new NonValidator());
+		if (streamingParserEnabled) {
+			parser = new StreamingXmlParser(this, reader);
+		}
+		else {
+			final XMLParser xmlParser = new XMLParser();
+			final IXMLReader nanoxmlReader = new StdXMLReader(reader);
+			xmlParser.setReader(nanoxmlReader);
+			xmlParser.setBuilder(this);
+			xmlParser.setValidator(new NonValidator());
+			parser = xmlParser;
+		}
+		parser.parse();
+	}
+
+	/** replays xml events recorded by {@link XmlEventRecorder} instead of parsing xml */
+	public void loadRecorded(final Object currentElement, final InputStream events) throws XMLException {
+		this.currentElement = currentElement;
+		parser = new RecordedXmlParser(this, events);
 		parser.parse();
 	}
 
+	/** records the xml events of the following loads */
+	public void setRecorder(final XmlEventRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/** selects {@link StreamingXmlParser} instead of the nanoxml parser for the following loads */
+	public void setStreamingParserEnabled(final boolean streamingParserEnabled) {
+		this.streamingParserEnabled = streamingParserEnabled;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
@@ -261,6 +331,11 @@ public class TreeXmlReader implements IXMLBuilder {
 	 * (java.lang.String, java.io.Reader)
 	 */
 	public void newProcessingInstruction(final String target, final Reader reader) throws Exception {
+		if (recorder != null) {
+			xmlBuilder.newProcessingInstruction(target, new StringReader(recorder.newProcessingInstruction(target,
+			    reader)));
+			return;
+		}
 		xmlBuilder.newProcessingInstruction(target, reader);
 	}
 
@@ -272,6 +347,9 @@ public class TreeXmlReader implements IXMLBuilder {
 	/**
 	 */
 	public void setElementContent(final String content) {
+		if (recorder != null) {
+			recorder.setElementContent(content);
+		}
 		elementContentAsString = content;
 	}
 
@@ -295,6 +373,9 @@ public class TreeXmlReader implements IXMLBuilder {
 	 */
 	public void startElement(final String name, final String nsPrefix, final String nsURI, final String systemID,
 	                         final int lineNr) throws Exception {
+		if (recorder != null) {
+			recorder.startElement(name, nsPrefix, nsURI, lineNr);
+		}
 		if (saveAsXmlUntil != null) {
 			xmlBuilder.startElement(name, nsPrefix, nsURI, systemID, lineNr);
 			return;
@@ -314,10 +395,16 @@ public class TreeXmlReader implements IXMLBuilder {
 			}
 		}
 		if (currentElement != null) {
-			attributeHandlersForTag = getAttributeLoaders().get(tag);
-			if (nodeCreator instanceof IElementContentHandler) {
+			if (isKeptUnparsed()) {
+				attributeHandlersForTag = null;
 				parser.notParseNextElementContent();
 			}
+			else {
+				attributeHandlersForTag = getAttributeLoaders().get(tag);
+				if (nodeCreator instanceof IElementContentHandler) {
+					parser.notParseNextElementContent();
+				}
+			}
 		}
 		else {
 			attributeHandlersForTag = null;
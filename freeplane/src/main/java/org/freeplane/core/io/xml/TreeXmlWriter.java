@@ -20,10 +20,13 @@
 package org.freeplane.core.io.xml;
 
 import java.awt.Point;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -69,11 +72,48 @@ public class TreeXmlWriter implements ITreeWriter {
 		return TreeXmlWriter.listToString(l);
 	}
 
+	private static class RecordingWriter extends FilterWriter {
+		private StringBuilder recording;
+
+		RecordingWriter(final Writer out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final int c) throws IOException {
+			if (recording != null) {
+				recording.append((char) c);
+			}
+			out.write(c);
+		}
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) throws IOException {
+			if (recording != null) {
+				recording.append(cbuf, off, len);
+			}
+			out.write(cbuf, off, len);
+		}
+
+		@Override
+		public void write(final String str, final int off, final int len) throws IOException {
+			if (recording != null) {
+				recording.append(str, off, off + len);
+			}
+			out.write(str, off, len);
+		}
+	}
+
 	private boolean elementStarted = false;
 	final private HashMap<Object, Object> hints;
 	final private WriteManager writeManager;
+	/** current element if it is written as a whole by the xml writer, null if its start tag is streamed */
 	private XMLElement xmlElement;
+	/** names of attributes already written to the streamed start tag */
+	final private ArrayList<String> attributeNames = new ArrayList<String>();
+	private boolean hasElement = false;
 	final private XMLWriter xmlwriter;
+	final private RecordingWriter recordingWriter;
 
 	public void flush() {
 	    xmlwriter.flush();
@@ -82,7 +122,8 @@ public class TreeXmlWriter implements ITreeWriter {
 	public TreeXmlWriter(final WriteManager writeManager, final Writer writer) {
 		super();
 		this.writeManager = writeManager;
-		xmlwriter = new XMLWriter(writer);
+		recordingWriter = new RecordingWriter(writer);
+		xmlwriter = new XMLWriter(recordingWriter);
 		hints = new HashMap<Object, Object>();
 	}
 
@@ -98,11 +139,20 @@ public class TreeXmlWriter implements ITreeWriter {
 		if (elementStarted) {
 			throw new RuntimeException("elementStarted");
 		}
-		if (null != xmlElement.getAttribute(key, null)) {
+		if (xmlElement != null) {
+			if (null != xmlElement.getAttribute(key, null)) {
+				LogUtils.warn("attribute \"" + key + "\" already exist with value \"" + value);
+				return;
+			}
+			xmlElement.setAttribute(key, value);
+			return;
+		}
+		if (attributeNames.contains(key)) {
 			LogUtils.warn("attribute \"" + key + "\" already exist with value \"" + value);
 			return;
 		}
-		xmlElement.setAttribute(key, value);
+		attributeNames.add(key);
+		xmlwriter.addAttribute(key, value);
 	}
 
 	public void addComment(final String comment) throws IOException {
@@ -111,20 +161,72 @@ public class TreeXmlWriter implements ITreeWriter {
 		xmlwriter.write(" -->\n");
 	}
 
+	/**
+	 * Streams the element start tag and its attributes to the output without building an {@link XMLElement}.
+	 */
 	public void addElement(final Object userObject, final String name) throws IOException {
-		final XMLElement element = new XMLElement(name);
-		addElement(userObject, element);
+		openStartTag(userObject, name);
+		addAttributesAndContent(userObject, name);
 	}
 
-	@SuppressWarnings("unchecked")
-    public void addElement(final Object userObject, final XMLElement element) throws IOException {
-		final boolean isString = userObject instanceof String;
-		if (elementStarted == false && xmlElement != null) {
-			xmlwriter.write(xmlElement, ! isString, 0, true, false);
-		}
+	public void addElement(final Object userObject, final XMLElement element) throws IOException {
 		final String name = element.getName();
-		xmlElement = element;
+		if (isStreamable(element)) {
+			openStartTag(userObject, name);
+			final Enumeration<String> elementAttributeNames = element.enumerateAttributeNames();
+			while (elementAttributeNames.hasMoreElements()) {
+				final String key = elementAttributeNames.nextElement();
+				addAttribute(key, element.getAttribute(key, null));
+			}
+		}
+		else {
+			startElement(userObject instanceof String);
+			xmlElement = element;
+		}
+		addAttributesAndContent(userObject, name);
+	}
+
+	private void openStartTag(final Object userObject, final String name) throws IOException {
+		startElement(userObject instanceof String);
+		xmlElement = null;
+		attributeNames.clear();
+		xmlwriter.openStartTag(name);
+	}
+
+	private boolean isStreamable(final XMLElement element) {
+		if (element.hasChildren() || element.getContent() != null || element.getNamespace() != null) {
+			return false;
+		}
+		final Enumeration<String> names = element.enumerateAttributeNames();
+		while (names.hasMoreElements()) {
+			if (element.getAttributeNamespace(names.nextElement()) != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** completes the start tag of the parent element */
+	private void startElement(final boolean isString) throws IOException {
+		if (elementStarted == false && hasElement) {
+			closeStartTag(! isString);
+		}
+		hasElement = true;
 		elementStarted = false;
+	}
+
+	private void closeStartTag(final boolean prettyPrint) throws IOException {
+		if (xmlElement != null) {
+			xmlwriter.write(xmlElement, prettyPrint, 0, true, false);
+		}
+		else {
+			xmlwriter.closeStartTag(prettyPrint);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addAttributesAndContent(final Object userObject, final String name) throws IOException {
+		final boolean isString = userObject instanceof String;
 		{
 			final Iterator<IAttributeWriter> iterator = getAttributeWriters().iterator(name);
 			while (iterator.hasNext()) {
@@ -149,7 +251,12 @@ public class TreeXmlWriter implements ITreeWriter {
 			}
 		}
 		if (elementStarted == false) {
-			xmlwriter.write(xmlElement, true, 0, true, true);
+			if (xmlElement != null) {
+				xmlwriter.write(xmlElement, true, 0, true, true);
+			}
+			else {
+				xmlwriter.closeEmptyElement(true);
+			}
 			elementStarted = true;
 		}
 		else {
@@ -161,11 +268,52 @@ public class TreeXmlWriter implements ITreeWriter {
 		if (content.equals("")) {
 			return;
 		}
-		if (elementStarted == false && xmlElement != null) {
-			xmlwriter.write(xmlElement, true, 0, true, false);
+		startElementContent();
+		xmlwriter.write(content);
+	}
+
+	/**
+	 * Writes the start tag of the current element if it has not been written yet,
+	 * so that everything written afterwards belongs to the element content.
+	 */
+	public void startElementContent() throws IOException {
+		if (elementStarted == false && hasElement) {
+			closeStartTag(true);
 			elementStarted = true;
 		}
-		xmlwriter.write(content);
+	}
+
+	/**
+	 * Adds xml text previously obtained from {@link #stopRecording()} as it is.
+	 */
+	public void addSerializedXml(final String xml) throws IOException {
+		startElementContent();
+		xmlwriter.writeSerialized(xml);
+	}
+
+	/**
+	 * Closes an element whose start was added by {@link #addSerializedXml(String)}.
+	 */
+	public void addElementEnd(final String name) {
+		xmlwriter.endElement(name, true);
+	}
+
+	/**
+	 * Starts collecting all text written from now on.
+	 * Pending start tag of the current element is written before.
+	 */
+	public void startRecording() throws IOException {
+		startElementContent();
+		recordingWriter.recording = new StringBuilder();
+	}
+
+	/**
+	 * @return text written since {@link #startRecording()}
+	 */
+	public String stopRecording() {
+		final String recording = recordingWriter.recording.toString();
+		recordingWriter.recording = null;
+		return recording;
 	}
 
 	public void addExtensionAttributes(final Object map, final Collection<IExtension> extensions) {
@@ -22,15 +22,16 @@ package org.freeplane.core.io.xml;
 import java.io.IOException;
 import java.util.Properties;
 
+import org.freeplane.n3.nanoxml.IXMLBuilder;
 import org.freeplane.n3.nanoxml.IXMLParser;
 import org.freeplane.n3.nanoxml.IXMLReader;
 import org.freeplane.n3.nanoxml.StdXMLParser;
 import org.freeplane.n3.nanoxml.XMLParseException;
 
-class XMLParser extends StdXMLParser implements IXMLParser {
+class XMLParser extends StdXMLParser implements IXMLParser, ITreeXmlParser {
 	private boolean skipNextElementContent = false;
 
-	void notParseNextElementContent() {
+	public void notParseNextElementContent() {
 		skipNextElementContent = true;
 	}
 
@@ -50,7 +51,7 @@ class XMLParser extends StdXMLParser implements IXMLParser {
 	        throws IOException, XMLParseException, Exception {
 		if (skipNextElementContent) {
 			boolean inComment = false;
-			final TreeXmlReader builder = (TreeXmlReader) getBuilder();
+			final IXMLBuilder builder = getBuilder();
 			final StringBuilder waitingBuf = new StringBuilder();
 			int level = 1;
 			for (;;) {
@@ -36,6 +36,8 @@ import org.freeplane.n3.nanoxml.XMLElement;
  *         write closing element tag
  */
 class XMLWriter {
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
 	/**
 	 * Where to write the output to.
 	 */
@@ -71,7 +73,41 @@ class XMLWriter {
 	}
 
 	public void endElement(final String fullName, final boolean prettyPrint) {
-		writer.print("</" + fullName + '>');
+		writer.write("</");
+		writer.write(fullName);
+		writer.write('>');
+		if (prettyPrint) {
+			writer.println();
+		}
+	}
+
+	/**
+	 * Writes the beginning of a start tag without namespace declarations.
+	 * It is followed by {@link #addAttribute(String, String)} calls
+	 * and completed by {@link #closeStartTag(boolean)} or {@link #closeEmptyElement(boolean)}.
+	 */
+	public void openStartTag(final String name) {
+		writer.write('<');
+		writer.write(name);
+	}
+
+	public void addAttribute(final String key, final String value) {
+		writer.write(' ');
+		writer.write(key);
+		writer.write("=\"");
+		writeEncoded(value, true, false);
+		writer.write('"');
+	}
+
+	public void closeStartTag(final boolean prettyPrint) {
+		writer.write('>');
+		if (prettyPrint) {
+			writer.println();
+		}
+	}
+
+	public void closeEmptyElement(final boolean prettyPrint) {
+		writer.write("/>");
 		if (prettyPrint) {
 			writer.println();
 		}
@@ -103,6 +139,13 @@ class XMLWriter {
 		writeEncoded(content, false, true);
 	}
 
+	/**
+	 * Writes already encoded xml text as it is.
+	 */
+	public void writeSerialized(final String xml) {
+		writer.write(xml);
+	}
+
 	/**
 	 * Writes an XML element.
 	 * 
@@ -225,53 +268,79 @@ class XMLWriter {
 
 	/**
 	 * Writes a string encoding reserved characters.
+	 * Runs of characters which need no encoding are written at once, so clean strings are passed to the writer unchanged.
 	 */
 	private void writeEncoded(final String str, final boolean atributeValue, final boolean xmlInclude) {
-		for (int i = 0; i < str.length(); i++) {
+		final int length = str.length();
+		int cleanStart = 0;
+		for (int i = 0; i < length; i++) {
 			final char c = str.charAt(i);
-			if (c > 0x7E) {
-				writer.print("&#x");
-				writer.print(Integer.toString(c, 16));
-				writer.print(';');
+			if (!needsEncoding(c, atributeValue, xmlInclude)) {
 				continue;
 			}
-			if (xmlInclude) {
-				writer.print(c);
-				continue;
+			if (cleanStart < i) {
+				writer.write(str, cleanStart, i - cleanStart);
 			}
+			cleanStart = i + 1;
 			switch (c) {
 				case '<':
-					writer.print("&lt;");
-					continue;
+					writer.write("&lt;");
+					break;
 				case '>':
-					writer.print("&gt;");
-					continue;
+					writer.write("&gt;");
+					break;
 				case '&':
-					writer.print("&amp;");
-					continue;
+					writer.write("&amp;");
+					break;
 				case '\'':
-					writer.print("&apos;");
-					continue;
+					writer.write("&apos;");
+					break;
 				case '"':
-					writer.print("&quot;");
-					continue;
-				case 0x0A:
-					if (atributeValue) {
-						writer.print("&#xa;");
-					}
-					else {
-						writer.print(c);
-					}
-					continue;
+					writer.write("&quot;");
+					break;
 				default:
-					if (c < ' ') {
-						writer.print("&#x");
-						writer.print(Integer.toString(c, 16));
-						writer.print(';');
-						continue;
-					}
-					writer.print(c);
+					writeCharacterReference(c);
+			}
+		}
+		if (cleanStart == 0) {
+			writer.write(str);
+		}
+		else if (cleanStart < length) {
+			writer.write(str, cleanStart, length - cleanStart);
+		}
+	}
+
+	private boolean needsEncoding(final char c, final boolean atributeValue, final boolean xmlInclude) {
+		if (c > 0x7E) {
+			return true;
+		}
+		if (xmlInclude) {
+			return false;
+		}
+		switch (c) {
+			case '<':
+			case '>':
+			case '&':
+			case '\'':
+			case '"':
+				return true;
+			case 0x0A:
+				return atributeValue;
+			default:
+				return c < ' ';
+		}
+	}
+
+	private void writeCharacterReference(final char c) {
+		writer.write("&#x");
+		boolean leadingZero = true;
+		for (int shift = 12; shift >= 0; shift -= 4) {
+			final int digit = (c >> shift) & 0xF;
+			if (digit != 0 || !leadingZero || shift == 0) {
+				writer.write(HEX_DIGITS[digit]);
+				leadingZero = false;
 			}
 		}
+		writer.write(';');
 	}
 }
@@ -0,0 +1,132 @@
+package org.freeplane.core.io.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the xml events received by a {@link TreeXmlReader} in a compact binary form,
+ * so that they can be replayed by {@link TreeXmlReader#loadRecorded(Object, java.io.InputStream)}
+ * without parsing the xml text again.
+ *
+ * Every event starts with its type byte. Element and attribute names are written once
+ * and referred to by their index afterwards, all other strings are length prefixed utf-8.
+ */
+public class XmlEventRecorder {
+	static final int START_ELEMENT = 1;
+	static final int ATTRIBUTE = 2;
+	static final int ATTRIBUTES_PROCESSED = 3;
+	static final int PC_DATA = 4;
+	static final int ELEMENT_CONTENT = 5;
+	static final int END_ELEMENT = 6;
+	static final int PROCESSING_INSTRUCTION = 7;
+	static final int NULL_STRING = -1;
+	static final int NEW_NAME = -2;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	final private ByteArrayOutputStream events = new ByteArrayOutputStream();
+	final private Map<String, Integer> names = new HashMap<String, Integer>();
+
+	void startElement(final String name, final String nsPrefix, final String nsURI, final int lineNr) {
+		events.write(START_ELEMENT);
+		writeName(name);
+		writeName(nsPrefix);
+		writeName(nsURI);
+		writeInt(lineNr);
+	}
+
+	void addAttribute(final String key, final String nsPrefix, final String nsURI, final String value,
+	                  final String type) {
+		events.write(ATTRIBUTE);
+		writeName(key);
+		writeName(nsPrefix);
+		writeName(nsURI);
+		writeString(value);
+		writeName(type);
+	}
+
+	void elementAttributesProcessed(final String name, final String nsPrefix, final String nsURI) {
+		events.write(ATTRIBUTES_PROCESSED);
+		writeName(name);
+		writeName(nsPrefix);
+		writeName(nsURI);
+	}
+
+	/** @return the recorded data, the reader is consumed */
+	String addPCData(final Reader reader, final int lineNr) throws IOException {
+		final String data = readFully(reader);
+		events.write(PC_DATA);
+		writeString(data);
+		writeInt(lineNr);
+		return data;
+	}
+
+	void setElementContent(final String content) {
+		events.write(ELEMENT_CONTENT);
+		writeString(content);
+	}
+
+	void endElement(final String name, final String nsPrefix, final String nsURI) {
+		events.write(END_ELEMENT);
+		writeName(name);
+		writeName(nsPrefix);
+		writeName(nsURI);
+	}
+
+	/** @return the recorded data, the reader is consumed */
+	String newProcessingInstruction(final String target, final Reader reader) throws IOException {
+		final String data = readFully(reader);
+		events.write(PROCESSING_INSTRUCTION);
+		writeString(target);
+		writeString(data);
+		return data;
+	}
+
+	public byte[] toByteArray() {
+		return events.toByteArray();
+	}
+
+	private String readFully(final Reader reader) throws IOException {
+		final StringWriter data = new StringWriter();
+		final char[] buffer = new char[1024];
+		for (int count = reader.read(buffer); count != -1; count = reader.read(buffer)) {
+			data.write(buffer, 0, count);
+		}
+		return data.toString();
+	}
+
+	private void writeName(final String name) {
+		if (name == null) {
+			writeInt(NULL_STRING);
+			return;
+		}
+		final Integer index = names.get(name);
+		if (index != null) {
+			writeInt(index);
+			return;
+		}
+		names.put(name, names.size());
+		writeInt(NEW_NAME);
+		writeString(name);
+	}
+
+	private void writeString(final String string) {
+		if (string == null) {
+			writeInt(NULL_STRING);
+			return;
+		}
+		final byte[] bytes = string.getBytes(UTF8);
+		writeInt(bytes.length);
+		events.write(bytes, 0, bytes.length);
+	}
+
+	private void writeInt(final int value) {
+		events.write(value >>> 24);
+		events.write(value >>> 16);
+		events.write(value >>> 8);
+		events.write(value);
+	}
+}
@@ -0,0 +1,175 @@
+package org.freeplane.features.filter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Bit-parallel computation of the same "Optimal String Distance" as {@link PseudoDamerauLevenshtein}
+ * (Myers' algorithm with Hyyrö's extension for transpositions).
+ *
+ * A column of the edit distance matrix is kept as bit vectors of the vertical differences, one long for every
+ * 64 characters of the search term, so each character of the text costs a few operations per block instead of
+ * one matrix row. The bit masks of the search term are kept for the following calls with the same search term.
+ *
+ * Instances are not thread safe.
+ */
+public class BitParallelDamerauLevenshtein implements EditDistanceStringMatchingStrategy {
+	private static final int BLOCK_SIZE = 64;
+	private static final int DIRECT_CHARACTERS = 256;
+	private static final char WILDCARD = '-';
+
+	private String searchTerm;
+	private String searchText;
+	private Type type;
+
+	/** search term the masks were computed for */
+	private String maskedSearchTerm;
+	private int blockCount;
+	/** bits of the positions in the search term containing a character, by character and block */
+	private long[][] directMasks;
+	private final HashMap<Character, long[]> otherMasks = new HashMap<Character, long[]>();
+	private long[] noMatchMask;
+	private long[] wildcardMask;
+	/** state of the blocks, reused between calls */
+	private long[] positiveVertical;
+	private long[] negativeVertical;
+	private long[] previousDiagonal;
+	private long[] previousMatches;
+
+	public void init(String searchTerm, String searchText, boolean subStringMatch, boolean caseSensitive) {
+		if (searchTerm == null || searchText == null) {
+			throw new IllegalArgumentException("Null searchText/searchTerm!");
+		}
+		if (caseSensitive) {
+			this.searchTerm = searchTerm;
+			this.searchText = searchText;
+		}
+		else {
+			this.searchTerm = searchTerm.toLowerCase();
+			this.searchText = searchText.toLowerCase();
+		}
+		this.type = subStringMatch ? Type.SemiGlobal : Type.Global;
+	}
+
+	public boolean matches(String searchTerm, String searchText, boolean subStringMatch, boolean caseSensitive) {
+		init(searchTerm, searchText, subStringMatch, caseSensitive);
+		return matchProb() > StringMatchingStrategy.APPROXIMATE_MATCHING_MINPROB;
+	}
+
+	public float matchProb() {
+		final int distance = distance();
+		if (type == Type.SemiGlobal) {
+			return 1.0F - ((float) distance / searchTerm.length());
+		}
+		else {
+			return 1.0F - ((float) distance / Math.min(searchTerm.length(), searchText.length()));
+		}
+	}
+
+	public int distance() {
+		final int termLength = searchTerm.length();
+		if (termLength == 0) {
+			return type == Type.Global ? searchText.length() : 0;
+		}
+		prepareMasks();
+		final long lastBit = 1L << (termLength - 1) % BLOCK_SIZE;
+		Arrays.fill(positiveVertical, 0, blockCount, -1L);
+		Arrays.fill(negativeVertical, 0, blockCount, 0L);
+		Arrays.fill(previousDiagonal, 0, blockCount, 0L);
+		Arrays.fill(previousMatches, 0, blockCount, 0L);
+		// the first row contains the column index for global alignments and 0 for semi-global ones
+		final int horizontalInput = type == Type.Global ? 1 : 0;
+		int score = termLength;
+		int minScore = score;
+		for (int j = 0; j < searchText.length(); j++) {
+			final char c = searchText.charAt(j);
+			final long[] matches = getMasks(c);
+			final long[] equals = c == WILDCARD ? wildcardMask : matches;
+			int horizontal = horizontalInput;
+			long transpositionCarry = 0;
+			for (int block = 0; block < blockCount; block++) {
+				final long pv = positiveVertical[block];
+				final long mv = negativeVertical[block];
+				long eq = equals[block];
+				// transpositions: the previous text character matches here and the current one matches above
+				final long transposable = ~previousDiagonal[block] & matches[block];
+				final long transpositions = (transposable << 1 | transpositionCarry) & previousMatches[block];
+				transpositionCarry = transposable >>> BLOCK_SIZE - 1;
+				final long xv = eq | mv | transpositions;
+				if (horizontal < 0) {
+					eq |= 1L;
+				}
+				final long xh = (((eq & pv) + pv) ^ pv) | eq | transpositions;
+				long ph = mv | ~(xh | pv);
+				long mh = pv & xh;
+				final long highBit = block == blockCount - 1 ? lastBit : 1L << BLOCK_SIZE - 1;
+				final int horizontalOutput = (ph & highBit) != 0 ? 1 : (mh & highBit) != 0 ? -1 : 0;
+				ph <<= 1;
+				mh <<= 1;
+				if (horizontal < 0) {
+					mh |= 1L;
+				}
+				else if (horizontal > 0) {
+					ph |= 1L;
+				}
+				positiveVertical[block] = mh | ~(xv | ph);
+				negativeVertical[block] = ph & xv;
+				previousDiagonal[block] = xh | mv;
+				previousMatches[block] = matches[block];
+				horizontal = horizontalOutput;
+			}
+			score += horizontal;
+			if (score < minScore) {
+				minScore = score;
+			}
+		}
+		return type == Type.Global ? score : minScore;
+	}
+
+	private long[] getMasks(final char c) {
+		if (c < DIRECT_CHARACTERS) {
+			return directMasks[c];
+		}
+		final long[] masks = otherMasks.get(c);
+		return masks != null ? masks : noMatchMask;
+	}
+
+	private void prepareMasks() {
+		if (searchTerm.equals(maskedSearchTerm)) {
+			return;
+		}
+		blockCount = (searchTerm.length() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		if (directMasks == null || directMasks[0].length < blockCount) {
+			directMasks = new long[DIRECT_CHARACTERS][blockCount];
+			noMatchMask = new long[blockCount];
+			wildcardMask = new long[blockCount];
+			positiveVertical = new long[blockCount];
+			negativeVertical = new long[blockCount];
+			previousDiagonal = new long[blockCount];
+			previousMatches = new long[blockCount];
+		}
+		else {
+			for (final long[] masks : directMasks) {
+				Arrays.fill(masks, 0L);
+			}
+		}
+		otherMasks.clear();
+		Arrays.fill(wildcardMask, -1L);
+		for (int i = 0; i < searchTerm.length(); i++) {
+			final char c = searchTerm.charAt(i);
+			long[] masks;
+			if (c < DIRECT_CHARACTERS) {
+				masks = directMasks[c];
+			}
+			else {
+				masks = otherMasks.get(c);
+				if (masks == null) {
+					masks = new long[directMasks[0].length];
+					otherMasks.put(c, masks);
+				}
+			}
+			masks[i / BLOCK_SIZE] |= 1L << i % BLOCK_SIZE;
+		}
+		maskedSearchTerm = searchTerm;
+	}
+}
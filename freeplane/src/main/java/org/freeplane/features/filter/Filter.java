@@ -19,11 +19,19 @@
  */
 package org.freeplane.features.filter;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
 import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ICondition;
 import org.freeplane.features.map.IMapSelection;
 import org.freeplane.features.map.MapChangeEvent;
@@ -32,9 +40,217 @@ import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
 
 /**
+ * The filter is applied in two phases: the condition is checked for all nodes first, in parallel if the
+ * condition is thread safe, then the filter results are set in a single pass over the map.
+ *
  * @author Dimitry Polivaev
  */
 public class Filter {
+	/** number of nodes checked by a single task of the parallel check */
+	private static final int NODES_PER_TASK = 256;
+	private static ForkJoinPool checkPool;
+
+	/** checks the nodes of a range of the node list. Ranges start at multiples of 64,
+	 * so that the results of different tasks are stored in different words */
+	private class CheckTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<NodeModel> nodes;
+		private final BitSet hiddenNodes;
+		private final long[] matches;
+		private final int start;
+		private final int end;
+
+		CheckTask(final List<NodeModel> nodes, final BitSet hiddenNodes, final long[] matches, final int start,
+		          final int end) {
+			this.nodes = nodes;
+			this.hiddenNodes = hiddenNodes;
+			this.matches = matches;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= NODES_PER_TASK) {
+				checkNodes(nodes, hiddenNodes, matches, start, end);
+				return;
+			}
+			final int middle = start + (end - start) / 2 / 64 * 64;
+			invokeAll(new CheckTask(nodes, hiddenNodes, matches, start, middle), new CheckTask(nodes, hiddenNodes,
+			    matches, middle, end));
+		}
+	}
+
+	/** updates the filter results of changed nodes and of the nodes whose results depend on them */
+	private class FilterResultsChange {
+		private static final int OWN_RESULT_FLAGS = FilterInfo.FILTER_SHOW_MATCHED | FilterInfo.FILTER_SHOW_HIDDEN
+		        | FilterInfo.FILTER_SHOW_DESCENDANT | FilterInfo.FILTER_SHOW_ECLIPSED;
+		private final NodeModel root;
+		private final LinkedHashSet<NodeModel> updatedNodes = new LinkedHashSet<NodeModel>();
+		private Boolean isRootMatched;
+
+		FilterResultsChange(final NodeModel root) {
+			this.root = root;
+		}
+
+		void rootChanged() {
+			isRootMatched = null;
+			for (final NodeModel child : childrenUnfolded(root)) {
+				update(child, true, false);
+			}
+		}
+
+		/** checks the parsed children of a changed node again,
+		 * because conditions can depend on the text of the parent node */
+		void recheckChildren(final NodeModel node) {
+			for (final NodeModel child : parsedChildrenUnfolded(node)) {
+				update(child, true, false);
+			}
+			if (updateAncestorFlag(node)) {
+				updatedNodes.add(node);
+			}
+		}
+
+		/** checks the node again if recheck is set, and all nodes of its branch if checkBranch is set.
+		 * The results of the descendants are derived again if the results of the node change. */
+		void update(final NodeModel node, final boolean recheck, final boolean checkBranch) {
+			final NodeModel parent = node.getParentNode();
+			final int parentResult = parent.getFilterInfo().get();
+			final boolean isAncestorSelected = parent == root ? isRootMatched()
+			        : 0 != (parentResult & (FilterInfo.FILTER_SHOW_MATCHED | FilterInfo.FILTER_SHOW_DESCENDANT));
+			final boolean isAncestorEclipsed = parent != root
+			        && (0 == (parentResult & FilterInfo.FILTER_SHOW_MATCHED) || 0 != (parentResult & FilterInfo.FILTER_SHOW_ECLIPSED));
+			final int oldResult = node.getFilterInfo().get();
+			final boolean conditionSatisfied = recheck || checkBranch ? checkNode(node)
+			        : 0 != (oldResult & FilterInfo.FILTER_SHOW_MATCHED);
+			int result = conditionSatisfied ? FilterInfo.FILTER_SHOW_MATCHED : FilterInfo.FILTER_SHOW_HIDDEN;
+			if (isAncestorSelected) {
+				result |= FilterInfo.FILTER_SHOW_DESCENDANT;
+			}
+			if (isAncestorEclipsed) {
+				result |= FilterInfo.FILTER_SHOW_ECLIPSED;
+			}
+			if (!checkBranch && result == (oldResult & OWN_RESULT_FLAGS)) {
+				return;
+			}
+			setResult(node, result | oldResult & FilterInfo.FILTER_SHOW_ANCESTOR);
+			for (final NodeModel child : childrenUnfolded(node)) {
+				update(child, checkBranch, checkBranch);
+			}
+			updateAncestorFlag(node);
+			if (node.getFilterInfo().get() != oldResult) {
+				updatedNodes.add(node);
+			}
+		}
+
+		/** updates the flags of the node and its ancestors showing matching descendants
+		 * up to the first ancestor whose flag does not change */
+		void updateAncestorFlags(final NodeModel node) {
+			for (NodeModel ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+				if (!updateAncestorFlag(ancestor)) {
+					break;
+				}
+				updatedNodes.add(ancestor);
+			}
+		}
+
+		/** @return true if the flag has changed */
+		private boolean updateAncestorFlag(final NodeModel node) {
+			boolean isDescendantSelected = false;
+			for (final NodeModel child : childrenUnfolded(node)) {
+				if (0 != (child.getFilterInfo().get() & (FilterInfo.FILTER_SHOW_MATCHED | FilterInfo.FILTER_SHOW_ANCESTOR))) {
+					isDescendantSelected = true;
+					break;
+				}
+			}
+			final int oldResult = node.getFilterInfo().get();
+			if (isDescendantSelected == (0 != (oldResult & FilterInfo.FILTER_SHOW_ANCESTOR))) {
+				return false;
+			}
+			setResult(node, oldResult & ~FilterInfo.FILTER_INITIAL_VALUE ^ FilterInfo.FILTER_SHOW_ANCESTOR);
+			return true;
+		}
+
+		private void setResult(final NodeModel node, final int result) {
+			resetFilter(node);
+			if (result != 0) {
+				addFilterResult(node, result);
+			}
+		}
+
+		private boolean isRootMatched() {
+			if (isRootMatched == null) {
+				isRootMatched = checkNode(root);
+			}
+			return isRootMatched;
+		}
+
+		private boolean checkNode(final NodeModel node) {
+			return condition.checkNode(node);
+		}
+
+		private List<NodeModel> childrenUnfolded(final NodeModel node) {
+			return Controller.getCurrentModeController().getMapController().childrenUnfolded(node);
+		}
+
+		private List<NodeModel> parsedChildrenUnfolded(final NodeModel node) {
+			return Controller.getCurrentModeController().getMapController().parsedChildrenUnfolded(node);
+		}
+	}
+
+	/** sets the filter results of the nodes in the order of the node list */
+	private class FilterResultsUpdater {
+		private final BitSet matches;
+		private int nextNodeIndex = 0;
+
+		FilterResultsUpdater(final BitSet matches) {
+			this.matches = matches;
+		}
+
+		void updateRoot(final NodeModel root) {
+			final boolean conditionSatisfied = matches.get(nextNodeIndex++);
+			resetFilter(root);
+			if (filterChildren(root, conditionSatisfied, false)) {
+				addFilterResult(root, FilterInfo.FILTER_SHOW_ANCESTOR);
+			}
+		}
+
+		private boolean applyFilter(final NodeModel node, final boolean isAncestorSelected,
+		                            final boolean isAncestorEclipsed, boolean isDescendantSelected) {
+			final boolean conditionSatisfied = matches.get(nextNodeIndex++);
+			resetFilter(node);
+			if (isAncestorSelected) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_DESCENDANT);
+			}
+			if (conditionSatisfied) {
+				isDescendantSelected = true;
+				addFilterResult(node, FilterInfo.FILTER_SHOW_MATCHED);
+			}
+			else {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_HIDDEN);
+			}
+			if (isAncestorEclipsed) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_ECLIPSED);
+			}
+			if (filterChildren(node, conditionSatisfied || isAncestorSelected, !conditionSatisfied
+			        || isAncestorEclipsed)) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_ANCESTOR);
+				isDescendantSelected = true;
+			}
+			return isDescendantSelected;
+		}
+
+		private boolean filterChildren(final NodeModel node, final boolean isAncestorSelected,
+		                               final boolean isAncestorEclipsed) {
+			boolean isDescendantSelected = false;
+			for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
+				isDescendantSelected = applyFilter(child, isAncestorSelected, isAncestorEclipsed,
+				    isDescendantSelected);
+			}
+			return isDescendantSelected;
+		}
+	}
+
 	static Filter createTransparentFilter() {
 		final ResourceController resourceController = ResourceController.getResourceController();
 		return new Filter(null, resourceController.getBooleanProperty("filter.showAncestors"), resourceController.getBooleanProperty("filter.showDescendants"), false);
@@ -97,11 +313,7 @@ public class Filter {
 			final Filter oldFilter = map.getFilter();
 			map.setFilter(this);
 			if (force || !isConditionStronger(oldFilter)) {
-				final NodeModel root = map.getRootNode();
-				resetFilter(root);
-				if (filterChildren(root, checkNode(root), false)) {
-					addFilterResult(root, FilterInfo.FILTER_SHOW_ANCESTOR);
-				}
+				calculateFilterResults(map.getRootNode());
 			}
 			final IMapSelection selection = Controller.getCurrentController().getSelection();
 			final NodeModel selected = selection.getSelected();
@@ -115,32 +327,6 @@ public class Filter {
 		}
 	}
 
-	private boolean applyFilter(final NodeModel node,
-	                            final boolean isAncestorSelected, final boolean isAncestorEclipsed,
-	                            boolean isDescendantSelected) {
-		final boolean conditionSatisfied = checkNode(node);
-		resetFilter(node);
-		if (isAncestorSelected) {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_DESCENDANT);
-		}
-		if (conditionSatisfied) {
-			isDescendantSelected = true;
-			addFilterResult(node, FilterInfo.FILTER_SHOW_MATCHED);
-		}
-		else {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_HIDDEN);
-		}
-		if (isAncestorEclipsed) {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_ECLIPSED);
-		}
-		if (filterChildren(node, conditionSatisfied || isAncestorSelected, !conditionSatisfied
-		        || isAncestorEclipsed)) {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_ANCESTOR);
-			isDescendantSelected = true;
-		}
-		return isDescendantSelected;
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * @see freeplane.controller.filter.Filter#areAncestorsShown()
@@ -157,24 +343,57 @@ public class Filter {
 		return 0 != (options & FilterInfo.FILTER_SHOW_DESCENDANT);
 	}
 
-	private boolean checkNode(final NodeModel node) {
-		if (condition == null) {
-			return true;
-		}
+	/** checks all nodes of the map and sets their filter results */
+	void calculateFilterResults(final NodeModel root) {
+		final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+		final BitSet hiddenNodes = new BitSet();
+		collectNodes(root, nodes, hiddenNodes);
+		new FilterResultsUpdater(checkNodes(nodes, hiddenNodes)).updateRoot(root);
+	}
+
+	/** collects the nodes in the order they are visited by the {@link FilterResultsUpdater}
+	 * and the indices of the nodes which are excluded because they are not visible */
+	private void collectNodes(final NodeModel node, final List<NodeModel> nodes, final BitSet hiddenNodes) {
 		if (appliesToVisibleNodesOnly && !node.hasVisibleContent()) {
-			return false;
+			hiddenNodes.set(nodes.size());
+		}
+		nodes.add(node);
+		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
+			collectNodes(child, nodes, hiddenNodes);
 		}
-		return condition.checkNode(node);
 	}
 
-	private boolean filterChildren(final NodeModel node,
-	                               final boolean isAncestorSelected, final boolean isAncestorEclipsed) {
-		boolean isDescendantSelected = false;
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
-			isDescendantSelected = applyFilter(child, isAncestorSelected, isAncestorEclipsed,
-			    isDescendantSelected);
+	/** @return the indices of the nodes satisfying the condition */
+	private BitSet checkNodes(final List<NodeModel> nodes, final BitSet hiddenNodes) {
+		final long[] matches = new long[(nodes.size() + 63) / 64];
+		if (nodes.size() > NODES_PER_TASK && isConditionThreadSafe() && Runtime.getRuntime().availableProcessors() > 1) {
+			((ASelectableCondition) condition).prepareConcurrentCheck(nodes.get(0).getMap());
+			getCheckPool().invoke(new CheckTask(nodes, hiddenNodes, matches, 0, nodes.size()));
 		}
-		return isDescendantSelected;
+		else {
+			checkNodes(nodes, hiddenNodes, matches, 0, nodes.size());
+		}
+		return BitSet.valueOf(matches);
+	}
+
+	private void checkNodes(final List<NodeModel> nodes, final BitSet hiddenNodes, final long[] matches,
+	                        final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			if (condition == null || !hiddenNodes.get(i) && condition.checkNode(nodes.get(i))) {
+				matches[i >> 6] |= 1L << i;
+			}
+		}
+	}
+
+	private boolean isConditionThreadSafe() {
+		return condition instanceof ASelectableCondition && ((ASelectableCondition) condition).isThreadSafe();
+	}
+
+	private static synchronized ForkJoinPool getCheckPool() {
+		if (checkPool == null) {
+			checkPool = new ForkJoinPool();
+		}
+		return checkPool;
 	}
 
 	public ICondition getCondition() {
@@ -201,6 +420,58 @@ public class Filter {
 		        && ((options & filterResult & ~FilterInfo.FILTER_SHOW_ECLIPSED) != 0);
 	}
 
+	/** @return true if the filter results can be updated for single nodes by {@link #updateFilterResults} */
+	boolean canUpdateFilterResults() {
+		return condition != null && !appliesToVisibleNodesOnly;
+	}
+
+	/**
+	 * Updates the filter results after changes of the map without checking the unchanged nodes again.
+	 *
+	 * @param changedNodes nodes whose content changed, their children are checked again as well
+	 * @param changedBranches nodes inserted or moved together with their descendants
+	 * @param changedParents nodes whose children were removed
+	 * @return the nodes whose filter results changed
+	 */
+	Collection<NodeModel> updateFilterResults(final MapModel map, final Collection<NodeModel> changedNodes,
+	                                          final Collection<NodeModel> changedBranches,
+	                                          final Collection<NodeModel> changedParents) {
+		final NodeModel root = map.getRootNode();
+		final FilterResultsChange change = new FilterResultsChange(root);
+		for (final NodeModel node : changedBranches) {
+			if (node != root && isInMap(root, node)) {
+				change.update(node, true, true);
+				change.updateAncestorFlags(node.getParentNode());
+			}
+		}
+		for (final NodeModel node : changedNodes) {
+			if (node == root) {
+				change.rootChanged();
+				change.updateAncestorFlags(root);
+			}
+			else if (isInMap(root, node)) {
+				change.update(node, true, false);
+				change.recheckChildren(node);
+				change.updateAncestorFlags(node.getParentNode());
+			}
+		}
+		for (final NodeModel node : changedParents) {
+			if (isInMap(root, node)) {
+				change.updateAncestorFlags(node);
+			}
+		}
+		return change.updatedNodes;
+	}
+
+	private boolean isInMap(final NodeModel root, NodeModel node) {
+		for (; node != null; node = node.getParentNode()) {
+			if (node == root) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void refreshMap(Object source, MapModel map) {
 		Controller.getCurrentModeController().getMapController().fireMapChanged(new MapChangeEvent(source, map, Filter.class, null, this));
 	}
@@ -209,7 +480,7 @@ public class Filter {
 		node.getFilterInfo().reset();
 	}
 
-	private void selectVisibleNode() {
+	void selectVisibleNode() {
 		final IMapSelection mapSelection = Controller.getCurrentController().getSelection();
 		final Collection<NodeModel> selectedNodes = mapSelection.getSelection();
 		final NodeModel[] array = new NodeModel[selectedNodes.size()];
@@ -627,7 +627,7 @@ public class FilterController implements IMapSelectionListener, IExtension {
     }
 
 	public boolean isNodeHighlighted(NodeModel node) {
-		return highlightCondition != null && highlightCondition.checkNode(node);
+		return highlightCondition != null && HighlightCache.isHighlighted(highlightCondition, node);
     }
 
 	public ButtonModel getApproximateMatchingButtonModel() {
@@ -0,0 +1,142 @@
+package org.freeplane.features.filter;
+
+import java.awt.EventQueue;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.AMapChangeListenerAdapter;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeDeletionEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeMoveEvent;
+import org.freeplane.features.mode.Controller;
+
+/**
+ * Keeps the results of an active filter up to date while the map is edited, if the property
+ * {@link #RESOURCES_AUTO_REFRESH} is set.
+ *
+ * Changes are collected until the current event is processed. Then only the changed nodes are checked again,
+ * and the results of the other nodes are derived again only along the paths affected by changed results.
+ * Filters applied to visible nodes only are not updated, their results depend on the previous filter.
+ */
+public class FilterUpdater extends AMapChangeListenerAdapter {
+	public static final String RESOURCES_AUTO_REFRESH = "filter.autoRefresh";
+
+	private static class Changes {
+		final LinkedHashSet<NodeModel> changedNodes = new LinkedHashSet<NodeModel>();
+		final LinkedHashSet<NodeModel> changedBranches = new LinkedHashSet<NodeModel>();
+		final LinkedHashSet<NodeModel> changedParents = new LinkedHashSet<NodeModel>();
+	}
+
+	public static void install(final MapController mapController) {
+		final FilterUpdater updater = new FilterUpdater(mapController);
+		mapController.addNodeChangeListener(updater);
+		mapController.addMapChangeListener(updater);
+		mapController.addMapLifeCycleListener(updater);
+	}
+
+	private final MapController mapController;
+	private final LinkedHashMap<MapModel, Changes> changesByMap = new LinkedHashMap<MapModel, Changes>();
+
+	private FilterUpdater(final MapController mapController) {
+		this.mapController = mapController;
+	}
+
+	@Override
+	public void nodeChanged(final NodeChangeEvent event) {
+		if (Filter.class.equals(event.getProperty())) {
+			return;
+		}
+		final Changes changes = getChanges(event.getNode().getMap());
+		if (changes != null) {
+			changes.changedNodes.add(event.getNode());
+		}
+	}
+
+	@Override
+	public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+		final Changes changes = getChanges(parent.getMap());
+		if (changes != null) {
+			changes.changedBranches.add(child);
+		}
+	}
+
+	@Override
+	public void onNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+		final Changes changes = getChanges(nodeMoveEvent.child.getMap());
+		if (changes != null) {
+			changes.changedBranches.add(nodeMoveEvent.child);
+			changes.changedParents.add(nodeMoveEvent.oldParent);
+		}
+	}
+
+	@Override
+	public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+		final Changes changes = getChanges(nodeDeletionEvent.parent.getMap());
+		if (changes != null) {
+			changes.changedParents.add(nodeDeletionEvent.parent);
+		}
+	}
+
+	@Override
+	public void onRemove(final MapModel map) {
+		changesByMap.remove(map);
+	}
+
+	/** @return the changes to be collected for the map, null if its filter results need not be updated */
+	private Changes getChanges(final MapModel map) {
+		if (map == null || !isUpdated(map)) {
+			return null;
+		}
+		Changes changes = changesByMap.get(map);
+		if (changes == null) {
+			if (changesByMap.isEmpty()) {
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						updateFilterResults();
+					}
+				});
+			}
+			changes = new Changes();
+			changesByMap.put(map, changes);
+		}
+		return changes;
+	}
+
+	private boolean isUpdated(final MapModel map) {
+		final Filter filter = map.getFilter();
+		return filter != null && filter.canUpdateFilterResults()
+		        && ResourceController.getResourceController().getBooleanProperty(RESOURCES_AUTO_REFRESH);
+	}
+
+	private void updateFilterResults() {
+		while (!changesByMap.isEmpty()) {
+			final Map.Entry<MapModel, Changes> entry = changesByMap.entrySet().iterator().next();
+			changesByMap.remove(entry.getKey());
+			updateFilterResults(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void updateFilterResults(final MapModel map, final Changes changes) {
+		if (!isUpdated(map)) {
+			return;
+		}
+		final Filter filter = map.getFilter();
+		final Collection<NodeModel> updatedNodes = filter.updateFilterResults(map, changes.changedNodes,
+		    changes.changedBranches, changes.changedParents);
+		if (updatedNodes.isEmpty()) {
+			return;
+		}
+		for (final NodeModel node : updatedNodes) {
+			mapController.nodeRefresh(node, Filter.class, null, null);
+		}
+		if (map == Controller.getCurrentController().getMap()) {
+			filter.selectVisibleNode();
+		}
+	}
+}
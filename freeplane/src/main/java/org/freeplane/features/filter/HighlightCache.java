@@ -0,0 +1,115 @@
+package org.freeplane.features.filter;
+
+import java.util.HashMap;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.features.filter.condition.ICondition;
+import org.freeplane.features.map.AMapChangeListenerAdapter;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeDeletionEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeMoveEvent;
+
+/**
+ * Results of the highlight condition for the nodes of a map, so that painting does not check the condition
+ * again for every visible node.
+ *
+ * Each node is checked when it is painted first. The results of changed nodes and their children are dropped,
+ * because conditions may refer to the parent node. Setting another condition drops all results.
+ * Child nodes kept unparsed have no results yet, so invalidation does not parse them.
+ */
+public class HighlightCache implements IExtension {
+	/** drops the results of changed nodes */
+	private static class Updater extends AMapChangeListenerAdapter {
+		@Override
+		public void nodeChanged(final NodeChangeEvent event) {
+			if (Filter.class.equals(event.getProperty())) {
+				return;
+			}
+			final HighlightCache cache = getCache(event.getNode());
+			if (cache != null) {
+				cache.invalidate(event.getNode());
+				for (final NodeModel child : event.getNode().getParsedChildren()) {
+					cache.invalidate(child);
+				}
+			}
+		}
+
+		@Override
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			final HighlightCache cache = getCache(parent);
+			if (cache != null) {
+				cache.invalidateBranch(child);
+			}
+		}
+
+		@Override
+		public void onNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+			final HighlightCache cache = getCache(nodeMoveEvent.newParent);
+			if (cache != null) {
+				cache.invalidateBranch(nodeMoveEvent.child);
+			}
+		}
+
+		@Override
+		public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+			final HighlightCache cache = getCache(nodeDeletionEvent.parent);
+			if (cache != null) {
+				cache.invalidateBranch(nodeDeletionEvent.node);
+			}
+		}
+
+		private HighlightCache getCache(final NodeModel node) {
+			final MapModel map = node.getMap();
+			return map == null ? null : map.getExtension(HighlightCache.class);
+		}
+	}
+
+	public static void install(final MapController mapController) {
+		final Updater updater = new Updater();
+		mapController.addNodeChangeListener(updater);
+		mapController.addMapChangeListener(updater);
+	}
+
+	static boolean isHighlighted(final ICondition condition, final NodeModel node) {
+		final MapModel map = node.getMap();
+		if (map == null) {
+			return condition.checkNode(node);
+		}
+		HighlightCache cache = map.getExtension(HighlightCache.class);
+		if (cache == null || cache.condition != condition) {
+			cache = new HighlightCache(condition);
+			map.putExtension(cache);
+		}
+		return cache.isHighlighted(node);
+	}
+
+	private final ICondition condition;
+	private final HashMap<NodeModel, Boolean> results = new HashMap<NodeModel, Boolean>();
+
+	private HighlightCache(final ICondition condition) {
+		this.condition = condition;
+	}
+
+	private boolean isHighlighted(final NodeModel node) {
+		Boolean result = results.get(node);
+		if (result == null) {
+			result = condition.checkNode(node);
+			results.put(node, result);
+		}
+		return result;
+	}
+
+	private void invalidate(final NodeModel node) {
+		results.remove(node);
+	}
+
+	private void invalidateBranch(final NodeModel node) {
+		results.remove(node);
+		for (final NodeModel child : node.getParsedChildren()) {
+			invalidateBranch(child);
+		}
+	}
+}
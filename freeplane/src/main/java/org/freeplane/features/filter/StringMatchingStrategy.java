@@ -25,7 +25,21 @@ public interface StringMatchingStrategy {
 	
 	double APPROXIMATE_MATCHING_MINPROB = ResourceController.getResourceController().getDoubleProperty("approximate_search_threshold");
 	
-	static final StringMatchingStrategy DEFAULT_APPROXIMATE_STRING_MATCHING_STRATEGY = new PseudoDamerauLevenshtein();
+	/** can be used by concurrent threads, each thread matches with its own {@link BitParallelDamerauLevenshtein}
+	 * because it keeps the state of the matching and the masks of the last search term in fields */
+	static final StringMatchingStrategy DEFAULT_APPROXIMATE_STRING_MATCHING_STRATEGY = new StringMatchingStrategy() {
+		private final ThreadLocal<StringMatchingStrategy> strategies = new ThreadLocal<StringMatchingStrategy>() {
+			@Override
+			protected StringMatchingStrategy initialValue() {
+				return new BitParallelDamerauLevenshtein();
+			}
+		};
+
+		public boolean matches(final String searchTerm, final String searchText, final boolean subStringMatch,
+		                       final boolean caseSensitive) {
+			return strategies.get().matches(searchTerm, searchText, subStringMatch, caseSensitive);
+		}
+	};
 	static final StringMatchingStrategy EXACT_STRING_MATCHING_STRATEGY = new ExactStringMatchingStrategy();
 	
 	/**
@@ -5,6 +5,7 @@ import java.lang.reflect.Method;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 
+import org.freeplane.features.map.MapModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
 
@@ -98,6 +99,17 @@ public abstract class ASelectableCondition  implements ICondition{
 
 	abstract protected String getName();
 
+	/** @return true if the condition can check different nodes in concurrent threads.
+	 * Conditions accessing shared state, transforming node texts or executing scripts must return false. */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	/** called in the event dispatch thread before the nodes of the map are checked in concurrent threads.
+	 * Conditions using shared state, e.g. a search index, bring it up to date here, so that the checks only read it. */
+	public void prepareConcurrentCheck(MapModel map) {
+	}
+
 
 	public void setUserName(String userName) {
 		if(userName == this.userName || userName != null && userName.equals(this.userName))
@@ -27,6 +27,7 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
@@ -56,6 +57,16 @@ public class ConditionNotSatisfiedDecorator extends ASelectableCondition impleme
 		this.originalCondition = originalCondition;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return originalCondition.isThreadSafe();
+	}
+
+	@Override
+	public void prepareConcurrentCheck(final MapModel map) {
+		originalCondition.prepareConcurrentCheck(map);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
@@ -27,6 +27,7 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
@@ -58,6 +59,23 @@ public class ConjunctConditions extends ASelectableCondition implements ICombine
 		this.conditions = conditions;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		for (final ASelectableCondition condition : conditions) {
+			if (!condition.isThreadSafe()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void prepareConcurrentCheck(final MapModel map) {
+		for (final ASelectableCondition condition : conditions) {
+			condition.prepareConcurrentCheck(map);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
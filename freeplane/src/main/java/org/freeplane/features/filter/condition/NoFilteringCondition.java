@@ -43,6 +43,11 @@ public class NoFilteringCondition extends ASelectableCondition {
 		return true;
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	@Override
     protected String createDescription() {
 		if (NoFilteringCondition.description == null) {
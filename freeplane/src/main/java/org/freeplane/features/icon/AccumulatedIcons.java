@@ -61,7 +61,7 @@ class AccumulatedIcons  implements IExtension{
 		final Collection<MindIcon> ownIcons = IconController.getController().getIcons(node);
 		final AccumulatedIcons iconSet = new AccumulatedIcons(ownIcons);
 		boolean first = true;
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
+		for (final NodeModel child : Controller.getCurrentModeController().getMapController().parsedChildrenUnfolded(node)) {
 			if(first || mode.equals(Mode.OR)){
 				iconSet.addAccumulatedIconsToTreeSet(child);
 			}
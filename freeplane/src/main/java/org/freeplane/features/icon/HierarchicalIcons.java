@@ -20,6 +20,7 @@
  */
 package org.freeplane.features.icon;
 
+import java.util.List;
 import java.util.Map;
 import org.freeplane.core.extension.IExtension;
 import org.freeplane.core.io.IReadCompletionListener;
@@ -88,26 +89,30 @@ public class HierarchicalIcons extends PersistentNodeHook implements INodeChange
 	/**
 	 */
 	private void gatherLeavesAndSetParentsStyle(final NodeModel node) {
-		if (node.getChildCount() == 0) {
+		final List<NodeModel> children = Controller.getCurrentModeController().getMapController().parsedChildrenUnfolded(node);
+		if (children.isEmpty()) {
 			for (NodeModel parent = node.getParentNode(); parent != null; parent = parent.getParentNode()) {
 				AccumulatedIcons.setStyleCheckForChange(parent, mode);
 			}
 			return;
 		}
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
+		for (final NodeModel child : children) {
 			gatherLeavesAndSetParentsStyle(child);
 		}
 	}
 
 	/**
+	 * Nodes whose child nodes are not parsed yet are handled like leaves,
+	 * their icons are gathered when the child nodes are read.
 	 */
 	private void gatherLeavesAndSetStyle(final NodeModel node) {
 		node.removeExtension(AccumulatedIcons.class);
-		if (node.getChildCount() == 0) {
+		final List<NodeModel> children = Controller.getCurrentModeController().getMapController().parsedChildrenUnfolded(node);
+		if (children.isEmpty()) {
 			AccumulatedIcons.setStyleCheckForChange(node, mode);
 			return;
 		}
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
+		for (final NodeModel child : children) {
 			gatherLeavesAndSetStyle(child);
 		}
 	}
@@ -182,7 +187,7 @@ public class HierarchicalIcons extends PersistentNodeHook implements INodeChange
 		AccumulatedIcons icons = node.removeExtension(AccumulatedIcons.class);
 		if(icons != null){
 			Controller.getCurrentModeController().getMapController().delayedNodeRefresh(node, HierarchicalIcons.ICONS, null, null);
-			for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
+			for (final NodeModel child : Controller.getCurrentModeController().getMapController().parsedChildrenUnfolded(node)) {
 				removeIcons(child);
 			}
 		}
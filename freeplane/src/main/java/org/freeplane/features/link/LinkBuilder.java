@@ -38,6 +38,7 @@ import org.freeplane.core.io.xml.TreeXmlReader;
 import org.freeplane.core.io.xml.TreeXmlWriter;
 import org.freeplane.core.util.ColorUtils;
 import org.freeplane.features.link.ConnectorModel.Shape;
+import org.freeplane.features.map.MapReader.NodeTreeCreator;
 import org.freeplane.features.map.NodeBuilder;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.url.MapVersionInterpreter;
@@ -77,7 +78,8 @@ public class LinkBuilder implements IElementDOMHandler, IReadCompletionListener{
 	 * registry.
 	 */
 	public void readingCompleted(final NodeModel topNode, final Map<String, String> newIds) {
-		final Iterator<NodeLinkModel> iterator = processedLinks.iterator();
+		final Collection<NodeLinkModel> loadedLinks = getLoadedLinks();
+		final Iterator<NodeLinkModel> iterator = loadedLinks.iterator();
 		while (iterator.hasNext()) {
 			final NodeLinkModel arrowLink = iterator.next();
 			final String id = arrowLink.getTargetID();
@@ -91,7 +93,26 @@ public class LinkBuilder implements IElementDOMHandler, IReadCompletionListener{
 			final NodeModel source = arrowLink.getSource();
 			NodeLinks.createLinkExtension(source).addArrowlink(arrowLink);
 		}
-		processedLinks.clear();
+		loadedLinks.clear();
+	}
+
+	/**
+	 * Links are collected for each node tree creator,
+	 * so that child nodes parsed while a map is loaded do not complete links of the loaded map.
+	 */
+	@SuppressWarnings("unchecked")
+	private Collection<NodeLinkModel> getLoadedLinks() {
+		final NodeTreeCreator nodeTreeCreator = linkController.modeController.getMapController().getMapReader()
+		    .getCurrentNodeTreeCreator();
+		if (nodeTreeCreator == null) {
+			return processedLinks;
+		}
+		Collection<NodeLinkModel> loadedLinks = (Collection<NodeLinkModel>) nodeTreeCreator.getReadingData(LinkBuilder.class);
+		if (loadedLinks == null) {
+			loadedLinks = new HashSet<NodeLinkModel>();
+			nodeTreeCreator.setReadingData(LinkBuilder.class, loadedLinks);
+		}
+		return loadedLinks;
 	}
 
 	private void registerAttributeHandlers(final ReadManager reader) {
@@ -100,7 +121,7 @@ public class LinkBuilder implements IElementDOMHandler, IReadCompletionListener{
 				final NodeModel node = (NodeModel) userObject;
 				linkController.loadLink(node, value);
 				final Collection<NodeLinkModel> links = NodeLinks.getLinks(node);
-				processedLinks.addAll(links);
+				getLoadedLinks().addAll(links);
 			}
 		});
 		
@@ -141,7 +162,7 @@ public class LinkBuilder implements IElementDOMHandler, IReadCompletionListener{
 			public void setAttribute(final Object userObject, final String value) {
 				final ConnectorModel arrowLink = (ConnectorModel) userObject;
 				arrowLink.setTargetID(value);
-				processedLinks.add(arrowLink);
+				getLoadedLinks().add(arrowLink);
 			}
 		});
 		reader.addAttributeHandler("arrowlink", "SOURCE_LABEL", new IAttributeHandler() {
@@ -33,10 +33,10 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.Action;
 import javax.swing.SwingUtilities;
@@ -52,6 +52,7 @@ import org.freeplane.core.ui.AFreeplaneAction;
 import org.freeplane.core.undo.IActor;
 import org.freeplane.core.util.DelayedRunner;
 import org.freeplane.features.filter.FilterController;
+import org.freeplane.features.filter.HighlightCache;
 import org.freeplane.features.filter.condition.ConditionFactory;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.NodeModel.NodeChangeType;
@@ -316,6 +317,8 @@ public class MapController extends SelectionController implements IExtension{
 		addNodeSelectionListener(actionSelectorOnChange);
 		addNodeChangeListener(actionSelectorOnChange);
 		addMapChangeListener(actionSelectorOnChange);
+		// maps of every mode are highlighted, so the cached results must be dropped on changes in every mode
+		HighlightCache.install(this);
 
 		createActions(modeController);
 	}
@@ -479,6 +482,16 @@ public class MapController extends SelectionController implements IExtension{
 		return node.getChildren();
 	}
 
+	/** like {@link #childrenUnfolded(NodeModel)}, but child nodes kept unparsed since the map was loaded are not parsed */
+	public List<NodeModel> parsedChildrenUnfolded(final NodeModel node) {
+		final EncryptionModel encryptionModel = EncryptionModel.getModel(node);
+		if (encryptionModel != null && !encryptionModel.isAccessible()) {
+			final List<NodeModel> empty = Collections.emptyList();
+			return empty;
+		}
+		return node.getParsedChildren();
+	}
+
 	/**
 	 * Return false if user has canceled.
 	 */
@@ -553,7 +566,45 @@ public class MapController extends SelectionController implements IExtension{
 
 	private void fireNodeChanged(final NodeModel node, final NodeChangeEvent nodeChangeEvent) {
 		final INodeChangeListener[] nodeChangeListeners = this.nodeChangeListeners.toArray(new INodeChangeListener[]{});
-	    node.fireNodeChanged(nodeChangeListeners, nodeChangeEvent);
+		if (batchDepth == 0) {
+			node.fireNodeChanged(nodeChangeListeners, nodeChangeEvent);
+			return;
+		}
+		for (final NodeModel clone : node.allClones()) {
+			final NodeChangeEvent cloneEvent = nodeChangeEvent.forNode(clone);
+			for (final INodeChangeListener listener : nodeChangeListeners) {
+				listener.nodeChanged(cloneEvent);
+			}
+			final NodeRefreshKey key = new NodeRefreshKey(clone, cloneEvent.getProperty());
+			final NodeChangeEvent batchedEvent = batchedViewEvents.get(key);
+			if (batchedEvent == null)
+				batchedViewEvents.put(key, cloneEvent);
+			else
+				batchedViewEvents.put(key, new NodeChangeEvent(clone, cloneEvent.getProperty(), batchedEvent
+				    .getOldValue(), cloneEvent.getNewValue()));
+		}
+	}
+
+	/** Starts a batch of changes, e.g. of scripts executed on many nodes. Until the matching {@link #finishBatch()}
+	 * the listeners are notified as usual, but the views are updated only once per node and property
+	 * and the modification time of each changed node is set only once. Batches may be nested. */
+	public void startBatch() {
+		if (batchDepth++ == 0) {
+			batchedViewEvents = new LinkedHashMap<NodeRefreshKey, NodeChangeEvent>();
+			batchedHistoryNodes = new HashSet<NodeModel>();
+		}
+	}
+
+	/** updates the views of the nodes changed since the outermost {@link #startBatch()} */
+	public void finishBatch() {
+		if (batchDepth == 0 || --batchDepth > 0)
+			return;
+		final Collection<NodeChangeEvent> events = batchedViewEvents.values();
+		batchedViewEvents = null;
+		batchedHistoryNodes = null;
+		for (final NodeChangeEvent event : events) {
+			event.getNode().fireNodeChanged(event);
+		}
 	}
 
 	protected void fireNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
@@ -806,7 +857,8 @@ public class MapController extends SelectionController implements IExtension{
 		if (mapReader.isMapLoadingInProcess()) {
 			return;
 		}
-		if (isUpdate && !Controller.getCurrentModeController().isUndoAction()) {
+		if (isUpdate && !Controller.getCurrentModeController().isUndoAction()
+		        && (batchDepth == 0 || batchedHistoryNodes.add(node))) {
 			final HistoryInformationModel historyInformation = node.getHistoryInformation();
 			if (historyInformation != null) {
 				final IActor historyActor = new IActor() {
@@ -841,7 +893,11 @@ public class MapController extends SelectionController implements IExtension{
 	}
 
 	// nodes may only be refreshed by their own ModeController, so we have to store that too
-	private final ConcurrentHashMap<NodeRefreshKey, NodeRefreshValue> nodesToRefresh = new ConcurrentHashMap<NodeRefreshKey, NodeRefreshValue>();
+	// nodes are refreshed in the order of the requests, access is synchronized on the map
+	private final LinkedHashMap<NodeRefreshKey, NodeRefreshValue> nodesToRefresh = new LinkedHashMap<NodeRefreshKey, NodeRefreshValue>();
+	private int batchDepth = 0;
+	private LinkedHashMap<NodeRefreshKey, NodeChangeEvent> batchedViewEvents;
+	private HashSet<NodeModel> batchedHistoryNodes;
 	private final ActionEnablerOnChange actionEnablerOnChange;
 	private final ActionSelectorOnChange actionSelectorOnChange;
 
@@ -887,27 +943,37 @@ public class MapController extends SelectionController implements IExtension{
 	 * list when the thread was started.*/
 	public void delayedNodeRefresh(final NodeModel node, final Object property, final Object oldValue,
 	                               final Object newValue) {
-	    final boolean startThread = nodesToRefresh.isEmpty();
+	    final boolean startThread;
 	    final NodeRefreshValue value = new NodeRefreshValue(Controller.getCurrentModeController(), oldValue, newValue);
 		final NodeRefreshKey key = new NodeRefreshKey(node, property);
-		final NodeRefreshValue old = nodesToRefresh.put(key, value);
-		if(old != null && old.newValue != value.newValue){
-			old.newValue = value.newValue;
-			nodesToRefresh.put(key, old);
+		synchronized (nodesToRefresh) {
+			startThread = nodesToRefresh.isEmpty();
+			final NodeRefreshValue old = nodesToRefresh.put(key, value);
+			if(old != null && old.newValue != value.newValue){
+				old.newValue = value.newValue;
+				nodesToRefresh.put(key, old);
+			}
 		}
         if (startThread) {
 			final Runnable refresher = new Runnable() {
 				public void run() {
 					final ModeController currentModeController = Controller.getCurrentModeController();
-					final Iterator<Entry<NodeRefreshKey, NodeRefreshValue>> it = nodesToRefresh.entrySet().iterator();
-					while (it.hasNext()) {
-					    final Entry<NodeRefreshKey, NodeRefreshValue> entry = it.next();
+					for (;;) {
+						final Entry<NodeRefreshKey, NodeRefreshValue> entry;
+						synchronized (nodesToRefresh) {
+							final Iterator<Entry<NodeRefreshKey, NodeRefreshValue>> it = nodesToRefresh.entrySet().iterator();
+							if (!it.hasNext())
+								return;
+							entry = it.next();
+						}
+					    final NodeRefreshKey key = entry.getKey();
 					    final NodeRefreshValue info = entry.getValue();
 					    if (info.controller == currentModeController){
-					        final NodeRefreshKey key = entry.getKey();
 							currentModeController.getMapController().nodeRefresh(key.node, key.property, info.oldValue, info.newValue);
 					    }
-					    it.remove();
+						synchronized (nodesToRefresh) {
+							nodesToRefresh.remove(key);
+						}
 					}
 				}
 			};
@@ -22,12 +22,14 @@ package org.freeplane.features.map;
 import java.io.File;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.freeplane.core.extension.ExtensionContainer;
 import org.freeplane.core.extension.IExtension;
@@ -52,7 +54,11 @@ public class MapModel {
 	private Filter filter = null;
 	final private IconRegistry iconRegistry;
 	final private List<IMapChangeListener> listeners;
+	// nodes kept unparsed can be parsed and registered by any thread,
+	// so both id maps are only accessed holding the reading lock
 	final private Map<String, NodeModel> nodes;
+	final private Map<String, NodeModel> unparsedNodeOwners;
+	final private ReentrantLock readingLock = new ReentrantLock();
 	private boolean readOnly = false;
 	private NodeModel root;
 	private URL url;
@@ -62,6 +68,7 @@ public class MapModel {
 		this.root = null;
 		listeners = new LinkedList<IMapChangeListener>();
 		nodes = new HashMap<String, NodeModel>();
+		unparsedNodeOwners = new HashMap<String, NodeModel>();
 		final FilterController filterController = FilterController.getCurrentFilterController();
 		if (filterController != null) {
 			filter = filterController.createTransparentFilter();
@@ -113,14 +120,20 @@ public class MapModel {
 			return proposedID;
 		}
 		String returnValue;
-		do {
-			final String prefix = "ID_";
-			/*
-			 * The prefix is to enable the id to be an ID in the sense of
-			 * XML/DTD.
-			 */
-			returnValue = prefix + Integer.toString(ran.nextInt(UNDEFINED_NODE_ID));
-		} while (nodes.containsKey(returnValue));
+		readingLock.lock();
+		try {
+			do {
+				final String prefix = "ID_";
+				/*
+				 * The prefix is to enable the id to be an ID in the sense of
+				 * XML/DTD.
+				 */
+				returnValue = prefix + Integer.toString(ran.nextInt(UNDEFINED_NODE_ID));
+			} while (nodes.containsKey(returnValue) || unparsedNodeOwners.containsKey(returnValue));
+		}
+		finally {
+			readingLock.unlock();
+		}
 		return returnValue;
 	}
 
@@ -157,8 +170,30 @@ public class MapModel {
 	 * @return
 	 */
 	public NodeModel getNodeForID(final String nodeID) {
-		final NodeModel node = nodes.get(nodeID);
-		return node;
+		readingLock.lock();
+		try {
+			NodeModel node = nodes.get(nodeID);
+			NodeModel owner;
+			while (node == null && (owner = unparsedNodeOwners.remove(nodeID)) != null) {
+				owner.getChildren();
+				node = nodes.get(nodeID);
+			}
+			return node;
+		}
+		finally {
+			readingLock.unlock();
+		}
+	}
+
+	/** @return the node if it is registered already, unlike {@link #getNodeForID(String)} it never parses nodes kept unparsed */
+	public NodeModel getParsedNodeForID(final String nodeID) {
+		readingLock.lock();
+		try {
+			return nodes.get(nodeID);
+		}
+		finally {
+			readingLock.unlock();
+		}
 	}
 
 	public int getNumberOfChangesSinceLastSave() {
@@ -200,12 +235,51 @@ public class MapModel {
 	 * @param nodeModel
 	 */
 	void registryID(final String value, final NodeModel nodeModel) {
-		final NodeModel old = nodes.put(value, nodeModel);
+		final NodeModel old;
+		readingLock.lock();
+		try {
+			old = nodes.put(value, nodeModel);
+		}
+		finally {
+			readingLock.unlock();
+		}
 		if (null != old && nodeModel != old) {
 			throw new RuntimeException("id " + value + " already registered");
 		}
 	}
 
+	/**
+	 * registers ids of nodes kept unparsed in the given node, they are parsed on the first request of one of them.
+	 */
+	void registryUnparsedNodeIDs(final Collection<String> ids, final NodeModel owner) {
+		readingLock.lock();
+		try {
+			for (final String id : ids) {
+				unparsedNodeOwners.put(id, owner);
+			}
+		}
+		finally {
+			readingLock.unlock();
+		}
+	}
+
+	void unregistryUnparsedNodeIDs(final Collection<String> ids) {
+		readingLock.lock();
+		try {
+			for (final String id : ids) {
+				unparsedNodeOwners.remove(id);
+			}
+		}
+		finally {
+			readingLock.unlock();
+		}
+	}
+
+	/** held while nodes of this map are read, see {@link MapReader}, and while its node ids are accessed */
+	ReentrantLock getReadingLock() {
+		return readingLock;
+	}
+
 	/**
 	 * @param nodeModel
 	 * @return
@@ -286,6 +360,19 @@ public class MapModel {
 		url = v;
 	}
 
+	/** forgets the root node and all registered nodes, so that a map whose reading failed can be read again */
+	public void discardNodes() {
+		readingLock.lock();
+		try {
+			root = null;
+			nodes.clear();
+			unparsedNodeOwners.clear();
+		}
+		finally {
+			readingLock.unlock();
+		}
+	}
+
 	public void unregistryNodes(final NodeModel node) {
 		final List<NodeModel> children = node.getChildren();
 		for (final NodeModel child : children) {
@@ -293,7 +380,13 @@ public class MapModel {
 		}
 		final String id = node.getID();
 		if (id != null) {
-			nodes.put(id, null);
+			readingLock.lock();
+			try {
+				nodes.put(id, null);
+			}
+			finally {
+				readingLock.unlock();
+			}
 		}
 	}
 }
@@ -20,14 +20,22 @@
 package org.freeplane.features.map;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.io.UnknownElements;
 import org.freeplane.core.io.xml.TreeXmlReader;
+import org.freeplane.core.io.xml.XmlEventRecorder;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.util.LogUtils;
 import org.freeplane.features.map.MapWriter.Hint;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.n3.nanoxml.XMLElement;
@@ -38,11 +46,18 @@ import org.freeplane.n3.nanoxml.XMLException;
  * 20.12.2008
  */
 public class MapReader implements IElementDOMHandler {
+	public static final String RESOURCES_STREAMING_XML_PARSER = "streaming_xml_parser";
+
 	public class NodeTreeCreator {
 		private MapModel createdMap;
 		private final Map<Object, Object> hints;
+		private final Map<Object, Object> readingData;
+		private Map<Object, Object> hintsForUnparsedChildNodes = null;
 		private NodeModel mapChild = null;
 		private final Map<String, String> newIds;
+		private NodeModel parentOfChildNodes = null;
+		private final List<NodeModel> parentsOfDeferredChildNodes;
+		private ReentrantLock heldReadingLock = null;
 
 		public NodeTreeCreator() {
 			this(new HashMap<Object, Object>());
@@ -51,44 +66,133 @@ public class MapReader implements IElementDOMHandler {
 		public NodeTreeCreator(Map<Object, Object> hints) {
 			super();
 			newIds = new HashMap<String, String>();
+			readingData = new HashMap<Object, Object>();
+			parentsOfDeferredChildNodes = new ArrayList<NodeModel>();
 			this.hints = hints;
         }
 
 		public NodeModel create(final Reader pReader) throws XMLException {
-			final NodeTreeCreator oldNodeTreeCreator = nodeTreeCreator;
+			return load(createdMap, pReader, null);
+		}
+
+		private NodeModel load(final Object parent, final Reader pReader, final InputStream recordedXml)
+		        throws XMLException {
+			lockReading();
+			final NodeTreeCreator oldNodeTreeCreator = currentNodeTreeCreator.get();
 			final TreeXmlReader reader = new TreeXmlReader(readManager);
+			reader.setStreamingParserEnabled(ResourceController.getResourceController().getBooleanProperty(
+			    RESOURCES_STREAMING_XML_PARSER));
+			reader.setRecorder((XmlEventRecorder) hints.get(XmlEventRecorder.class));
 			try {
-				nodeTreeCreator = this;
-				reader.load(createdMap, pReader);
+				currentNodeTreeCreator.set(this);
+				if (recordedXml != null) {
+					reader.loadRecorded(parent, recordedXml);
+				}
+				else {
+					reader.load(parent, pReader);
+				}
 				final NodeModel node = nodeBuilder.getMapChild();
 				return node;
 			}
 			finally {
 				nodeBuilder.reset();
-				nodeTreeCreator = oldNodeTreeCreator;
+				currentNodeTreeCreator.set(oldNodeTreeCreator);
+			}
+		}
+
+		/** parses child nodes given as xml and appends them to the parent node */
+		void createChildNodes(final NodeModel parent, final List<String> childNodes) throws XMLException {
+			parentOfChildNodes = parent;
+			for (final String childNode : childNodes) {
+				load(parent, new StringReader(childNode), null);
+			}
+		}
+
+		/** the node whose child nodes are parsed by {@link #createChildNodes(NodeModel, List)}, they are never kept unparsed again */
+		NodeModel getParentOfChildNodes() {
+			return parentOfChildNodes;
+		}
+
+		/** child nodes kept unparsed by the given node are parsed when the reading is finished */
+		void parseChildNodesWhenFinished(final NodeModel parent) {
+			if (!parentsOfDeferredChildNodes.contains(parent)) {
+				parentsOfDeferredChildNodes.add(parent);
+			}
+		}
+
+		/**
+		 * Returns the hints of this reading without the recorder of the read xml.
+		 * Child nodes kept unparsed are read with them later.
+		 */
+		Map<Object, Object> getHintsForUnparsedChildNodes() {
+			if (hintsForUnparsedChildNodes == null) {
+				hintsForUnparsedChildNodes = new HashMap<Object, Object>(hints);
+				hintsForUnparsedChildNodes.remove(XmlEventRecorder.class);
+				hintsForUnparsedChildNodes.put(NodeBuilder.FOLDING_LOADED, Boolean.TRUE);
 			}
+			return hintsForUnparsedChildNodes;
 		}
 
 		public NodeModel createNodeTreeFromXml(final MapModel map, final Reader pReader) throws IOException,
 		        XMLException {
-			start(map);
-			final NodeModel node = create(pReader);
-			if (node == null)
-				throw new RuntimeException("corrupted map, no root node found");
-			finish(node);
-			return node;
+			return createNodeTree(map, pReader, null);
+		}
+
+		/** builds the node tree from xml events recorded by an {@link XmlEventRecorder} */
+		public NodeModel createNodeTreeFromRecordedXml(final MapModel map, final InputStream recordedXml)
+		        throws IOException, XMLException {
+			return createNodeTree(map, null, recordedXml);
+		}
+
+		private NodeModel createNodeTree(final MapModel map, final Reader pReader, final InputStream recordedXml)
+		        throws IOException, XMLException {
+			try {
+				start(map);
+				final NodeModel node = load(createdMap, pReader, recordedXml);
+				if (node == null)
+					throw new RuntimeException("corrupted map, no root node found");
+				finish(node);
+				return node;
+			}
+			finally {
+				unlockReading();
+			}
 		}
 
 		public void finish(final NodeModel node) {
-			final NodeTreeCreator oldNodeTreeCreator = nodeTreeCreator;
+			final NodeTreeCreator oldNodeTreeCreator = currentNodeTreeCreator.get();
 			try {
-				nodeTreeCreator = this;
+				for (final NodeModel parent : parentsOfDeferredChildNodes) {
+					parent.getChildren();
+				}
+				parentsOfDeferredChildNodes.clear();
+				currentNodeTreeCreator.set(this);
 				readManager.readingCompleted(node, newIds);
 				newIds.clear();
+				readingData.clear();
 				createdMap = null;
 			}
 			finally {
-				nodeTreeCreator = oldNodeTreeCreator;
+				currentNodeTreeCreator.set(oldNodeTreeCreator);
+				unlockReading();
+			}
+		}
+
+		/**
+		 * Element handlers keep the state of a reading in its node tree creator,
+		 * but nodes of the same map must not be created by two threads at a time.
+		 */
+		private void lockReading() {
+			if (heldReadingLock == null) {
+				heldReadingLock = createdMap.getReadingLock();
+				heldReadingLock.lock();
+			}
+		}
+
+		private void unlockReading() {
+			if (heldReadingLock != null) {
+				heldReadingLock.unlock();
+				heldReadingLock = null;
 			}
 		}
 
@@ -100,7 +204,7 @@ public class MapReader implements IElementDOMHandler {
 			return createdMap;
 		}
 
-		Object getHint(final Object key) {
+		public Object getHint(final Object key) {
 			return hints.get(key);
 		}
 
@@ -108,6 +212,15 @@ public class MapReader implements IElementDOMHandler {
 			hints.put(key, value);
 		}
 
+		/** Returns state kept by element handlers for this reading only, unlike hints it is not passed to later readings. */
+		public Object getReadingData(final Object key) {
+			return readingData.get(key);
+		}
+
+		public void setReadingData(final Object key, final Object value) {
+			readingData.put(key, value);
+		}
+
 		public void putHints(Map<? extends Object, ? extends Object> m) {
 	        hints.putAll(m);
         }
@@ -137,10 +250,10 @@ public class MapReader implements IElementDOMHandler {
 
 	private final NodeBuilder nodeBuilder;
 	final private ReadManager readManager;
-	private NodeTreeCreator nodeTreeCreator;
+	final private ThreadLocal<NodeTreeCreator> currentNodeTreeCreator = new ThreadLocal<NodeTreeCreator>();
 
 	public NodeTreeCreator getCurrentNodeTreeCreator() {
-		return nodeTreeCreator;
+		return currentNodeTreeCreator.get();
 	}
 
 	public MapReader(final ReadManager readManager) {
@@ -150,7 +263,7 @@ public class MapReader implements IElementDOMHandler {
 	}
 
 	public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
-		return nodeTreeCreator.getCreatedMap();
+		return getCurrentNodeTreeCreator().getCreatedMap();
 	}
 
 	public NodeModel createNodeTreeFromXml(final MapModel map, final Reader pReader, final Mode mode)
@@ -161,14 +274,29 @@ public class MapReader implements IElementDOMHandler {
 	}
 	public NodeModel createNodeTreeFromXml(final MapModel map, final Reader pReader, final Map<Object, Object> hints)
 	        throws IOException, XMLException {
-		final NodeTreeCreator oldNodeTreeCreator = nodeTreeCreator;
+		final NodeTreeCreator oldNodeTreeCreator = currentNodeTreeCreator.get();
 		try {
-			nodeTreeCreator = new NodeTreeCreator(hints);
+			final NodeTreeCreator nodeTreeCreator = new NodeTreeCreator(hints);
+			currentNodeTreeCreator.set(nodeTreeCreator);
 			final NodeModel topNode = nodeTreeCreator.createNodeTreeFromXml(map, pReader);
 			return topNode;
 		}
 		finally {
-			nodeTreeCreator = oldNodeTreeCreator;
+			currentNodeTreeCreator.set(oldNodeTreeCreator);
+		}
+	}
+
+	public NodeModel createNodeTreeFromRecordedXml(final MapModel map, final InputStream recordedXml, final Mode mode)
+	        throws IOException, XMLException {
+		final NodeTreeCreator oldNodeTreeCreator = currentNodeTreeCreator.get();
+		try {
+			final NodeTreeCreator nodeTreeCreator = new NodeTreeCreator();
+			nodeTreeCreator.setHint(Hint.MODE, mode);
+			currentNodeTreeCreator.set(nodeTreeCreator);
+			return nodeTreeCreator.createNodeTreeFromRecordedXml(map, recordedXml);
+		}
+		finally {
+			currentNodeTreeCreator.set(oldNodeTreeCreator);
 		}
 	}
 
@@ -180,7 +308,23 @@ public class MapReader implements IElementDOMHandler {
 	}
 
 	public boolean isMapLoadingInProcess() {
-		return nodeTreeCreator != null;
+		return currentNodeTreeCreator.get() != null;
+	}
+
+	/** parses child nodes kept unparsed by {@link UnparsedChildNodes} */
+	void parseChildNodes(final NodeModel parent, final List<String> childNodes, final Map<Object, Object> hints) {
+		final NodeTreeCreator nodeTreeCreator = new NodeTreeCreator(new HashMap<Object, Object>(hints));
+		nodeTreeCreator.start(parent.getMap());
+		try {
+			nodeTreeCreator.createChildNodes(parent, childNodes);
+			nodeTreeCreator.finish(parent);
+		}
+		catch (final XMLException e) {
+			LogUtils.severe(e);
+		}
+		finally {
+			nodeTreeCreator.unlockReading();
+		}
 	}
 
 	public NodeTreeCreator nodeTreeCreator(final MapModel map) {
@@ -116,6 +116,10 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 			oldNodeWriter.unregisterFrom(writeManager);
 		LinkBuilder currentLinkBuilder = new LinkBuilder(mapController.getModeController().getExtension(LinkController.class));
 		currentNodeWriter = new NodeWriter(mapController, currentLinkBuilder, nodeTag, writeChildren, writeInvisible);
+		if (Mode.FILE.equals(mode) && writeChildren && writeInvisible && xmlWriter instanceof TreeXmlWriter
+		        && !Boolean.TRUE.equals(xmlWriter.getHint(WriterHint.FORCE_FORMATTING))) {
+			currentNodeWriter.setXmlCache(NodeXmlCache.getCache(node.getMap()));
+		}
 		try {
 			currentNodeWriter.registerBy(writeManager);
 			xmlWriter.addElement(node, nodeTag);
@@ -23,18 +23,19 @@ import java.util.List;
 import java.util.Map;
 
 import org.freeplane.core.io.IAttributeHandler;
-import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.IReadCompletionListener;
+import org.freeplane.core.io.IUnparsedElementHandler;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.io.UnknownElements;
 import org.freeplane.core.io.xml.TreeXmlReader;
 import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.MapReader.NodeTreeCreator;
 import org.freeplane.features.map.MapWriter.Hint;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.NodeModel.CloneType;
 import org.freeplane.n3.nanoxml.XMLElement;
 
-public class NodeBuilder implements IElementDOMHandler {
+public class NodeBuilder implements IUnparsedElementHandler {
 
 
 	private class CloneHandler implements IAttributeHandler {
@@ -57,6 +58,10 @@ public class NodeBuilder implements IElementDOMHandler {
 	}
 
 	public static final String FOLDING_LOADED = "folding_loaded";
+	public static final String RESOURCES_LOAD_FOLDED_NODES_LAZILY = "load_folded_nodes_lazily";
+	private static final Object UNPARSED_NODE = new Object();
+	private static final String[] REFERENCES = { "<arrowlink", " LINK=\"#", " TREE_ID=\"", " REFERENCE_ID=\"",
+	        " CONTENT_ID=\"" };
 	private static final String RESOURCES_ALWAYS_FOLD_ALL_AFTER_LOAD = "always_fold_all_after_load";
 	private static final String RESOURCES_ALWAYS_UNFOLD_ALL_AFTER_LOAD = "always_unfold_all_after_load";
 	private static final String RESOURCES_LOAD_FOLDING = "load_folding";
@@ -83,6 +88,9 @@ public class NodeBuilder implements IElementDOMHandler {
 	}
 
 	public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+		if (parent instanceof NodeModel && XML_NODE.equals(tag) && keepsChildNodesUnparsed((NodeModel) parent)) {
+			return UNPARSED_NODE;
+		}
 		final NodeModel userObject = createNode();
 		if (getMapChild() == null) {
 			setMapChild(userObject);
@@ -112,6 +120,47 @@ public class NodeBuilder implements IElementDOMHandler {
 		}
 	}
 
+	/**
+	 * Children of folded nodes read from a file are parsed on demand.
+	 * Once a child has been parsed its following siblings are parsed too, so that the order of the children is kept.
+	 * Child nodes which have been kept unparsed before are parsed at once.
+	 */
+	private boolean keepsChildNodesUnparsed(final NodeModel parent) {
+		final NodeTreeCreator nodeTreeCreator = mapReader.getCurrentNodeTreeCreator();
+		return parent.isFolded() && !parent.hasParsedChildren() && EncryptionModel.getModel(parent) == null
+		        && parent != nodeTreeCreator.getParentOfChildNodes()
+		        && Mode.FILE.equals(nodeTreeCreator.getHint(Hint.MODE))
+		        && ResourceController.getResourceController().getBooleanProperty(RESOURCES_LOAD_FOLDED_NODES_LAZILY);
+	}
+
+	public boolean keepsUnparsed(final Object element) {
+		return element == UNPARSED_NODE;
+	}
+
+	public void endUnparsedElement(final Object parentObject, final String tag, final Object element, final String xml) {
+		final NodeModel parentNode = (NodeModel) parentObject;
+		final NodeTreeCreator nodeTreeCreator = mapReader.getCurrentNodeTreeCreator();
+		UnparsedChildNodes unparsedChildNodes = parentNode.getUnparsedChildNodes();
+		if (unparsedChildNodes == null) {
+			unparsedChildNodes = new UnparsedChildNodes(mapReader, nodeTreeCreator.getHintsForUnparsedChildNodes());
+			parentNode.setUnparsedChildNodes(unparsedChildNodes);
+		}
+		unparsedChildNodes.add(parentNode, xml);
+		if (containsReferences(xml)) {
+			nodeTreeCreator.parseChildNodesWhenFinished(parentNode);
+		}
+	}
+
+	/** links and clones are resolved when the map is loaded, so nodes containing them are parsed when the reading is finished */
+	private boolean containsReferences(final String xml) {
+		for (final String reference : REFERENCES) {
+			if (xml.contains(reference)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private MapModel getMap() {
 		return mapReader.getCurrentNodeTreeCreator().getCreatedMap();
 	}
@@ -189,7 +238,7 @@ public class NodeBuilder implements IElementDOMHandler {
 				else{
 					nodeCount -= node.getChildCount();
 				}
-				for (final NodeModel child : node.getChildren()) {
+				for (final NodeModel child : node.getParsedChildren()) {
 					nodeCount = foldAll(child, nodeCount);
 				}
 				return nodeCount;
@@ -212,7 +261,7 @@ public class NodeBuilder implements IElementDOMHandler {
 					if (loadFolding.equals(NodeBuilder.RESOURCES_ALWAYS_SHOW_LESS_THAN_N_NODES_AFTER_LOAD)
 					        || loadFolding.equals(NodeBuilder.RESOURCES_SHOW_LESS_THAN_N_NODES_BY_DEFAULT_AFTER_LOAD))
 						nodeCount = resourceController.getIntProperty(NodeBuilder.MAX_DISPLAYED_NODE_COUNT, 20);
-					final List<NodeModel> children = topNode.getChildren();
+					final List<NodeModel> children = topNode.getParsedChildren();
 					nodeCount = nodeCount - 1 - children.size();
 					for (final NodeModel child : children) {
 						nodeCount = foldAll(child, nodeCount);
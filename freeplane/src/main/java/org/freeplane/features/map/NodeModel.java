@@ -30,6 +30,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.freeplane.core.extension.ExtensionContainer;
 import org.freeplane.core.extension.IExtension;
@@ -78,6 +79,7 @@ public class NodeModel{
 
 	private SharedNodeData sharedData;
 	private Clones[] clones;
+	private volatile UnparsedChildNodes unparsedChildNodes;
 
 	void setClones(Clones clones) {
 		this.clones[clones.getCloneType().ordinal()] = clones;
@@ -153,9 +155,49 @@ public class NodeModel{
 	}
 
 	protected List<NodeModel> getChildrenInternal() {
+		parseUnparsedChildNodes();
 	    return children;
     }
 
+	void setUnparsedChildNodes(final UnparsedChildNodes unparsedChildNodes) {
+		this.unparsedChildNodes = unparsedChildNodes;
+	}
+
+	UnparsedChildNodes getUnparsedChildNodes() {
+		return unparsedChildNodes;
+	}
+
+	boolean hasParsedChildren() {
+		return !children.isEmpty();
+	}
+
+	/**
+	 * Returns the child nodes without parsing child nodes of a folded node kept unparsed since the map was loaded,
+	 * the list is empty until they are parsed.
+	 */
+	public List<NodeModel> getParsedChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	private void parseUnparsedChildNodes() {
+		if (unparsedChildNodes == null) {
+			return;
+		}
+		// parsing registers node ids, so it holds the reading lock of the map like MapModel.getNodeForID
+		final ReentrantLock readingLock = getMap().getReadingLock();
+		readingLock.lock();
+		try {
+			final UnparsedChildNodes unparsedChildNodes = this.unparsedChildNodes;
+			if (unparsedChildNodes != null) {
+				this.unparsedChildNodes = null;
+				unparsedChildNodes.parse(this);
+			}
+		}
+		finally {
+			readingLock.unlock();
+		}
+	}
+
 	public Enumeration<NodeModel> children() {
 		final Iterator<NodeModel> i = getChildrenInternal().iterator();
 		return new Enumeration<NodeModel>() {
@@ -220,11 +262,19 @@ public class NodeModel{
 	}
 
 	public int getChildCount() {
-		if (getChildrenInternal() == null) {
+		final UnparsedChildNodes unparsedChildNodes = this.unparsedChildNodes;
+		final int childCount;
+		if (unparsedChildNodes != null) {
+			childCount = unparsedChildNodes.size();
+		}
+		else if (getChildrenInternal() != null) {
+			childCount = getChildrenInternal().size();
+		}
+		else {
 			return 0;
 		}
 		final EncryptionModel encryptionModel = EncryptionModel.getModel(this);
-		return encryptionModel == null || encryptionModel.isAccessible() ? getChildrenInternal().size() : 0;
+		return encryptionModel == null || encryptionModel.isAccessible() ? childCount : 0;
 	}
 
 	public List<NodeModel> getChildren() {
@@ -267,6 +317,7 @@ public class NodeModel{
 	}
 
 	public int getIndex(final NodeModel node) {
+		parseUnparsedChildNodes();
 		return children.indexOf(node);
 	}
 
@@ -331,6 +382,7 @@ public class NodeModel{
 		if (!isAccessible()) {
 			throw new IllegalArgumentException("Trying to insert nodes into a ciphered node.");
 		}
+		parseUnparsedChildNodes();
 		final NodeModel childNode = child;
 		if (index < 0) {
 			index = getChildCount();
@@ -421,6 +473,7 @@ public class NodeModel{
 	}
 
 	public void remove(final int index) {
+		parseUnparsedChildNodes();
 	    final NodeModel child = children.get(index);
 		if (child == preferredChild) {
 			if (getChildrenInternal().size() > index + 1) {
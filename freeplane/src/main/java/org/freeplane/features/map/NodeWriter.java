@@ -53,6 +53,8 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 
 	private final Map<SharedNodeData, NodeModel> alreadyWrittenSharedContent;
 	private final LinkBuilder linkBuilder;
+	private NodeXmlCache xmlCache;
+	private NodeModel recordedNode;
 
 	public NodeWriter(final MapController mapController, LinkBuilder linkBuilder, final String nodeTag, final boolean writeChildren,
 	                  final boolean writeInvisible) {
@@ -69,9 +71,32 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 		        || saveFolding.equals(NodeBuilder.RESOURCES_SAVE_FOLDING_IF_MAP_IS_CHANGED);
 	}
 
+	/**
+	 * Enables reuse of node xml written by previous saves.
+	 * Only applicable if all nodes are written to an {@link TreeXmlWriter}.
+	 */
+	void setXmlCache(final NodeXmlCache xmlCache) {
+		this.xmlCache = xmlCache;
+		if (xmlCache != null) {
+			final boolean saveModificationTimes = ResourceController.getResourceController().getBooleanProperty(
+			    NodeBuilder.RESOURCES_SAVE_MODIFICATION_TIMES);
+			xmlCache.setWriterConfiguration(writeFolded + "," + saveModificationTimes);
+		}
+	}
+
 	private void saveChildren(final ITreeWriter writer, final NodeModel node) throws IOException {
+		if (recordedNode == node) {
+			stopRecording((TreeXmlWriter) writer, true);
+		}
+		if (Mode.FILE.equals(mode(writer)) && saveUnparsedChildren((TreeXmlWriter) writer, node)) {
+			return;
+		}
 		for (final NodeModel child: mapController.childrenUnfolded(node)) {
 		if (writeInvisible || child.isVisible()) {
+				if (xmlCache != null && xmlCache.isCacheable(child)) {
+					saveCachedChild((TreeXmlWriter) writer, child);
+					continue;
+				}
 				writer.setHint(WriterHint.ALREADY_WRITTEN, isAlreadyWritten(child));
 				writer.addElement(child, nodeTag);
 			}
@@ -81,6 +106,45 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 		}
 	}
 
+	/** writes child nodes which have not been parsed since the map was loaded as they have been read */
+	private boolean saveUnparsedChildren(final TreeXmlWriter writer, final NodeModel node) throws IOException {
+		final UnparsedChildNodes unparsedChildNodes = node.getUnparsedChildNodes();
+		if (unparsedChildNodes == null) {
+			return false;
+		}
+		for (final String xml : unparsedChildNodes.getXml()) {
+			writer.addSerializedXml(xml);
+		}
+		return true;
+	}
+
+	private void saveCachedChild(final TreeXmlWriter writer, final NodeModel child) throws IOException {
+		final boolean folded = mapController.isFolded(child);
+		final NodeXmlCache.Fragment fragment = xmlCache.getFragment(child, folded);
+		if (fragment != null) {
+			writer.addSerializedXml(fragment.xml);
+			if (fragment.hasChildren) {
+				saveChildren(writer, child);
+				writer.addElementEnd(nodeTag);
+			}
+			return;
+		}
+		writer.setHint(WriterHint.ALREADY_WRITTEN, false);
+		writer.startRecording();
+		recordedNode = child;
+		writer.addElement(child, nodeTag);
+		if (recordedNode == child) {
+			stopRecording(writer, false);
+		}
+	}
+
+	private void stopRecording(final TreeXmlWriter writer, final boolean hasChildren) throws IOException {
+		writer.startElementContent();
+		final String xml = writer.stopRecording();
+		xmlCache.putFragment(recordedNode, xml, hasChildren, mapController.isFolded(recordedNode));
+		recordedNode = null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
@@ -177,7 +241,7 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 				writer.addElement(null, xmlNode.getChildAtIndex(i));
 			}
 		}
-		if (mayWriteChildren && shouldWriteChildren && mapController.childrenUnfolded(node).size()>0) {
+		if (mayWriteChildren && shouldWriteChildren && mapController.hasChildren(node)) {
 			saveChildren(writer, node);
 		}
 	}
@@ -0,0 +1,177 @@
+package org.freeplane.features.map;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.filter.Filter;
+import org.freeplane.features.link.NodeLinks;
+import org.freeplane.features.url.UrlManager;
+
+/**
+ * Keeps the xml written for each node at the last file save, so that unchanged nodes
+ * are not serialized again on the next save.
+ *
+ * Only the part of the node element preceding its child nodes is kept, so an edited node
+ * invalidates its own fragment and structural changes invalidate the fragments of the parents involved.
+ * Nodes whose xml depends on other nodes (clones, encrypted nodes and nodes with links) are never cached.
+ */
+public class NodeXmlCache implements IExtension {
+	public static final String RESOURCES_INCREMENTAL_SAVE = "incremental_save";
+
+	static class Fragment {
+		final String xml;
+		final boolean hasChildren;
+		final boolean folded;
+		final boolean left;
+
+		Fragment(final String xml, final boolean hasChildren, final boolean folded, final boolean left) {
+			this.xml = xml;
+			this.hasChildren = hasChildren;
+			this.folded = folded;
+			this.left = left;
+		}
+	}
+
+	private static class Updater extends AMapChangeListenerAdapter {
+		@Override
+		public void nodeChanged(final NodeChangeEvent event) {
+			if (Filter.class.equals(event.getProperty())) {
+				return;
+			}
+			final NodeModel node = event.getNode();
+			final NodeXmlCache cache = node.getMap().getExtension(NodeXmlCache.class);
+			if (cache != null) {
+				cache.invalidate(node);
+			}
+		}
+
+		@Override
+		public void mapChanged(final MapChangeEvent event) {
+			final MapModel map = event.getMap();
+			if (map == null || !affectsNodeXml(event)) {
+				return;
+			}
+			final NodeXmlCache cache = map.getExtension(NodeXmlCache.class);
+			if (cache != null) {
+				cache.clear();
+			}
+		}
+
+		private boolean affectsNodeXml(final MapChangeEvent event) {
+			final Object property = event.getProperty();
+			if (Filter.class.equals(property)) {
+				return false;
+			}
+			if (UrlManager.MAP_URL.equals(property)) {
+				final Object oldValue = event.getOldValue();
+				return oldValue == null || !oldValue.equals(event.getNewValue());
+			}
+			return true;
+		}
+
+		@Override
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			final NodeXmlCache cache = parent.getMap().getExtension(NodeXmlCache.class);
+			if (cache != null) {
+				cache.invalidate(parent);
+			}
+		}
+
+		@Override
+		public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+			final NodeXmlCache cache = nodeDeletionEvent.parent.getMap().getExtension(NodeXmlCache.class);
+			if (cache != null) {
+				cache.invalidate(nodeDeletionEvent.parent);
+				cache.invalidateSubtree(nodeDeletionEvent.node);
+			}
+		}
+
+		@Override
+		public void onNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+			final NodeXmlCache cache = nodeMoveEvent.child.getMap().getExtension(NodeXmlCache.class);
+			if (cache != null) {
+				cache.invalidate(nodeMoveEvent.oldParent);
+				cache.invalidate(nodeMoveEvent.newParent);
+				cache.invalidate(nodeMoveEvent.child);
+			}
+		}
+	}
+
+	public static void install(final MapController mapController) {
+		final Updater updater = new Updater();
+		mapController.addNodeChangeListener(updater);
+		mapController.addMapChangeListener(updater);
+	}
+
+	static NodeXmlCache getCache(final MapModel map) {
+		if (!ResourceController.getResourceController().getBooleanProperty(RESOURCES_INCREMENTAL_SAVE)) {
+			map.removeExtension(NodeXmlCache.class);
+			return null;
+		}
+		NodeXmlCache cache = map.getExtension(NodeXmlCache.class);
+		if (cache == null) {
+			cache = new NodeXmlCache();
+			map.addExtension(cache);
+		}
+		return cache;
+	}
+
+	final private Map<NodeModel, Fragment> fragments = new HashMap<NodeModel, Fragment>();
+	private String writerConfiguration = "";
+
+	private NodeXmlCache() {
+	}
+
+	/** discards all fragments if they were written using different settings */
+	void setWriterConfiguration(final String writerConfiguration) {
+		if (!this.writerConfiguration.equals(writerConfiguration)) {
+			clear();
+			this.writerConfiguration = writerConfiguration;
+		}
+	}
+
+	boolean isCacheable(final NodeModel node) {
+		return node.allClones().size() == 1 && !node.containsExtension(EncryptionModel.class)
+		        && !node.containsExtension(NodeLinks.class);
+	}
+
+	Fragment getFragment(final NodeModel node, final boolean folded) {
+		final Fragment fragment = fragments.get(node);
+		if (fragment == null) {
+			return null;
+		}
+		if (fragment.folded != folded || fragment.left != node.isLeft()) {
+			fragments.remove(node);
+			return null;
+		}
+		return fragment;
+	}
+
+	void putFragment(final NodeModel node, final String xml, final boolean hasChildren, final boolean folded) {
+		fragments.put(node, new Fragment(xml, hasChildren, folded, node.isLeft()));
+	}
+
+	public void invalidate(final NodeModel node) {
+		fragments.remove(node);
+	}
+
+	private void invalidateSubtree(final NodeModel node) {
+		if (fragments.isEmpty()) {
+			return;
+		}
+		fragments.remove(node);
+		for (final NodeModel child : node.getParsedChildren()) {
+			invalidateSubtree(child);
+		}
+	}
+
+	public void clear() {
+		fragments.clear();
+	}
+
+	public int size() {
+		return fragments.size();
+	}
+}
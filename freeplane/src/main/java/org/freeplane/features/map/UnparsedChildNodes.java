@@ -0,0 +1,68 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the xml of the child nodes of a folded node read from a map file.
+ * The child nodes are parsed when they are accessed for the first time,
+ * until then the ids of all nodes contained in the xml are registered in the map.
+ */
+class UnparsedChildNodes {
+	/** the ID attribute of a node start tag, ids within other elements like rich content are not node ids */
+	private static final Pattern ID_PATTERN = Pattern
+	    .compile("<node(?:\\s+[^\\s=>]+\\s*=\\s*(?:\"[^\"]*\"|'[^']*'))*?\\s+ID\\s*=\\s*(?:\"([^\"]+)\"|'([^']+)')");
+	final private MapReader mapReader;
+	final private Map<Object, Object> hints;
+	final private List<String> childNodes = new ArrayList<String>();
+	final private List<String> ids = new ArrayList<String>();
+
+	/** @param hints hints of the reading the child nodes are kept unparsed by, used when they are parsed */
+	UnparsedChildNodes(final MapReader mapReader, final Map<Object, Object> hints) {
+		this.mapReader = mapReader;
+		this.hints = hints;
+	}
+
+	void add(final NodeModel parent, final String xml) {
+		childNodes.add(xml);
+		final int firstNewId = ids.size();
+		final Matcher matcher = ID_PATTERN.matcher(xml);
+		while (matcher.find()) {
+			final String id = matcher.group(1);
+			ids.add(id != null ? id : matcher.group(2));
+		}
+		parent.getMap().registryUnparsedNodeIDs(ids.subList(firstNewId, ids.size()), parent);
+	}
+
+	int size() {
+		return childNodes.size();
+	}
+
+	List<String> getXml() {
+		return childNodes;
+	}
+
+	void parse(final NodeModel parent) {
+		parent.getMap().unregistryUnparsedNodeIDs(ids);
+		mapReader.parseChildNodes(parent, childNodes, hints);
+	}
+}
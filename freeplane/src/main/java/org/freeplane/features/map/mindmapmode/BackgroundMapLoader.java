@@ -0,0 +1,218 @@
+package org.freeplane.features.map.mindmapmode;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.Timer;
+
+import org.freeplane.core.ui.components.UITools;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.ViewController;
+import org.freeplane.features.url.UrlManager;
+import org.freeplane.features.url.mindmapmode.MFileManager;
+import org.freeplane.features.url.mindmapmode.MapLoadingProgress;
+
+/**
+ * Builds node trees of opened maps on worker threads.
+ *
+ * The map file is locked on the event dispatch thread, parsed by a worker and
+ * the finished map is passed to the user interface in one step on the event dispatch thread.
+ * Each map is read under its own reading lock, so node trees and styles of different maps
+ * are built in parallel by up to {@link #WORKER_COUNT} workers.
+ * Maps restored at startup get their map view only when it is requested by {@link #show(URL)}.
+ * The progress of all loading maps is shown in the status bar.
+ * If loading fails, the error is reported on the event dispatch thread and the map is discarded,
+ * so that a partially read map is never published under the url of its file.
+ */
+class BackgroundMapLoader {
+	private static final String STATUS_KEY = "map_loading";
+	private static final int PROGRESS_UPDATE_DELAY = 500;
+	private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private static final ExecutorService worker = Executors.newFixedThreadPool(WORKER_COUNT, new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread thread = Executors.defaultThreadFactory().newThread(r);
+			thread.setName("BackgroundMapLoader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static class LoadingMap {
+		final File file;
+		final MapLoadingProgress progress;
+		boolean showWhenLoaded;
+
+		LoadingMap(final File file, final MapLoadingProgress progress, final boolean showWhenLoaded) {
+			this.file = file;
+			this.progress = progress;
+			this.showWhenLoaded = showWhenLoaded;
+		}
+	}
+
+	final private MMapController mapController;
+	final private Map<URL, LoadingMap> loadingMaps = new LinkedHashMap<URL, LoadingMap>();
+	final private Map<URL, MapModel> loadedMaps = new HashMap<URL, MapModel>();
+	final private Timer progressTimer;
+
+	BackgroundMapLoader(final MMapController mapController) {
+		this.mapController = mapController;
+		progressTimer = new Timer(PROGRESS_UPDATE_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				showProgress();
+			}
+		});
+	}
+
+	/** @return true if the map is being loaded or is loaded and waits for its map view */
+	boolean contains(final URL url) {
+		return loadingMaps.containsKey(url) || loadedMaps.containsKey(url);
+	}
+
+	/**
+	 * Requests the map view of a map passed to {@link #load(URL, URL, File, boolean)}.
+	 * @return true if the map view has been created, false if it is created when loading is finished
+	 */
+	boolean show(final URL url) {
+		final LoadingMap loadingMap = loadingMaps.get(url);
+		if (loadingMap != null) {
+			loadingMap.showWhenLoaded = true;
+			return false;
+		}
+		final MapModel loadedMap = loadedMaps.remove(url);
+		if (loadedMap != null) {
+			showMap(loadedMap);
+			return true;
+		}
+		return false;
+	}
+
+	void cancel(final URL url) {
+		final LoadingMap loadingMap = loadingMaps.get(url);
+		if (loadingMap != null) {
+			loadingMap.progress.cancel();
+		}
+		final MapModel loadedMap = loadedMaps.remove(url);
+		if (loadedMap != null) {
+			loadedMap.destroy();
+		}
+	}
+
+	void cancelAll() {
+		for (final LoadingMap loadingMap : loadingMaps.values()) {
+			loadingMap.progress.cancel();
+		}
+		for (final MapModel loadedMap : loadedMaps.values()) {
+			loadedMap.destroy();
+		}
+		loadedMaps.clear();
+	}
+
+	/** must be called on the event dispatch thread */
+	void load(final URL url, final URL alternativeURL, final File file, final boolean showWhenLoaded)
+	        throws FileNotFoundException {
+		final MFileManager fileManager = MFileManager.getController(mapController.getMModeController());
+		final MapModel newModel = new MMapModel();
+		fileManager.lockForLoading(newModel, file);
+		fileManager.setFile(newModel, file);
+		final MapLoadingProgress progress = new MapLoadingProgress();
+		newModel.addExtension(progress);
+		loadingMaps.put(url, new LoadingMap(file, progress, showWhenLoaded));
+		showProgress();
+		progressTimer.start();
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		worker.execute(new Runnable() {
+			public void run() {
+				Throwable failure = null;
+				try {
+					if (!progress.isCancelled() && file.length() != 0) {
+						fileManager.loadTree(newModel, file);
+					}
+				}
+				catch (final Throwable e) {
+					failure = e;
+				}
+				finally {
+					final Throwable loadingFailure = failure;
+					viewController.invokeLater(new Runnable() {
+						public void run() {
+							publish(url, alternativeURL, newModel, loadingFailure);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	private void publish(final URL url, final URL alternativeURL, final MapModel newModel, final Throwable failure) {
+		final LoadingMap loadingMap = loadingMaps.remove(url);
+		if (loadingMaps.isEmpty()) {
+			progressTimer.stop();
+		}
+		showProgress();
+		newModel.removeExtension(MapLoadingProgress.class);
+		if (loadingMap.progress.isCancelled()) {
+			newModel.destroy();
+			return;
+		}
+		if (failure != null) {
+			newModel.destroy();
+			reportFailure(failure);
+			return;
+		}
+		if (newModel.getRootNode() == null) {
+			newModel.createNewRoot();
+		}
+		newModel.setURL(url);
+		newModel.setSaved(alternativeURL.equals(url));
+		if (loadingMap.showWhenLoaded) {
+			showMap(newModel);
+		}
+		else {
+			loadedMaps.put(url, newModel);
+		}
+	}
+
+	private void reportFailure(final Throwable failure) {
+		if (failure instanceof Exception) {
+			UrlManager.getController().handleLoadingException((Exception) failure);
+		}
+		else {
+			LogUtils.severe(failure);
+			UITools.errorMessage(failure);
+		}
+	}
+
+	private void showMap(final MapModel map) {
+		mapController.fireMapCreated(map);
+		mapController.newMapView(map);
+	}
+
+	private void showProgress() {
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		if (loadingMaps.isEmpty()) {
+			viewController.removeStatus(STATUS_KEY);
+			return;
+		}
+		final StringBuilder status = new StringBuilder();
+		for (final LoadingMap loadingMap : loadingMaps.values()) {
+			if (status.length() > 0) {
+				status.append(", ");
+			}
+			status.append(TextUtils.format("map_loading_progress", loadingMap.file.getName(),
+			    loadingMap.progress.getPercentage()));
+		}
+		viewController.addStatusInfo(STATUS_KEY, status.toString());
+	}
+}
@@ -56,6 +56,7 @@ import org.freeplane.core.util.LogUtils;
 import org.freeplane.core.util.Quantity;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.clipboard.ClipboardController;
+import org.freeplane.features.filter.FilterUpdater;
 import org.freeplane.features.icon.mindmapmode.MIconController.Keys;
 import org.freeplane.features.link.mindmapmode.MLinkController;
 import org.freeplane.features.map.AlwaysUnfoldedNode;
@@ -71,6 +72,7 @@ import org.freeplane.features.map.NodeDeletionEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.NodeMoveEvent;
 import org.freeplane.features.map.NodeRelativePath;
+import org.freeplane.features.map.NodeXmlCache;
 import org.freeplane.features.map.SummaryNode;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
@@ -99,10 +101,14 @@ public class MMapController extends MapController {
 	public static final int NEW_SIBLING_BEFORE = 4;
 	public static final int NEW_SIBLING_BEHIND = 3;
 	public static final String RESOURCES_CONVERT_TO_CURRENT_VERSION = "convert_to_current_version";
+	final private BackgroundMapLoader backgroundMapLoader;
 
 	public MMapController(ModeController modeController) {
 		super(modeController);
+		backgroundMapLoader = new BackgroundMapLoader(this);
 		createActions(modeController);
+		NodeXmlCache.install(this);
+		FilterUpdater.install(this);
 			addNodeSelectionListener(new INodeSelectionListener() {
 				public void onSelect(final NodeModel node) {
 					final ViewController viewController = Controller.getCurrentController().getViewController();
@@ -808,8 +814,30 @@ public class MMapController extends MapController {
 		final IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
 		if (mapViewManager.tryToChangeToMapView(url))
 			return false;
+		if (backgroundMapLoader.contains(url))
+			return backgroundMapLoader.show(url);
 		if (AddOnsController.getController().installIfAppropriate(url))
 			return false;
+		final URL alternativeURL = getAlternativeURL(url);
+		if(alternativeURL == null)
+			return false;
+		Controller.getCurrentController().getViewController().setWaitingCursor(true);
+		try{
+			final MapModel newModel = new MMapModel();
+    		final MFileManager fileManager = MFileManager.getController(getMModeController());
+    		fileManager.loadAndLock(alternativeURL, newModel);
+			newModel.setURL(url);
+			newModel.setSaved(alternativeURL.equals(url));
+			fireMapCreated(newModel);
+			newMapView(newModel);
+			return true;
+		}
+		finally {
+			Controller.getCurrentController().getViewController().setWaitingCursor(false);
+		}
+    }
+
+	private URL getAlternativeURL(URL url) {
 		URL alternativeURL = null;
 		try {
 			final File file = Compat.urlToFile(url);
@@ -827,7 +855,7 @@ public class MMapController extends MapController {
 							alternativeURL = Compat.fileToUrl(alternativeFile);
 					}
 					else
-						return false;
+						return null;
 				}
 				else{
 					alternativeURL = url;
@@ -838,24 +866,61 @@ public class MMapController extends MapController {
 		}
 		catch (URISyntaxException e) {
 		}
+		return alternativeURL;
+	}
 
-		if(alternativeURL == null)
+	/**
+	 * Opens a map file like {@link #newMap(URL)} but builds its node tree on a worker thread.
+	 * The map view is created when loading is finished.
+	 * Documentation maps and maps not stored in an existing local file are loaded immediately.
+	 * @return false if the map is already open or being loaded
+	 */
+	public boolean newMapInBackground(URL url) throws FileNotFoundException, IOException, URISyntaxException, XMLException {
+		if(getMModeController().containsExtension(DocuMapAttribute.class))
+			return newMap(url);
+		final File file = Compat.urlToFile(url);
+		if(file == null || ! file.exists())
+			return newMap(url);
+		if (backgroundMapLoader.contains(url)) {
+			backgroundMapLoader.show(url);
 			return false;
-		Controller.getCurrentController().getViewController().setWaitingCursor(true);
-		try{
-			final MapModel newModel = new MMapModel();
-    		final MFileManager fileManager = MFileManager.getController(getMModeController());
-    		fileManager.loadAndLock(alternativeURL, newModel);
-			newModel.setURL(url);
-			newModel.setSaved(alternativeURL.equals(url));
-			fireMapCreated(newModel);
-			newMapView(newModel);
-			return true;
-		}
-		finally {
-			Controller.getCurrentController().getViewController().setWaitingCursor(false);
 		}
-    }
+		return loadInBackground(url, true);
+	}
+
+	/**
+	 * Loads an existing map file on a worker thread without creating a map view.
+	 * The map view is created by the first call of {@link #newMap(URL)} or {@link #newMapInBackground(URL)}
+	 * for the same url, it is used for maps restored at startup.
+	 * @return false if the map is already open or being loaded
+	 */
+	public boolean restoreMapInBackground(URL url) throws FileNotFoundException, IOException, URISyntaxException, XMLException {
+		if (backgroundMapLoader.contains(url))
+			return false;
+		return loadInBackground(url, false);
+	}
+
+	private boolean loadInBackground(URL url, boolean showWhenLoaded) throws FileNotFoundException, IOException,
+	        URISyntaxException {
+		final IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+		if (mapViewManager.tryToChangeToMapView(url))
+			return false;
+		if (AddOnsController.getController().installIfAppropriate(url))
+			return false;
+		final URL alternativeURL = getAlternativeURL(url);
+		if(alternativeURL == null)
+			return false;
+		backgroundMapLoader.load(url, alternativeURL, Compat.urlToFile(alternativeURL), showWhenLoaded);
+		return true;
+	}
+
+	/**
+	 * stops loading of the given map started by {@link #newMapInBackground(URL)} or {@link #restoreMapInBackground(URL)}
+	 * and releases loaded maps waiting for their map view
+	 */
+	public void cancelBackgroundLoading(URL url) {
+		backgroundMapLoader.cancel(url);
+	}
 
 	/**@throws XMLException
 	 * @deprecated -- use MMapIO*/
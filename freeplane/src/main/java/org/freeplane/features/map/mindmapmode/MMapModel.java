@@ -89,9 +89,7 @@ public class MMapModel extends MapModel {
 			final File file = getFile();
 			if(file != null) {
 	            final String fileName = file.getName();
-	            if(fileName.endsWith(UrlManager.FREEPLANE_FILE_EXTENSION))
-	            	return fileName.substring(0, fileName.length() - UrlManager.FREEPLANE_FILE_EXTENSION.length());
-	            return fileName;
+	            return UrlManager.removeMapFileExtension(fileName);
             }
             else
 				return url.toString();
@@ -109,6 +109,12 @@ public class MMapIO extends MapIO{
     }
 	public boolean newMap(URL url) throws FileNotFoundException, IOException, URISyntaxException, XMLException {
 	    return mapController.newMap(url);
+    }
+	public boolean newMapInBackground(URL url) throws FileNotFoundException, IOException, URISyntaxException, XMLException {
+	    return mapController.newMapInBackground(url);
+    }
+	public void cancelBackgroundLoading(URL url) {
+	    mapController.cancelBackgroundLoading(url);
     }
 	public boolean newDocumentationMap(URL url) throws FileNotFoundException, IOException,
             URISyntaxException, XMLException {
@@ -23,6 +23,7 @@ import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.filter.StringMatchingStrategy;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ConditionFactory;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
@@ -55,6 +56,8 @@ public class MatchCaseNodeContainsCondition extends ASelectableCondition {
 	}
 
 	public boolean checkNode(final NodeModel node) {
+		if (!matchApproximately && !TextSearchIndex.mayContain(node, nodeItem, value))
+			return false;
 		final Object content[] = NodeTextConditionController.getItemsForComparison(nodeItem, node);
 		return checkText(content);
 	}
@@ -72,6 +75,17 @@ public class MatchCaseNodeContainsCondition extends ASelectableCondition {
 		return o != null && stringMatchingStrategy.matches(value, o.toString(), true, true);
 	}
 	
+	@Override
+	public boolean isThreadSafe() {
+		return NodeTextConditionController.isThreadSafe(nodeItem);
+	}
+
+	@Override
+	public void prepareConcurrentCheck(final MapModel map) {
+		if (!matchApproximately)
+			TextSearchIndex.prepareSearch(map, nodeItem, value);
+	}
+
 	@Override
 	protected String createDescription() {
 		final String nodeCondition = TextUtils.getText(nodeItem);
@@ -24,6 +24,7 @@ import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.filter.StringMatchingStrategy;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ConditionFactory;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.note.NoteModel;
 import org.freeplane.n3.nanoxml.XMLElement;
@@ -56,6 +57,8 @@ public class MatchCaseNoteContainsCondition extends ASelectableCondition {
 	}
 
 	public boolean checkNode(final NodeModel node) {
+		if (!matchApproximately && !TextSearchIndex.mayContain(node, TextController.FILTER_NOTE, value))
+			return false;
 		final String text = getText(node);
 		if (text == null) {
 			return false;
@@ -64,6 +67,17 @@ public class MatchCaseNoteContainsCondition extends ASelectableCondition {
 		return stringMatchingStrategy.matches(value, text, true, matchCase());
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	public void prepareConcurrentCheck(final MapModel map) {
+		if (!matchApproximately)
+			TextSearchIndex.prepareSearch(map, TextController.FILTER_NOTE, value);
+	}
+
 	@Override
 	protected String createDescription() {
 		return createDescription(true);
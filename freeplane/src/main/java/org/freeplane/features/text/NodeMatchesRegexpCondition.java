@@ -74,6 +74,11 @@ public class NodeMatchesRegexpCondition extends ASelectableCondition {
 		return searchPattern.matcher(text).find();
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return NodeTextConditionController.isThreadSafe(nodeItem);
+	}
+
 	@Override
 	protected String createDescription() {
 		final String nodeCondition = TextUtils.getText(nodeItem);
@@ -186,7 +186,13 @@ class NodeTextConditionController implements IElementaryConditionController {
 			return new Object[] { getItemForComparison(nodeItem, node) };
 	}
 	
-	private static Object getItemForComparison(Object nodeItem, final NodeModel node) {
+	/** @return true if the item can be read in concurrent threads. Node texts are transformed, e.g. by formulas,
+	 * which is only possible in the event dispatch thread */
+	static boolean isThreadSafe(Object nodeItem) {
+		return nodeItem.equals(TextController.FILTER_DETAILS) || nodeItem.equals(TextController.FILTER_NOTE);
+	}
+
+	static Object getItemForComparison(Object nodeItem, final NodeModel node) {
 		final Object result;
 		if(nodeItem.equals(TextController.FILTER_NODE)){
 			result = transformedObject(node);
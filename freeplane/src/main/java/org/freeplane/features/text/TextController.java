@@ -116,6 +116,7 @@ public class TextController implements IExtension {
 		
 		registerDetailsTooltip();
 		registerNodeTextTooltip();
+		new TextSearchIndex.Updater().registerBy(mapController);
 	}
 
 	public void addTextTransformer(IContentTransformer textTransformer) {
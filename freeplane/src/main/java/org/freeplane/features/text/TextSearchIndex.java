@@ -0,0 +1,420 @@
+package org.freeplane.features.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.util.HtmlUtils;
+import org.freeplane.features.filter.Filter;
+import org.freeplane.features.map.AMapChangeListenerAdapter;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeDeletionEvent;
+import org.freeplane.features.map.NodeModel;
+
+/**
+ * Index of the node texts, details and notes of a map, used by the "contains" conditions to skip nodes
+ * which can not contain the search term without transforming their texts.
+ *
+ * The index maps each sequence of three case folded characters to the nodes containing it. A node containing
+ * a term contains all its sequences, so only the nodes found for all sequences of the term have to be checked.
+ * Terms shorter than three characters and approximate matching are not supported by the index.
+ *
+ * Only raw texts are indexed. Nodes whose displayed text is transformed, e.g. by a formula, can show another text
+ * without being changed themselves, they are always checked. Nodes of branches kept unparsed are unknown to
+ * the index and always checked too.
+ *
+ * Each item is indexed on the first search in it. Changed nodes are indexed again before the next search in
+ * the item. Filters prepare the search in the event dispatch thread, so that concurrent checks of the nodes
+ * only read the found candidates.
+ */
+class TextSearchIndex implements IExtension {
+	private static final int SEQUENCE_LENGTH = 3;
+	private static final Object[] ITEMS = { TextController.FILTER_NODE, TextController.FILTER_DETAILS,
+	        TextController.FILTER_NOTE };
+	private static final int NODE_ITEM = 0;
+	private static final int[] ALL_ITEMS = { NODE_ITEM, 1, 2 };
+
+	/** keeps the indices of the maps up to date */
+	static class Updater extends AMapChangeListenerAdapter {
+		void registerBy(final MapController mapController) {
+			mapController.addNodeChangeListener(this);
+			mapController.addMapChangeListener(this);
+		}
+
+		@Override
+		public void nodeChanged(final NodeChangeEvent event) {
+			if (Filter.class.equals(event.getProperty()))
+				return;
+			final TextSearchIndex index = getIndex(event.getNode());
+			if (index != null)
+				index.nodeChanged(event.getNode());
+		}
+
+		@Override
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			final TextSearchIndex index = getIndex(child);
+			if (index != null)
+				index.branchChanged(child);
+		}
+
+		@Override
+		public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+			final TextSearchIndex index = getIndex(nodeDeletionEvent.parent);
+			if (index != null)
+				index.branchRemoved(nodeDeletionEvent.node);
+		}
+
+		private TextSearchIndex getIndex(final NodeModel node) {
+			final MapModel map = node.getMap();
+			return map == null ? null : map.getExtension(TextSearchIndex.class);
+		}
+	}
+
+	private static class IntList {
+		int[] values = new int[2];
+		int size = 0;
+
+		void add(final int value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+	}
+
+	/** candidates of the last search, read by concurrent checks of a filter without locking */
+	private static class Candidates {
+		final Object nodeItem;
+		final String term;
+		/** null if the index does not support the search */
+		final HashSet<NodeModel> nodes;
+		final ItemIndex[] itemIndices;
+
+		Candidates(final Object nodeItem, final String term, final HashSet<NodeModel> nodes,
+		           final ItemIndex[] itemIndices) {
+			this.nodeItem = nodeItem;
+			this.term = term;
+			this.nodes = nodes;
+			this.itemIndices = itemIndices;
+		}
+
+		boolean isFor(final Object nodeItem, final String term) {
+			return term.equals(this.term) && nodeItem.equals(this.nodeItem);
+		}
+
+		boolean mayContain(final NodeModel node) {
+			if (nodes == null || nodes.contains(node))
+				return true;
+			// nodes unknown to the index, e.g. nodes not yet inserted into the map, have to be checked
+			for (final ItemIndex itemIndex : itemIndices) {
+				if (!itemIndex.contains(node))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/** @return false if the node can not contain the term in the given item,
+	 * true if it has to be checked */
+	static boolean mayContain(final NodeModel node, final Object nodeItem, final String term) {
+		final MapModel map = node.getMap();
+		if (map == null || term == null)
+			return true;
+		return getIndex(map).mayContainTerm(node, nodeItem, term);
+	}
+
+	/** brings the index of the searched items up to date, so that the nodes of the map can be checked in
+	 * concurrent threads afterwards without changing the index. Called in the event dispatch thread,
+	 * because the node texts may be transformed. */
+	static void prepareSearch(final MapModel map, final Object nodeItem, final String term) {
+		if (map != null && term != null)
+			getIndex(map).findCandidates(nodeItem, term);
+	}
+
+	private static TextSearchIndex getIndex(final MapModel map) {
+		synchronized (map) {
+			TextSearchIndex index = map.getExtension(TextSearchIndex.class);
+			if (index == null) {
+				index = new TextSearchIndex(map);
+				map.addExtension(index);
+			}
+			return index;
+		}
+	}
+
+	private final MapModel map;
+	/** null for items not searched yet */
+	private final ItemIndex[] itemIndices = new ItemIndex[ITEMS.length];
+	private volatile Candidates candidates;
+
+	private TextSearchIndex(final MapModel map) {
+		this.map = map;
+	}
+
+	private boolean mayContainTerm(final NodeModel node, final Object nodeItem, final String term) {
+		Candidates candidates = this.candidates;
+		if (candidates == null || !candidates.isFor(nodeItem, term))
+			candidates = findCandidates(nodeItem, term);
+		return candidates.mayContain(node);
+	}
+
+	private synchronized Candidates findCandidates(final Object nodeItem, final String term) {
+		if (candidates != null && candidates.isFor(nodeItem, term))
+			return candidates;
+		final int[] items = getItems(nodeItem);
+		final String foldedTerm = fold(term);
+		final Candidates foundCandidates;
+		if (items == null || foldedTerm.length() < SEQUENCE_LENGTH) {
+			foundCandidates = new Candidates(nodeItem, term, null, new ItemIndex[0]);
+		}
+		else {
+			final HashSet<NodeModel> nodes = new HashSet<NodeModel>();
+			final ItemIndex[] searchedIndices = new ItemIndex[items.length];
+			for (int i = 0; i < items.length; i++) {
+				searchedIndices[i] = getItemIndex(items[i]);
+				searchedIndices[i].updateChangedNodes();
+				searchedIndices[i].addCandidates(nodes, foldedTerm);
+			}
+			foundCandidates = new Candidates(nodeItem, term, nodes, searchedIndices);
+		}
+		candidates = foundCandidates;
+		return foundCandidates;
+	}
+
+	private ItemIndex getItemIndex(final int item) {
+		if (itemIndices[item] == null) {
+			itemIndices[item] = new ItemIndex(item);
+			itemIndices[item].indexBranch(map.getRootNode());
+		}
+		return itemIndices[item];
+	}
+
+	private int[] getItems(final Object nodeItem) {
+		if (nodeItem.equals(TextController.FILTER_ANYTEXT))
+			return ALL_ITEMS;
+		for (int item = 0; item < ITEMS.length; item++) {
+			if (nodeItem.equals(ITEMS[item]))
+				return new int[] { item };
+		}
+		return null;
+	}
+
+	private synchronized void nodeChanged(final NodeModel node) {
+		for (final ItemIndex itemIndex : itemIndices) {
+			if (itemIndex != null && itemIndex.contains(node)) {
+				itemIndex.changedNodes.add(node);
+				candidates = null;
+			}
+		}
+	}
+
+	private synchronized void branchChanged(final NodeModel node) {
+		for (final ItemIndex itemIndex : itemIndices) {
+			if (itemIndex != null)
+				itemIndex.branchChanged(node);
+		}
+		candidates = null;
+	}
+
+	private synchronized void branchRemoved(final NodeModel node) {
+		for (final ItemIndex itemIndex : itemIndices) {
+			if (itemIndex != null)
+				itemIndex.branchRemoved(node);
+		}
+		candidates = null;
+	}
+
+	/** index of one item of all nodes, items are indexed and updated only when they are searched */
+	private class ItemIndex {
+		private final int item;
+		/** nodes by their ordinal, null for ordinals of nodes which were changed or removed */
+		private final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+		/** read by concurrent searches */
+		private final ConcurrentHashMap<NodeModel, Integer> ordinals = new ConcurrentHashMap<NodeModel, Integer>();
+		private final HashMap<Long, IntList> postings = new HashMap<Long, IntList>();
+		private final HashSet<NodeModel> changedNodes = new HashSet<NodeModel>();
+		/** nodes whose displayed text differs from their raw text, they are candidates for every term */
+		private final HashSet<NodeModel> transformedNodes = new HashSet<NodeModel>();
+		private int removedCount = 0;
+
+		ItemIndex(final int item) {
+			this.item = item;
+		}
+
+		boolean contains(final NodeModel node) {
+			return ordinals.containsKey(node);
+		}
+
+		void addCandidates(final HashSet<NodeModel> candidates, final String foldedTerm) {
+			candidates.addAll(transformedNodes);
+			final long[] keys = getKeys(foldedTerm);
+			final IntList[] lists = new IntList[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				lists[i] = postings.get(keys[i]);
+				if (lists[i] == null)
+					return;
+			}
+			// start with the shortest list, so that the intersection stays small
+			IntList shortest = lists[0];
+			for (final IntList list : lists) {
+				if (list.size < shortest.size)
+					shortest = list;
+			}
+			BitSet intersection = new BitSet(nodes.size());
+			for (int i = 0; i < shortest.size; i++)
+				intersection.set(shortest.values[i]);
+			for (final IntList list : lists) {
+				if (list == shortest)
+					continue;
+				final BitSet next = new BitSet(nodes.size());
+				for (int i = 0; i < list.size; i++) {
+					if (intersection.get(list.values[i]))
+						next.set(list.values[i]);
+				}
+				intersection = next;
+				if (intersection.isEmpty())
+					return;
+			}
+			for (int ordinal = intersection.nextSetBit(0); ordinal >= 0; ordinal = intersection.nextSetBit(ordinal + 1)) {
+				final NodeModel node = nodes.get(ordinal);
+				if (node != null)
+					candidates.add(node);
+			}
+		}
+
+		void branchChanged(final NodeModel node) {
+			changedNodes.add(node);
+			for (final NodeModel child : node.getParsedChildren())
+				branchChanged(child);
+		}
+
+		void branchRemoved(final NodeModel node) {
+			changedNodes.remove(node);
+			removeNode(node);
+			for (final NodeModel child : node.getParsedChildren())
+				branchRemoved(child);
+		}
+
+		private void removeNode(final NodeModel node) {
+			final Integer ordinal = ordinals.remove(node);
+			transformedNodes.remove(node);
+			if (ordinal != null) {
+				nodes.set(ordinal, null);
+				removedCount++;
+			}
+		}
+
+		void updateChangedNodes() {
+			if (changedNodes.isEmpty())
+				return;
+			for (final NodeModel node : changedNodes) {
+				removeNode(node);
+				if (node.getMap() == map)
+					addNode(node);
+			}
+			changedNodes.clear();
+			if (removedCount > 1000 && removedCount > nodes.size() / 2)
+				compact();
+		}
+
+		void indexBranch(final NodeModel node) {
+			addNode(node);
+			for (final NodeModel child : node.getParsedChildren())
+				indexBranch(child);
+		}
+
+		private void addNode(final NodeModel node) {
+			final int ordinal = nodes.size();
+			nodes.add(node);
+			ordinals.put(node, ordinal);
+			final Object text = NodeTextConditionController.getItemForComparison(ITEMS[item], node);
+			if (text == null)
+				return;
+			if (item == NODE_ITEM && !text.equals(getRawText(node))) {
+				transformedNodes.add(node);
+				return;
+			}
+			for (final long key : getKeys(fold(text.toString()))) {
+				IntList list = postings.get(key);
+				if (list == null) {
+					list = new IntList();
+					postings.put(key, list);
+				}
+				list.add(ordinal);
+			}
+		}
+
+		/** drops the ordinals of changed and removed nodes */
+		private void compact() {
+			final int[] newOrdinals = new int[nodes.size()];
+			final ArrayList<NodeModel> remainingNodes = new ArrayList<NodeModel>(nodes.size() - removedCount);
+			for (int ordinal = 0; ordinal < nodes.size(); ordinal++) {
+				final NodeModel node = nodes.get(ordinal);
+				if (node == null) {
+					newOrdinals[ordinal] = -1;
+				}
+				else {
+					newOrdinals[ordinal] = remainingNodes.size();
+					ordinals.put(node, remainingNodes.size());
+					remainingNodes.add(node);
+				}
+			}
+			for (final Iterator<Map.Entry<Long, IntList>> entries = postings.entrySet().iterator(); entries.hasNext();) {
+				final IntList list = entries.next().getValue();
+				int size = 0;
+				for (int i = 0; i < list.size; i++) {
+					final int newOrdinal = newOrdinals[list.values[i]];
+					if (newOrdinal != -1)
+						list.values[size++] = newOrdinal;
+				}
+				list.size = size;
+				if (size == 0)
+					entries.remove();
+			}
+			nodes.clear();
+			nodes.addAll(remainingNodes);
+			removedCount = 0;
+		}
+	}
+
+	private static String getRawText(final NodeModel node) {
+		final Object userObject = node.getUserObject();
+		return userObject instanceof String ? HtmlUtils.htmlToPlain((String) userObject) : null;
+	}
+
+	/** @return the distinct keys of all character sequences of the text */
+	private static long[] getKeys(final String foldedText) {
+		final int count = foldedText.length() - SEQUENCE_LENGTH + 1;
+		if (count <= 0)
+			return new long[0];
+		final long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = (long) foldedText.charAt(i) << 32 | (long) foldedText.charAt(i + 1) << 16
+			        | foldedText.charAt(i + 2);
+		}
+		Arrays.sort(keys);
+		int distinctCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || keys[i] != keys[i - 1])
+				keys[distinctCount++] = keys[i];
+		}
+		return Arrays.copyOf(keys, distinctCount);
+	}
+
+	/** maps every character to the same case independently of its neighbors, so that a text containing a term
+	 * with or without matching case also contains it after folding */
+	static String fold(final String text) {
+		final char[] chars = new char[text.length()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+		}
+		return new String(chars);
+	}
+}
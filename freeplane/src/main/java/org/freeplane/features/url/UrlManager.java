@@ -74,9 +74,27 @@ public class UrlManager implements IExtension {
 	public static final String FREEPLANE_FILE_EXTENSION_WITHOUT_DOT = "mm";
 	public static final String FREEPLANE_FILE_EXTENSION = "." + FREEPLANE_FILE_EXTENSION_WITHOUT_DOT;
 	public static final String FREEPLANE_ADD_ON_FILE_EXTENSION = ".addon." + FREEPLANE_FILE_EXTENSION_WITHOUT_DOT;
+	public static final String FREEPLANE_COMPRESSED_FILE_EXTENSION_WITHOUT_DOT = "mmz";
+	public static final String FREEPLANE_COMPRESSED_FILE_EXTENSION = "." + FREEPLANE_COMPRESSED_FILE_EXTENSION_WITHOUT_DOT;
 	private File lastCurrentDir = null;
 	public static final String MAP_URL = "map_url";
 
+	/** @return true for plain and for compressed map files */
+	public static boolean isMapFileExtension(final String extension) {
+		return FREEPLANE_FILE_EXTENSION_WITHOUT_DOT.equals(extension)
+		        || FREEPLANE_COMPRESSED_FILE_EXTENSION_WITHOUT_DOT.equals(extension);
+	}
+
+	/** @return file name without map file extension */
+	public static String removeMapFileExtension(final String fileName) {
+		for (final String extension : new String[] { FREEPLANE_FILE_EXTENSION, FREEPLANE_COMPRESSED_FILE_EXTENSION }) {
+			if (fileName.endsWith(extension)) {
+				return fileName.substring(0, fileName.length() - extension.length());
+			}
+		}
+		return fileName;
+	}
+
 	public static UrlManager getController() {
 		final ModeController modeController = Controller.getCurrentModeController();
 		return modeController.getExtension(UrlManager.class);
@@ -297,7 +315,7 @@ public class UrlManager implements IExtension {
 			}
 			try {
 				if ((extension != null)
-				        && extension.equals(UrlManager.FREEPLANE_FILE_EXTENSION_WITHOUT_DOT)) {
+				        && UrlManager.isMapFileExtension(extension)) {
 					FreeplaneUriConverter freeplaneUriConverter = new FreeplaneUriConverter();
 					final URL url = freeplaneUriConverter.freeplaneUrl(uri);
 					final ModeController modeController = Controller.getCurrentModeController();
@@ -0,0 +1,217 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.ui.ViewController;
+
+/**
+ * Writes automatic save snapshots of a map on a background thread.
+ *
+ * The snapshot is taken on the event dispatch thread by {@link DoAutomaticSave},
+ * joining and encoding its text, writing, syncing to disk and backup file rotation are done by a single shared worker.
+ * A newer snapshot of the same map supersedes an older one which is still queued or being written.
+ * The snapshot is written to a temporary file first, the backup files are rotated only after it has been written,
+ * so that a superseded or failed write does not cost a backup file.
+ */
+class AutomaticSaveWriter implements IExtension {
+	static final String AUTOMATIC_SAVE_IN_BACKGROUND = "automatic_save_in_background";
+	private static final String STATUS_KEY = "automatic_save";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final AtomicInteger pendingWrites = new AtomicInteger();
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread thread = Executors.defaultThreadFactory().newThread(r);
+			thread.setName("AutomaticSaveWriter");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	/**
+	 * Xml text of a map written on the event dispatch thread.
+	 * Longer strings like the kept xml of nodes unchanged since the last save are referenced instead of copied,
+	 * so that building the snapshot costs little more than serializing the changed nodes.
+	 */
+	static class Snapshot extends Writer {
+		private static final int MIN_REFERENCED_LENGTH = 64;
+		final private List<String> segments = new ArrayList<String>();
+		final private StringBuilder text = new StringBuilder();
+
+		@Override
+		public void write(final String str, final int off, final int len) {
+			if (off == 0 && len == str.length() && len >= MIN_REFERENCED_LENGTH) {
+				endText();
+				segments.add(str);
+			}
+			else {
+				text.append(str, off, off + len);
+			}
+		}
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) {
+			text.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(final int c) {
+			text.append((char) c);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+			endText();
+		}
+
+		private void endText() {
+			if (text.length() > 0) {
+				segments.add(text.toString());
+				text.setLength(0);
+			}
+		}
+
+		List<String> getSegments() {
+			endText();
+			return segments;
+		}
+	}
+
+	static AutomaticSaveWriter getWriter(final MapModel map) {
+		AutomaticSaveWriter writer = map.getExtension(AutomaticSaveWriter.class);
+		if (writer == null) {
+			writer = new AutomaticSaveWriter();
+			map.addExtension(writer);
+		}
+		return writer;
+	}
+
+	final private AtomicLong latestSnapshot = new AtomicLong();
+
+	AutomaticSaveWriter() {
+	}
+
+	/** must be called on the event dispatch thread */
+	void submit(final Snapshot snapshot, final File pathToStore, final File file, final int numberOfFiles,
+	            final boolean deleteOnExit, final ViewController viewController) {
+		final long snapshotNumber = nextSnapshotNumber();
+		if (pendingWrites.getAndIncrement() == 0) {
+			viewController.addStatusInfo(STATUS_KEY, TextUtils.getText("automatic_save_in_progress"));
+		}
+		worker.execute(new Runnable() {
+			public void run() {
+				try {
+					write(snapshotNumber, snapshot, pathToStore, file, numberOfFiles, deleteOnExit, viewController);
+				}
+				finally {
+					if (pendingWrites.decrementAndGet() == 0) {
+						EventQueue.invokeLater(new Runnable() {
+							public void run() {
+								if (pendingWrites.get() == 0) {
+									viewController.removeStatus(STATUS_KEY);
+								}
+							}
+						});
+					}
+				}
+			}
+		});
+	}
+
+	/** supersedes all snapshots submitted before */
+	long nextSnapshotNumber() {
+		return latestSnapshot.incrementAndGet();
+	}
+
+	private boolean isSuperseded(final long snapshotNumber) {
+		return latestSnapshot.get() != snapshotNumber;
+	}
+
+	void write(final long snapshotNumber, final Snapshot snapshot, final File pathToStore, final File file,
+	           final int numberOfFiles, final boolean deleteOnExit, final ViewController viewController) {
+		if (isSuperseded(snapshotNumber)) {
+			return;
+		}
+		pathToStore.mkdirs();
+		File tempFile = null;
+		File backupFile = null;
+		try {
+			tempFile = File.createTempFile("~" + file.getName(), TEMP_FILE_SUFFIX, pathToStore);
+			if (!writeSnapshot(snapshotNumber, snapshot, tempFile)) {
+				return;
+			}
+			backupFile = MFileManager.renameBackupFiles(pathToStore, file, numberOfFiles,
+			    DoAutomaticSave.AUTOSAVE_EXTENSION);
+			if (backupFile == null) {
+				return;
+			}
+			MapSaveWriter.replace(tempFile, backupFile);
+			tempFile = null;
+			if (deleteOnExit) {
+				backupFile.deleteOnExit();
+			}
+			showMessage(viewController, "automatically_save_message", backupFile);
+		}
+		catch (final IOException e) {
+			LogUtils.warn("Error in automatic MapModel.save(): ", e);
+			showMessage(viewController, "save_failed", backupFile != null ? backupFile.getName() : file.getName());
+		}
+		finally {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private boolean writeSnapshot(final long snapshotNumber, final Snapshot snapshot, final File tempFile)
+	        throws IOException {
+		final FileOutputStream out = new FileOutputStream(tempFile);
+		try {
+			final Writer fileout = new OutputStreamWriter(out);
+			for (final String segment : snapshot.getSegments()) {
+				final int length = segment.length();
+				for (int start = 0; start < length; start += CHUNK_SIZE) {
+					if (isSuperseded(snapshotNumber)) {
+						return false;
+					}
+					fileout.write(segment, start, Math.min(CHUNK_SIZE, length - start));
+				}
+			}
+			fileout.flush();
+			out.getFD().sync();
+			return true;
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private void showMessage(final ViewController viewController, final String resourceKey, final Object argument) {
+		viewController.invokeLater(new Runnable() {
+			public void run() {
+				viewController.out(TextUtils.format(resourceKey, argument));
+			}
+		});
+	}
+}
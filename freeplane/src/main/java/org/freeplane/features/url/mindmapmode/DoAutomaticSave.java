@@ -27,6 +27,7 @@ import org.freeplane.core.resources.ResourceController;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.mindmapmode.MMapModel;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
@@ -68,8 +69,12 @@ public class DoAutomaticSave extends TimerTask {
 			/* map was recently saved. */
 			return;
 		}
+		final boolean saveInBackground = ResourceController.getResourceController().getBooleanProperty(
+		    AutomaticSaveWriter.AUTOMATIC_SAVE_IN_BACKGROUND);
 		try {
-			cancel();
+			if (!saveInBackground) {
+				cancel();
+			}
 			Controller.getCurrentController().getViewController().invokeAndWait(new Runnable() {
 
 				public void run() {
@@ -93,6 +98,15 @@ public class DoAutomaticSave extends TimerTask {
 						else {
 							pathToStore = new File(file.getParent(), BACKUP_DIR);
 						}
+						if (saveInBackground) {
+							final AutomaticSaveWriter.Snapshot snapshot = new AutomaticSaveWriter.Snapshot();
+							modeController.getMapController().getMapWriter()
+							    .writeMapAsXml(model, snapshot, Mode.FILE, true, false);
+							AutomaticSaveWriter.getWriter(model).submit(snapshot, pathToStore, file,
+							    numberOfFiles, filesShouldBeDeletedAfterShutdown,
+							    modeController.getController().getViewController());
+							return;
+						}
 						pathToStore.mkdirs();
 						final File tempFile = MFileManager.renameBackupFiles(pathToStore, file, numberOfFiles,
 						    AUTOSAVE_EXTENSION);
@@ -35,11 +35,13 @@ import java.util.regex.Pattern;
 
 import org.freeplane.core.ui.components.UITools;
 import org.freeplane.core.util.Compat;
+import org.freeplane.core.util.FileUtils;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.clipboard.MindMapNodesSelection;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
+import org.freeplane.features.url.UrlManager;
 
 public class FileOpener implements DropTargetListener {
 	/**
@@ -131,7 +133,7 @@ public class FileOpener implements DropTargetListener {
 	}
 
 	private boolean isMindMapUrl(final String urlString) {
-	    return urlString.substring(urlString.length() - 3).equalsIgnoreCase(".mm");
+	    return UrlManager.isMapFileExtension(FileUtils.getExtension(urlString));
     }
 
 	public void dropActionChanged(final DropTargetDragEvent e) {
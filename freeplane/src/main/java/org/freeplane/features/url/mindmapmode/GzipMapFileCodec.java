@@ -0,0 +1,34 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.freeplane.features.url.UrlManager;
+
+/**
+ * Stores maps as gzip compressed xml, recognized by the gzip magic bytes.
+ */
+class GzipMapFileCodec implements IMapFileCodec {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAGIC_0 = 0x1f;
+	private static final int MAGIC_1 = 0x8b;
+
+	public String getExtension() {
+		return UrlManager.FREEPLANE_COMPRESSED_FILE_EXTENSION_WITHOUT_DOT;
+	}
+
+	public boolean isEncoded(final byte[] fileStart, final int length) {
+		return length >= 2 && (fileStart[0] & 0xff) == MAGIC_0 && (fileStart[1] & 0xff) == MAGIC_1;
+	}
+
+	public InputStream decode(final InputStream in) throws IOException {
+		return new GZIPInputStream(in, BUFFER_SIZE);
+	}
+
+	public OutputStream encode(final OutputStream out) throws IOException {
+		return new GZIPOutputStream(out, BUFFER_SIZE);
+	}
+}
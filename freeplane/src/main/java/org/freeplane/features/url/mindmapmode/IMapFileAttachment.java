@@ -0,0 +1,32 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.freeplane.features.map.MapModel;
+
+/**
+ * Data derived from a map which is kept in a file next to the map file, e.g. results computed from the map content.
+ * It is written when the map is saved and read when the map is loaded again,
+ * but only if the map file has not been changed since.
+ * Attachments are registered using {@link MFileManager#addMapFileAttachment(IMapFileAttachment)}.
+ */
+public interface IMapFileAttachment {
+	interface IDataWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/** @return file name extension without dot of the attachment files */
+	String getExtension();
+
+	/**
+	 * Called on the event dispatch thread when the map is saved.
+	 * @return writer called after the map file is written, possibly on another thread,
+	 *         so it must not access the map; null if there is nothing to store
+	 */
+	IDataWriter prepareWrite(MapModel map);
+
+	/** called after the map has been loaded from the map file the attachment was written with */
+	void read(MapModel map, DataInputStream in) throws IOException;
+}
@@ -0,0 +1,23 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes map files into a container format like a compressed one.
+ * The xml content of encoded maps is the same as the content of plain map files.
+ * Codecs are registered using {@link MFileManager#addMapFileCodec(IMapFileCodec)}.
+ */
+public interface IMapFileCodec {
+	/** @return file name extension without dot used for maps written by this codec */
+	String getExtension();
+
+	/** @return true if a file starting with given bytes has been written by this codec */
+	boolean isEncoded(byte[] fileStart, int length);
+
+	InputStream decode(InputStream in) throws IOException;
+
+	/** the returned stream finishes encoding and closes given stream when it is closed */
+	OutputStream encode(OutputStream out) throws IOException;
+}
@@ -24,30 +24,37 @@ import java.awt.dnd.DropTarget;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.BufferedInputStream;
-import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.channels.FileLock;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
+import java.util.zip.CheckedInputStream;
 
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
@@ -56,6 +63,9 @@ import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileFilter;
 
 import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.ListHashTable;
+import org.freeplane.core.io.xml.XmlEventRecorder;
 import org.freeplane.core.resources.TranslatedObject;
 import org.freeplane.core.resources.ResourceController;
 import org.freeplane.core.resources.components.ComboProperty;
@@ -68,13 +78,17 @@ import org.freeplane.core.ui.components.OptionalDontShowMeAgainDialog;
 import org.freeplane.core.ui.components.UITools;
 import org.freeplane.core.util.Compat;
 import org.freeplane.core.util.FileUtils;
+import org.freeplane.core.util.FreeplaneVersion;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.link.LinkController;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.MapController;
 import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapReader;
+import org.freeplane.features.map.MapWriter.Hint;
 import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeBuilder;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.mindmapmode.MMapController;
 import org.freeplane.features.map.mindmapmode.MMapModel;
@@ -83,6 +97,7 @@ import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
 import org.freeplane.features.text.TextController;
 import org.freeplane.features.ui.IMapViewChangeListener;
+import org.freeplane.features.ui.ViewController;
 import org.freeplane.features.url.IMapInputStreamConverter;
 import org.freeplane.features.url.MapConversionException;
 import org.freeplane.features.url.MapVersionInterpreter;
@@ -95,9 +110,11 @@ import org.freeplane.n3.nanoxml.XMLParseException;
  */
 public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	public static final String STANDARD_TEMPLATE = "standard_template";
+	public static final String LOAD_MAPS_IN_BACKGROUND = "load_maps_in_background";
 	private static final String DEFAULT_SAVE_DIR_PROPERTY = "default_save_dir";
 	private static final String BACKUP_EXTENSION = "bak";
 	private static final int DEBUG_OFFSET = 0;
+	private static final int CODEC_MAGIC_LENGTH = 16;
 
 	static private class BackupFlag implements IExtension {
 	}
@@ -110,7 +127,8 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			}
 			final String extension = FileUtils.getExtension(f.getName());
 			if (extension != null) {
-				if (extension.equals(UrlManager.FREEPLANE_FILE_EXTENSION_WITHOUT_DOT)) {
+				if (extension.equals(UrlManager.FREEPLANE_FILE_EXTENSION_WITHOUT_DOT)
+				        || getMapFileCodec(extension) != null) {
 					return true;
 				}
 				else {
@@ -229,10 +247,89 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	}
 
 	FileFilter filefilter = new MindMapFilter();
+	final private List<IMapFileCodec> mapFileCodecs = new CopyOnWriteArrayList<IMapFileCodec>();
+	final private List<IMapFileAttachment> mapFileAttachments = new CopyOnWriteArrayList<IMapFileAttachment>();
 
 	public MFileManager() {
 		super();
 		setLastCurrentDir(new File(getDefaultSaveDirFromPrefs()));
+		addMapFileCodec(new GzipMapFileCodec());
+	}
+
+	public void addMapFileCodec(final IMapFileCodec codec) {
+		mapFileCodecs.add(codec);
+	}
+
+	public void addMapFileAttachment(final IMapFileAttachment attachment) {
+		mapFileAttachments.add(attachment);
+	}
+
+	private MapAttachmentFile getAttachmentFile(final File mapFile, final IMapFileAttachment attachment) {
+		return new MapAttachmentFile(new File(backupDir(mapFile), backupFileName(mapFile) + '.'
+		        + attachment.getExtension()));
+	}
+
+	private void readAttachments(final MapModel map, final File mapFile) {
+		for (final IMapFileAttachment attachment : mapFileAttachments) {
+			getAttachmentFile(mapFile, attachment).read(attachment, map, mapFile);
+		}
+	}
+
+	/**
+	 * Collects the attachment data of the map on the event dispatch thread.
+	 * @return writes the attachments after the map file is written, null if there are none
+	 */
+	private Runnable prepareAttachments(final MapModel map, final File mapFile) {
+		final Map<MapAttachmentFile, IMapFileAttachment.IDataWriter> writers = new HashMap<MapAttachmentFile, IMapFileAttachment.IDataWriter>();
+		for (final IMapFileAttachment attachment : mapFileAttachments) {
+			final IMapFileAttachment.IDataWriter writer = attachment.prepareWrite(map);
+			if (writer != null) {
+				writers.put(getAttachmentFile(mapFile, attachment), writer);
+			}
+		}
+		if (writers.isEmpty()) {
+			return null;
+		}
+		return new Runnable() {
+			public void run() {
+				for (final Map.Entry<MapAttachmentFile, IMapFileAttachment.IDataWriter> entry : writers.entrySet()) {
+					try {
+						entry.getKey().write(entry.getValue(), mapFile);
+					}
+					catch (final IOException e) {
+						LogUtils.warn(e);
+					}
+				}
+			}
+		};
+	}
+
+	/** @return codec writing files with given extension, or null for plain map files */
+	public IMapFileCodec getMapFileCodec(final String extension) {
+		for (final IMapFileCodec codec : mapFileCodecs) {
+			if (codec.getExtension().equals(extension)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/** @return codec which has written the file read by given stream, or null for plain map files */
+	private IMapFileCodec getMapFileCodec(final BufferedInputStream in) throws IOException {
+		final byte[] fileStart = new byte[CODEC_MAGIC_LENGTH];
+		in.mark(CODEC_MAGIC_LENGTH);
+		int length = 0;
+		int readCount;
+		while (length < fileStart.length && (readCount = in.read(fileStart, length, fileStart.length - length)) > 0) {
+			length += readCount;
+		}
+		in.reset();
+		for (final IMapFileCodec codec : mapFileCodecs) {
+			if (codec.isEncoded(fileStart, length)) {
+				return codec;
+			}
+		}
+		return null;
 	}
 
 	private String getDefaultSaveDirFromPrefs() {
@@ -413,6 +510,20 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			super.loadCatchExceptions(url, map);
 			return;
 		}
+		lockForLoading(map, file);
+		if (file.length() != 0) {
+			//DOCEAR - fixed: set the file for the map before parsing the xml, necessary for some events
+			setFile(map, file);
+        	NodeModel root = loadTree(map, file);
+        	assert(map.getRootNode() == root);
+
+        }
+		if(map.getRootNode() == null)
+			map.createNewRoot();
+ 	}
+
+	/** must be called on the event dispatch thread before the map file is loaded, makes the map read only if it can not be locked */
+	public void lockForLoading(final MapModel map, final File file) throws FileNotFoundException {
 		if (!file.exists()) {
         	throw new FileNotFoundException(TextUtils.format("file_not_found", file.getPath()));
         }
@@ -433,16 +544,7 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
         		TextUtils.format("locking_failed_by_open", file.getName()));
         	map.setReadOnly(true);
         }
-		if (file.length() != 0) {
-			//DOCEAR - fixed: set the file for the map before parsing the xml, necessary for some events
-			setFile(map, file);
-        	NodeModel root = loadTree(map, file);
-        	assert(map.getRootNode() == root);
-
-        }
-		if(map.getRootNode() == null)
-			map.createNewRoot();
- 	}
+	}
 
 	public URL getAlternativeURL(final URL url, AlternativeFileMode mode){
 		try {
@@ -481,12 +583,22 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 
 	/**@deprecated -- use MMapIO*/
 	@Deprecated
+	/**
+	 * @return null if loading was cancelled using {@link MapLoadingProgress}
+	 */
 	public NodeModel loadTree(final MapModel map, final File file) throws XMLParseException, IOException {
 		try {
 			final NodeModel rootNode = loadTreeImpl(map, file);
+			if (rootNode != null) {
+				readAttachments(map, file);
+			}
 			return rootNode;
 		}
 		catch (final Exception ex) {
+			final MapLoadingProgress progress = map.getExtension(MapLoadingProgress.class);
+			if (progress != null && progress.isCancelled()) {
+				return null;
+			}
 			final String errorMessage = "Error while parsing file:" + file;
 			LogUtils.warn(errorMessage, ex);
 			UITools.errorMessage(errorMessage);
@@ -498,7 +610,25 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 
 	private NodeModel loadTreeImpl(final MapModel map, final File f) throws FileNotFoundException, IOException,
 	        XMLException, MapConversionException {
-		final BufferedInputStream file = new BufferedInputStream(new FileInputStream(f));
+		final long lastModified = f.lastModified();
+		final long length = f.length();
+		InputStream fileInput = new FileInputStream(f);
+		final MapLoadingProgress progress = map.getExtension(MapLoadingProgress.class);
+		if (progress != null) {
+			fileInput = progress.observe(fileInput, length);
+		}
+		final boolean useMapCache = ResourceController.getResourceController().getBooleanProperty(
+		    MapCache.RESOURCES_MAP_CACHE);
+		CheckedInputStream checkedInput = null;
+		if (useMapCache) {
+			checkedInput = MapCache.checkContent(fileInput);
+			fileInput = checkedInput;
+		}
+		BufferedInputStream file = new BufferedInputStream(fileInput);
+		final IMapFileCodec codec = getMapFileCodec(file);
+		if (codec != null) {
+			file = new BufferedInputStream(codec.decode(file));
+		}
 		int versionInfoLength = 1000;
 		final byte[] buffer = new byte[versionInfoLength];
 		final int readCount = file.read(buffer);
@@ -506,16 +636,26 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		final ByteArrayInputStream readBytes = new ByteArrayInputStream(buffer, 0, readCount);
 		final InputStream sequencedInput = new SequenceInputStream(readBytes, file);
 		Reader reader = null;
-		MapVersionInterpreter versionInterpreter = MapVersionInterpreter.getVersionInterpreter(mapStart);
+		final MapVersionInterpreter versionInterpreter = MapVersionInterpreter.getVersionInterpreter(mapStart);
 		map.addExtension(versionInterpreter);
 		if(versionInterpreter.anotherDialect){
-			String message = versionInterpreter.getDialectInfo(f.getAbsolutePath());
-			UITools.showMessage(message, JOptionPane.WARNING_MESSAGE);
+			final String message = versionInterpreter.getDialectInfo(f.getAbsolutePath());
+			invokeOnEventDispatchThread(new Runnable() {
+				public void run() {
+					UITools.showMessage(message, JOptionPane.WARNING_MESSAGE);
+				}
+			});
 		}
 		if(versionInterpreter.needsConversion){
-			final int showResult = OptionalDontShowMeAgainDialog.show("really_convert_to_current_version",
-			    "confirmation", MMapController.RESOURCES_CONVERT_TO_CURRENT_VERSION,
-			    OptionalDontShowMeAgainDialog.ONLY_OK_SELECTION_IS_STORED);
+			final int[] showResultHolder = new int[1];
+			invokeOnEventDispatchThread(new Runnable() {
+				public void run() {
+					showResultHolder[0] = OptionalDontShowMeAgainDialog.show("really_convert_to_current_version",
+					    "confirmation", MMapController.RESOURCES_CONVERT_TO_CURRENT_VERSION,
+					    OptionalDontShowMeAgainDialog.ONLY_OK_SELECTION_IS_STORED);
+				}
+			});
+			final int showResult = showResultHolder[0];
 			IMapInputStreamConverter isConverter = versionInterpreter.getMapInputStreamConverter();
 			if (showResult != JOptionPane.OK_OPTION || isConverter == null) {
 				reader = new InputStreamReader(sequencedInput, FileUtils.defaultCharset());
@@ -529,6 +669,9 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			reader = new InputStreamReader(sequencedInput, FileUtils.defaultCharset());
 		}
 		try {
+			if (useMapCache && !versionInterpreter.anotherDialect && !versionInterpreter.needsConversion) {
+				return loadTreeUsingMapCache(map, f, length, lastModified, checkedInput, reader);
+			}
 			return Controller.getCurrentModeController().getMapController().getMapReader()
 			    .createNodeTreeFromXml(map, reader, Mode.FILE);
 		}
@@ -537,6 +680,88 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		}
 	}
 
+	/** @param checkedInput map file input read by the reader, it computes the checksum for a new map cache */
+	private NodeModel loadTreeUsingMapCache(final MapModel map, final File f, final long length,
+	                                        final long lastModified, final CheckedInputStream checkedInput,
+	                                        final Reader reader) throws IOException, XMLException {
+		final MapReader mapReader = Controller.getCurrentModeController().getMapController().getMapReader();
+		final MapCache mapCache = new MapCache(new File(backupDir(f), backupFileName(f) + '.' + MapCache.EXTENSION),
+		    getMapCacheConfiguration());
+		final byte[] events = mapCache.read(f, lastModified);
+		if (events != null) {
+			InputStream eventInput = new ByteArrayInputStream(events);
+			final MapLoadingProgress progress = map.getExtension(MapLoadingProgress.class);
+			if (progress != null) {
+				eventInput = progress.observe(eventInput, events.length);
+			}
+			final Set<Class<? extends IExtension>> mapExtensions = new HashSet<Class<? extends IExtension>>(map
+			    .getExtensions().keySet());
+			try {
+				return mapReader.createNodeTreeFromRecordedXml(map, eventInput, Mode.FILE);
+			}
+			catch (final Exception e) {
+				LogUtils.warn("can not replay map cache of " + f + ", reading the map file", e);
+				discardPartialTree(map, mapExtensions);
+				mapCache.delete();
+			}
+		}
+		final XmlEventRecorder recorder = new XmlEventRecorder();
+		final Map<Object, Object> hints = new HashMap<Object, Object>();
+		hints.put(Hint.MODE, Mode.FILE);
+		hints.put(XmlEventRecorder.class, recorder);
+		final NodeModel root = mapReader.createNodeTreeFromXml(map, reader, hints);
+		MapCache.skipAll(checkedInput);
+		mapCache.writeLater(length, lastModified, checkedInput.getChecksum().getValue(), recorder.toByteArray());
+		return root;
+	}
+
+	/** removes nodes and map extensions created by a failed reading, so that the map can be read again */
+	private void discardPartialTree(final MapModel map, final Set<Class<? extends IExtension>> mapExtensions) {
+		map.discardNodes();
+		for (final Class<? extends IExtension> extension : new ArrayList<Class<? extends IExtension>>(map
+		    .getExtensions().keySet())) {
+			if (!mapExtensions.contains(extension)) {
+				map.removeExtension(extension);
+			}
+		}
+	}
+
+	/** recorded xml events depend on the element handlers and on the settings deciding which elements are parsed */
+	private String getMapCacheConfiguration() {
+		final ResourceController resourceController = ResourceController.getResourceController();
+		final StringBuilder configuration = new StringBuilder(FreeplaneVersion.getVersion().toString());
+		for (final String property : new String[] { MapReader.RESOURCES_STREAMING_XML_PARSER,
+		        NodeBuilder.RESOURCES_LOAD_FOLDED_NODES_LAZILY, "load_folding" }) {
+			configuration.append(',').append(resourceController.getProperty(property));
+		}
+		final ListHashTable<String, IElementHandler> elementHandlers = Controller.getCurrentModeController()
+		    .getMapController().getReadManager().getElementHandlers();
+		for (final String tag : new TreeSet<String>(elementHandlers.keys())) {
+			for (final Iterator<IElementHandler> i = elementHandlers.iterator(tag); i.hasNext();) {
+				configuration.append(',').append(tag).append('=').append(i.next().getClass().getName());
+			}
+		}
+		return configuration.toString();
+	}
+
+	/** maps can be loaded on a worker thread, but dialogs must be shown on the event dispatch thread */
+	private void invokeOnEventDispatchThread(final Runnable runnable) throws IOException {
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		if (viewController.isDispatchThread()) {
+			runnable.run();
+			return;
+		}
+		try {
+			viewController.invokeAndWait(runnable);
+		}
+		catch (final InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		}
+		catch (final Exception e) {
+			throw new IOException(e);
+		}
+	}
+
 	/**@deprecated -- use LinkController*/
 	@Deprecated
 	@Override
@@ -565,11 +790,17 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		}
 		File[] selectedFiles;
 		selectedFiles = chooser.getSelectedFiles();
+		final MapController mapController = Controller.getCurrentModeController().getMapController();
+		final boolean loadInBackground = mapController instanceof MMapController
+		        && ResourceController.getResourceController().getBooleanProperty(LOAD_MAPS_IN_BACKGROUND);
 		for (int i = 0; i < selectedFiles.length; i++) {
 			final File theFile = selectedFiles[i];
 			try {
 				setLastCurrentDir(theFile.getParentFile());
-				Controller.getCurrentModeController().getMapController().newMap(Compat.fileToUrl(theFile));
+				if (loadInBackground)
+					((MMapController) mapController).newMapInBackground(Compat.fileToUrl(theFile));
+				else
+					mapController.newMap(Compat.fileToUrl(theFile));
 			}
 			catch (final Exception ex) {
 				handleLoadingException(ex);
@@ -761,7 +992,8 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		File f = chooser.getSelectedFile();
 		setLastCurrentDir(f.getParentFile());
 		final String ext = FileUtils.getExtension(f.getName());
-		if (!ext.equals(org.freeplane.features.url.UrlManager.FREEPLANE_FILE_EXTENSION_WITHOUT_DOT)) {
+		if (!ext.equals(org.freeplane.features.url.UrlManager.FREEPLANE_FILE_EXTENSION_WITHOUT_DOT)
+		        && getMapFileCodec(ext) == null) {
 			f = new File(f.getParent(), f.getName()
 			        + org.freeplane.features.url.UrlManager.FREEPLANE_FILE_EXTENSION);
 		}
@@ -808,7 +1040,23 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			if (!isInternal) {
 				setFile(map, file);
 			}
-			writeToFile(map, file);
+			if (!isInternal && ResourceController.getResourceController().getBooleanProperty(
+			    MapSaveWriter.SAVE_IN_BACKGROUND)) {
+				final ModeController modeController = Controller.getCurrentModeController();
+				final StringWriter content = new StringWriter();
+				modeController.getMapController().getMapWriter().writeMapAsXml(map, content, Mode.FILE, true, false);
+				MapSaveWriter.submit(modeController, map, content.toString(), file,
+				    getMapFileCodec(FileUtils.getExtension(file.getName())), prepareAttachments(map, file));
+			}
+			else {
+				writeToFile(map, file);
+				if (!isInternal) {
+					final Runnable attachmentWriter = prepareAttachments(map, file);
+					if (attachmentWriter != null) {
+						attachmentWriter.run();
+					}
+				}
+			}
 			if (!isInternal) {
 				map.setSaved(true);
 			}
@@ -834,30 +1082,14 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	/**@deprecated -- use MMapIO*/
 	@Deprecated
 	public void writeToFile(final MapModel map, final File file) throws FileNotFoundException, IOException {
-		final FileOutputStream out = new FileOutputStream(file);
-		FileLock lock = null;
-		try{
-			boolean lockedByOtherApplication = false;
-			try {
-				lock = out.getChannel().tryLock();
-				lockedByOtherApplication = lock == null;
-			}
-			catch (Exception e) {
-				LogUtils.warn(e.getMessage());
-			}
-			if (lockedByOtherApplication) {
-				throw new IOException("can not obtain file lock for " + file);
+		MapSaveWriter.awaitPendingWrites();
+		final IMapFileCodec codec = getMapFileCodec(FileUtils.getExtension(file.getName()));
+		MapSaveWriter.write(file, codec, new MapSaveWriter.ContentWriter() {
+			public void write(final Writer out) throws IOException {
+				Controller.getCurrentModeController().getMapController().getMapWriter()
+				.writeMapAsXml(map, out, Mode.FILE, true, false);
 			}
-			final BufferedWriter fileout = new BufferedWriter(new OutputStreamWriter(out));
-			Controller.getCurrentModeController().getMapController().getMapWriter()
-			.writeMapAsXml(map, fileout, Mode.FILE, true, false);
-		}
-		finally{
-			if (lock != null && lock.isValid())
-	            lock.release();
-			if(out != null)
-				out.close();
-		}
+		});
 	}
 
 	public void setFile(final MapModel map, final File file) {
@@ -0,0 +1,81 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.map.MapModel;
+
+/**
+ * File of a {@link IMapFileAttachment} kept together with the backups of the map.
+ * Its header contains length and modification time of the map file written together with it,
+ * the attachment data is only read if the map file still has them.
+ */
+class MapAttachmentFile {
+	private static final int MAGIC = 0x46504d41;
+	private static final int FORMAT_VERSION = 1;
+	final private File attachmentFile;
+
+	MapAttachmentFile(final File attachmentFile) {
+		this.attachmentFile = attachmentFile;
+	}
+
+	void read(final IMapFileAttachment attachment, final MapModel map, final File mapFile) {
+		if (!attachmentFile.isFile()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(attachmentFile)));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != mapFile.length()
+			        || in.readLong() != mapFile.lastModified()) {
+				return;
+			}
+			attachment.read(map, in);
+		}
+		catch (final IOException e) {
+			LogUtils.warn("can not read " + attachmentFile + ": " + e.getMessage());
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+	}
+
+	/** must be called after the map file has been written */
+	void write(final IMapFileAttachment.IDataWriter writer, final File mapFile) throws IOException {
+		final File directory = attachmentFile.getParentFile();
+		if (directory != null) {
+			directory.mkdirs();
+		}
+		final File tempFile = new File(attachmentFile.getPath() + ".tmp");
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(mapFile.length());
+				out.writeLong(mapFile.lastModified());
+				writer.write(out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (final IOException e) {
+			tempFile.delete();
+			throw e;
+		}
+		attachmentFile.delete();
+		if (!tempFile.renameTo(attachmentFile)) {
+			tempFile.delete();
+			throw new IOException("can not write " + attachmentFile);
+		}
+	}
+}
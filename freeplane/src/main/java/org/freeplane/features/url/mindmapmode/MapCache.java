@@ -0,0 +1,166 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.core.util.LogUtils;
+
+/**
+ * Binary cache file of a map kept together with its backups.
+ *
+ * It contains the xml events recorded when the map file was read,
+ * see {@link org.freeplane.core.io.xml.XmlEventRecorder}, so that the next load does not need to parse the xml.
+ * The cache is only used if length, modification time and checksum of the map file
+ * and the reader configuration are the same as when it was written, and if its own checksum is valid.
+ * The map file is never held in memory: its checksum is computed while it is read,
+ * see {@link #checkContent(InputStream)}.
+ */
+class MapCache {
+	static final String RESOURCES_MAP_CACHE = "map_cache";
+	static final String EXTENSION = "cache";
+	private static final int MAGIC = 0x46504d43;
+	private static final int FORMAT_VERSION = 1;
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread thread = Executors.defaultThreadFactory().newThread(r);
+			thread.setName("MapCacheWriter");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	final private File cacheFile;
+	final private String configuration;
+
+	MapCache(final File cacheFile, final String configuration) {
+		this.cacheFile = cacheFile;
+		this.configuration = configuration;
+	}
+
+	/** @return stream computing the checksum of the map file content passed to {@link #write} */
+	static CheckedInputStream checkContent(final InputStream mapContent) {
+		return new CheckedInputStream(mapContent, new CRC32());
+	}
+
+	/**
+	 * The map file is only read for its checksum if its length and modification time match the cache.
+	 * @return recorded xml events, or null if there is no valid cache for the map file content
+	 */
+	byte[] read(final File mapFile, final long mapLastModified) {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != mapFile.length()
+			        || in.readLong() != mapLastModified || in.readLong() != checksum(mapFile)
+			        || !in.readUTF().equals(configuration)) {
+				return null;
+			}
+			final int length = in.readInt();
+			final long eventChecksum = in.readLong();
+			if (length < 0 || length > cacheFile.length()) {
+				return null;
+			}
+			final byte[] events = new byte[length];
+			in.readFully(events);
+			if (in.read() != -1 || checksum(events) != eventChecksum) {
+				return null;
+			}
+			return events;
+		}
+		catch (final IOException e) {
+			return null;
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+	}
+
+	void write(final long mapLength, final long mapLastModified, final long mapChecksum, final byte[] events)
+	        throws IOException {
+		final File cacheDirectory = cacheFile.getParentFile();
+		if (cacheDirectory != null) {
+			cacheDirectory.mkdirs();
+		}
+		final File tempFile = new File(cacheFile.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(mapLength);
+			out.writeLong(mapLastModified);
+			out.writeLong(mapChecksum);
+			out.writeUTF(configuration);
+			out.writeInt(events.length);
+			out.writeLong(checksum(events));
+			out.write(events);
+		}
+		finally {
+			out.close();
+		}
+		cacheFile.delete();
+		if (!tempFile.renameTo(cacheFile)) {
+			tempFile.delete();
+			throw new IOException("can not write " + cacheFile);
+		}
+	}
+
+	void delete() {
+		cacheFile.delete();
+	}
+
+	/** writes the cache on a background thread */
+	void writeLater(final long mapLength, final long mapLastModified, final long mapChecksum, final byte[] events) {
+		worker.execute(new Runnable() {
+			public void run() {
+				try {
+					write(mapLength, mapLastModified, mapChecksum, events);
+				}
+				catch (final IOException e) {
+					LogUtils.warn(e);
+				}
+			}
+		});
+	}
+
+	private static long checksum(final File file) throws IOException {
+		final CheckedInputStream in = checkContent(new FileInputStream(file));
+		try {
+			skipAll(in);
+			return in.getChecksum().getValue();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/** reads the rest of the stream, so that the checksum of a {@link #checkContent(InputStream)} stream is complete */
+	static void skipAll(final InputStream in) throws IOException {
+		final byte[] buffer = new byte[8192];
+		while (in.read(buffer) >= 0) {
+			continue;
+		}
+	}
+
+	private static long checksum(final byte[] bytes) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return crc.getValue();
+	}
+}
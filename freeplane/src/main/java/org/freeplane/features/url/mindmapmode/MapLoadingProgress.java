@@ -0,0 +1,74 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import org.freeplane.core.extension.IExtension;
+
+/**
+ * Map extension observing how much of the map file has been read while the map is loaded.
+ * Cancelling it makes further reads of the map file fail.
+ */
+public class MapLoadingProgress implements IExtension {
+	private volatile long bytesRead = 0;
+	private volatile long length = 0;
+	private volatile boolean cancelled = false;
+
+	InputStream observe(final InputStream in, final long length) {
+		this.length = length;
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				checkCancelled();
+				final int b = super.read();
+				if (b >= 0) {
+					bytesRead++;
+				}
+				return b;
+			}
+
+			@Override
+			public int read(final byte[] b, final int off, final int len) throws IOException {
+				checkCancelled();
+				final int count = super.read(b, off, len);
+				if (count > 0) {
+					bytesRead += count;
+				}
+				return count;
+			}
+
+			@Override
+			public long skip(final long n) throws IOException {
+				checkCancelled();
+				final long count = super.skip(n);
+				bytesRead += count;
+				return count;
+			}
+		};
+	}
+
+	private void checkCancelled() throws InterruptedIOException {
+		if (cancelled) {
+			throw new InterruptedIOException("map loading cancelled");
+		}
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/** @return read part of the map file in percent, or 0 if its length is unknown yet */
+	public int getPercentage() {
+		final long length = this.length;
+		if (length <= 0) {
+			return 0;
+		}
+		return (int) Math.min(100, bytesRead * 100 / length);
+	}
+}
@@ -0,0 +1,351 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.awt.EventQueue;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.freeplane.core.ui.components.UITools;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.mode.ModeController;
+import org.freeplane.features.ui.ViewController;
+
+/**
+ * Writes saved maps so that a map file is never left partially written.
+ *
+ * The map content goes to a temporary file in the directory of the map file,
+ * which gets the permissions, owner, access control list and extended attributes of the map file,
+ * is synced to disk and then renamed to the map file.
+ * Symbolic links are resolved, so that the file they point to is replaced.
+ * Map files with further hard links, map files whose owner can not be kept
+ * and map files in directories where no temporary file can be created are written in place.
+ * Saves submitted by {@link #submit} are serialized on the event dispatch thread
+ * and written by a single shared worker, so that the map can be edited while it is written.
+ */
+class MapSaveWriter {
+	static final String SAVE_IN_BACKGROUND = "save_in_background";
+	private static final String STATUS_KEY = "map_saving";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final long SHUTDOWN_TIMEOUT = 60;
+	private static final AtomicInteger pendingWrites = new AtomicInteger();
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread thread = Executors.defaultThreadFactory().newThread(r);
+			thread.setName("MapSaveWriter");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("MapSaveWriter shutdown") {
+			@Override
+			public void run() {
+				worker.shutdown();
+				try {
+					worker.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+				}
+				catch (final InterruptedException e) {
+				}
+			}
+		});
+	}
+
+	interface ContentWriter {
+		void write(Writer out) throws IOException;
+	}
+
+	private MapSaveWriter() {
+	}
+
+	/**
+	 * Writes the map content on the worker thread.
+	 * If writing fails, the map is marked as not saved again.
+	 * Must be called on the event dispatch thread.
+	 * @param afterWrite called on the worker thread after the map file has been written, may be null
+	 */
+	static void submit(final ModeController modeController, final MapModel map, final String content,
+	                   final File file, final IMapFileCodec codec, final Runnable afterWrite) {
+		final ViewController viewController = modeController.getController().getViewController();
+		if (pendingWrites.getAndIncrement() == 0) {
+			viewController.addStatusInfo(STATUS_KEY, TextUtils.format("save_in_progress", file.getName()));
+		}
+		worker.execute(new Runnable() {
+			public void run() {
+				try {
+					write(file, codec, new ContentWriter() {
+						public void write(final Writer out) throws IOException {
+							out.write(content);
+						}
+					});
+					if (afterWrite != null) {
+						afterWrite.run();
+					}
+				}
+				catch (final IOException e) {
+					LogUtils.warn("Error in MapModel.save(): ", e);
+					EventQueue.invokeLater(new Runnable() {
+						public void run() {
+							modeController.getMapController().setSaved(map, false);
+							UITools.errorMessage(TextUtils.format("save_failed", file.getName()));
+						}
+					});
+				}
+				finally {
+					if (pendingWrites.decrementAndGet() == 0) {
+						EventQueue.invokeLater(new Runnable() {
+							public void run() {
+								if (pendingWrites.get() == 0) {
+									viewController.removeStatus(STATUS_KEY);
+								}
+							}
+						});
+					}
+				}
+			}
+		});
+	}
+
+	/** waits until all submitted maps are written, so that they are not overwritten by older content */
+	static void awaitPendingWrites() {
+		if (pendingWrites.get() == 0) {
+			return;
+		}
+		try {
+			worker.submit(new Runnable() {
+				public void run() {
+				}
+			}).get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final ExecutionException e) {
+			LogUtils.severe(e);
+		}
+	}
+
+	/** writes the content to a temporary file and replaces given file with it */
+	static void write(final File file, final IMapFileCodec codec, final ContentWriter content) throws IOException {
+		final File target = file.exists() ? file.getCanonicalFile() : file.getAbsoluteFile();
+		checkNotLockedByOtherApplication(target);
+		if (hasOtherHardLinks(target)) {
+			writeFile(target, codec, content);
+			return;
+		}
+		final File tempFile;
+		try {
+			tempFile = File.createTempFile("~" + target.getName(), TEMP_FILE_SUFFIX, target.getParentFile());
+		}
+		catch (final IOException e) {
+			LogUtils.info("can not create a temporary file for " + target + ", writing it in place: " + e.getMessage());
+			writeFile(target, codec, content);
+			return;
+		}
+		boolean replaced = false;
+		try {
+			if (target.exists() && !copyOwner(target, tempFile)) {
+				LogUtils.info("can not keep the owner of " + target + ", writing it in place");
+				writeFile(target, codec, content);
+				return;
+			}
+			writeFile(tempFile, codec, content);
+			if (target.exists()) {
+				copyAttributes(target, tempFile);
+			}
+			replace(tempFile, target);
+			replaced = true;
+		}
+		finally {
+			if (!replaced) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/** writes the content to the file and syncs it to disk */
+	private static void writeFile(final File file, final IMapFileCodec codec, final ContentWriter content)
+	        throws IOException {
+		final FileOutputStream fileOut = new FileOutputStream(file);
+		final OutputStream syncedOut = new FilterOutputStream(fileOut) {
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					flush();
+					fileOut.getFD().sync();
+				}
+				finally {
+					fileOut.close();
+				}
+			}
+		};
+		final OutputStream encodedOut = codec != null ? codec.encode(syncedOut) : syncedOut;
+		final Writer out = new BufferedWriter(new OutputStreamWriter(encodedOut));
+		try {
+			content.write(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static boolean hasOtherHardLinks(final File file) {
+		if (!file.exists()) {
+			return false;
+		}
+		try {
+			final Object linkCount = Files.getAttribute(file.toPath(), "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+			return linkCount instanceof Integer && (Integer) linkCount > 1;
+		}
+		catch (final UnsupportedOperationException e) {
+			return false;
+		}
+		catch (final IllegalArgumentException e) {
+			return false;
+		}
+		catch (final IOException e) {
+			return false;
+		}
+	}
+
+	/** @return false if the owner of the source file can not be set for the target file */
+	private static boolean copyOwner(final File sourceFile, final File targetFile) {
+		final FileOwnerAttributeView ownerView = Files.getFileAttributeView(targetFile.toPath(),
+		    FileOwnerAttributeView.class);
+		if (ownerView == null) {
+			return true;
+		}
+		try {
+			final UserPrincipal owner = Files.getOwner(sourceFile.toPath());
+			if (!owner.equals(ownerView.getOwner())) {
+				ownerView.setOwner(owner);
+			}
+			return true;
+		}
+		catch (final IOException e) {
+			return false;
+		}
+	}
+
+	/** copies permissions, access control list and extended attributes supported by the file system as far as possible */
+	private static void copyAttributes(final File sourceFile, final File targetFile) {
+		final Path source = sourceFile.toPath();
+		final Path target = targetFile.toPath();
+		final PosixFileAttributeView posixView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+		if (posixView != null) {
+			try {
+				final PosixFileAttributes attributes = Files.readAttributes(source, PosixFileAttributes.class);
+				posixView.setPermissions(attributes.permissions());
+				if (!attributes.group().equals(posixView.readAttributes().group())) {
+					posixView.setGroup(attributes.group());
+				}
+			}
+			catch (final IOException e) {
+				LogUtils.warn("can not copy permissions of " + sourceFile + ": " + e.getMessage());
+			}
+		}
+		final AclFileAttributeView aclView = Files.getFileAttributeView(target, AclFileAttributeView.class);
+		if (aclView != null) {
+			try {
+				aclView.setAcl(Files.getFileAttributeView(source, AclFileAttributeView.class).getAcl());
+			}
+			catch (final IOException e) {
+				LogUtils.warn("can not copy access control list of " + sourceFile + ": " + e.getMessage());
+			}
+		}
+		final DosFileAttributeView dosView = Files.getFileAttributeView(target, DosFileAttributeView.class);
+		if (dosView != null && posixView == null) {
+			try {
+				dosView.setHidden(Files.getFileAttributeView(source, DosFileAttributeView.class).readAttributes()
+				    .isHidden());
+			}
+			catch (final IOException e) {
+				LogUtils.warn("can not copy attributes of " + sourceFile + ": " + e.getMessage());
+			}
+		}
+		final UserDefinedFileAttributeView userView = Files.getFileAttributeView(target,
+		    UserDefinedFileAttributeView.class);
+		if (userView != null) {
+			try {
+				final UserDefinedFileAttributeView sourceUserView = Files.getFileAttributeView(source,
+				    UserDefinedFileAttributeView.class);
+				for (final String name : sourceUserView.list()) {
+					final ByteBuffer value = ByteBuffer.allocate(sourceUserView.size(name));
+					sourceUserView.read(name, value);
+					value.flip();
+					userView.write(name, value);
+				}
+			}
+			catch (final IOException e) {
+				LogUtils.warn("can not copy extended attributes of " + sourceFile + ": " + e.getMessage());
+			}
+			catch (final UnsupportedOperationException e) {
+			}
+		}
+	}
+
+	private static void checkNotLockedByOtherApplication(final File file) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			final FileLock lock;
+			try {
+				lock = out.getChannel().tryLock();
+			}
+			catch (final Exception e) {
+				LogUtils.warn(e.getMessage());
+				return;
+			}
+			if (lock == null) {
+				throw new IOException("can not obtain file lock for " + file);
+			}
+			lock.release();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	static void replace(final File source, final File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+			    StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (final AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
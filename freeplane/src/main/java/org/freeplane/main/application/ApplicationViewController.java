@@ -218,6 +218,7 @@ class ApplicationViewController extends FrameController {
 		if (!super.quit()) {
 			return false;
 		}
+		mapViewWindows.cancelRestoredMaps();
 		frame.dispose();
 		return true;
 	}
@@ -383,6 +384,11 @@ class ApplicationViewController extends FrameController {
 	    mapViewWindows.loadLayout();
     }
 
+	/** @return true if maps restored at startup are still loaded in background or wait for being shown */
+	public boolean hasRestoredMapsInBackground() {
+	    return mapViewWindows.hasRestoredMapPlaceholders();
+    }
+
 	public void focusTo(MapView currentMapView) {
 	    mapViewWindows.focusMapViewLater(currentMapView);
 
@@ -367,7 +367,7 @@ public class FreeplaneGUIStarter implements FreeplaneStarter {
 			if(absolutFile != null)
 				loadMaps(controller, new String[]{absolutFile.getAbsolutePath()});
 		}
-		if (null != controller.getMap()) {
+		if (null != controller.getMap() || viewController.hasRestoredMapsInBackground()) {
 			return;
 		}
 		controller.selectMode(MModeController.MODENAME);
@@ -434,8 +434,7 @@ public class FreeplaneGUIStarter implements FreeplaneStarter {
 						fileArgument = System.getProperty("user.dir") + System.getProperty("file.separator") + fileArgument;
 					}
 					url = Compat.fileToUrl(new File(fileArgument));
-					if (url.getPath().toLowerCase().endsWith(
-						org.freeplane.features.url.UrlManager.FREEPLANE_FILE_EXTENSION)) {
+					if (UrlManager.isMapFileExtension(FileUtils.getExtension(url.getPath()))) {
 						final MModeController modeController = (MModeController) controller.getModeController();
 						MapController mapController = modeController.getMapController();
 						mapController.openMapSelectReferencedNode(url);
@@ -80,6 +80,7 @@ import org.freeplane.features.mode.Controller;
 import org.freeplane.features.ui.IMapViewChangeListener;
 import org.freeplane.features.url.mindmapmode.FileOpener;
 import org.freeplane.view.swing.map.MapView;
+import org.freeplane.view.swing.map.MapViewScrollPane;
 import org.freeplane.view.swing.map.NodeView;
 import org.freeplane.view.swing.ui.DefaultMapMouseListener;
 
@@ -124,6 +125,10 @@ class MapViewDockingWindows implements IMapViewChangeListener {
             public void viewFocusChanged(View previouslyFocusedView, View focusedView) {
 				if (focusedView != null) {
 	            	Component containedMapView = getContainedMapView(focusedView);
+					if (containedMapView instanceof RestoredMapPlaceholder) {
+						((RestoredMapPlaceholder) containedMapView).showMap();
+						return;
+					}
 					final Component mapViewComponent = Controller.getCurrentController().getMapViewManager()
 					    .getMapViewComponent();
 					if (containedMapView != mapViewComponent)
@@ -137,6 +142,11 @@ class MapViewDockingWindows implements IMapViewChangeListener {
 					if(SwingUtilities.isDescendingFrom(mapViewComponent, window))
 					if (!Controller.getCurrentController().getMapViewManager().close(mapViewComponent, false))
 						throw new OperationAbortedException("can not close view");
+				for(RestoredMapPlaceholder placeholder : viewSerializer.getRestoredMapPlaceholders().toArray(new RestoredMapPlaceholder[]{}))
+					if(SwingUtilities.isDescendingFrom(placeholder, window)) {
+						viewSerializer.removeRestoredMapPlaceholder(placeholder);
+						placeholder.cancel();
+					}
             }
 
 
@@ -259,6 +269,13 @@ class MapViewDockingWindows implements IMapViewChangeListener {
 					return;
 				}
 			}
+			final RestoredMapPlaceholder placeholder = viewSerializer.removeRestoredMapPlaceholder(((MapView) pNewMap)
+			    .getModel().getURL());
+			if (placeholder != null) {
+				mapViews.add(pNewMap);
+				replaceRestoredMapPlaceholder(placeholder, pNewMap);
+				return;
+			}
 	        addDockedWindow(pOldMap, pNewMap);
         }
 		else if(mapViews.contains(pNewMap))
@@ -296,6 +313,30 @@ class MapViewDockingWindows implements IMapViewChangeListener {
 		addDockedView(pOldMap != null ? getContainingDockedWindow(pOldMap) : null, viewFrame);
     }
 
+	private void replaceRestoredMapPlaceholder(final RestoredMapPlaceholder placeholder, final Component pNewMap) {
+		final View dockedView = getContainingDockedWindow(placeholder);
+		final MapViewScrollPane mapViewScrollPane = new MapViewScrollPane();
+		mapViewScrollPane.getViewport().setView(pNewMap);
+		dockedView.setComponent(mapViewScrollPane);
+		dockedView.getViewProperties().setTitle(createTitle(pNewMap));
+		if(dockedView.isMinimized())
+			dockedView.restore();
+		else
+			dockedView.restoreFocus();
+		focusMapViewLater((MapView) pNewMap);
+	}
+
+	boolean hasRestoredMapPlaceholders() {
+		return ! viewSerializer.getRestoredMapPlaceholders().isEmpty();
+	}
+
+	/** releases maps restored at startup which have never been shown */
+	void cancelRestoredMaps() {
+		for(RestoredMapPlaceholder placeholder : viewSerializer.getRestoredMapPlaceholders())
+			placeholder.cancel();
+		viewSerializer.getRestoredMapPlaceholders().clear();
+	}
+
 	public void afterViewClose(final Component pOldMapView) {
 		for (int i = 0; i < mapViews.size(); ++i) {
 			if (mapViews.get(i) == pOldMapView) {
@@ -447,7 +488,10 @@ class MapViewDockingWindows implements IMapViewChangeListener {
 				final int nextWindowIndex = (childWindowIndex + childWindowCount + tabIndexChange) % childWindowCount;
 				final View nextWindow = (View) tabWindow.getChildWindow(nextWindowIndex);
 				final Component nextMapView = getContainedMapView(nextWindow);
-				Controller.getCurrentController().getMapViewManager().changeToMapView(nextMapView);
+				if (nextMapView instanceof RestoredMapPlaceholder)
+					nextWindow.restoreFocus();
+				else
+					Controller.getCurrentController().getMapViewManager().changeToMapView(nextMapView);
 			}
 		}
 	}
@@ -20,6 +20,7 @@
 package org.freeplane.main.application;
 
 import java.awt.Component;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -28,16 +29,22 @@ import java.util.ArrayList;
 import java.util.Collection;
 
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 
 import net.infonode.docking.View;
 import net.infonode.docking.ViewSerializer;
 
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.util.Compat;
 import org.freeplane.features.map.MapController;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.mindmapmode.DocuMapAttribute;
+import org.freeplane.features.map.mindmapmode.MMapController;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
+import org.freeplane.features.url.UrlManager;
+import org.freeplane.features.url.mindmapmode.MFileManager;
 import org.freeplane.view.swing.map.MapView;
 import org.freeplane.view.swing.map.MapViewScrollPane;
 
@@ -47,10 +54,17 @@ import org.freeplane.view.swing.map.MapViewScrollPane;
  */
 class MapViewSerializer implements ViewSerializer {
     private Collection<View> viewsToBeRemoved = new ArrayList<View>();
+    private Collection<RestoredMapPlaceholder> restoredMapPlaceholders = new ArrayList<RestoredMapPlaceholder>();
 
 	public void writeView(View view, ObjectOutputStream out) throws IOException {
     	if(view.isDisplayable()) {
     		Component component = MapViewDockingWindows.getContainedMapView(view);
+    		if (component instanceof RestoredMapPlaceholder) {
+    			out.writeBoolean(true);
+    			out.writeUTF(MModeController.MODENAME);
+    			out.writeObject(((RestoredMapPlaceholder) component).getMapUrl());
+    			return;
+    		}
     		if (component instanceof MapView) {
     			MapView mapView = (MapView) component;
     			if(mapView.getModeController().getModeName().equals(MModeController.MODENAME) 
@@ -76,6 +90,12 @@ class MapViewSerializer implements ViewSerializer {
     			controller.selectMode(modeName);
     			ModeController modeController = Controller.getCurrentModeController();
     			MapController mapController = modeController.getMapController();
+    			if (canRestoreInBackground(mapController, mapUrl)) {
+    				if (((MMapController) mapController).restoreMapInBackground(mapUrl))
+    					return newRestoredMapView(mapUrl);
+    				else
+    					return newViewToBeRemoved();
+    			}
     			boolean newMapLoaded = mapController.newMap(mapUrl);
     			if (!newMapLoaded){
     				MapModel map = controller.getMap();
@@ -98,6 +118,40 @@ class MapViewSerializer implements ViewSerializer {
         }
     }
     
+	private boolean canRestoreInBackground(MapController mapController, URL mapUrl) throws Exception {
+		if (!(mapController instanceof MMapController)
+		        || !ResourceController.getResourceController().getBooleanProperty(MFileManager.LOAD_MAPS_IN_BACKGROUND))
+			return false;
+		final File file = Compat.urlToFile(mapUrl);
+		return file != null && file.exists()
+		        && !Controller.getCurrentController().getMapViewManager().tryToChangeToMapView(mapUrl);
+	}
+
+	private View newRestoredMapView(URL mapUrl) throws Exception {
+		final String title = UrlManager.removeMapFileExtension(Compat.urlToFile(mapUrl).getName());
+		final RestoredMapPlaceholder placeholder = new RestoredMapPlaceholder(mapUrl, title);
+		restoredMapPlaceholders.add(placeholder);
+		return new ConnectedToMenuView(title, null, new JScrollPane(placeholder));
+	}
+
+	RestoredMapPlaceholder removeRestoredMapPlaceholder(URL mapUrl) {
+		for (RestoredMapPlaceholder placeholder : restoredMapPlaceholders) {
+			if (placeholder.getMapUrl().equals(mapUrl)) {
+				restoredMapPlaceholders.remove(placeholder);
+				return placeholder;
+			}
+		}
+		return null;
+	}
+
+	void removeRestoredMapPlaceholder(RestoredMapPlaceholder placeholder) {
+		restoredMapPlaceholders.remove(placeholder);
+	}
+
+	Collection<RestoredMapPlaceholder> getRestoredMapPlaceholders() {
+		return restoredMapPlaceholders;
+	}
+
 	private View newViewToBeRemoved() {
 	    View view = new View("", null, new JPanel());
 	    viewsToBeRemoved.add(view);
@@ -0,0 +1,69 @@
+/*
+ *  Freeplane - mind map editor
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.main.application;
+
+import java.awt.BorderLayout;
+import java.net.URL;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.mindmapmode.MMapController;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.mindmapmode.MModeController;
+
+/**
+ * Takes the place of a map view restored at startup while its map is loaded in background.
+ * It is replaced by the map view when its docked view is selected for the first time.
+ */
+@SuppressWarnings("serial")
+class RestoredMapPlaceholder extends JPanel {
+	final private URL mapUrl;
+
+	RestoredMapPlaceholder(final URL mapUrl, final String title) {
+		super(new BorderLayout());
+		this.mapUrl = mapUrl;
+		setName(title);
+		add(new JLabel(TextUtils.format("restored_map_loading", title), SwingConstants.CENTER), BorderLayout.CENTER);
+	}
+
+	URL getMapUrl() {
+		return mapUrl;
+	}
+
+	/** requests the map view, it is created as soon as the map is loaded */
+	void showMap() {
+		try {
+			getMapController().newMap(mapUrl);
+		}
+		catch (final Exception e) {
+			LogUtils.warn(e);
+		}
+	}
+
+	void cancel() {
+		getMapController().cancelBackgroundLoading(mapUrl);
+	}
+
+	private MMapController getMapController() {
+		return (MMapController) Controller.getCurrentController().getModeController(MModeController.MODENAME)
+		    .getMapController();
+	}
+}
@@ -140,6 +140,18 @@ public interface IXMLBuilder {
 	 */
 	public void newProcessingInstruction(String target, Reader reader) throws Exception;
 
+	/**
+	 * This method is called instead of the events for the content of an
+	 * element if the content has been requested unparsed. The content is
+	 * passed as it was found in the XML data, entities are not resolved.
+	 * 
+	 * @param content
+	 *            the unparsed content of the current element.
+	 * @throws java.lang.Exception
+	 *             If an exception occurred while processing the event.
+	 */
+	public void setElementContent(String content) throws Exception;
+
 	/**
 	 * This method is called before the parser starts processing its input.
 	 * 
@@ -232,6 +232,19 @@ class StdXMLBuilder implements IXMLBuilder {
 	public void newProcessingInstruction(final String target, final Reader reader) {
 	}
 
+	/**
+	 * This method is called with the unparsed content of the current element
+	 * if the content has been requested unparsed.
+	 * 
+	 * @param content
+	 *            the content of the element.
+	 */
+	public void setElementContent(final String content) {
+		if (!stack.empty()) {
+			stack.peek().setContent(content);
+		}
+	}
+
 	/**
 	 * This method is called before the parser starts processing its input.
 	 * 
@@ -0,0 +1,123 @@
+package org.freeplane.core.io.xml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.IUnparsedElementHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.NonValidator;
+import org.freeplane.n3.nanoxml.StdXMLParser;
+import org.freeplane.n3.nanoxml.StdXMLReader;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.junit.Test;
+
+public class StreamingXmlParserShould {
+	private static final String MAP = "<?xml version=\"1.0\"?>\r\n" //
+	        + "<!-- comment -->\r\n" //
+	        + "<map version=\"1.0\">\r\n" //
+	        + "<node TEXT=\"a &amp; b&#xa;c\" ID=\"ID_1\" multiline=\"1\r\n2\">\r\n" //
+	        + "<richcontent TYPE=\"NOTE\"><html>\r\n<b>&lt;note&gt;</b><br/><!-- c --></html></richcontent>\r\n" //
+	        + "<unknown xmlns:x=\"urn:x\" x:key='\"value\"'>text<![CDATA[<cdata>]]> more</unknown>\r\n" //
+	        + "<node TEXT=\"child\"/>\r\n" //
+	        + "</node>\r\n" //
+	        + "</map>\r\n";
+
+	private XMLElement parseWithNanoxml(String xml) throws Exception {
+		final StdXMLParser parser = new StdXMLParser();
+		parser.setBuilder(new StdXMLBuilder());
+		parser.setReader(new StdXMLReader(new StringReader(xml)));
+		parser.setValidator(new NonValidator());
+		return (XMLElement) parser.parse();
+	}
+
+	private XMLElement parseWithStreamingParser(String xml) throws Exception {
+		return (XMLElement) new StreamingXmlParser(new StdXMLBuilder(), new StringReader(xml)).parse();
+	}
+
+	private void assertSameElements(XMLElement expected, XMLElement actual) {
+		assertThat(actual.getName(), equalTo(expected.getName()));
+		assertThat(actual.getContent(), equalTo(expected.getContent()));
+		assertThat(actual.getAttributes(), equalTo(expected.getAttributes()));
+		assertThat(actual.getLineNr(), equalTo(expected.getLineNr()));
+		assertThat(actual.getChildrenCount(), equalTo(expected.getChildrenCount()));
+		for (int i = 0; i < expected.getChildrenCount(); i++) {
+			assertSameElements(expected.getChildAtIndex(i), actual.getChildAtIndex(i));
+		}
+	}
+
+	@Test
+	public void buildSameElementsAsNanoxmlParser() throws Exception {
+		assertSameElements(parseWithNanoxml(MAP), parseWithStreamingParser(MAP));
+	}
+
+	@Test
+	public void passUnparsedContentToContentHandler() throws Exception {
+		final StringBuilder contents = new StringBuilder();
+		final ReadManager readManager = new ReadManager();
+		final IElementDOMHandler domHandler = new IElementDOMHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+			}
+		};
+		readManager.addElementHandler("map", domHandler);
+		readManager.addElementHandler("node", domHandler);
+		readManager.addElementHandler("richcontent", new IElementContentHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object node, XMLElement attributes, String content) {
+				contents.append(content);
+			}
+		});
+		final TreeXmlReader reader = new TreeXmlReader(readManager);
+		reader.setStreamingParserEnabled(true);
+		reader.load(new StringReader(MAP));
+		assertThat(contents.toString(), equalTo("<html>\n<b>&lt;note&gt;</b><br/><!-- c --></html>"));
+	}
+
+	@Test
+	public void passUnparsedElementToUnparsedElementHandler() throws Exception {
+		final StringBuilder elements = new StringBuilder();
+		final ReadManager readManager = new ReadManager();
+		readManager.addElementHandler("map", new IElementDOMHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+			}
+		});
+		readManager.addElementHandler("node", new IUnparsedElementHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+			}
+
+			public boolean keepsUnparsed(Object element) {
+				return true;
+			}
+
+			public void endUnparsedElement(Object parent, String tag, Object element, String xml) {
+				elements.append(xml);
+			}
+		});
+		final TreeXmlReader reader = new TreeXmlReader(readManager);
+		reader.setStreamingParserEnabled(true);
+		reader.load(new StringReader(MAP));
+		assertThat(elements.toString(), equalTo("<node TEXT=\"a &amp; b&#xa;c\" ID=\"ID_1\" multiline=\"1 2\">\n" //
+		        + "<richcontent TYPE=\"NOTE\"><html>\n<b>&lt;note&gt;</b><br/><!-- c --></html></richcontent>\n" //
+		        + "<unknown xmlns:x=\"urn:x\" x:key='\"value\"'>text<![CDATA[<cdata>]]> more</unknown>\n" //
+		        + "<node TEXT=\"child\"/>\n" //
+		        + "</node>\n"));
+	}
+}
@@ -0,0 +1,129 @@
+package org.freeplane.core.io.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.freeplane.core.io.IAttributeWriter;
+import org.freeplane.core.io.IElementWriter;
+import org.freeplane.core.io.ITreeWriter;
+import org.freeplane.core.io.WriteManager;
+
+/**
+ * Measures time and allocated memory of writing a tree of 100000 nodes with {@link TreeXmlWriter},
+ * using element and attribute writers similar to the ones of nodes.
+ * To compare implementations, run it against each of them and compare the written length.
+ * Run as application, it is no unit test.
+ */
+public class TreeXmlWriterBenchmark {
+	private static final int NODE_COUNT = 100000;
+	private static final int ROUNDS = 5;
+
+	private static class Node {
+		final List<Node> children = new ArrayList<Node>();
+		final String text;
+		final String id;
+
+		Node(final int id) {
+			this.text = id % 10 == 0 ? "node & <text> " + id : "node text " + id;
+			this.id = "ID_" + id;
+		}
+	}
+
+	/** counts the written characters */
+	private static class CountingWriter extends Writer {
+		long count;
+
+		@Override
+		public void write(final int c) {
+			count++;
+		}
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) {
+			count += len;
+		}
+
+		@Override
+		public void write(final String str, final int off, final int len) {
+			count += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final Node root = createTree();
+		final WriteManager writeManager = createWriteManager();
+		for (int round = 0; round < ROUNDS; round++) {
+			final boolean report = round == ROUNDS - 1;
+			final CountingWriter out = new CountingWriter();
+			final long allocatedBytes = getAllocatedBytes();
+			final long start = System.nanoTime();
+			final TreeXmlWriter writer = new TreeXmlWriter(writeManager, out);
+			writer.addElement(root, "node");
+			writer.flush();
+			final long milliseconds = (System.nanoTime() - start) / 1000000;
+			final long allocatedMegabytes = (getAllocatedBytes() - allocatedBytes) / (1024 * 1024);
+			if (report) {
+				System.out.println("tree xml writer: " + milliseconds + " ms, " + allocatedMegabytes
+				        + " MB allocated, " + out.count + " characters written");
+			}
+		}
+	}
+
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread()
+			    .getId());
+		}
+		return 0;
+	}
+
+	private static WriteManager createWriteManager() {
+		final WriteManager writeManager = new WriteManager();
+		writeManager.addAttributeWriter("node", new IAttributeWriter() {
+			public void writeAttributes(final ITreeWriter writer, final Object userObject, final String tag) {
+				final Node node = (Node) userObject;
+				writer.addAttribute("TEXT", node.text);
+				writer.addAttribute("ID", node.id);
+				writer.addAttribute("CREATED", "1380000000000");
+				writer.addAttribute("MODIFIED", "1380000000000");
+				writer.addAttribute("POSITION", "right");
+			}
+		});
+		writeManager.addElementWriter("node", new IElementWriter() {
+			public void writeContent(final ITreeWriter writer, final Object element, final String tag)
+			        throws IOException {
+				for (final Node child : ((Node) element).children) {
+					writer.addElement(child, "node");
+				}
+			}
+		});
+		return writeManager;
+	}
+
+	/** creates a tree of nodes with up to ten children each */
+	private static Node createTree() {
+		final List<Node> nodes = new ArrayList<Node>(NODE_COUNT);
+		nodes.add(new Node(0));
+		for (int parentIndex = 0; nodes.size() < NODE_COUNT; parentIndex++) {
+			final Node parent = nodes.get(parentIndex);
+			for (int i = 0; i < 10 && nodes.size() < NODE_COUNT; i++) {
+				final Node node = new Node(nodes.size());
+				parent.children.add(node);
+				nodes.add(node);
+			}
+		}
+		return nodes.get(0);
+	}
+}
@@ -0,0 +1,107 @@
+package org.freeplane.core.io.xml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.freeplane.core.io.IAttributeWriter;
+import org.freeplane.core.io.IElementWriter;
+import org.freeplane.core.io.ITreeWriter;
+import org.freeplane.core.io.WriteManager;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.junit.Test;
+
+public class TreeXmlWriterShould {
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private String recordedChild;
+
+	private XMLElement child(String name) {
+		final XMLElement child = new XMLElement("child");
+		child.setAttribute("NAME", name);
+		return child;
+	}
+
+	private String writeParent(IElementWriter parentWriter) throws IOException {
+		final WriteManager writeManager = new WriteManager();
+		writeManager.addElementWriter("parent", parentWriter);
+		final StringWriter out = new StringWriter();
+		final TreeXmlWriter writer = new TreeXmlWriter(writeManager, out);
+		final XMLElement parent = new XMLElement("parent");
+		parent.setAttribute("ID", "1");
+		writer.addElement(null, parent);
+		writer.flush();
+		return out.toString();
+	}
+
+	private final IElementWriter recordingParentWriter = new IElementWriter() {
+		public void writeContent(ITreeWriter writer, Object element, String tag) throws IOException {
+			final TreeXmlWriter treeXmlWriter = (TreeXmlWriter) writer;
+			treeXmlWriter.startRecording();
+			writer.addElement(null, child("a&b"));
+			recordedChild = treeXmlWriter.stopRecording();
+			writer.addElement(null, child("c"));
+		}
+	};
+
+	@Test
+	public void recordOnlyTextWrittenForRecordedElement() throws Exception {
+		writeParent(recordingParentWriter);
+		assertThat(recordedChild, equalTo("<child NAME=\"a&amp;b\"/>" + LINE_SEPARATOR));
+	}
+
+	@Test
+	public void writeSameXmlFromRecordedText() throws Exception {
+		final String originalXml = writeParent(recordingParentWriter);
+		final String xmlFromRecording = writeParent(new IElementWriter() {
+			public void writeContent(ITreeWriter writer, Object element, String tag) throws IOException {
+				((TreeXmlWriter) writer).addSerializedXml(recordedChild);
+				writer.addElement(null, child("c"));
+			}
+		});
+		assertThat(xmlFromRecording, equalTo(originalXml));
+	}
+
+	private String writeNode(final String text) throws IOException {
+		final WriteManager writeManager = new WriteManager();
+		writeManager.addAttributeWriter("node", new IAttributeWriter() {
+			public void writeAttributes(ITreeWriter writer, Object userObject, String tag) {
+				writer.addAttribute("TEXT", text);
+				writer.addAttribute("TEXT", "duplicate");
+				writer.addAttribute("POSITION", 1);
+			}
+		});
+		final StringWriter out = new StringWriter();
+		final TreeXmlWriter writer = new TreeXmlWriter(writeManager, out);
+		writer.addElement(null, "node");
+		writer.flush();
+		return out.toString();
+	}
+
+	@Test
+	public void streamElementAttributes() throws Exception {
+		assertThat(writeNode("text"), equalTo("<node TEXT=\"text\" POSITION=\"1\"/>" + LINE_SEPARATOR));
+	}
+
+	@Test
+	public void encodeReservedCharactersInAttributes() throws Exception {
+		assertThat(writeNode("<a&'b'>\n\"\u00e9\u20ac\t"), equalTo(
+		    "<node TEXT=\"&lt;a&amp;&apos;b&apos;&gt;&#xa;&quot;&#xe9;&#x20ac;&#x9;\" POSITION=\"1\"/>" + LINE_SEPARATOR));
+	}
+
+	@Test
+	public void writeElementsWithNamespacesAsBefore() throws Exception {
+		final XMLElement element = new XMLElement("x:child", "urn:x");
+		element.setAttribute("x:key", "urn:x", "value");
+		final String xml = writeParent(new IElementWriter() {
+			public void writeContent(ITreeWriter writer, Object userObject, String tag) throws IOException {
+				writer.addElement(null, element);
+			}
+		});
+		assertThat(xml, equalTo("<parent ID=\"1\">" + LINE_SEPARATOR
+		        + "<x:child xmlns:x=\"urn:x\" x:key=\"value\"/>" + LINE_SEPARATOR
+		        + "</parent>" + LINE_SEPARATOR));
+	}
+}
@@ -0,0 +1,86 @@
+package org.freeplane.core.io.xml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.freeplane.n3.nanoxml.XMLParseException;
+import org.junit.Test;
+
+public class XmlEventRecorderShould {
+	private static final String MAP = "<?xml version=\"1.0\"?>\n" //
+	        + "<map version=\"1.0\">\n" //
+	        + "<node TEXT=\"a &amp; b&#xa;c\" ID=\"ID_1\">\n" //
+	        + "<richcontent TYPE=\"NOTE\"><html>\n<b>&lt;note&gt;</b> <i>text</i></html></richcontent>\n" //
+	        + "<unknown xmlns:x=\"urn:x\" x:key='\"value\"'>text<![CDATA[<cdata>]]> more</unknown>\n" //
+	        + "<node TEXT=\"child\" ID=\"ID_2\"/>\n" //
+	        + "</node>\n" //
+	        + "</map>\n";
+
+	private static class LoggingHandler implements IElementDOMHandler {
+		final StringBuilder log;
+
+		LoggingHandler(StringBuilder log) {
+			this.log = log;
+		}
+
+		public Object createElement(Object parent, String tag, XMLElement attributes) {
+			return tag;
+		}
+
+		public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+			log.append(tag).append(dom.getAttributes()).append(dom.getChildrenCount()).append(dom.getContent())
+			    .append('\n');
+		}
+	}
+
+	private ReadManager readManager(final StringBuilder log, final boolean richcontentUnparsed) {
+		final ReadManager readManager = new ReadManager();
+		final LoggingHandler handler = new LoggingHandler(log);
+		readManager.addElementHandler("map", handler);
+		readManager.addElementHandler("node", handler);
+		if (richcontentUnparsed) {
+			readManager.addElementHandler("richcontent", new IElementContentHandler() {
+				public Object createElement(Object parent, String tag, XMLElement attributes) {
+					return tag;
+				}
+
+				public void endElement(Object parent, String tag, Object node, XMLElement attributes, String content) {
+					log.append(tag).append(attributes.getAttributes()).append(content).append('\n');
+				}
+			});
+		}
+		return readManager;
+	}
+
+	private byte[] record(final StringBuilder log) throws Exception {
+		final XmlEventRecorder recorder = new XmlEventRecorder();
+		final TreeXmlReader reader = new TreeXmlReader(readManager(log, true));
+		reader.setStreamingParserEnabled(true);
+		reader.setRecorder(recorder);
+		reader.load(new StringReader(MAP));
+		return recorder.toByteArray();
+	}
+
+	@Test
+	public void replayRecordedEvents() throws Exception {
+		final StringBuilder parsedLog = new StringBuilder();
+		final byte[] events = record(parsedLog);
+		final StringBuilder replayedLog = new StringBuilder();
+		new TreeXmlReader(readManager(replayedLog, true)).loadRecorded(null, new ByteArrayInputStream(events));
+		assertThat(replayedLog.toString(), equalTo(parsedLog.toString()));
+	}
+
+	@Test(expected = XMLParseException.class)
+	public void failIfRecordedContentIsNotRequestedUnparsed() throws Exception {
+		final byte[] events = record(new StringBuilder());
+		new TreeXmlReader(readManager(new StringBuilder(), false)).loadRecorded(null,
+		    new ByteArrayInputStream(events));
+	}
+}
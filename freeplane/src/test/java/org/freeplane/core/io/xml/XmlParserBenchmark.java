@@ -0,0 +1,155 @@
+package org.freeplane.core.io.xml;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.freeplane.core.io.IAttributeHandler;
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.XMLElement;
+
+/**
+ * Compares loading a generated map with 100000 nodes using the nanoxml parser
+ * and using {@link StreamingXmlParser}, both driving a {@link TreeXmlReader} with handlers
+ * similar to the ones of nodes, notes and attributes.
+ * Run as application, it is no unit test.
+ */
+public class XmlParserBenchmark {
+	private static final int NODE_COUNT = 100000;
+	private static final int ROUNDS = 5;
+
+	private static class Node {
+		final List<Node> children = new ArrayList<Node>();
+		String text;
+		String id;
+		String note;
+		int attributeCount;
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final String map = createMap();
+		System.out.println("map size: " + map.length() / 1024 + " KB");
+		for (int round = 0; round < ROUNDS; round++) {
+			final boolean report = round == ROUNDS - 1;
+			final int nanoxmlNodes = run("nanoxml parser", map, false, report);
+			final int streamingNodes = run("streaming parser", map, true, report);
+			if (nanoxmlNodes != streamingNodes) {
+				throw new IllegalStateException("different nodes: " + nanoxmlNodes + " / " + streamingNodes);
+			}
+		}
+	}
+
+	private static int run(final String name, final String map, final boolean streamingParserEnabled,
+	                       final boolean report) throws Exception {
+		final int[] nodeCount = new int[1];
+		final TreeXmlReader reader = new TreeXmlReader(createReadManager(nodeCount));
+		reader.setStreamingParserEnabled(streamingParserEnabled);
+		final long allocatedBytes = getAllocatedBytes();
+		final long start = System.nanoTime();
+		reader.load(new StringReader(map));
+		final long milliseconds = (System.nanoTime() - start) / 1000000;
+		final long allocatedMegabytes = (getAllocatedBytes() - allocatedBytes) / (1024 * 1024);
+		if (report) {
+			System.out.println(name + ": " + milliseconds + " ms, " + allocatedMegabytes + " MB allocated, "
+			        + nodeCount[0] + " nodes");
+		}
+		return nodeCount[0];
+	}
+
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread()
+			    .getId());
+		}
+		return 0;
+	}
+
+	private static ReadManager createReadManager(final int[] nodeCount) {
+		final ReadManager readManager = new ReadManager();
+		readManager.addElementHandler("map", new IElementDOMHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				return new Node();
+			}
+
+			public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
+			}
+		});
+		readManager.addElementHandler("node", new IElementDOMHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				final Node node = new Node();
+				((Node) parent).children.add(node);
+				nodeCount[0]++;
+				return node;
+			}
+
+			public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
+			}
+		});
+		readManager.addAttributeHandler("node", "TEXT", new IAttributeHandler() {
+			public void setAttribute(final Object node, final String value) {
+				((Node) node).text = value;
+			}
+		});
+		readManager.addAttributeHandler("node", "ID", new IAttributeHandler() {
+			public void setAttribute(final Object node, final String value) {
+				((Node) node).id = value;
+			}
+		});
+		readManager.addElementHandler("richcontent", new IElementContentHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				return parent;
+			}
+
+			public void endElement(final Object parent, final String tag, final Object node,
+			                       final XMLElement attributes, final String content) {
+				((Node) node).note = content;
+			}
+		});
+		readManager.addElementHandler("attribute", new IElementDOMHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				return parent;
+			}
+
+			public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
+				if (dom.getAttribute("NAME", null) != null) {
+					((Node) element).attributeCount++;
+				}
+			}
+		});
+		return readManager;
+	}
+
+	/** creates a map of nodes with up to ten children each, some nodes have notes and attributes */
+	private static String createMap() {
+		final StringBuilder map = new StringBuilder(NODE_COUNT * 200);
+		map.append("<map version=\"freeplane 1.3.0\">\n");
+		final int[] nextId = new int[1];
+		appendNode(map, nextId, 0);
+		map.append("</map>\n");
+		return map.toString();
+	}
+
+	private static void appendNode(final StringBuilder map, final int[] nextId, final int depth) {
+		final int id = nextId[0]++;
+		map.append("<node TEXT=\"node &amp; text ").append(id).append("\" ID=\"ID_").append(id)
+		    .append("\" CREATED=\"1380000000000\" MODIFIED=\"1380000000000\" POSITION=\"right\">\n");
+		if (id % 10 == 0) {
+			map.append("<richcontent TYPE=\"NOTE\">\n<html>\n  <head>\n\n  </head>\n  <body>\n    <p>\n      note ")
+			    .append(id).append("\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+		}
+		if (id % 5 == 0) {
+			map.append("<attribute NAME=\"priority\" VALUE=\"").append(id % 3).append("\"/>\n");
+			map.append("<attribute NAME=\"owner\" VALUE=\"somebody\"/>\n");
+		}
+		if (depth < 6) {
+			for (int i = 0; i < 10 && nextId[0] < NODE_COUNT; i++) {
+				appendNode(map, nextId, depth + 1);
+			}
+		}
+		map.append("</node>\n");
+	}
+}
@@ -0,0 +1,79 @@
+package org.freeplane.features.filter;
+
+import java.util.Random;
+
+/**
+ * Compares the approximate matchers on node texts of a generated map with 50000 nodes.
+ * Run as application, it is no unit test.
+ */
+public class ApproximateMatchingBenchmark {
+	private static final int NODE_COUNT = 50000;
+	/** default of the property approximate_search_threshold */
+	private static final float THRESHOLD = 0.65F;
+	private static final String[] SEARCH_TERMS = { "projet", "meeting notes", "freplane", "implementaton detail",
+	        "the quick brown fox jumps over the lazy dog and keeps running through the field until the evening" };
+	private static final int ROUNDS = 5;
+
+	public static void main(final String[] args) {
+		final String[] texts = createNodeTexts(new Random(42));
+		for (int round = 0; round < ROUNDS; round++) {
+			final boolean report = round == ROUNDS - 1;
+			final long pseudoDamerauLevenshteinMatches = run("PseudoDamerauLevenshtein", new PseudoDamerauLevenshtein(),
+			    texts, report);
+			final long bitParallelMatches = run("BitParallelDamerauLevenshtein", new BitParallelDamerauLevenshtein(),
+			    texts, report);
+			if (pseudoDamerauLevenshteinMatches != bitParallelMatches) {
+				throw new IllegalStateException("different matches: " + pseudoDamerauLevenshteinMatches + " / "
+				        + bitParallelMatches);
+			}
+		}
+	}
+
+	private static long run(final String name, final EditDistanceStringMatchingStrategy strategy,
+	                        final String[] texts, final boolean report) {
+		long matches = 0;
+		final long start = System.nanoTime();
+		for (final String searchTerm : SEARCH_TERMS) {
+			for (final String text : texts) {
+				strategy.init(searchTerm, text, true, false);
+				if (strategy.matchProb() > THRESHOLD) {
+					matches++;
+				}
+			}
+		}
+		final long milliseconds = (System.nanoTime() - start) / 1000000;
+		if (report) {
+			System.out.println(name + ": " + milliseconds + " ms, " + matches + " matches");
+		}
+		return matches;
+	}
+
+	private static String[] createNodeTexts(final Random random) {
+		final String[] words = { "project", "meeting", "notes", "freeplane", "implementation", "detail", "idea",
+		        "task", "review", "release", "map", "node", "attribute", "filter", "search", "the", "a", "of", "and",
+		        "to", "with", "for", "quick", "brown", "fox", "lazy", "dog", "évaluation", "Größe", "next", "week" };
+		final String[] texts = new String[NODE_COUNT];
+		for (int i = 0; i < NODE_COUNT; i++) {
+			// mostly short headings, every tenth node holds a paragraph
+			final int wordCount = i % 10 == 0 ? 20 + random.nextInt(60) : 1 + random.nextInt(6);
+			final StringBuilder text = new StringBuilder();
+			for (int j = 0; j < wordCount; j++) {
+				if (j > 0) {
+					text.append(' ');
+				}
+				final String word = words[random.nextInt(words.length)];
+				if (random.nextInt(20) == 0 && word.length() > 2) {
+					// typo
+					final int position = random.nextInt(word.length() - 1);
+					text.append(word, 0, position).append(word.charAt(position + 1)).append(word.charAt(position))
+					    .append(word, position + 2, word.length());
+				}
+				else {
+					text.append(word);
+				}
+			}
+			texts[i] = text.toString();
+		}
+		return texts;
+	}
+}
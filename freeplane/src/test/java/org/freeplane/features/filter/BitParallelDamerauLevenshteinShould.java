@@ -0,0 +1,68 @@
+package org.freeplane.features.filter;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitParallelDamerauLevenshteinShould {
+	private final BitParallelDamerauLevenshtein strategy = new BitParallelDamerauLevenshtein();
+
+	private int distance(final String searchTerm, final String searchText, final boolean subStringMatch) {
+		strategy.init(searchTerm, searchText, subStringMatch, true);
+		return strategy.distance();
+	}
+
+	@Test
+	public void findSubstringWithoutCost() throws Exception {
+		assertThat(distance("file", "a file is", true), equalTo(0));
+	}
+
+	@Test
+	public void countTranspositionAsSingleEdit() throws Exception {
+		assertThat(distance("ab", "ba", false), equalTo(1));
+		assertThat(distance("fiel", "a file is", true), equalTo(1));
+	}
+
+	@Test
+	public void countEditsOfWholeTextForGlobalMatch() throws Exception {
+		assertThat(distance("file", "a file is", false), equalTo(5));
+	}
+
+	@Test
+	public void matchAnyCharacterByHyphenInText() throws Exception {
+		assertThat(distance("file", "f-le", false), equalTo(0));
+	}
+
+	@Test
+	public void ignoreCase() throws Exception {
+		strategy.init("FILE", "a file", true, false);
+		assertThat(strategy.distance(), equalTo(0));
+	}
+
+	@Test
+	public void computeSameDistancesAsPseudoDamerauLevenshtein() throws Exception {
+		final Random random = new Random(1);
+		final String alphabet = "ab-céĀ";
+		for (int i = 0; i < 20000; i++) {
+			// every tenth search term needs more than one block of 64 characters
+			final String searchTerm = randomString(random, alphabet, random.nextInt(i % 10 == 0 ? 200 : 12));
+			final String searchText = randomString(random, alphabet, random.nextInt(i % 10 == 0 ? 300 : 20));
+			final boolean subStringMatch = random.nextBoolean();
+			final PseudoDamerauLevenshtein expected = new PseudoDamerauLevenshtein();
+			expected.init(searchTerm, searchText, subStringMatch, true);
+			assertThat(searchTerm + " / " + searchText, distance(searchTerm, searchText, subStringMatch),
+			    equalTo(expected.distance()));
+		}
+	}
+
+	private String randomString(final Random random, final String alphabet, final int length) {
+		final StringBuilder string = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			string.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return string.toString();
+	}
+}
@@ -0,0 +1,162 @@
+package org.freeplane.features.filter;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freeplane.features.filter.condition.ICondition;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** filter results updated for changed nodes must equal the results of checking all nodes again */
+public class FilterResultsChangeShould {
+	private static final Collection<NodeModel> NO_NODES = Collections.emptyList();
+	private MapModel map;
+	private NodeModel root;
+	private NodeModel parent;
+	private NodeModel child;
+	private NodeModel sibling;
+	private Filter filter;
+
+	@Before
+	public void setup() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ModeController modeController = Mockito.mock(ModeController.class);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		final MapController mapController = Mockito.mock(MapController.class);
+		Mockito.when(modeController.getMapController()).thenReturn(mapController);
+		final Answer<List<NodeModel>> children = new Answer<List<NodeModel>>() {
+			public List<NodeModel> answer(final InvocationOnMock invocation) throws Throwable {
+				return ((NodeModel) invocation.getArguments()[0]).getChildren();
+			}
+		};
+		Mockito.when(mapController.childrenUnfolded(Mockito.any(NodeModel.class))).thenAnswer(children);
+		Mockito.when(mapController.parsedChildrenUnfolded(Mockito.any(NodeModel.class))).thenAnswer(children);
+		Controller.setCurrentController(controller);
+		map = new MapModel();
+		root = new NodeModel("root", map);
+		map.setRoot(root);
+		parent = addNode(root, "parent");
+		child = addNode(parent, "child");
+		sibling = addNode(root, "sibling");
+		filter = new Filter(new ICondition() {
+			public boolean checkNode(final NodeModel node) {
+				return node.getText().contains("match");
+			}
+		}, true, false, false);
+		filter.calculateFilterResults(root);
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private NodeModel addNode(final NodeModel parent, final String text) {
+		final NodeModel node = new NodeModel(text, map);
+		parent.insert(node, parent.getChildCount());
+		return node;
+	}
+
+	private Map<NodeModel, Integer> results(final NodeModel node, final Map<NodeModel, Integer> results) {
+		results.put(node, node.getFilterInfo().get());
+		for (final NodeModel child : node.getChildren()) {
+			results(child, results);
+		}
+		return results;
+	}
+
+	private void assertResultsEqualCheckingAllNodes() {
+		final Map<NodeModel, Integer> updatedResults = results(root, new LinkedHashMap<NodeModel, Integer>());
+		filter.calculateFilterResults(root);
+		assertThat(updatedResults, equalTo(results(root, new LinkedHashMap<NodeModel, Integer>())));
+	}
+
+	@Test
+	public void updateChangedNodeAndAncestors() {
+		child.setText("match");
+		final Collection<NodeModel> updatedNodes = filter.updateFilterResults(map, Arrays.asList(child), NO_NODES,
+		    NO_NODES);
+		assertThat(updatedNodes, hasItem(child));
+		assertThat(updatedNodes, hasItem(parent));
+		assertResultsEqualCheckingAllNodes();
+	}
+
+	@Test
+	public void updateDescendantsOfChangedNode() {
+		parent.setText("match");
+		filter.updateFilterResults(map, Arrays.asList(parent), NO_NODES, NO_NODES);
+		assertResultsEqualCheckingAllNodes();
+		parent.setText("parent");
+		filter.updateFilterResults(map, Arrays.asList(parent), NO_NODES, NO_NODES);
+		assertResultsEqualCheckingAllNodes();
+	}
+
+	@Test
+	public void recheckChildrenOfChangedNodeForParentConditions() {
+		filter = new Filter(new ICondition() {
+			public boolean checkNode(final NodeModel node) {
+				final NodeModel parentNode = node.getParentNode();
+				return parentNode != null && parentNode.getText().contains("match");
+			}
+		}, true, false, false);
+		filter.calculateFilterResults(root);
+		parent.setText("match");
+		final Collection<NodeModel> updatedNodes = filter.updateFilterResults(map, Arrays.asList(parent), NO_NODES,
+		    NO_NODES);
+		assertThat(updatedNodes, hasItem(child));
+		assertResultsEqualCheckingAllNodes();
+		root.setText("match");
+		filter.updateFilterResults(map, Arrays.asList(root), NO_NODES, NO_NODES);
+		assertResultsEqualCheckingAllNodes();
+	}
+
+	@Test
+	public void updateChangedRoot() {
+		root.setText("match");
+		filter.updateFilterResults(map, Arrays.asList(root), NO_NODES, NO_NODES);
+		assertResultsEqualCheckingAllNodes();
+	}
+
+	@Test
+	public void checkInsertedBranch() {
+		final NodeModel inserted = new NodeModel("inserted", map);
+		final NodeModel insertedChild = new NodeModel("match", map);
+		inserted.insert(insertedChild, 0);
+		sibling.insert(inserted, 0);
+		filter.updateFilterResults(map, NO_NODES, Arrays.asList(inserted), NO_NODES);
+		assertResultsEqualCheckingAllNodes();
+	}
+
+	@Test
+	public void updateParentsOfRemovedNodes() {
+		child.setText("match");
+		filter.updateFilterResults(map, Arrays.asList(child), NO_NODES, NO_NODES);
+		parent.remove(0);
+		filter.updateFilterResults(map, NO_NODES, NO_NODES, Arrays.asList(parent));
+		assertResultsEqualCheckingAllNodes();
+	}
+
+	@Test
+	public void returnNoNodesIfResultsAreUnchanged() {
+		child.setText("other child");
+		assertThat(filter.updateFilterResults(map, Arrays.asList(child), NO_NODES, NO_NODES).isEmpty(),
+		    equalTo(true));
+	}
+}
@@ -0,0 +1,186 @@
+package org.freeplane.features.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.freeplane.core.io.IAttributeWriter;
+import org.freeplane.core.io.ITreeWriter;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+
+/**
+ * Compares saving a map with 100000 nodes after changing 100 of them
+ * with and without reusing the xml of unchanged nodes, see {@link NodeXmlCache}.
+ * Run as application, it is no unit test.
+ */
+public class IncrementalSaveBenchmark {
+	private static final int NODE_COUNT = 100000;
+	private static final int CHANGED_NODE_COUNT = 100;
+	private static final int ROUNDS = 5;
+
+	private static class PropertiesResourceController extends ResourceController {
+		private final Properties properties;
+
+		PropertiesResourceController(final Properties properties) {
+			this.properties = properties;
+		}
+
+		@Override
+		public String getFreeplaneUserDirectory() {
+			return System.getProperty("java.io.tmpdir");
+		}
+
+		@Override
+		public Properties getProperties() {
+			return properties;
+		}
+
+		@Override
+		public String getProperty(final String key) {
+			return properties.getProperty(key);
+		}
+
+		@Override
+		public void saveProperties() {
+		}
+
+		@Override
+		public void setDefaultProperty(final String key, final String value) {
+			properties.setProperty(key, value);
+		}
+
+		@Override
+		public void setProperty(final String property, final String value) {
+			properties.setProperty(property, value);
+		}
+	}
+
+	/** counts the written characters */
+	private static class CountingWriter extends Writer {
+		long count;
+
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) {
+			count += len;
+		}
+
+		@Override
+		public void write(final String str, final int off, final int len) {
+			count += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final Properties properties = new Properties();
+		final InputStream defaults = IncrementalSaveBenchmark.class.getResourceAsStream(
+		    ResourceController.FREEPLANE_PROPERTIES);
+		try {
+			properties.load(defaults);
+		}
+		finally {
+			defaults.close();
+		}
+		final Controller controller = new Controller(new PropertiesResourceController(properties));
+		Controller.setCurrentController(controller);
+		final ModeController modeController = new ModeController(controller);
+		controller.selectModeForBuild(modeController);
+		final MapController mapController = new MapController(modeController);
+		mapController.getWriteManager().addAttributeWriter(NodeBuilder.XML_NODE, new IAttributeWriter() {
+			public void writeAttributes(final ITreeWriter writer, final Object userObject, final String tag) {
+				writer.addAttribute("TEXT", ((NodeModel) userObject).getText());
+			}
+		});
+		final MapModel map = new MapModel();
+		final List<NodeModel> nodes = createNodes(map);
+		final Random random = new Random(42);
+		properties.setProperty(NodeXmlCache.RESOURCES_INCREMENTAL_SAVE, "true");
+		save(mapController, map);
+		for (int round = 0; round < ROUNDS; round++) {
+			final boolean report = round == ROUNDS - 1;
+			changeNodes(map, nodes, random);
+			final long incrementalSaveLength = run("incremental save", mapController, map, report);
+			properties.setProperty(NodeXmlCache.RESOURCES_INCREMENTAL_SAVE, "false");
+			final long fullSaveLength = run("full save", mapController, map, report);
+			if (fullSaveLength != incrementalSaveLength) {
+				throw new IllegalStateException("different xml: " + fullSaveLength + " / " + incrementalSaveLength);
+			}
+			properties.setProperty(NodeXmlCache.RESOURCES_INCREMENTAL_SAVE, "true");
+			save(mapController, map);
+		}
+	}
+
+	/** changes texts of some nodes and discards their cached xml like the listener installed by NodeXmlCache does */
+	private static void changeNodes(final MapModel map, final List<NodeModel> nodes, final Random random) {
+		final NodeXmlCache cache = map.getExtension(NodeXmlCache.class);
+		for (int i = 0; i < CHANGED_NODE_COUNT; i++) {
+			final NodeModel node = nodes.get(random.nextInt(nodes.size()));
+			node.setText("changed " + random.nextInt(10));
+			cache.invalidate(node);
+		}
+	}
+
+	private static long run(final String name, final MapController mapController, final MapModel map,
+	                        final boolean report) throws IOException {
+		final long allocatedBytes = getAllocatedBytes();
+		final long start = System.nanoTime();
+		final long length = save(mapController, map);
+		final long milliseconds = (System.nanoTime() - start) / 1000000;
+		final long allocatedMegabytes = (getAllocatedBytes() - allocatedBytes) / (1024 * 1024);
+		if (report) {
+			System.out.println(name + ": " + milliseconds + " ms, " + allocatedMegabytes + " MB allocated, "
+			        + length / 1024 + " KB written");
+		}
+		return length;
+	}
+
+	private static long save(final MapController mapController, final MapModel map) throws IOException {
+		final CountingWriter out = new CountingWriter();
+		mapController.getMapWriter().writeMapAsXml(map, out, Mode.FILE, true, false);
+		return out.count;
+	}
+
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread()
+			    .getId());
+		}
+		return 0;
+	}
+
+	/** creates a map of nodes with up to ten children each */
+	private static List<NodeModel> createNodes(final MapModel map) {
+		final List<NodeModel> nodes = new ArrayList<NodeModel>(NODE_COUNT);
+		final NodeModel root = new NodeModel("root", map);
+		map.setRoot(root);
+		nodes.add(root);
+		final Date date = new Date(1380000000000L);
+		for (int parentIndex = 0; nodes.size() < NODE_COUNT; parentIndex++) {
+			final NodeModel parent = nodes.get(parentIndex);
+			for (int i = 0; i < 10 && nodes.size() < NODE_COUNT; i++) {
+				final NodeModel node = new NodeModel("node text " + nodes.size(), map);
+				node.setHistoryInformation(new HistoryInformationModel(date, date));
+				parent.insert(node, i);
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+}
@@ -0,0 +1,99 @@
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class UnparsedChildNodesShould {
+	private MapReader mapReader;
+	private MapModel map;
+
+	@Before
+	public void setup() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ResourceController resourceController = Mockito.mock(ResourceController.class);
+		Mockito.when(controller.getResourceController()).thenReturn(resourceController);
+		Mockito.when(resourceController.getBooleanProperty(NodeBuilder.RESOURCES_LOAD_FOLDED_NODES_LAZILY)).thenReturn(
+		    true);
+		Mockito.when(resourceController.getProperty(Mockito.anyString())).thenReturn(
+		    "load_folding_from_map_default_unfold_all");
+		final ModeController modeController = Mockito.mock(ModeController.class);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		Mockito.when(modeController.getMapController()).thenReturn(Mockito.mock(MapController.class));
+		Controller.setCurrentController(controller);
+		final ReadManager readManager = new ReadManager();
+		mapReader = new MapReader(readManager);
+		readManager.addElementHandler("map", mapReader);
+		map = new MapModel();
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private NodeModel load(final String childNodes) throws Exception {
+		final String xml = "<map><node TEXT=\"root\" ID=\"ID_1\">" //
+		        + "<node TEXT=\"folded\" ID=\"ID_2\" FOLDED=\"true\">" + childNodes + "</node>" //
+		        + "</node></map>";
+		return mapReader.createNodeTreeFromXml(map, new StringReader(xml), Mode.FILE).getChildAt(0);
+	}
+
+	@Test
+	public void keepChildNodesOfFoldedNodeUnparsed() throws Exception {
+		final NodeModel folded = load("<node TEXT=\"first\" ID=\"ID_3\"/><node TEXT=\"second\" ID=\"ID_4\"/>");
+		assertThat(folded.getChildCount(), equalTo(2));
+		assertThat(folded.getParsedChildren().size(), equalTo(0));
+	}
+
+	@Test
+	public void parseChildNodesOnFirstAccess() throws Exception {
+		final NodeModel folded = load("<node TEXT=\"first\" ID=\"ID_3\"/><node TEXT=\"second\" ID=\"ID_4\"/>");
+		assertThat(folded.getChildren().size(), equalTo(2));
+		assertThat(folded.getChildAt(1).getID(), equalTo("ID_4"));
+		assertThat(folded.getUnparsedChildNodes(), nullValue());
+	}
+
+	@Test(timeout = 10000)
+	public void findUnparsedNodesById() throws Exception {
+		final NodeModel folded = load("<node TEXT=\"first\" ID=\"ID_3\">" //
+		        + "<node TEXT=\"nested\" ID=\"ID_5\" FOLDED=\"true\"><node TEXT=\"leaf\" ID=\"ID_6\"/></node>" //
+		        + "</node>");
+		assertThat(map.getNodeForID("ID_6").getParentNode().getID(), equalTo("ID_5"));
+		assertThat(folded.getParsedChildren().size(), equalTo(1));
+	}
+
+	@Test
+	public void ignoreIdsOfRichContent() throws Exception {
+		final NodeModel folded = load("<node TEXT=\"first\" ID=\"ID_3\">" //
+		        + "<richcontent TYPE=\"NOTE\"><html><body><p ID=\"ID_7\">note</p></body></html></richcontent>" //
+		        + "</node>");
+		assertThat(map.getNodeForID("ID_7"), nullValue());
+		assertThat(folded.getParsedChildren().size(), equalTo(0));
+	}
+
+	@Test
+	public void findIdsInSingleQuotedAttributes() throws Exception {
+		load("<node TEXT='first' ID='ID_3'/>");
+		assertThat(map.getNodeForID("ID_3").getParentNode().getID(), equalTo("ID_2"));
+	}
+
+	@Test
+	public void parseChildNodesContainingReferencesWhenReadingIsFinished() throws Exception {
+		final NodeModel folded = load("<node TEXT=\"first\" ID=\"ID_3\"/><node TEXT=\"second\" ID=\"ID_4\" LINK=\"#ID_1\"/>");
+		assertThat(folded.getParsedChildren().size(), equalTo(2));
+		assertThat(folded.getChildAt(0).getID(), equalTo("ID_3"));
+	}
+}
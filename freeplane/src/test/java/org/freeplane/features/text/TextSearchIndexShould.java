@@ -0,0 +1,138 @@
+package org.freeplane.features.text;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.freeplane.features.filter.Filter;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TextSearchIndexShould {
+	private MapModel map;
+	private NodeModel root;
+	private TextController textController;
+
+	@Before
+	public void setup() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ModeController modeController = Mockito.mock(ModeController.class);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		Mockito.when(modeController.getMapController()).thenReturn(Mockito.mock(MapController.class));
+		textController = Mockito.mock(TextController.class);
+		Mockito.when(modeController.getExtension(TextController.class)).thenReturn(textController);
+		Mockito.when(textController.getTransformedObjectNoFormattingNoThrow(Mockito.any(), Mockito.any(NodeModel.class)))
+		    .thenAnswer(new Answer<Object>() {
+			    public Object answer(final InvocationOnMock invocation) throws Throwable {
+				    final Object text = invocation.getArguments()[0];
+				    return text.toString().startsWith("=") ? "formula value" : text;
+			    }
+		    });
+		Controller.setCurrentController(controller);
+		map = new MapModel();
+		root = new NodeModel("root", map);
+		map.setRoot(root);
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private NodeModel addNode(final NodeModel parent, final String text) {
+		final NodeModel node = new NodeModel(text, map);
+		parent.insert(node, parent.getChildCount());
+		return node;
+	}
+
+	private boolean mayContain(final NodeModel node, final String term) {
+		return TextSearchIndex.mayContain(node, TextController.FILTER_NODE, term);
+	}
+
+	@Test
+	public void skipNodesNotContainingTerm() {
+		final NodeModel apple = addNode(root, "Apple pie");
+		final NodeModel banana = addNode(root, "banana");
+		assertThat(mayContain(apple, "PIE"), equalTo(true));
+		assertThat(mayContain(banana, "pie"), equalTo(false));
+	}
+
+	@Test
+	public void checkAllNodesForShortTerms() {
+		final NodeModel banana = addNode(root, "banana");
+		assertThat(mayContain(banana, "pi"), equalTo(true));
+	}
+
+	@Test
+	public void indexChangedNodesAgain() {
+		final NodeModel banana = addNode(root, "banana");
+		assertThat(mayContain(banana, "pie"), equalTo(false));
+		banana.setText("cherry pie");
+		new TextSearchIndex.Updater().nodeChanged(new NodeChangeEvent(banana, NodeModel.NODE_TEXT, "banana",
+		    "cherry pie"));
+		assertThat(mayContain(banana, "pie"), equalTo(true));
+	}
+
+	@Test
+	public void alwaysCheckNodesWithTransformedText() {
+		final NodeModel formula = addNode(root, "=\"pie\"");
+		assertThat(mayContain(formula, "cake"), equalTo(true));
+		assertThat(TextSearchIndex.mayContain(formula, TextController.FILTER_NOTE, "cake"), equalTo(false));
+	}
+
+	private void verifyTransformedTexts(final int count) {
+		Mockito.verify(textController, Mockito.times(count)).getTransformedObjectNoFormattingNoThrow(Mockito.any(),
+		    Mockito.any(NodeModel.class));
+	}
+
+	@Test
+	public void updateOnlySearchedItems() {
+		final NodeModel banana = addNode(root, "banana");
+		mayContain(banana, "pie");
+		verifyTransformedTexts(2);
+		new TextSearchIndex.Updater().nodeChanged(new NodeChangeEvent(banana, NodeModel.NODE_TEXT, "banana",
+		    "banana"));
+		TextSearchIndex.mayContain(banana, TextController.FILTER_NOTE, "pie");
+		verifyTransformedTexts(2);
+		mayContain(banana, "pie");
+		verifyTransformedTexts(3);
+	}
+
+	@Test
+	public void ignoreChangedFilterResults() {
+		final NodeModel banana = addNode(root, "banana");
+		mayContain(banana, "pie");
+		new TextSearchIndex.Updater().nodeChanged(new NodeChangeEvent(banana, Filter.class, null, null));
+		mayContain(banana, "pie");
+		verifyTransformedTexts(2);
+	}
+
+	@Test
+	public void findCandidatesOnceForPreparedSearch() {
+		final NodeModel apple = addNode(root, "apple pie");
+		final NodeModel banana = addNode(root, "banana");
+		TextSearchIndex.prepareSearch(map, TextController.FILTER_NODE, "pie");
+		verifyTransformedTexts(3);
+		assertThat(mayContain(apple, "pie"), equalTo(true));
+		assertThat(mayContain(banana, "pie"), equalTo(false));
+		verifyTransformedTexts(3);
+	}
+
+	@Test
+	public void indexOnlyParsedChildNodes() {
+		final NodeModel folded = Mockito.spy(new NodeModel("folded", map));
+		root.insert(folded, 0);
+		addNode(root, "banana");
+		TextSearchIndex.mayContain(root, TextController.FILTER_NODE, "pie");
+		Mockito.verify(folded, Mockito.never()).getChildren();
+	}
+}
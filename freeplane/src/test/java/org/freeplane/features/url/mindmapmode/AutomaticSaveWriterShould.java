@@ -0,0 +1,94 @@
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.freeplane.features.ui.ViewController;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class AutomaticSaveWriterShould {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File mapFile;
+	private File firstBackup;
+	private File secondBackup;
+	private final AutomaticSaveWriter writer = new AutomaticSaveWriter();
+	private final ViewController viewController = Mockito.mock(ViewController.class);
+
+	@Before
+	public void createBackupFiles() throws Exception {
+		mapFile = new File(folder.getRoot(), "map.mm");
+		firstBackup = MFileManager.createBackupFile(folder.getRoot(), mapFile, 1, DoAutomaticSave.AUTOSAVE_EXTENSION);
+		secondBackup = MFileManager.createBackupFile(folder.getRoot(), mapFile, 2, DoAutomaticSave.AUTOSAVE_EXTENSION);
+		write(firstBackup, "first");
+		write(secondBackup, "second");
+	}
+
+	private void write(final File file, final String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+	}
+
+	private String read(final File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	private AutomaticSaveWriter.Snapshot snapshot(final String content) throws IOException {
+		final AutomaticSaveWriter.Snapshot snapshot = new AutomaticSaveWriter.Snapshot();
+		snapshot.write(content);
+		snapshot.close();
+		return snapshot;
+	}
+
+	@Test
+	public void joinTextOfSnapshot() throws Exception {
+		final AutomaticSaveWriter.Snapshot snapshot = new AutomaticSaveWriter.Snapshot();
+		final char[] longText = new char[100];
+		Arrays.fill(longText, 'x');
+		snapshot.write("<map>");
+		snapshot.write(new String(longText));
+		snapshot.write('<');
+		snapshot.write("/map>");
+		snapshot.close();
+		final StringBuilder text = new StringBuilder();
+		for (final String segment : snapshot.getSegments()) {
+			text.append(segment);
+		}
+		assertThat(text.toString(), equalTo("<map>" + new String(longText) + "</map>"));
+	}
+
+	@Test
+	public void writeSnapshotToLastBackupFile() throws Exception {
+		writer.write(writer.nextSnapshotNumber(), snapshot("third"), folder.getRoot(), mapFile, 2, false,
+		    viewController);
+		assertThat(read(firstBackup), equalTo("second"));
+		assertThat(read(secondBackup), equalTo("third"));
+		assertThat(folder.getRoot().list().length, equalTo(2));
+	}
+
+	@Test
+	public void keepBackupFilesIfSnapshotIsSupersededWhileWriting() throws Exception {
+		final AutomaticSaveWriter.Snapshot supersededSnapshot = new AutomaticSaveWriter.Snapshot() {
+			@Override
+			List<String> getSegments() {
+				writer.nextSnapshotNumber();
+				return super.getSegments();
+			}
+		};
+		supersededSnapshot.write("third");
+		writer.write(writer.nextSnapshotNumber(), supersededSnapshot, folder.getRoot(), mapFile, 2, false,
+		    viewController);
+		assertThat(read(firstBackup), equalTo("first"));
+		assertThat(read(secondBackup), equalTo("second"));
+		assertThat(folder.getRoot().list().length, equalTo(2));
+	}
+}
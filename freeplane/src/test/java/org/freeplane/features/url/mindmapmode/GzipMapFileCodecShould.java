@@ -0,0 +1,50 @@
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.freeplane.core.util.FileUtils;
+import org.junit.Test;
+
+public class GzipMapFileCodecShould {
+	private static final byte[] MAP_CONTENT = "<map version=\"freeplane 1.3.0\"><node TEXT=\"root\"/></map>".getBytes();
+	private final GzipMapFileCodec codec = new GzipMapFileCodec();
+
+	private byte[] encode(byte[] content) throws Exception {
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		final OutputStream out = codec.encode(encoded);
+		out.write(content);
+		out.close();
+		return encoded.toByteArray();
+	}
+
+	@Test
+	public void decodeEncodedContent() throws Exception {
+		final InputStream in = codec.decode(new ByteArrayInputStream(encode(MAP_CONTENT)));
+		final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		FileUtils.copyStream(in, decoded);
+		assertThat(decoded.toByteArray(), equalTo(MAP_CONTENT));
+	}
+
+	@Test
+	public void recognizeEncodedContent() throws Exception {
+		final byte[] encoded = encode(MAP_CONTENT);
+		assertThat(codec.isEncoded(encoded, encoded.length), equalTo(true));
+	}
+
+	@Test
+	public void notRecognizePlainMap() throws Exception {
+		assertThat(codec.isEncoded(MAP_CONTENT, MAP_CONTENT.length), equalTo(false));
+	}
+
+	@Test
+	public void notRecognizeTooShortContent() throws Exception {
+		final byte[] encoded = encode(MAP_CONTENT);
+		assertThat(codec.isEncoded(encoded, 1), equalTo(false));
+	}
+}
@@ -0,0 +1,73 @@
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.freeplane.features.map.MapModel;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapAttachmentFileShould {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File mapFile;
+	private MapAttachmentFile attachmentFile;
+	private String readData;
+
+	private final IMapFileAttachment attachment = new IMapFileAttachment() {
+		public String getExtension() {
+			return "test";
+		}
+
+		public IDataWriter prepareWrite(MapModel map) {
+			return null;
+		}
+
+		public void read(MapModel map, DataInputStream in) throws IOException {
+			readData = in.readUTF();
+		}
+	};
+
+	private final IMapFileAttachment.IDataWriter writer = new IMapFileAttachment.IDataWriter() {
+		public void write(DataOutputStream out) throws IOException {
+			out.writeUTF("data");
+		}
+	};
+
+	@Before
+	public void createMapFile() throws Exception {
+		mapFile = new File(folder.getRoot(), "map.mm");
+		Files.write(mapFile.toPath(), "<map/>".getBytes("UTF-8"));
+		attachmentFile = new MapAttachmentFile(new File(new File(folder.getRoot(), "backup"), "map.mm.test"));
+	}
+
+	@Test
+	public void readWrittenData() throws Exception {
+		attachmentFile.write(writer, mapFile);
+		attachmentFile.read(attachment, null, mapFile);
+		assertThat(readData, equalTo("data"));
+	}
+
+	@Test
+	public void ignoreDataWrittenForOtherMapFileContent() throws Exception {
+		attachmentFile.write(writer, mapFile);
+		Files.write(mapFile.toPath(), "<map><node/></map>".getBytes("UTF-8"));
+		attachmentFile.read(attachment, null, mapFile);
+		assertThat(readData, nullValue());
+	}
+
+	@Test
+	public void readNothingWithoutAttachmentFile() throws Exception {
+		attachmentFile.read(attachment, null, mapFile);
+		assertThat(readData, nullValue());
+	}
+}
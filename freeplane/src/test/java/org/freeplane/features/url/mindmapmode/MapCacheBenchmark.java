@@ -0,0 +1,198 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.zip.CheckedInputStream;
+
+import org.freeplane.core.io.IAttributeHandler;
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.core.io.xml.TreeXmlReader;
+import org.freeplane.core.io.xml.XmlEventRecorder;
+import org.freeplane.n3.nanoxml.XMLElement;
+
+/**
+ * Compares loading a generated map file with 100000 nodes by parsing its xml
+ * and by replaying the xml events stored in its {@link MapCache}.
+ * Both variants read the map file, the cache needs it for the checksum.
+ * Run as application, it is no unit test.
+ */
+public class MapCacheBenchmark {
+	private static final int NODE_COUNT = 100000;
+	private static final int ROUNDS = 5;
+
+	private interface Loader {
+		void load(TreeXmlReader reader) throws Exception;
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final File mapFile = File.createTempFile("MapCacheBenchmark", ".mm");
+		final File cacheFile = new File(mapFile.getPath() + '.' + MapCache.EXTENSION);
+		try {
+			writeMap(mapFile);
+			final MapCache mapCache = new MapCache(cacheFile, "configuration");
+			writeCache(mapFile, mapCache);
+			System.out.println("map size: " + mapFile.length() / 1024 + " KB, cache size: " + cacheFile.length()
+			        / 1024 + " KB");
+			for (int round = 0; round < ROUNDS; round++) {
+				final boolean report = round == ROUNDS - 1;
+				final int parsedNodes = run("xml parser", new Loader() {
+					public void load(final TreeXmlReader reader) throws Exception {
+						final InputStreamReader in = new InputStreamReader(new BufferedInputStream(
+						    new FileInputStream(mapFile)), "UTF-8");
+						try {
+							reader.load(in);
+						}
+						finally {
+							in.close();
+						}
+					}
+				}, report);
+				final int replayedNodes = run("map cache", new Loader() {
+					public void load(final TreeXmlReader reader) throws Exception {
+						final byte[] events = mapCache.read(mapFile, mapFile.lastModified());
+						if (events == null) {
+							throw new IllegalStateException("invalid map cache");
+						}
+						reader.loadRecorded(null, new ByteArrayInputStream(events));
+					}
+				}, report);
+				if (parsedNodes != replayedNodes) {
+					throw new IllegalStateException("different nodes: " + parsedNodes + " / " + replayedNodes);
+				}
+			}
+		}
+		finally {
+			mapFile.delete();
+			cacheFile.delete();
+		}
+	}
+
+	private static int run(final String name, final Loader loader, final boolean report) throws Exception {
+		final int[] nodeCount = new int[1];
+		final TreeXmlReader reader = new TreeXmlReader(createReadManager(nodeCount));
+		final long allocatedBytes = getAllocatedBytes();
+		final long start = System.nanoTime();
+		loader.load(reader);
+		final long milliseconds = (System.nanoTime() - start) / 1000000;
+		final long allocatedMegabytes = (getAllocatedBytes() - allocatedBytes) / (1024 * 1024);
+		if (report) {
+			System.out.println(name + ": " + milliseconds + " ms, " + allocatedMegabytes + " MB allocated, "
+			        + nodeCount[0] + " nodes");
+		}
+		return nodeCount[0];
+	}
+
+	private static void writeCache(final File mapFile, final MapCache mapCache) throws Exception {
+		final TreeXmlReader reader = new TreeXmlReader(createReadManager(new int[1]));
+		final XmlEventRecorder recorder = new XmlEventRecorder();
+		reader.setRecorder(recorder);
+		final CheckedInputStream checkedInput = MapCache.checkContent(new FileInputStream(mapFile));
+		try {
+			reader.load(new InputStreamReader(checkedInput, "UTF-8"));
+			MapCache.skipAll(checkedInput);
+		}
+		finally {
+			checkedInput.close();
+		}
+		mapCache.write(mapFile.length(), mapFile.lastModified(), checkedInput.getChecksum().getValue(), recorder
+		    .toByteArray());
+	}
+
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread()
+			    .getId());
+		}
+		return 0;
+	}
+
+	private static ReadManager createReadManager(final int[] nodeCount) {
+		final ReadManager readManager = new ReadManager();
+		readManager.addElementHandler("map", new IElementDOMHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				return new StringBuilder();
+			}
+
+			public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
+			}
+		});
+		readManager.addElementHandler("node", new IElementDOMHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				nodeCount[0]++;
+				return new StringBuilder();
+			}
+
+			public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
+			}
+		});
+		readManager.addAttributeHandler("node", "TEXT", new IAttributeHandler() {
+			public void setAttribute(final Object node, final String value) {
+				((StringBuilder) node).append(value);
+			}
+		});
+		readManager.addElementHandler("richcontent", new IElementContentHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				return parent;
+			}
+
+			public void endElement(final Object parent, final String tag, final Object node,
+			                       final XMLElement attributes, final String content) {
+				((StringBuilder) node).append(content);
+			}
+		});
+		readManager.addElementHandler("attribute", new IElementDOMHandler() {
+			public Object createElement(final Object parent, final String tag, final XMLElement attributes) {
+				return parent;
+			}
+
+			public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
+				((StringBuilder) element).append(dom.getAttribute("VALUE", null));
+			}
+		});
+		return readManager;
+	}
+
+	/** writes a map of nodes with up to ten children each, some nodes have notes and attributes */
+	private static void writeMap(final File mapFile) throws IOException {
+		final Writer map = new OutputStreamWriter(new FileOutputStream(mapFile), "UTF-8");
+		try {
+			map.write("<map version=\"freeplane 1.3.0\">\n");
+			writeNode(map, new int[1], 0);
+			map.write("</map>\n");
+		}
+		finally {
+			map.close();
+		}
+	}
+
+	private static void writeNode(final Writer map, final int[] nextId, final int depth) throws IOException {
+		final int id = nextId[0]++;
+		map.write("<node TEXT=\"node &amp; text " + id + "\" ID=\"ID_" + id
+		        + "\" CREATED=\"1380000000000\" MODIFIED=\"1380000000000\" POSITION=\"right\">\n");
+		if (id % 10 == 0) {
+			map.write("<richcontent TYPE=\"NOTE\">\n<html>\n  <head>\n\n  </head>\n  <body>\n    <p>\n      note " + id
+			        + "\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+		}
+		if (id % 5 == 0) {
+			map.write("<attribute NAME=\"priority\" VALUE=\"" + id % 3 + "\"/>\n");
+			map.write("<attribute NAME=\"owner\" VALUE=\"somebody\"/>\n");
+		}
+		if (depth < 6) {
+			for (int i = 0; i < 10 && nextId[0] < NODE_COUNT; i++) {
+				writeNode(map, nextId, depth + 1);
+			}
+		}
+		map.write("</node>\n");
+	}
+}
@@ -0,0 +1,124 @@
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CheckedInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapCacheShould {
+	private static final byte[] MAP_CONTENT = "<map version=\"freeplane 1.3.0\"><node TEXT=\"root\"/></map>".getBytes();
+	private static final byte[] EVENTS = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+	private static final long LAST_MODIFIED = 1234567L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File cacheFile;
+	private File mapFile;
+
+	@Before
+	public void writeCache() throws Exception {
+		mapFile = new File(folder.getRoot(), "map.mm");
+		writeMapFile(MAP_CONTENT);
+		cacheFile = new File(folder.getRoot(), "map.mm.cache");
+		final CheckedInputStream checkedContent = MapCache.checkContent(new ByteArrayInputStream(MAP_CONTENT));
+		MapCache.skipAll(checkedContent);
+		new MapCache(cacheFile, "configuration").write(MAP_CONTENT.length, LAST_MODIFIED, checkedContent
+		    .getChecksum().getValue(), EVENTS);
+	}
+
+	private void writeMapFile(final byte[] content) throws IOException {
+		final FileOutputStream out = new FileOutputStream(mapFile);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void returnWrittenEvents() throws Exception {
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED), equalTo(EVENTS));
+	}
+
+	@Test
+	public void ignoreMissingCache() throws Exception {
+		cacheFile.delete();
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED), nullValue());
+	}
+
+	@Test
+	public void ignoreDeletedCache() throws Exception {
+		final MapCache mapCache = new MapCache(cacheFile, "configuration");
+		mapCache.delete();
+		assertThat(cacheFile.exists(), equalTo(false));
+		assertThat(mapCache.read(mapFile, LAST_MODIFIED), nullValue());
+	}
+
+	@Test
+	public void ignoreCacheOfChangedMapContent() throws Exception {
+		final byte[] changedContent = MAP_CONTENT.clone();
+		changedContent[changedContent.length - 10] = 'x';
+		writeMapFile(changedContent);
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED), nullValue());
+	}
+
+	@Test
+	public void ignoreCacheOfChangedModificationTime() throws Exception {
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED + 1), nullValue());
+	}
+
+	@Test
+	public void ignoreCacheOfOtherConfiguration() throws Exception {
+		assertThat(new MapCache(cacheFile, "other configuration").read(mapFile, LAST_MODIFIED), nullValue());
+	}
+
+	@Test
+	public void ignoreCacheWithCorruptedEvents() throws Exception {
+		final RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+		try {
+			file.seek(file.length() - 3);
+			file.write(99);
+		}
+		finally {
+			file.close();
+		}
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED), nullValue());
+	}
+
+	@Test
+	public void ignoreTruncatedCache() throws Exception {
+		final RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+		try {
+			file.setLength(file.length() - 1);
+		}
+		finally {
+			file.close();
+		}
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED), nullValue());
+	}
+
+	@Test
+	public void ignoreCacheWithCorruptedLength() throws Exception {
+		final RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+		try {
+			file.seek(file.length() - EVENTS.length - 12);
+			file.writeInt(Integer.MAX_VALUE);
+		}
+		finally {
+			file.close();
+		}
+		assertThat(new MapCache(cacheFile, "configuration").read(mapFile, LAST_MODIFIED), nullValue());
+	}
+}
@@ -0,0 +1,118 @@
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Compares writing and reading a generated map with 100000 nodes as plain xml file
+ * and as file encoded by {@link GzipMapFileCodec}.
+ * Run as application, it is no unit test.
+ */
+public class MapFileCodecBenchmark {
+	private static final int NODE_COUNT = 100000;
+	private static final int ROUNDS = 5;
+
+	private static class PlainCodec implements IMapFileCodec {
+		public String getExtension() {
+			return "mm";
+		}
+
+		public boolean isEncoded(final byte[] fileStart, final int length) {
+			return true;
+		}
+
+		public InputStream decode(final InputStream in) {
+			return in;
+		}
+
+		public OutputStream encode(final OutputStream out) {
+			return out;
+		}
+	}
+
+	public static void main(final String[] args) throws IOException {
+		final byte[] map = createMap().getBytes("UTF-8");
+		System.out.println("map size: " + map.length / 1024 + " KB");
+		final File file = File.createTempFile("MapFileCodecBenchmark", ".mm");
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				final boolean report = round == ROUNDS - 1;
+				final long plainChecksum = run("plain", new PlainCodec(), map, file, report);
+				final long gzipChecksum = run("gzip", new GzipMapFileCodec(), map, file, report);
+				if (plainChecksum != gzipChecksum) {
+					throw new IllegalStateException("different content: " + plainChecksum + " / " + gzipChecksum);
+				}
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	/** @return checksum of the read content */
+	private static long run(final String name, final IMapFileCodec codec, final byte[] map, final File file,
+	                        final boolean report) throws IOException {
+		final long writeStart = System.nanoTime();
+		final OutputStream out = codec.encode(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.write(map);
+		}
+		finally {
+			out.close();
+		}
+		final long writeMilliseconds = (System.nanoTime() - writeStart) / 1000000;
+		final long readStart = System.nanoTime();
+		final CRC32 checksum = new CRC32();
+		final InputStream in = codec.decode(new FileInputStream(file));
+		try {
+			final byte[] buffer = new byte[8192];
+			for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+				checksum.update(buffer, 0, count);
+			}
+		}
+		finally {
+			in.close();
+		}
+		final long readMilliseconds = (System.nanoTime() - readStart) / 1000000;
+		if (report) {
+			System.out.println(name + ": write " + writeMilliseconds + " ms, read " + readMilliseconds + " ms, "
+			        + file.length() / 1024 + " KB file");
+		}
+		return checksum.getValue();
+	}
+
+	/** creates a map of nodes with up to ten children each, some nodes have notes and attributes */
+	private static String createMap() {
+		final StringBuilder map = new StringBuilder(NODE_COUNT * 200);
+		map.append("<map version=\"freeplane 1.3.0\">\n");
+		appendNode(map, new int[1], 0);
+		map.append("</map>\n");
+		return map.toString();
+	}
+
+	private static void appendNode(final StringBuilder map, final int[] nextId, final int depth) {
+		final int id = nextId[0]++;
+		map.append("<node TEXT=\"node &amp; text ").append(id).append("\" ID=\"ID_").append(id)
+		    .append("\" CREATED=\"1380000000000\" MODIFIED=\"1380000000000\" POSITION=\"right\">\n");
+		if (id % 10 == 0) {
+			map.append("<richcontent TYPE=\"NOTE\">\n<html>\n  <head>\n\n  </head>\n  <body>\n    <p>\n      note ")
+			    .append(id).append("\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+		}
+		if (id % 5 == 0) {
+			map.append("<attribute NAME=\"priority\" VALUE=\"").append(id % 3).append("\"/>\n");
+			map.append("<attribute NAME=\"owner\" VALUE=\"somebody\"/>\n");
+		}
+		if (depth < 6) {
+			for (int i = 0; i < 10 && nextId[0] < NODE_COUNT; i++) {
+				appendNode(map, nextId, depth + 1);
+			}
+		}
+		map.append("</node>\n");
+	}
+}
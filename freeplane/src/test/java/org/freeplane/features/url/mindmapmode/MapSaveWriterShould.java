@@ -0,0 +1,118 @@
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapSaveWriterShould {
+	private static final String ORIGINAL_CONTENT = "<map version=\"freeplane 1.3.0\"><node TEXT=\"original\"/></map>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File mapFile;
+
+	@Before
+	public void createMapFile() throws Exception {
+		mapFile = new File(folder.getRoot(), "map.mm");
+		Files.write(mapFile.toPath(), ORIGINAL_CONTENT.getBytes("UTF-8"));
+	}
+
+	private String readMapFile() throws IOException {
+		return new String(Files.readAllBytes(mapFile.toPath()), "UTF-8");
+	}
+
+	@Test
+	public void replaceMapFileWithWrittenContent() throws Exception {
+		MapSaveWriter.write(mapFile, null, new MapSaveWriter.ContentWriter() {
+			public void write(Writer out) throws IOException {
+				out.write("<map/>");
+			}
+		});
+		assertThat(readMapFile(), equalTo("<map/>"));
+		assertThat(folder.getRoot().list().length, equalTo(1));
+	}
+
+	private void writeEmptyMap(final File file) throws IOException {
+		MapSaveWriter.write(file, null, new MapSaveWriter.ContentWriter() {
+			public void write(Writer out) throws IOException {
+				out.write("<map/>");
+			}
+		});
+	}
+
+	@Test
+	public void keepPermissionsOfMapFile() throws Exception {
+		Assume.assumeTrue(Files.getFileAttributeView(mapFile.toPath(), PosixFileAttributeView.class) != null);
+		Files.setPosixFilePermissions(mapFile.toPath(), PosixFilePermissions.fromString("rw-rw-r--"));
+		writeEmptyMap(mapFile);
+		assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(mapFile.toPath())),
+		    equalTo("rw-rw-r--"));
+	}
+
+	@Test
+	public void writeThroughSymbolicLink() throws Exception {
+		final File link = new File(folder.getRoot(), "link.mm");
+		try {
+			Files.createSymbolicLink(link.toPath(), mapFile.toPath());
+		}
+		catch (final UnsupportedOperationException e) {
+			Assume.assumeNoException(e);
+		}
+		writeEmptyMap(link);
+		assertThat(Files.isSymbolicLink(link.toPath()), equalTo(true));
+		assertThat(readMapFile(), equalTo("<map/>"));
+	}
+
+	@Test
+	public void keepHardLinksOfMapFile() throws Exception {
+		final File link = new File(folder.getRoot(), "link.mm");
+		try {
+			Files.createLink(link.toPath(), mapFile.toPath());
+		}
+		catch (final UnsupportedOperationException e) {
+			Assume.assumeNoException(e);
+		}
+		writeEmptyMap(mapFile);
+		assertThat(new String(Files.readAllBytes(link.toPath()), "UTF-8"), equalTo("<map/>"));
+	}
+
+	@Test
+	public void keepMapFileIfWritingFails() throws Exception {
+		try {
+			MapSaveWriter.write(mapFile, null, new MapSaveWriter.ContentWriter() {
+				public void write(Writer out) throws IOException {
+					out.write("<map>");
+					throw new IOException("disk full");
+				}
+			});
+		}
+		catch (IOException e) {
+		}
+		assertThat(readMapFile(), equalTo(ORIGINAL_CONTENT));
+		assertThat(folder.getRoot().list().length, equalTo(1));
+	}
+
+	@Test
+	public void encodeContentWithGivenCodec() throws Exception {
+		final GzipMapFileCodec codec = new GzipMapFileCodec();
+		MapSaveWriter.write(mapFile, codec, new MapSaveWriter.ContentWriter() {
+			public void write(Writer out) throws IOException {
+				out.write("<map/>");
+			}
+		});
+		final byte[] content = Files.readAllBytes(mapFile.toPath());
+		assertThat(codec.isEncoded(content, content.length), equalTo(true));
+	}
+}
@@ -9,13 +9,16 @@ import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
 import org.freeplane.features.text.TextController;
 import org.freeplane.features.text.mindmapmode.ConditionalContentTransformer;
+import org.freeplane.features.url.mindmapmode.MFileManager;
 import org.freeplane.main.osgi.IModeControllerExtensionProvider;
+import org.freeplane.plugin.script.FormulaResultsAttachment;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
 public class Activator implements BundleActivator {
 	private static final String FORMULA_DISABLE_PLUGIN = "formula_disable_plugin";
 	private static final String FORMULA_DISABLE_CACHING = "formula_disable_caching";
+	private static final String FORMULA_SAVE_RESULTS = "formula_save_results";
 	private static final String MENU_BAR_PARENT_LOCATION = "/menu_bar/extras/first";
 	static final String MENU_BAR_LOCATION = MENU_BAR_PARENT_LOCATION + "/formula";
 	
@@ -47,6 +50,9 @@ public class Activator implements BundleActivator {
 					System.err.println("Formula cache disabled."
 					        + " This might severely impair performance when using formulas.");
 				}
+				else if (ResourceController.getResourceController().getBooleanProperty(FORMULA_SAVE_RESULTS)) {
+					MFileManager.getController(modeController).addMapFileAttachment(new FormulaResultsAttachment());
+				}
 			}
 			else {
 				System.out.println("Formula plugin is disabled");
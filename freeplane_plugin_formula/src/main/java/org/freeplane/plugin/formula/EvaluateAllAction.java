@@ -3,8 +3,11 @@ package org.freeplane.plugin.formula;
 import java.awt.event.ActionEvent;
 
 import org.freeplane.core.ui.AFreeplaneAction;
+import org.freeplane.features.attribute.NodeAttributeTableModel;
 import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
+import org.freeplane.features.text.TextController;
 import org.freeplane.view.swing.map.MapView;
 
 class EvaluateAllAction extends AFreeplaneAction {
@@ -16,8 +19,31 @@ class EvaluateAllAction extends AFreeplaneAction {
 
 	public void actionPerformed(final ActionEvent e) {
 		final MapModel map = Controller.getCurrentController().getMap();
-		org.freeplane.plugin.script.FormulaUtils.clearCache(map);
+		final TextController textController = TextController.getController();
+		// displayed formulas are evaluated in dependency order, so that every formula result is cached before it is used,
+		// formulas of folded branches are evaluated when they are unfolded
+		for (final NodeModel node : org.freeplane.plugin.script.FormulaUtils
+		    .clearCacheAndSortUnfoldedNodesByDependencies(map)) {
+			evaluate(textController, node);
+		}
 		MapView mapView = (MapView)Controller.getCurrentController().getMapViewManager().getMapViewComponent();
 		mapView.getRoot().updateAll();
 	}
+
+	private void evaluate(final TextController textController, final NodeModel node) {
+		if (isFormula(node.getUserObject())) {
+			textController.getTransformedObjectNoThrow(node);
+		}
+		final NodeAttributeTableModel attributes = NodeAttributeTableModel.getModel(node);
+		for (int row = 0; row < attributes.getRowCount(); row++) {
+			final Object value = attributes.getValue(row);
+			if (isFormula(value)) {
+				textController.getTransformedObjectNoThrow(value, node, null);
+			}
+		}
+	}
+
+	private boolean isFormula(final Object value) {
+		return value != null && org.freeplane.plugin.script.FormulaUtils.containsFormulaCheckHTML(value.toString());
+	}
 }
@@ -33,6 +33,7 @@ public class FormulaUpdateChangeListener implements INodeChangeListener, IMapCha
 	}
 
 	public void onNodeDeleted(NodeDeletionEvent nodeDeletionEvent) {
+		FormulaUtils.removeDeletedBranch(nodeDeletionEvent.node);
 		nodeChangedImpl(true, nodeDeletionEvent.parent);
 	}
 
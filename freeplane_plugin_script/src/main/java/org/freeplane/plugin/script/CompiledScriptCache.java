@@ -0,0 +1,354 @@
+package org.freeplane.plugin.script;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.util.FreeplaneVersion;
+import org.freeplane.core.util.LogUtils;
+
+/**
+ * Compiled classes of script files stored in the user directory, so that scripts need not be compiled again
+ * after a restart.
+ *
+ * Entries are looked up by the path of the script file and are only used if the content of the script, the
+ * Freeplane and Groovy versions and the script classpath including the size and modification time of its files
+ * are unchanged, outdated entries are replaced. Entries of deleted scripts are removed by {@link #removeStaleEntries()}.
+ *
+ * Scripts using Grape may depend on other library versions on every run, they are never cached.
+ */
+class CompiledScriptCache {
+	private static final String CACHE_DIR = "compiledscripts";
+	private static final String CLASSES_EXTENSION = ".classes";
+	private static final String DIRECTORY_EXTENSION = ".dir";
+	private static final int FORMAT_VERSION = 1;
+	private static final Pattern GRAPE_USAGE = Pattern.compile("@Grab|@Grapes\\b|\\bGrape\\s*\\.\\s*grab\\b");
+	private static CompiledScriptCache instance;
+
+	static synchronized CompiledScriptCache getInstance() {
+		if (instance == null) {
+			instance = new CompiledScriptCache(new File(ResourceController.getResourceController()
+			    .getFreeplaneUserDirectory(), CACHE_DIR));
+		}
+		return instance;
+	}
+
+	private static class CachedClassLoader extends ClassLoader {
+		private final Map<String, byte[]> classes;
+
+		CachedClassLoader(final ClassLoader parent, final Map<String, byte[]> classes) {
+			super(parent);
+			this.classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(final String name) throws ClassNotFoundException {
+			final byte[] bytes = classes.remove(name);
+			if (bytes == null)
+				throw new ClassNotFoundException(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/** entries of directories list the names of the classes compiled into the directory without their bytes */
+	private static class Entry {
+		final String sourcePath;
+		final String hash;
+		final String mainClassName;
+		final Map<String, byte[]> classes;
+
+		Entry(final String sourcePath, final String hash, final String mainClassName, final Map<String, byte[]> classes) {
+			this.sourcePath = sourcePath;
+			this.hash = hash;
+			this.mainClassName = mainClassName;
+			this.classes = classes;
+		}
+	}
+
+	private final File cacheDir;
+
+	CompiledScriptCache(final File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/** @return the main class of the script, loaded from the cache if the script is unchanged and compiled
+	 * and cached otherwise */
+	synchronized Class<?> loadOrCompile(final File scriptFile, final CompilerConfiguration configuration)
+	        throws IOException {
+		final String sourcePath = scriptFile.getAbsolutePath();
+		final byte[] content = FileUtils.readFileToByteArray(scriptFile);
+		final Entry entry;
+		if (usesGrape(content)) {
+			entry = compile(scriptFile, sourcePath, "", configuration);
+		}
+		else {
+			final String hash = hash(configuration, content);
+			final File cacheFile = getCacheFile(sourcePath, CLASSES_EXTENSION);
+			final Entry cachedEntry = readEntry(cacheFile, true);
+			if (cachedEntry != null && cachedEntry.sourcePath.equals(sourcePath) && cachedEntry.hash.equals(hash)) {
+				entry = cachedEntry;
+			}
+			else {
+				entry = compile(scriptFile, sourcePath, hash, configuration);
+				writeEntry(cacheFile, entry);
+			}
+		}
+		final ClassLoader loader = new CachedClassLoader(new GroovyClassLoader(GroovyScript.class.getClassLoader(),
+		    configuration), entry.classes);
+		try {
+			return loader.loadClass(entry.mainClassName);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private Entry compile(final File scriptFile, final String sourcePath, final String hash,
+	                      final CompilerConfiguration configuration) {
+		final CompilationUnit unit = new CompilationUnit(configuration, null, new GroovyClassLoader(
+		    GroovyScript.class.getClassLoader(), configuration));
+		unit.addSource(scriptFile);
+		unit.compile(Phases.CLASS_GENERATION);
+		final HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+		for (final Object generatedClass : unit.getClasses()) {
+			classes.put(((GroovyClass) generatedClass).getName(), ((GroovyClass) generatedClass).getBytes());
+		}
+		return new Entry(sourcePath, hash, unit.getFirstClassNode().getName(), classes);
+	}
+
+	/** @return true if the files of the directory have been compiled into it with the current configuration
+	 * and the compiled classes still exist */
+	synchronized boolean isCompiled(final File dir, final Collection<File> files,
+	                                final CompilerConfiguration configuration) {
+		final Entry entry = readEntry(getCacheFile(dir.getAbsolutePath(), DIRECTORY_EXTENSION), true);
+		try {
+			return entry != null && entry.sourcePath.equals(dir.getAbsolutePath()) && !entry.classes.isEmpty()
+			        && entry.hash.equals(hash(configuration, files)) && classFilesExist(dir, entry.classes.keySet());
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	private boolean classFilesExist(final File dir, final Collection<String> classNames) {
+		for (final String className : classNames) {
+			if (!new File(dir, className.replace('.', File.separatorChar) + ".class").isFile())
+				return false;
+		}
+		return true;
+	}
+
+	/** records that the files of the directory have been compiled into it with the given configuration.
+	 * Directories containing scripts which use Grape are never recorded. */
+	synchronized void setCompiled(final File dir, final Collection<File> files, final Collection<String> classNames,
+	                              final CompilerConfiguration configuration) {
+		try {
+			if (usesGrape(files))
+				return;
+			final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+			for (final String className : classNames) {
+				classes.put(className, new byte[0]);
+			}
+			writeEntry(getCacheFile(dir.getAbsolutePath(), DIRECTORY_EXTENSION), new Entry(dir.getAbsolutePath(),
+			    hash(configuration, files), "", classes));
+		}
+		catch (IOException e) {
+			LogUtils.warn("can not record compilation of " + dir, e);
+		}
+	}
+
+	private boolean usesGrape(final Collection<File> files) throws IOException {
+		for (final File file : files) {
+			if (usesGrape(FileUtils.readFileToByteArray(file)))
+				return true;
+		}
+		return false;
+	}
+
+	/** Grape resolves dependencies when the script is compiled, so the compiled classes must not be reused */
+	private boolean usesGrape(final byte[] content) {
+		try {
+			return GRAPE_USAGE.matcher(new String(content, "UTF-8")).find();
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/** removes entries of deleted scripts or directories and entries which can not be read */
+	synchronized void removeStaleEntries() {
+		final File[] cacheFiles = cacheDir.listFiles();
+		if (cacheFiles == null)
+			return;
+		for (final File cacheFile : cacheFiles) {
+			final Entry entry = readEntry(cacheFile, false);
+			if (entry == null || !new File(entry.sourcePath).exists()) {
+				cacheFile.delete();
+			}
+		}
+	}
+
+	private File getCacheFile(final String sourcePath, final String extension) {
+		return new File(cacheDir, toHex(digest().digest(toBytes(sourcePath))) + extension);
+	}
+
+	/** @return the entry or null if it does not exist or can not be read */
+	private Entry readEntry(final File cacheFile, final boolean readClasses) {
+		if (!cacheFile.isFile())
+			return null;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			if (in.readInt() != FORMAT_VERSION)
+				return null;
+			final String sourcePath = in.readUTF();
+			final String hash = in.readUTF();
+			final String mainClassName = in.readUTF();
+			final HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+			if (readClasses) {
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final String name = in.readUTF();
+					final byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					classes.put(name, bytes);
+				}
+			}
+			return new Entry(sourcePath, hash, mainClassName, classes);
+		}
+		catch (IOException e) {
+			LogUtils.warn("can not read compiled script " + cacheFile, e);
+			return null;
+		}
+		finally {
+			close(in);
+		}
+	}
+
+	private void writeEntry(final File cacheFile, final Entry entry) {
+		final File tempFile = new File(cacheDir, cacheFile.getName() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			cacheDir.mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(entry.sourcePath);
+			out.writeUTF(entry.hash);
+			out.writeUTF(entry.mainClassName);
+			out.writeInt(entry.classes.size());
+			for (final Map.Entry<String, byte[]> compiledClass : entry.classes.entrySet()) {
+				out.writeUTF(compiledClass.getKey());
+				out.writeInt(compiledClass.getValue().length);
+				out.write(compiledClass.getValue());
+			}
+			out.close();
+			out = null;
+			cacheFile.delete();
+			if (!tempFile.renameTo(cacheFile))
+				throw new IOException("can not rename " + tempFile + " to " + cacheFile);
+		}
+		catch (IOException e) {
+			LogUtils.warn("can not store compiled script " + entry.sourcePath, e);
+			tempFile.delete();
+		}
+		finally {
+			close(out);
+		}
+	}
+
+	private void close(final Closeable stream) {
+		if (stream == null)
+			return;
+		try {
+			stream.close();
+		}
+		catch (IOException e) {
+		}
+	}
+
+	private String hash(final CompilerConfiguration configuration, final byte[] content) {
+		final MessageDigest digest = digest();
+		digest.update(toBytes(getCompilationKey(configuration)));
+		digest.update(content);
+		return toHex(digest.digest());
+	}
+
+	private String hash(final CompilerConfiguration configuration, final Collection<File> files) throws IOException {
+		final ArrayList<File> sortedFiles = new ArrayList<File>(files);
+		Collections.sort(sortedFiles);
+		final MessageDigest digest = digest();
+		digest.update(toBytes(getCompilationKey(configuration)));
+		for (final File file : sortedFiles) {
+			digest.update(toBytes(file.getAbsolutePath()));
+			digest.update(FileUtils.readFileToByteArray(file));
+		}
+		return toHex(digest.digest());
+	}
+
+	/** everything besides the script content which changes the compiled classes */
+	private String getCompilationKey(final CompilerConfiguration configuration) {
+		final List<String> classpath = configuration.getClasspath();
+		final StringBuilder key = new StringBuilder();
+		key.append(FreeplaneVersion.getVersion()).append('\n').append(GroovySystem.getVersion()).append('\n')
+		    .append(configuration.getScriptBaseClass());
+		for (final String classpathEntry : classpath) {
+			key.append('\n').append(classpathEntry);
+			// directories are skipped: script directories are on the classpath and receive the compiled classes
+			final File file = new File(classpathEntry);
+			if (file.isFile())
+				key.append(' ').append(file.length()).append(' ').append(file.lastModified());
+		}
+		return key.toString();
+	}
+
+	private MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private byte[] toBytes(final String string) {
+		try {
+			return string.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private String toHex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
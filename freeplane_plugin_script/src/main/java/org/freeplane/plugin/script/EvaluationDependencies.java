@@ -1,70 +1,317 @@
 package org.freeplane.plugin.script;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.util.HtmlUtils;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 
+/**
+ * Graph of formula nodes and the nodes they accessed when they were evaluated.
+ *
+ * Dependent formula nodes are indexed by the accessed node or by the root of the accessed branch.
+ * A change of a node affects the formulas registered for the node itself and for the branches of its ancestors,
+ * so the affected formulas are found by walking the ancestor path instead of scanning all branch dependencies.
+ */
 public class EvaluationDependencies implements IExtension{
 	public enum Access {
 		NODE, BRANCH, ALL
 	}
 
-	private HashMap<NodeModel, HashSet<NodeModel>> onNodeDependencies = new HashMap<NodeModel, HashSet<NodeModel>>();
-	// FIXME: organize node and branch dependencies in a tree?
-	private HashMap<NodeModel, HashSet<NodeModel>> onBranchDependencies = new HashMap<NodeModel, HashSet<NodeModel>>();
-	private HashSet<NodeModel> onAnyNodeDependencies = new HashSet<NodeModel>();
+	/** formula nodes by accessed node */
+	private final HashMap<NodeModel, HashSet<NodeModel>> onNodeDependencies = new HashMap<NodeModel, HashSet<NodeModel>>();
+	/** formula nodes by root of accessed branch */
+	private final HashMap<NodeModel, HashSet<NodeModel>> onBranchDependencies = new HashMap<NodeModel, HashSet<NodeModel>>();
+	private final HashSet<NodeModel> onAnyNodeDependencies = new HashSet<NodeModel>();
+	/** accessed nodes and branch roots by formula node, needed to remove outdated dependencies */
+	private final HashMap<NodeModel, HashSet<NodeModel>> accessedNodes = new HashMap<NodeModel, HashSet<NodeModel>>();
+	private final HashMap<NodeModel, HashSet<NodeModel>> accessedBranches = new HashMap<NodeModel, HashSet<NodeModel>>();
+	/** dependencies read from a file given by node ids. Ids are only resolved for formula nodes affected by a change,
+	 * so that loading and saving them does not create the nodes of lazily loaded branches. */
+	private final HashMap<String, HashSet<String>> storedOnNodeDependencies = new HashMap<String, HashSet<String>>();
+	private final HashMap<String, HashSet<String>> storedOnBranchDependencies = new HashMap<String, HashSet<String>>();
+	private final HashMap<String, HashSet<String>> storedAccessedNodes = new HashMap<String, HashSet<String>>();
+	private final HashMap<String, HashSet<String>> storedAccessedBranches = new HashMap<String, HashSet<String>>();
 
-	public Set<NodeModel> getDependencies(Set<NodeModel> result, final NodeModel node) {
-		final HashSet<NodeModel> onNode = onNodeDependencies.get(node);
-		if (onNode != null)
-			addRecursively(result, onNode);
-		for (Entry<NodeModel, HashSet<NodeModel>> entry : onBranchDependencies.entrySet()) {
-			if (node.isDescendantOf(entry.getKey()))
-				addRecursively(result, entry.getValue());
+	/** adds dependencies of a formula node stored by {@link #getAccessedIds(MapModel, String, Collection, Collection)} */
+	public void addStoredDependencies(String formulaNodeId, Collection<String> accessedNodeIds,
+	                                  Collection<String> accessedBranchIds) {
+		for (final String id : accessedNodeIds) {
+			if (!id.equals(formulaNodeId)) {
+				getDependencySet(id, storedOnNodeDependencies).add(formulaNodeId);
+				getDependencySet(formulaNodeId, storedAccessedNodes).add(id);
+			}
+		}
+		for (final String id : accessedBranchIds) {
+			getDependencySet(id, storedOnBranchDependencies).add(formulaNodeId);
+			getDependencySet(formulaNodeId, storedAccessedBranches).add(id);
+		}
+	}
+
+	/**
+	 * Finds all formula nodes depending directly or indirectly on the changed nodes.
+	 * @param branchesChanged true if nodes were inserted into or removed from the branches of the changed nodes
+	 * @return dependent formula nodes ordered so that every node comes after the nodes it depends on.
+	 *         Nodes on dependency cycles can not be ordered, they come last and the cycles are reported
+	 *         as circular references.
+	 */
+	public List<NodeModel> getDependencies(final Collection<NodeModel> changedNodes, final boolean branchesChanged) {
+		final TopologicalSort sort = new TopologicalSort(changedNodes);
+		for (final NodeModel node : changedNodes) {
+			sort.visitDependents(node, branchesChanged);
 		}
-		addRecursively(result, onAnyNodeDependencies);
-//		System.out.println("dependencies on(" + node + "): " + result);
-		return result;
+		return sort.getResult();
 	}
 
-	private void addRecursively(Set<NodeModel> dependentNodes, final HashSet<NodeModel> nodesToAdd) {
-		for (NodeModel node : nodesToAdd) {
-			// avoid loops
-			if (dependentNodes.add(node))
-				dependentNodes.addAll(getDependencies(dependentNodes, node));
+	/**
+	 * Orders nodes for evaluation, e.g. of all formulas of a map.
+	 * @return the given nodes and their dependent formula nodes ordered so that every node comes after the nodes
+	 *         it depended on in its last evaluation. Nodes on dependency cycles can not be ordered, they come last
+	 *         and the cycles are reported as circular references.
+	 */
+	public List<NodeModel> sortByDependencies(final Collection<NodeModel> nodes) {
+		final TopologicalSort sort = new TopologicalSort(Collections.<NodeModel> emptySet());
+		for (final NodeModel node : nodes) {
+			sort.visit(node);
+		}
+		return sort.getResult();
+	}
+
+	/** depth first search on the dependents, the reverse post order is a topological order */
+	private class TopologicalSort {
+		private final HashSet<NodeModel> visited = new HashSet<NodeModel>();
+		private final HashSet<NodeModel> onPath = new HashSet<NodeModel>();
+		private final ArrayList<NodeModel> postOrder = new ArrayList<NodeModel>();
+		private final LinkedHashSet<NodeModel> nodesOnCycles = new LinkedHashSet<NodeModel>();
+		/** dependencies of changed formulas are outdated, cycles containing them are ignored */
+		private final HashSet<NodeModel> changedNodes;
+
+		TopologicalSort(final Collection<NodeModel> changedNodes) {
+			this.changedNodes = new HashSet<NodeModel>(changedNodes);
+		}
+
+		void visitDependents(final NodeModel changedNode, final boolean branchChanged) {
+			final ArrayList<NodeModel> path = new ArrayList<NodeModel>();
+			final ArrayList<Iterator<NodeModel>> pathDependents = new ArrayList<Iterator<NodeModel>>();
+			pathDependents.add(getDirectDependents(changedNode, branchChanged).iterator());
+			traverse(path, pathDependents);
+		}
+
+		void visit(final NodeModel node) {
+			if (!visited.add(node)) {
+				return;
+			}
+			final ArrayList<NodeModel> path = new ArrayList<NodeModel>();
+			final ArrayList<Iterator<NodeModel>> pathDependents = new ArrayList<Iterator<NodeModel>>();
+			path.add(node);
+			onPath.add(node);
+			pathDependents.add(getDirectDependents(node, false).iterator());
+			traverse(path, pathDependents);
+		}
+
+		private void traverse(final ArrayList<NodeModel> path, final ArrayList<Iterator<NodeModel>> pathDependents) {
+			while (!pathDependents.isEmpty()) {
+				final Iterator<NodeModel> dependents = pathDependents.get(pathDependents.size() - 1);
+				if (!dependents.hasNext()) {
+					pathDependents.remove(pathDependents.size() - 1);
+					if (!path.isEmpty()) {
+						final NodeModel node = path.remove(path.size() - 1);
+						onPath.remove(node);
+						postOrder.add(node);
+					}
+					continue;
+				}
+				final NodeModel dependent = dependents.next();
+				if (onPath.contains(dependent)) {
+					final List<NodeModel> cycle = path.subList(path.indexOf(dependent), path.size());
+					if (Collections.disjoint(cycle, changedNodes)) {
+						nodesOnCycles.addAll(cycle);
+						reportCircularReference(cycle);
+					}
+				}
+				else if (visited.add(dependent)) {
+					path.add(dependent);
+					onPath.add(dependent);
+					pathDependents.add(getDirectDependents(dependent, false).iterator());
+				}
+			}
+		}
+
+		List<NodeModel> getResult() {
+			final ArrayList<NodeModel> result = new ArrayList<NodeModel>(postOrder.size());
+			for (int i = postOrder.size() - 1; i >= 0; i--) {
+				final NodeModel node = postOrder.get(i);
+				if (!nodesOnCycles.contains(node)) {
+					result.add(node);
+				}
+			}
+			result.addAll(nodesOnCycles);
+			return result;
+		}
+	}
+
+	/** the formula of every node on the cycle depends on the formula of the previous one */
+	private void reportCircularReference(final List<NodeModel> cycle) {
+		final StringBuilder trace = new StringBuilder();
+		for (final NodeModel node : cycle) {
+			trace.append("\n -> ").append(node.createID()).append(' ')
+			    .append(HtmlUtils.htmlToPlain(node.getText()).replaceAll("\\s+", " "));
+		}
+		LogUtils.warn(TextUtils.format("formula.error.circularReference", HtmlUtils.htmlToPlain(cycle.get(0).getText()))
+		        + " Traceback:" + trace);
+	}
+
+	private Set<NodeModel> getDirectDependents(final NodeModel node, final boolean branchChanged) {
+		final LinkedHashSet<NodeModel> dependents = new LinkedHashSet<NodeModel>();
+		addAll(dependents, onNodeDependencies.get(node));
+		if (branchChanged) {
+			addAll(dependents, onBranchDependencies.get(node));
+		}
+		for (NodeModel ancestor = node.getParentNode(); ancestor != null; ancestor = ancestor.getParentNode()) {
+			addAll(dependents, onBranchDependencies.get(ancestor));
+		}
+		dependents.addAll(onAnyNodeDependencies);
+		if (!storedAccessedNodes.isEmpty() || !storedAccessedBranches.isEmpty()) {
+			addStoredDependents(dependents, node, branchChanged);
+		}
+		dependents.remove(node);
+		return dependents;
+	}
+
+	private void addAll(final Set<NodeModel> dependents, final Set<NodeModel> nodes) {
+		if (nodes != null) {
+			dependents.addAll(nodes);
+		}
+	}
+
+	/** the affected formula nodes are evaluated again, so they are parsed if they are still kept unparsed */
+	private void addStoredDependents(final Set<NodeModel> dependents, final NodeModel node, final boolean branchChanged) {
+		final MapModel map = node.getMap();
+		addStoredDependents(dependents, map, storedOnNodeDependencies.get(node.getID()));
+		if (branchChanged) {
+			addStoredDependents(dependents, map, storedOnBranchDependencies.get(node.getID()));
+		}
+		for (NodeModel ancestor = node.getParentNode(); ancestor != null; ancestor = ancestor.getParentNode()) {
+			addStoredDependents(dependents, map, storedOnBranchDependencies.get(ancestor.getID()));
+		}
+	}
+
+	private void addStoredDependents(final Set<NodeModel> dependents, final MapModel map, final Set<String> ids) {
+		if (ids == null) {
+			return;
+		}
+		for (final String id : ids) {
+			final NodeModel formulaNode = map.getNodeForID(id);
+			if (formulaNode != null) {
+				dependents.add(formulaNode);
+			}
 		}
 	}
 
 	/** accessedNode was accessed when formulaNode was evaluated. */
 	public void accessNode(NodeModel formulaNode, NodeModel accessedNode) {
-		// FIXME: check if accessedNode is already covered by other accessModes
-		getDependencySet(accessedNode, onNodeDependencies).add(formulaNode);
-//		System.out.println(formulaNode + " accesses " + accessedNode + ". current dependencies:\n" + this);
+		if (formulaNode != accessedNode) {
+			getDependencySet(accessedNode, onNodeDependencies).add(formulaNode);
+			getDependencySet(formulaNode, accessedNodes).add(accessedNode);
+		}
 	}
 
 	/** accessedNode.children was accessed when formulaNode was evaluated. */
 	public void accessBranch(NodeModel formulaNode, NodeModel accessedNode) {
-		// FIXME: check if accessedNode is already covered by other accessModes
 		getDependencySet(accessedNode, onBranchDependencies).add(formulaNode);
-//		System.out.println(formulaNode + " accesses branch of " + accessedNode + ". current dependencies:\n" + this);
+		getDependencySet(formulaNode, accessedBranches).add(accessedNode);
 	}
 
 	/** a method was used on the formulaNode that may use any node in the map. */
 	public void accessAll(NodeModel formulaNode) {
-		// FIXME: check if accessedNode is already covered by other accessModes
 		onAnyNodeDependencies.add(formulaNode);
-//		System.out.println(formulaNode + " accesses all nodes. current dependencies:\n" + this);
 	}
 
-	private HashSet<NodeModel> getDependencySet(final NodeModel accessedNode,
-	                                            final HashMap<NodeModel, HashSet<NodeModel>> dependenciesMap) {
-		HashSet<NodeModel> set = dependenciesMap.get(accessedNode);
+	/**
+	 * Collects the ids of the nodes and branch roots accessed by the last evaluation of the formula node.
+	 * The formula node is only looked up if it is parsed already.
+	 * @return false if the dependencies can not be given by ids, e.g. if the formula may access any node
+	 *         or accessed nodes of another map
+	 */
+	public boolean getAccessedIds(MapModel map, String formulaNodeId, Collection<String> accessedNodeIds,
+	                              Collection<String> accessedBranchIds) {
+		addAll(accessedNodeIds, storedAccessedNodes.get(formulaNodeId));
+		addAll(accessedBranchIds, storedAccessedBranches.get(formulaNodeId));
+		final NodeModel formulaNode = map.getParsedNodeForID(formulaNodeId);
+		if (formulaNode == null) {
+			return true;
+		}
+		return !onAnyNodeDependencies.contains(formulaNode)
+		        && addIds(map, accessedNodeIds, accessedNodes.get(formulaNode))
+		        && addIds(map, accessedBranchIds, accessedBranches.get(formulaNode));
+	}
+
+	private void addAll(final Collection<String> ids, final Set<String> storedIds) {
+		if (storedIds != null) {
+			ids.addAll(storedIds);
+		}
+	}
+
+	private boolean addIds(MapModel map, Collection<String> ids, Collection<NodeModel> nodes) {
+		if (nodes == null) {
+			return true;
+		}
+		for (NodeModel node : nodes) {
+			final String id = node.getID();
+			if (id == null || node.getMap() != map) {
+				return false;
+			}
+			ids.add(id);
+		}
+		return true;
+	}
+
+	/** removes the dependencies of a formula node whose value has to be evaluated again.
+	 * They are registered again by the evaluation. */
+	public void removeDependencies(NodeModel formulaNode) {
+		removeDependencies(formulaNode, accessedNodes, onNodeDependencies);
+		removeDependencies(formulaNode, accessedBranches, onBranchDependencies);
+		onAnyNodeDependencies.remove(formulaNode);
+		final String id = formulaNode.getID();
+		if (id != null) {
+			removeDependencies(id, storedAccessedNodes, storedOnNodeDependencies);
+			removeDependencies(id, storedAccessedBranches, storedOnBranchDependencies);
+		}
+	}
+
+	private <T> void removeDependencies(final T formulaNode, final HashMap<T, HashSet<T>> accessedByFormulaNode,
+	                                    final HashMap<T, HashSet<T>> dependenciesMap) {
+		final HashSet<T> accessed = accessedByFormulaNode.remove(formulaNode);
+		if (accessed == null) {
+			return;
+		}
+		for (final T accessedNode : accessed) {
+			final HashSet<T> dependencies = dependenciesMap.get(accessedNode);
+			if (dependencies != null) {
+				dependencies.remove(formulaNode);
+				if (dependencies.isEmpty()) {
+					dependenciesMap.remove(accessedNode);
+				}
+			}
+		}
+	}
+
+	private <T> HashSet<T> getDependencySet(final T accessedNode, final HashMap<T, HashSet<T>> dependenciesMap) {
+		HashSet<T> set = dependenciesMap.get(accessedNode);
 		if (set == null) {
-			set = new HashSet<NodeModel>();
+			set = new HashSet<T>();
 			dependenciesMap.put(accessedNode, set);
 		}
 		return set;
@@ -6,6 +6,7 @@ import org.freeplane.core.ui.AFreeplaneAction;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.mindmapmode.MModeController;
 
 public class ExecuteScriptForAllNodes extends AFreeplaneAction {
 	private static final long serialVersionUID = 1L;
@@ -18,7 +19,10 @@ public class ExecuteScriptForAllNodes extends AFreeplaneAction {
 		final NodeModel node = Controller.getCurrentController().getMap().getRootNode();
 		Controller.getCurrentController().getViewController().setWaitingCursor(true);
 		try {
-			ScriptingEngine.performScriptOperationRecursive(node);
+			final ScriptBatchExecutor executor = new ScriptBatchExecutor(
+			    (MModeController) Controller.getCurrentModeController());
+			executor.addBranch(node);
+			executor.execute();
 		}
         catch (ExecuteScriptException ex) {
 			 LogUtils.warn(ex);
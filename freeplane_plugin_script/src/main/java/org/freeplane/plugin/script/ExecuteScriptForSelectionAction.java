@@ -6,10 +6,11 @@ import org.freeplane.core.ui.AMultipleNodeAction;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.mindmapmode.MModeController;
 
 public class ExecuteScriptForSelectionAction extends AMultipleNodeAction {
 	private static final long serialVersionUID = 1L;
-	private boolean success;
+	private ScriptBatchExecutor executor;
 
 	public ExecuteScriptForSelectionAction() {
 		super("ExecuteScriptForSelectionAction");
@@ -17,28 +18,24 @@ public class ExecuteScriptForSelectionAction extends AMultipleNodeAction {
 
 	@Override
 	public void actionPerformed(final ActionEvent e) {
-		success = true;
+		executor = new ScriptBatchExecutor((MModeController) Controller.getCurrentModeController());
 		Controller.getCurrentController().getViewController().setWaitingCursor(true);
 		try {
 			super.actionPerformed(e);
+			executor.execute();
+		}
+		catch (ExecuteScriptException ex) {
+			LogUtils.warn(ex);
+			ScriptingEngine.showScriptExceptionErrorMessage(ex);
 		}
 		finally {
+			executor = null;
 			Controller.getCurrentController().getViewController().setWaitingCursor(false);
 		}
 	}
 
 	@Override
 	protected void actionPerformed(final ActionEvent e, final NodeModel node) {
-		if (!success) {
-			return;
-		}
-		try {
-	        ScriptingEngine.performScriptOperation(node);
-        }
-        catch (ExecuteScriptException ex) {
-			LogUtils.warn(ex);
-			ScriptingEngine.showScriptExceptionErrorMessage(ex);
-			success = false;
-        }
+		executor.addNode(node);
 	}
 }
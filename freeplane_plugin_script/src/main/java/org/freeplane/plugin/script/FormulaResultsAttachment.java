@@ -0,0 +1,230 @@
+package org.freeplane.plugin.script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.url.mindmapmode.IMapFileAttachment;
+import org.freeplane.plugin.script.proxy.FormulaCache;
+
+/**
+ * Stores the cached formula values of a map together with their dependencies when the map is saved,
+ * so that the formulas need not be evaluated again after the map is loaded.
+ *
+ * Formulas which may access any node, e.g. by <code>c.find</code>, and values of types other than
+ * strings, numbers, booleans and dates are not stored. The loaded dependencies invalidate the loaded values
+ * on changes like the dependencies of evaluated formulas do.
+ */
+public class FormulaResultsAttachment implements IMapFileAttachment {
+	public static final String EXTENSION = "formulas";
+	private static final int FORMAT_VERSION = 1;
+	// writeUTF can not write longer strings
+	private static final int MAX_STRING_LENGTH = 65535 / 3;
+	private static final byte STRING = 'S';
+	private static final byte INTEGER = 'I';
+	private static final byte LONG = 'L';
+	private static final byte DOUBLE = 'D';
+	private static final byte BIG_DECIMAL = 'B';
+	private static final byte BIG_INTEGER = 'G';
+	private static final byte BOOLEAN = 'Z';
+	private static final byte DATE = 'T';
+
+	private static class StoredFormulaNode {
+		final String nodeId;
+		final Set<String> accessedNodeIds = new LinkedHashSet<String>();
+		final Set<String> accessedBranchIds = new LinkedHashSet<String>();
+		final List<String> texts = new ArrayList<String>();
+		final List<Object> values = new ArrayList<Object>();
+
+		StoredFormulaNode(String nodeId) {
+			this.nodeId = nodeId;
+		}
+	}
+
+	public String getExtension() {
+		return EXTENSION;
+	}
+
+	public IDataWriter prepareWrite(MapModel map) {
+		final FormulaCache formulaCache = (FormulaCache) map.getExtension(FormulaCache.class);
+		final EvaluationDependencies dependencies = (EvaluationDependencies) map
+		    .getExtension(EvaluationDependencies.class);
+		if (formulaCache == null || dependencies == null) {
+			return null;
+		}
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(data);
+		try {
+			final ArrayList<StoredFormulaNode> formulaNodes = new ArrayList<StoredFormulaNode>();
+			for (Entry<String, Map<String, Object>> nodeValues : formulaCache.getValuesByNodeId().entrySet()) {
+				final StoredFormulaNode formulaNode = createStoredFormulaNode(map, dependencies, nodeValues.getKey(),
+				    nodeValues.getValue());
+				if (formulaNode != null) {
+					formulaNodes.add(formulaNode);
+				}
+			}
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(formulaNodes.size());
+			for (StoredFormulaNode formulaNode : formulaNodes) {
+				out.writeUTF(formulaNode.nodeId);
+				writeIds(out, formulaNode.accessedNodeIds);
+				writeIds(out, formulaNode.accessedBranchIds);
+				out.writeInt(formulaNode.texts.size());
+				for (int i = 0; i < formulaNode.texts.size(); i++) {
+					out.writeUTF(formulaNode.texts.get(i));
+					writeValue(out, formulaNode.values.get(i));
+				}
+			}
+			out.close();
+		}
+		catch (IOException e) {
+			LogUtils.severe(e);
+			return null;
+		}
+		final byte[] bytes = data.toByteArray();
+		return new IDataWriter() {
+			public void write(DataOutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	/** dependencies are written as ids, nodes of lazily loaded branches are not created for them */
+	private StoredFormulaNode createStoredFormulaNode(MapModel map, EvaluationDependencies dependencies,
+	                                                  String nodeId, Map<String, Object> values) {
+		final StoredFormulaNode formulaNode = new StoredFormulaNode(nodeId);
+		if (!dependencies.getAccessedIds(map, nodeId, formulaNode.accessedNodeIds, formulaNode.accessedBranchIds)) {
+			return null;
+		}
+		for (Entry<String, Object> entry : values.entrySet()) {
+			if (entry.getKey().length() <= MAX_STRING_LENGTH && isStorable(entry.getValue())) {
+				formulaNode.texts.add(entry.getKey());
+				formulaNode.values.add(entry.getValue());
+			}
+		}
+		return formulaNode.texts.isEmpty() ? null : formulaNode;
+	}
+
+	private boolean isStorable(Object value) {
+		if (value instanceof String) {
+			return ((String) value).length() <= MAX_STRING_LENGTH;
+		}
+		return value instanceof Integer || value instanceof Long || value instanceof Double
+		        || value instanceof BigDecimal || value instanceof BigInteger || value instanceof Boolean
+		        || value != null && value.getClass() == Date.class;
+	}
+
+	private void writeIds(DataOutputStream out, Collection<String> ids) throws IOException {
+		out.writeInt(ids.size());
+		for (String id : ids) {
+			out.writeUTF(id);
+		}
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value instanceof String) {
+			out.writeByte(STRING);
+			out.writeUTF((String) value);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		}
+		else if (value instanceof BigDecimal) {
+			out.writeByte(BIG_DECIMAL);
+			out.writeUTF(value.toString());
+		}
+		else if (value instanceof BigInteger) {
+			out.writeByte(BIG_INTEGER);
+			out.writeUTF(value.toString());
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		}
+		else {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		}
+	}
+
+	public void read(MapModel map, DataInputStream in) throws IOException {
+		if (in.readInt() != FORMAT_VERSION) {
+			return;
+		}
+		final int count = in.readInt();
+		final ArrayList<StoredFormulaNode> formulaNodes = new ArrayList<StoredFormulaNode>();
+		for (int i = 0; i < count; i++) {
+			final StoredFormulaNode formulaNode = new StoredFormulaNode(in.readUTF());
+			readIds(in, formulaNode.accessedNodeIds);
+			readIds(in, formulaNode.accessedBranchIds);
+			final int valueCount = in.readInt();
+			for (int j = 0; j < valueCount; j++) {
+				formulaNode.texts.add(in.readUTF());
+				formulaNode.values.add(readValue(in));
+			}
+			formulaNodes.add(formulaNode);
+		}
+		final FormulaCache formulaCache = FormulaUtils.getFormulaCache(map);
+		final EvaluationDependencies dependencies = FormulaUtils.getEvaluationDependencies(map);
+		for (StoredFormulaNode formulaNode : formulaNodes) {
+			for (int i = 0; i < formulaNode.texts.size(); i++) {
+				formulaCache.put(formulaNode.nodeId, formulaNode.texts.get(i), formulaNode.values.get(i));
+			}
+			dependencies.addStoredDependencies(formulaNode.nodeId, formulaNode.accessedNodeIds,
+			    formulaNode.accessedBranchIds);
+		}
+	}
+
+	private void readIds(DataInputStream in, Collection<String> ids) throws IOException {
+		final int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			ids.add(in.readUTF());
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		final byte type = in.readByte();
+		switch (type) {
+			case STRING:
+				return in.readUTF();
+			case INTEGER:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case DOUBLE:
+				return in.readDouble();
+			case BIG_DECIMAL:
+				return new BigDecimal(in.readUTF());
+			case BIG_INTEGER:
+				return new BigInteger(in.readUTF());
+			case BOOLEAN:
+				return in.readBoolean();
+			case DATE:
+				return new Date(in.readLong());
+			default:
+				throw new IOException("unknown value type " + type);
+		}
+	}
+}
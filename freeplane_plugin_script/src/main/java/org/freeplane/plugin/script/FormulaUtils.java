@@ -1,8 +1,11 @@
 package org.freeplane.plugin.script;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +16,7 @@ import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.plugin.script.proxy.FormulaCache;
+import org.freeplane.plugin.script.proxy.ProxyFactory;
 
 public class FormulaUtils {
 	// don't let caching use too much memory - but currently there are little means to cope with unavailable
@@ -20,6 +24,8 @@ public class FormulaUtils {
 	private static final boolean ENABLE_CACHING = !Controller.getCurrentController().getResourceController()
 	    .getBooleanProperty("formula_disable_caching");
     static final boolean DEBUG_FORMULA_EVALUATION = false;
+	private static final String FORMULA_CACHE_SIZE_PROPERTY = "formula_cache_size";
+	private static final int DEFAULT_FORMULA_CACHE_SIZE = 100000;
 
 	/** evaluate text as a script if it starts with '='.
 	 * @return the evaluation result for script and the original text otherwise 
@@ -87,7 +93,7 @@ public class FormulaUtils {
 				Object value = formulaCache.get(nodeModel, text);
 				if (value == null) {
 					try {
-						value = ScriptingEngine.executeScript(nodeModel, text, scriptContext, restrictedPermissions);
+						value = executeFormula(nodeModel, text, scriptContext, restrictedPermissions);
 						formulaCache.put(nodeModel, text, value);
 						if (DEBUG_FORMULA_EVALUATION)
 						    System.err.println("eval: cache miss: recalculated: " + text);
@@ -107,7 +113,7 @@ public class FormulaUtils {
 				return value;
 			}
 			else {
-				return ScriptingEngine.executeScript(nodeModel, text, scriptContext, restrictedPermissions);
+				return executeFormula(nodeModel, text, scriptContext, restrictedPermissions);
 			}
 		}
 		finally {
@@ -115,34 +121,89 @@ public class FormulaUtils {
 		}
 	}
 
+	/** evaluates simple formulas directly, see {@link SimpleFormulaCompiler}, and all others by Groovy.
+	 * Errors of simple formulas are reported like errors of Groovy scripts. */
+	private static Object executeFormula(final NodeModel nodeModel, final String text,
+	                                     final ScriptContext scriptContext, final ScriptingPermissions permissions) {
+		final SimpleFormulaCompiler.Expression expression = SimpleFormulaCompiler.compile(text);
+		if (expression == null)
+			return ScriptingEngine.executeScript(nodeModel, text, scriptContext, permissions);
+		try {
+			return expression.evaluate(ProxyFactory.createNode(nodeModel, scriptContext));
+		}
+		catch (ExecuteScriptException e) {
+			throw e;
+		}
+		catch (RuntimeException e) {
+			throw new ExecuteScriptException(e.getMessage(), e);
+		}
+		catch (StackOverflowError e) {
+			throw new ExecuteScriptException(e.getMessage(), e);
+		}
+	}
+
+	/** @param nodes changed nodes of one map
+	 *  @param includeChanged true if the structure of the branches of the changed nodes has changed
+	 *  @return nodes to be evaluated again, ordered so that every node comes after the nodes it depends on */
 	public static List<NodeModel> manageChangeAndReturnDependencies(boolean includeChanged, final NodeModel... nodes) {
-		final ArrayList<NodeModel> dependencies = new ArrayList<NodeModel>();
-		for (int i = 0; i < nodes.length; i++) {
-			final LinkedHashSet<NodeModel> nodeDependencies = new LinkedHashSet<NodeModel>(0);
-			getEvaluationDependencies(nodes[i].getMap()).getDependencies(nodeDependencies, nodes[i]);
-			if (nodeDependencies != null)
-				dependencies.addAll(nodeDependencies);
-			if (includeChanged)
-				dependencies.add(nodes[i]);
+		if (nodes.length == 0)
+			return Collections.emptyList();
+		final MapModel map = nodes[0].getMap();
+		final EvaluationDependencies evaluationDependencies = getEvaluationDependencies(map);
+		final LinkedHashSet<NodeModel> dependencies = new LinkedHashSet<NodeModel>();
+		if (includeChanged)
+			dependencies.addAll(Arrays.asList(nodes));
+		dependencies.addAll(evaluationDependencies.getDependencies(Arrays.asList(nodes), includeChanged));
+		final FormulaCache formulaCache = ENABLE_CACHING ? getFormulaCache(map) : null;
+		for (NodeModel nodeModel : dependencies) {
+			if (formulaCache != null)
+				formulaCache.markAsDirtyIfFormulaNode(nodeModel);
+			evaluationDependencies.removeDependencies(nodeModel);
 		}
-		if (ENABLE_CACHING) {
-			for (NodeModel nodeModel : dependencies) {
-				getFormulaCache(nodeModel.getMap()).markAsDirtyIfFormulaNode(nodeModel);
-			}
+		return new ArrayList<NodeModel>(dependencies);
+	}
+
+	/** clears the cached values and dependencies of all formulas in the map.
+	 *  Formulas in folded branches are evaluated again when they are displayed.
+	 *  @return the nodes of the map which are not in folded branches, ordered so that every node comes after
+	 *  the nodes it depended on in its last evaluation. Evaluating the formulas in this order computes every
+	 *  formula once before it is used by other formulas. */
+	public static List<NodeModel> clearCacheAndSortUnfoldedNodesByDependencies(MapModel map) {
+		final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+		addUnfoldedBranch(nodes, map.getRootNode());
+		final EvaluationDependencies evaluationDependencies = (EvaluationDependencies) map
+		    .getExtension(EvaluationDependencies.class);
+		final List<NodeModel> sortedNodes = evaluationDependencies == null ? nodes : evaluationDependencies
+		    .sortByDependencies(nodes);
+		clearCache(map);
+		return sortedNodes;
+	}
+
+	private static void addUnfoldedBranch(List<NodeModel> nodes, NodeModel node) {
+		nodes.add(node);
+		if (node.isFolded())
+			return;
+		for (NodeModel child : node.getParsedChildren()) {
+			addUnfoldedBranch(nodes, child);
 		}
-		return dependencies;
 	}
 
-	private static FormulaCache getFormulaCache(MapModel map) {
+	static FormulaCache getFormulaCache(MapModel map) {
 		FormulaCache formulaCache = (FormulaCache) map.getExtension(FormulaCache.class);
 		if (formulaCache == null) {
-			formulaCache = new FormulaCache();
+			formulaCache = new FormulaCache(Controller.getCurrentController().getResourceController().getIntProperty(
+			    FORMULA_CACHE_SIZE_PROPERTY, DEFAULT_FORMULA_CACHE_SIZE));
 			map.addExtension(formulaCache);
 		}
 		return formulaCache;
 	}
 
-	private static EvaluationDependencies getEvaluationDependencies(MapModel map) {
+	/** @return statistics of the formula cache of the map, see {@link FormulaCache#getStatistics()} */
+	public static Map<String, Long> getFormulaCacheStatistics(MapModel map) {
+		return getFormulaCache(map).getStatistics();
+	}
+
+	static EvaluationDependencies getEvaluationDependencies(MapModel map) {
 		EvaluationDependencies dependencies = (EvaluationDependencies) map.getExtension(EvaluationDependencies.class);
 		if (dependencies == null) {
 			dependencies = new EvaluationDependencies();
@@ -156,17 +217,27 @@ public class FormulaUtils {
 	}
 
 	public static void accessBranch(NodeModel accessingNode, NodeModel accessedNode) {
-		getEvaluationDependencies(accessingNode.getMap()).accessBranch(accessingNode, accessingNode);
+		getEvaluationDependencies(accessingNode.getMap()).accessBranch(accessingNode, accessedNode);
 	}
 
 	public static void accessAll(NodeModel accessingNode) {
 		getEvaluationDependencies(accessingNode.getMap()).accessAll(accessingNode);
 	}
 
+	/** drops the cached values of the nodes of a deleted branch, so that they are not kept until eviction */
+	public static void removeDeletedBranch(NodeModel node) {
+		final FormulaCache formulaCache = (FormulaCache) node.getMap().getExtension(FormulaCache.class);
+		if (formulaCache != null)
+			formulaCache.removeBranch(node);
+	}
+
 	public static void clearCache(MapModel map) {
         if (DEBUG_FORMULA_EVALUATION)
-            System.out.println("clearing formula cache for " + map.getTitle());
-		map.removeExtension(FormulaCache.class);
+            System.out.println("clearing formula cache for " + map.getTitle() + ", " + ScriptClassCache.getInstance());
+		// the cache is kept for its statistics
+		final FormulaCache formulaCache = (FormulaCache) map.getExtension(FormulaCache.class);
+		if (formulaCache != null)
+			formulaCache.clear();
 		map.removeExtension(EvaluationDependencies.class);
 	}
 }
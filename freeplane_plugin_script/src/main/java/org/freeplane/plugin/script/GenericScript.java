@@ -38,7 +38,6 @@ import javax.script.ScriptException;
 import javax.script.SimpleScriptContext;
 
 import org.apache.commons.io.FilenameUtils;
-import org.freeplane.core.resources.ResourceController;
 import org.freeplane.core.util.FileUtils;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
@@ -158,8 +157,7 @@ public class GenericScript implements IScript {
                 throw new ExecuteScriptException(errorsInScript.getMessage(), errorsInScript);
             }
             final ScriptingSecurityManager scriptingSecurityManager = createScriptingSecurityManager();
-            final ScriptingPermissions originalScriptingPermissions = new ScriptingPermissions(ResourceController
-                .getResourceController().getProperties());
+            final ScriptingPermissions originalScriptingPermissions = ScriptingPermissions.getCurrentPermissions();
             final FreeplaneSecurityManager securityManager = (FreeplaneSecurityManager) System.getSecurityManager();
             final boolean needToSetFinalSecurityManager = securityManager.needToSetFinalSecurityManager();
             final PrintStream oldOut = System.out;
@@ -169,18 +167,21 @@ public class GenericScript implements IScript {
                     compileAndCache((Compilable) engine);
                     if (needToSetFinalSecurityManager)
                         securityManager.setFinalSecurityManager(scriptingSecurityManager);
-                    System.setOut(outStream);
+                    if (outStream != oldOut)
+                        System.setOut(outStream);
                     return compiledScript.eval(context);
                 }
                 else {
                     if (needToSetFinalSecurityManager)
                         securityManager.setFinalSecurityManager(scriptingSecurityManager);
-                    System.setOut(outStream);
+                    if (outStream != oldOut)
+                        System.setOut(outStream);
                     return engine.eval(scriptSource.getScript(), context);
                 }
             }
             finally {
-                System.setOut(oldOut);
+                if (System.out != oldOut)
+                    System.setOut(oldOut);
                 if (needToSetFinalSecurityManager && securityManager.hasFinalSecurityManager())
                     securityManager.removeFinalSecurityManager(scriptingSecurityManager);
                 /* restore preferences (and assure that the values are unchanged!). */
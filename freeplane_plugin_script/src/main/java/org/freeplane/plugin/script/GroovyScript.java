@@ -32,7 +32,6 @@ import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.runtime.InvokerHelper;
-import org.freeplane.core.resources.ResourceController;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.main.application.FreeplaneSecurityManager;
@@ -45,6 +44,7 @@ public class GroovyScript implements IScript {
     final private Object script;
     private final ScriptingPermissions specificPermissions;
     private Script compiledScript;
+    private boolean compiledScriptIsShared;
     private Throwable errorsInScript;
     private IFreeplaneScriptErrorHandler errorHandler;
     private PrintStream outStream;
@@ -119,8 +119,7 @@ public class GroovyScript implements IScript {
                 throw new ExecuteScriptException(errorsInScript.getMessage(), errorsInScript);
             }
             final ScriptingSecurityManager scriptingSecurityManager = createScriptingSecurityManager();
-            final ScriptingPermissions originalScriptingPermissions = new ScriptingPermissions(ResourceController
-                .getResourceController().getProperties());
+            final ScriptingPermissions originalScriptingPermissions = ScriptingPermissions.getCurrentPermissions();
             final FreeplaneSecurityManager securityManager = (FreeplaneSecurityManager) System.getSecurityManager();
             final boolean needToSetFinalSecurityManager = securityManager.needToSetFinalSecurityManager();
             final PrintStream oldOut = System.out;
@@ -130,11 +129,13 @@ public class GroovyScript implements IScript {
                 compiledScript.setBinding(binding);
                 if (needToSetFinalSecurityManager)
                     securityManager.setFinalSecurityManager(scriptingSecurityManager);
-                System.setOut(outStream);
+                if (outStream != oldOut)
+                    System.setOut(outStream);
                 return compiledScript.run();
             }
             finally {
-                System.setOut(oldOut);
+                if (System.out != oldOut)
+                    System.setOut(oldOut);
                 if (needToSetFinalSecurityManager && securityManager.hasFinalSecurityManager())
                     securityManager.removeFinalSecurityManager(scriptingSecurityManager);
                 /* restore preferences (and assure that the values are unchanged!). */
@@ -169,13 +170,28 @@ public class GroovyScript implements IScript {
 		else
 			try {
 				final Binding binding = createBindingForCompilation();
+				compileTimeStrategy.scriptCompileStart();
+				if (script instanceof String) {
+					final Class<? extends Script> scriptClass = ScriptClassCache.getInstance().get((String) script,
+					    specificPermissions, ScriptResources.getClasspath());
+					if (scriptClass != null) {
+						compiledScript = InvokerHelper.createScript(scriptClass, binding);
+						compiledScriptIsShared = true;
+						compileTimeStrategy.scriptCompiled();
+						return compiledScript;
+					}
+				}
 				final ClassLoader classLoader = GroovyScript.class.getClassLoader();
 				final GroovyShell shell = new GroovyShell(classLoader, binding, createCompilerConfiguration());
-				compileTimeStrategy.scriptCompileStart();
-				if (script instanceof String)
+				if (script instanceof String) {
 					compiledScript = shell.parse((String) script);
+					ScriptClassCache.getInstance().put((String) script, specificPermissions,
+					    ScriptResources.getClasspath(), compiledScript.getClass());
+					compiledScriptIsShared = true;
+				}
 				else if (script instanceof File)
-					compiledScript = shell.parse((File) script);
+					compiledScript = InvokerHelper.createScript(CompiledScriptCache.getInstance().loadOrCompile(
+					    (File) script, createCompilerConfiguration()), binding);
 				else
 					throw new IllegalArgumentException();
 				compileTimeStrategy.scriptCompiled();
@@ -189,8 +205,11 @@ public class GroovyScript implements IScript {
 
 	private void removeOldScript() {
 		if (compiledScript != null) {
-			InvokerHelper.removeClass(compiledScript.getClass());
+			// shared classes are removed by the ScriptClassCache
+			if (!compiledScriptIsShared)
+				InvokerHelper.removeClass(compiledScript.getClass());
 			compiledScript = null;
+			compiledScriptIsShared = false;
 		}
 	}
 
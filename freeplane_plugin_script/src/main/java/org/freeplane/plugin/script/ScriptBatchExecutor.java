@@ -0,0 +1,122 @@
+package org.freeplane.plugin.script;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.attribute.NodeAttributeTableModel;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.mindmapmode.MModeController;
+
+/**
+ * Executes the scripts contained in the attributes named "script..." of many nodes as one undoable change.
+ *
+ * The script attributes are read when the scripts are executed, so that changes made by scripts
+ * of nodes executed before are seen. Nodes removed from the map by such scripts are skipped.
+ * Every distinct script text is compiled once, see {@link ScriptClassCache}.
+ * The views of the changed nodes are updated once after all scripts have been executed.
+ */
+class ScriptBatchExecutor {
+	private final MModeController modeController;
+	private final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+	private final HashSet<String> scriptTexts = new HashSet<String>();
+	private int nodeCount = 0;
+
+	ScriptBatchExecutor(MModeController modeController) {
+		this.modeController = modeController;
+	}
+
+	/** adds the scripts of the branch, every node after its children */
+	void addBranch(final NodeModel root) {
+		final MapController mapController = modeController.getMapController();
+		final ArrayDeque<NodeModel> stack = new ArrayDeque<NodeModel>();
+		final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			final NodeModel node = stack.pop();
+			nodes.add(node);
+			for (final NodeModel child : mapController.childrenUnfolded(node)) {
+				stack.push(child);
+			}
+		}
+		// the reversed order of a preorder visiting the last children first
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			addNode(nodes.get(i));
+		}
+	}
+
+	void addNode(final NodeModel node) {
+		nodes.add(node);
+	}
+
+	IScript createScript(final String text) {
+		return new GroovyScript(text);
+	}
+
+	/** executes the added scripts in one transaction. The changes made before a failing script are kept.
+	 * @throws ExecuteScriptException on the first failing script */
+	void execute() {
+		final MapController mapController = modeController.getMapController();
+		final long startTime = System.currentTimeMillis();
+		int executedCount = 0;
+		modeController.startTransaction();
+		mapController.startBatch();
+		try {
+			for (final NodeModel node : nodes) {
+				if (!isInMap(node)) {
+					continue;
+				}
+				nodeCount++;
+				executedCount += executeScripts(node);
+			}
+		}
+		finally {
+			mapController.finishBatch();
+			modeController.delayedCommit();
+			report(executedCount, System.currentTimeMillis() - startTime);
+		}
+	}
+
+	/** @return number of executed scripts */
+	private int executeScripts(final NodeModel node) {
+		final NodeAttributeTableModel attributes = NodeAttributeTableModel.getModel(node);
+		final ArrayList<String> texts = new ArrayList<String>();
+		for (int row = 0; row < attributes.getRowCount(); ++row) {
+			final String attrKey = (String) attributes.getName(row);
+			final Object value = attributes.getValue(row);
+			if (value instanceof String && attrKey.startsWith(ScriptingEngine.SCRIPT_PREFIX)) {
+				texts.add((String) value);
+			}
+		}
+		// scripts may change the attributes of their node
+		int executedCount = 0;
+		for (final String text : texts) {
+			scriptTexts.add(text);
+			createScript(text).execute(node);
+			executedCount++;
+		}
+		return executedCount;
+	}
+
+	private boolean isInMap(final NodeModel node) {
+		final MapModel map = node.getMap();
+		if (map == null) {
+			return false;
+		}
+		final NodeModel root = map.getRootNode();
+		return node == root || node.isDescendantOf(root);
+	}
+
+	private void report(final int executedCount, final long time) {
+		final long nodesPerSecond = time == 0 ? nodeCount * 1000L : nodeCount * 1000L / time;
+		final String message = TextUtils.format("ExecuteScripts.executed", executedCount, scriptTexts.size(),
+		    nodeCount, time, nodesPerSecond);
+		LogUtils.info(message);
+		Controller.getCurrentController().getViewController().out(message);
+	}
+}
@@ -0,0 +1,124 @@
+package org.freeplane.plugin.script;
+
+import groovy.lang.Script;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.freeplane.core.resources.ResourceController;
+
+/**
+ * Compiled classes of scripts given as text, shared by all nodes and maps.
+ *
+ * Scripts with equal text, permissions and script classpath are compiled once,
+ * each execution only creates a new instance.
+ * The least recently used classes are dropped when the cache exceeds its capacity, so that they can be unloaded.
+ */
+class ScriptClassCache {
+	private static final String CAPACITY_PROPERTY = "script_class_cache_size";
+	private static final int DEFAULT_CAPACITY = 1000;
+	private static ScriptClassCache instance;
+
+	static synchronized ScriptClassCache getInstance() {
+		if (instance == null) {
+			instance = new ScriptClassCache(ResourceController.getResourceController().getIntProperty(
+			    CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+		}
+		return instance;
+	}
+
+	private static class Key {
+		final private String text;
+		final private ScriptingPermissions permissions;
+		final private List<String> classpath;
+
+		Key(final String text, final ScriptingPermissions permissions, final List<String> classpath) {
+			this.text = text;
+			this.permissions = permissions;
+			this.classpath = classpath;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * text.hashCode() + (permissions == null ? 0 : permissions.hashCode()))
+			        + (classpath == null ? 0 : classpath.hashCode());
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return text.equals(other.text)
+			        && (permissions == null ? other.permissions == null : permissions.equals(other.permissions))
+			        && (classpath == null ? other.classpath == null : classpath.equals(other.classpath));
+		}
+	}
+
+	final private LinkedHashMap<Key, Class<? extends Script>> classes;
+	private long hitCount;
+	private long missCount;
+
+	@SuppressWarnings("serial")
+	ScriptClassCache(final int capacity) {
+		classes = new LinkedHashMap<Key, Class<? extends Script>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, Class<? extends Script>> eldest) {
+				if (size() <= capacity) {
+					return false;
+				}
+				InvokerHelper.removeClass(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @param classpath script classpath the class was compiled with, see {@link GroovyScript#createCompilerConfiguration()}
+	 * @return compiled class of the script or null if it has not been compiled yet
+	 */
+	synchronized Class<? extends Script> get(final String text, final ScriptingPermissions permissions,
+	                                         final List<String> classpath) {
+		final Class<? extends Script> scriptClass = classes.get(new Key(text, permissions, classpath));
+		if (scriptClass != null) {
+			hitCount++;
+		}
+		else {
+			missCount++;
+		}
+		return scriptClass;
+	}
+
+	synchronized void put(final String text, final ScriptingPermissions permissions, final List<String> classpath,
+	                      final Class<? extends Script> scriptClass) {
+		classes.put(new Key(text, permissions, classpath), scriptClass);
+	}
+
+	synchronized int size() {
+		return classes.size();
+	}
+
+	synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/** @return part of lookups which found a compiled class, 0 if there were none */
+	synchronized double getHitRate() {
+		final long lookupCount = hitCount + missCount;
+		return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ScriptClassCache [size=" + classes.size() + ", hits=" + hitCount + ", misses=" + missCount
+		        + ", hitRate=" + getHitRate() + "]";
+	}
+}
@@ -11,6 +11,7 @@ import org.apache.commons.io.FileUtils;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.tools.FileSystemCompiler;
+import org.codehaus.groovy.tools.GroovyClass;
 import org.freeplane.core.util.LogUtils;
 
 public class ScriptCompiler {
@@ -25,26 +26,34 @@ public class ScriptCompiler {
     private static void compileScriptsInDirectory(File dir) {
         // FIXME: compile .js and the like too
         final Collection<File> files = FileUtils.listFiles(dir, new String[] { "groovy" }, true);
-        if (!files.isEmpty())
-            compile(dir, files);
+        if (files.isEmpty())
+            return;
+        final CompilerConfiguration compilerConfiguration = GroovyScript.createCompilerConfiguration();
+        // the classes are kept in the directory, so they need not be compiled again until a file changes
+        if (CompiledScriptCache.getInstance().isCompiled(dir, files, compilerConfiguration))
+            return;
+        final List<String> classNames = compile(dir, toArray(files), compilerConfiguration);
+        if (classNames != null)
+            CompiledScriptCache.getInstance().setCompiled(dir, files, classNames, compilerConfiguration);
     }
 
-    private static void compile(File dir, Collection<File> files) {
-        compile(dir, toArray(files));
-    }
-
-    private static void compile(File dir, File[] files) {
+    /** @return names of the compiled classes or null if the compilation failed */
+    private static List<String> compile(File dir, File[] files, CompilerConfiguration compilerConfiguration) {
         try {
-			final CompilerConfiguration compilerConfiguration = GroovyScript
-			    .createCompilerConfiguration();
             compilerConfiguration.setTargetDirectory(dir);
             final CompilationUnit unit = new CompilationUnit(compilerConfiguration, null, new GroovyClassLoader(
                 ScriptingEngine.class.getClassLoader()));
             new FileSystemCompiler(compilerConfiguration, unit).compile(files);
             LogUtils.info("compiled in " + dir + ": " + createNameList(files));
+            final ArrayList<String> classNames = new ArrayList<String>();
+            for (Object compiledClass : unit.getClasses()) {
+                classNames.add(((GroovyClass) compiledClass).getName());
+            }
+            return classNames;
         }
         catch (Exception e) {
             LogUtils.severe("error compiling in " + dir + createNameList(files), e);
+            return null;
         }
     }
 
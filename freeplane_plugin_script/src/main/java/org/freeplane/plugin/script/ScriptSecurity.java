@@ -21,7 +21,6 @@ package org.freeplane.plugin.script;
 
 import java.io.PrintStream;
 
-import org.freeplane.core.resources.ResourceController;
 import org.freeplane.main.application.FreeplaneSecurityManager;
 
 /**
@@ -71,7 +70,7 @@ public class ScriptSecurity {
 		if(specificPermissions != null)
 	        return specificPermissions;
         else
-	        return new ScriptingPermissions(ResourceController.getResourceController().getProperties());
+	        return ScriptingPermissions.getCurrentPermissions();
     }
 
 
@@ -27,10 +27,7 @@ import java.util.regex.Matcher;
 import org.apache.commons.lang.WordUtils;
 import org.freeplane.core.ui.components.UITools;
 import org.freeplane.core.util.TextUtils;
-import org.freeplane.features.attribute.NodeAttributeTableModel;
 import org.freeplane.features.map.NodeModel;
-import org.freeplane.features.mode.Controller;
-import org.freeplane.features.mode.ModeController;
 
 /**
  * @author foltin
@@ -111,32 +108,6 @@ public class ScriptingEngine {
             .execute(node);
     }
 
-	static void performScriptOperationRecursive(final NodeModel node) {
-		ModeController modeController = Controller.getCurrentModeController();
-		for (final NodeModel child : modeController.getMapController().childrenUnfolded(node)) {
-			performScriptOperationRecursive(child);
-		}
-		performScriptOperation(node);
-	}
-
-	static void performScriptOperation(final NodeModel node) {
-		final NodeAttributeTableModel attributes = NodeAttributeTableModel.getModel(node);
-		if (attributes == null) {
-			return;
-		}
-		for (int row = 0; row < attributes.getRowCount(); ++row) {
-			final String attrKey = (String) attributes.getName(row);
-			final Object value = attributes.getValue(row);
-			if(value instanceof String){
-				final String script = (String) value;
-				if (attrKey.startsWith(ScriptingEngine.SCRIPT_PREFIX)) {
-					executeScript(node, script);
-				}
-			}
-		}
-		return;
-	}
-
 	/** @deprecated use ScriptResources.getUserScriptDir() instead. */
     @Deprecated
     public static File getUserScriptDir() {
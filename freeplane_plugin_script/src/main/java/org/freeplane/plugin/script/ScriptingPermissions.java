@@ -54,6 +54,9 @@ public class ScriptingPermissions {
 	};
 	private static ScriptingPermissions formulaPermissions;
 	private static ScriptingPermissions permissiveScriptingPermissions;
+	private static volatile ScriptingPermissions currentPermissions;
+	/** security managers are immutable, one instance is shared by all permissions with the same restrictions */
+	private static final ScriptingSecurityManager[] scriptingSecurityManagers = new ScriptingSecurityManager[16];
 
 	public ScriptingPermissions() {
 		// by default nothing is allowed
@@ -73,6 +76,32 @@ public class ScriptingPermissions {
 		}
 	}
 
+	/** @return permissions as currently stored in the preferences.
+	 * The last result is reused as long as the preferences are unchanged. */
+	static ScriptingPermissions getCurrentPermissions() {
+		final Properties properties = ResourceController.getResourceController().getProperties();
+		ScriptingPermissions permissions = currentPermissions;
+		if (permissions == null || !permissions.equalsPermissionsIn(properties)) {
+			permissions = new ScriptingPermissions(properties);
+			currentPermissions = permissions;
+		}
+		return permissions;
+	}
+
+	private boolean equalsPermissionsIn(Properties properties) {
+		for (String permissionName : PERMISSION_NAMES) {
+			final Object value = properties.get(permissionName);
+			final Boolean savedValue = permissions.get(permissionName);
+			if (value == null || "".equals(value.toString())) {
+				if (savedValue != null)
+					return false;
+			}
+			else if (savedValue == null || savedValue.booleanValue() != Boolean.parseBoolean(value.toString()))
+				return false;
+		}
+		return true;
+	}
+
 	public boolean get(String permissionName) {
 		final Boolean savedValue = permissions.get(permissionName);
 		return savedValue != null && savedValue.booleanValue();
@@ -101,7 +130,18 @@ public class ScriptingPermissions {
 		boolean writePerm = get(RESOURCES_EXECUTE_SCRIPTS_WITHOUT_WRITE_RESTRICTION);
 		boolean networkPerm = get(RESOURCES_EXECUTE_SCRIPTS_WITHOUT_NETWORK_RESTRICTION);
 		boolean execPerm = get(RESOURCES_EXECUTE_SCRIPTS_WITHOUT_EXEC_RESTRICTION);
-		return new ScriptingSecurityManager(readPerm, writePerm, networkPerm, execPerm);
+		return getScriptingSecurityManager(readPerm, writePerm, networkPerm, execPerm);
+	}
+
+	private static ScriptingSecurityManager getScriptingSecurityManager(boolean readPerm, boolean writePerm,
+	                                                                    boolean networkPerm, boolean execPerm) {
+		final int index = (readPerm ? 1 : 0) | (writePerm ? 2 : 0) | (networkPerm ? 4 : 0) | (execPerm ? 8 : 0);
+		synchronized (scriptingSecurityManagers) {
+			if (scriptingSecurityManagers[index] == null)
+				scriptingSecurityManagers[index] = new ScriptingSecurityManager(readPerm, writePerm, networkPerm,
+				    execPerm);
+			return scriptingSecurityManagers[index];
+		}
 	}
 	
 	/** this method is called only if the formula plugin is active and so formula evaluation is allowed. */
@@ -119,7 +159,7 @@ public class ScriptingPermissions {
 	}
 
 	ScriptingSecurityManager getPermissiveScriptingSecurityManager() {
-		return new ScriptingSecurityManager(true, true, true, true);
+		return getScriptingSecurityManager(true, true, true, true);
 	}
 	
 	public static ScriptingPermissions getPermissiveScriptingPermissions() {
@@ -169,6 +169,7 @@ class ScriptingRegistration {
 		registerScriptAddOns();
 		if(! modeController.getController().getViewController().isHeadless()){
 			registerGuiStuff(modeController);
+			CompiledScriptCache.getInstance().removeStaleEntries();
 			ScriptCompiler.compileScriptsOnPath(ScriptResources.getClasspath());
 			createUserScriptsDirectory();
 			createUserLibDirectory();
@@ -0,0 +1,408 @@
+package org.freeplane.plugin.script;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.runtime.DefaultGroovyMethods;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.runtime.typehandling.NumberMath;
+import org.freeplane.plugin.script.proxy.ConversionException;
+import org.freeplane.plugin.script.proxy.Convertible;
+import org.freeplane.plugin.script.proxy.Proxy;
+
+/**
+ * Compiles simple formulas to expressions which are evaluated without Groovy.
+ *
+ * Supported are number literals, + - * / and parentheses applied to
+ * <ul>
+ * <li>node values: <code>node.to.num</code>, <code>parent.parent.value.num0</code>
+ * <li>attribute values: <code>node['name'].num</code>, <code>parent["name"].to.num</code>
+ * <li>children: <code>children.sum{it.to.num}</code>, <code>node.children.collect{it['a'].num}.max()</code>
+ *     (also <code>min()</code> and <code>sum()</code>), <code>children.size()</code>
+ * </ul>
+ * The nodes are accessed through the script API, and the numbers are combined by the Groovy runtime,
+ * so that results and recorded dependencies are the same as for the Groovy evaluation.
+ * Any other formula is left to Groovy.
+ */
+class SimpleFormulaCompiler {
+	private static final int CACHE_SIZE = 1000;
+	/** compiled formulas by formula text, formulas left to Groovy are kept with a null value */
+	@SuppressWarnings("serial")
+	private static final Map<String, Expression> expressions = new LinkedHashMap<String, Expression>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	static abstract class Expression {
+		/** @param it the node a closure is applied to, null outside of closures */
+		abstract Object evaluate(Proxy.Node node, Proxy.Node it);
+
+		Object evaluate(Proxy.Node node) {
+			return evaluate(node, null);
+		}
+	}
+
+	private static abstract class NodeExpression {
+		abstract Proxy.Node evaluate(Proxy.Node node, Proxy.Node it);
+	}
+
+	/** @return the compiled formula or null if it is not supported */
+	static Expression compile(final String formula) {
+		synchronized (expressions) {
+			Expression expression = expressions.get(formula);
+			if (expression == null && !expressions.containsKey(formula)) {
+				expression = new SimpleFormulaCompiler(formula).parse();
+				expressions.put(formula, expression);
+			}
+			return expression;
+		}
+	}
+
+	private final String formula;
+	private int pos;
+	private boolean inClosure;
+
+	private SimpleFormulaCompiler(final String formula) {
+		this.formula = formula;
+	}
+
+	private Expression parse() {
+		// line breaks and semicolons separate Groovy statements
+		if (formula.indexOf('\n') != -1 || formula.indexOf('\r') != -1 || formula.indexOf(';') != -1)
+			return null;
+		final Expression expression = parseSum();
+		skipSpaces();
+		return expression != null && pos == formula.length() ? expression : null;
+	}
+
+	private Expression parseSum() {
+		Expression left = parseProduct();
+		while (left != null) {
+			if (consume('+'))
+				left = binary('+', left, parseProduct());
+			else if (consume('-'))
+				left = binary('-', left, parseProduct());
+			else
+				break;
+		}
+		return left;
+	}
+
+	private Expression parseProduct() {
+		Expression left = parseUnary();
+		while (left != null) {
+			if (consume('*'))
+				left = binary('*', left, parseUnary());
+			else if (consume('/'))
+				left = binary('/', left, parseUnary());
+			else
+				break;
+		}
+		return left;
+	}
+
+	private Expression parseUnary() {
+		if (consume('-')) {
+			final Expression operand = parseUnary();
+			if (operand == null)
+				return null;
+			return new Expression() {
+				@Override
+				Object evaluate(Proxy.Node node, Proxy.Node it) {
+					return InvokerHelper.unaryMinus(operand.evaluate(node, it));
+				}
+			};
+		}
+		return parsePrimary();
+	}
+
+	private Expression parsePrimary() {
+		if (consume('(')) {
+			final Expression expression = parseSum();
+			return expression != null && consume(')') ? expression : null;
+		}
+		skipSpaces();
+		if (pos < formula.length() && Character.isDigit(formula.charAt(pos)))
+			return parseNumber();
+		return parseNodeValue();
+	}
+
+	private Expression parseNumber() {
+		final int start = pos;
+		while (pos < formula.length() && Character.isDigit(formula.charAt(pos)))
+			pos++;
+		boolean isDecimal = false;
+		if (pos + 1 < formula.length() && formula.charAt(pos) == '.' && Character.isDigit(formula.charAt(pos + 1))) {
+			isDecimal = true;
+			pos++;
+			while (pos < formula.length() && Character.isDigit(formula.charAt(pos)))
+				pos++;
+		}
+		// suffixes, exponents, method calls and radix prefixes are left to Groovy
+		if (pos < formula.length() && (Character.isJavaIdentifierPart(formula.charAt(pos)) || formula.charAt(pos) == '.'))
+			return null;
+		final String literal = formula.substring(start, pos);
+		final Number value;
+		if (isDecimal)
+			value = new BigDecimal(literal);
+		else {
+			final BigInteger bigInteger = new BigInteger(literal);
+			if (bigInteger.bitLength() < 32)
+				value = bigInteger.intValue();
+			else if (bigInteger.bitLength() < 64)
+				value = bigInteger.longValue();
+			else
+				value = bigInteger;
+		}
+		return new Expression() {
+			@Override
+			Object evaluate(Proxy.Node node, Proxy.Node it) {
+				return value;
+			}
+		};
+	}
+
+	private Expression parseNodeValue() {
+		final String start = parseIdentifier();
+		if (start == null)
+			return null;
+		NodeExpression nodeExpression;
+		if (start.equals("node"))
+			nodeExpression = new NodeExpression() {
+				@Override
+				Proxy.Node evaluate(Proxy.Node node, Proxy.Node it) {
+					return node;
+				}
+			};
+		else if (start.equals("parent"))
+			nodeExpression = parent(new NodeExpression() {
+				@Override
+				Proxy.Node evaluate(Proxy.Node node, Proxy.Node it) {
+					return node;
+				}
+			});
+		else if (start.equals("it") && inClosure)
+			nodeExpression = new NodeExpression() {
+				@Override
+				Proxy.Node evaluate(Proxy.Node node, Proxy.Node it) {
+					return it;
+				}
+			};
+		else if (start.equals("children"))
+			return parseChildren(new NodeExpression() {
+				@Override
+				Proxy.Node evaluate(Proxy.Node node, Proxy.Node it) {
+					return node;
+				}
+			});
+		else
+			return null;
+		for (;;) {
+			if (consume('[')) {
+				final String attributeName = parseString();
+				if (attributeName == null || !consume(']'))
+					return null;
+				final int afterAttribute = pos;
+				if (!(consume('.') && "to".equals(parseIdentifier())))
+					pos = afterAttribute;
+				return parseNumberConversion(attribute(nodeExpression, attributeName));
+			}
+			if (!consume('.'))
+				return null;
+			final String property = parseIdentifier();
+			if ("parent".equals(property))
+				nodeExpression = parent(nodeExpression);
+			else if ("to".equals(property) || "value".equals(property))
+				return parseNumberConversion(value(nodeExpression));
+			else if ("children".equals(property))
+				return parseChildren(nodeExpression);
+			else
+				return null;
+		}
+	}
+
+	private Expression parseChildren(final NodeExpression parent) {
+		if (!consume('.'))
+			return null;
+		final String method = parseIdentifier();
+		if ("size".equals(method)) {
+			if (!(consume('(') && consume(')')))
+				return null;
+			return new Expression() {
+				@Override
+				Object evaluate(Proxy.Node node, Proxy.Node it) {
+					return parent.evaluate(node, it).getChildren().size();
+				}
+			};
+		}
+		if (!("sum".equals(method) || "collect".equals(method)))
+			return null;
+		final Expression closure = parseClosure();
+		if (closure == null)
+			return null;
+		final String aggregation;
+		if ("sum".equals(method))
+			aggregation = method;
+		else {
+			if (!consume('.'))
+				return null;
+			aggregation = parseIdentifier();
+			if (!("sum".equals(aggregation) || "min".equals(aggregation) || "max".equals(aggregation))
+			        || !(consume('(') && consume(')')))
+				return null;
+		}
+		return new Expression() {
+			@Override
+			Object evaluate(Proxy.Node node, Proxy.Node it) {
+				final List<Proxy.Node> children = parent.evaluate(node, it).getChildren();
+				final ArrayList<Object> values = new ArrayList<Object>(children.size());
+				for (final Proxy.Node child : children)
+					values.add(closure.evaluate(node, child));
+				if (aggregation.equals("min"))
+					return DefaultGroovyMethods.min(values);
+				if (aggregation.equals("max"))
+					return DefaultGroovyMethods.max(values);
+				return DefaultGroovyMethods.sum(values);
+			}
+		};
+	}
+
+	private Expression parseClosure() {
+		if (inClosure || !consume('{'))
+			return null;
+		inClosure = true;
+		final Expression body = parseSum();
+		inClosure = false;
+		return body != null && consume('}') ? body : null;
+	}
+
+	private Expression parseNumberConversion(final ConvertibleExpression convertible) {
+		if (!consume('.'))
+			return null;
+		final String conversion = parseIdentifier();
+		if ("num".equals(conversion))
+			return new Expression() {
+				@Override
+				Object evaluate(Proxy.Node node, Proxy.Node it) {
+					try {
+						return convertible.evaluate(node, it).getNum();
+					}
+					catch (ConversionException e) {
+						throw new ExecuteScriptException(e.getMessage(), e);
+					}
+				}
+			};
+		if ("num0".equals(conversion))
+			return new Expression() {
+				@Override
+				Object evaluate(Proxy.Node node, Proxy.Node it) {
+					return convertible.evaluate(node, it).getNum0();
+				}
+			};
+		return null;
+	}
+
+	private static abstract class ConvertibleExpression {
+		abstract Convertible evaluate(Proxy.Node node, Proxy.Node it);
+	}
+
+	private static ConvertibleExpression value(final NodeExpression nodeExpression) {
+		return new ConvertibleExpression() {
+			@Override
+			Convertible evaluate(Proxy.Node node, Proxy.Node it) {
+				return nodeExpression.evaluate(node, it).getTo();
+			}
+		};
+	}
+
+	private static ConvertibleExpression attribute(final NodeExpression nodeExpression, final String attributeName) {
+		return new ConvertibleExpression() {
+			@Override
+			Convertible evaluate(Proxy.Node node, Proxy.Node it) {
+				return nodeExpression.evaluate(node, it).getAt(attributeName);
+			}
+		};
+	}
+
+	private static NodeExpression parent(final NodeExpression child) {
+		return new NodeExpression() {
+			@Override
+			Proxy.Node evaluate(Proxy.Node node, Proxy.Node it) {
+				return child.evaluate(node, it).getParent();
+			}
+		};
+	}
+
+	private static Expression binary(final char operator, final Expression left, final Expression right) {
+		if (right == null)
+			return null;
+		return new Expression() {
+			@Override
+			Object evaluate(Proxy.Node node, Proxy.Node it) {
+				final Number leftValue = (Number) left.evaluate(node, it);
+				final Number rightValue = (Number) right.evaluate(node, it);
+				if (leftValue == null || rightValue == null)
+					throw new NullPointerException();
+				switch (operator) {
+					case '+':
+						return NumberMath.add(leftValue, rightValue);
+					case '-':
+						return NumberMath.subtract(leftValue, rightValue);
+					case '*':
+						return NumberMath.multiply(leftValue, rightValue);
+					default:
+						return NumberMath.divide(leftValue, rightValue);
+				}
+			}
+		};
+	}
+
+	private String parseIdentifier() {
+		skipSpaces();
+		final int start = pos;
+		if (pos < formula.length() && Character.isJavaIdentifierStart(formula.charAt(pos))) {
+			pos++;
+			while (pos < formula.length() && Character.isJavaIdentifierPart(formula.charAt(pos)))
+				pos++;
+		}
+		return pos > start ? formula.substring(start, pos) : null;
+	}
+
+	/** only plain string literals, without escapes and interpolation */
+	private String parseString() {
+		skipSpaces();
+		if (pos >= formula.length())
+			return null;
+		final char quote = formula.charAt(pos);
+		if (quote != '\'' && quote != '"')
+			return null;
+		final int end = formula.indexOf(quote, pos + 1);
+		if (end == -1)
+			return null;
+		final String content = formula.substring(pos + 1, end);
+		if (content.indexOf('\\') != -1 || content.indexOf('$') != -1)
+			return null;
+		pos = end + 1;
+		return content;
+	}
+
+	private boolean consume(final char c) {
+		skipSpaces();
+		if (pos < formula.length() && formula.charAt(pos) == c) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipSpaces() {
+		while (pos < formula.length() && (formula.charAt(pos) == ' ' || formula.charAt(pos) == '\t'))
+			pos++;
+	}
+}
@@ -202,6 +202,52 @@ class ControllerProxy implements Proxy.Controller {
 		return ProxyUtils.findAll(Controller.getCurrentController().getMap().getRootNode(), scriptContext, false);
     }
 
+	public Iterable<Node> findLazily(final Closure<Boolean> closure) {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.findLazily(closure, Controller.getCurrentController().getMap().getRootNode(), scriptContext);
+	}
+
+	public Iterable<Node> findLazily(final ICondition condition) {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.findLazily(condition, Controller.getCurrentController().getMap().getRootNode(),
+		    scriptContext, true);
+	}
+
+	public Iterable<Node> findAllLazily() {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.findLazily((ICondition) null, Controller.getCurrentController().getMap().getRootNode(),
+		    scriptContext, true);
+	}
+
+	public Iterable<Node> findAllDepthFirstLazily() {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.findLazily((ICondition) null, Controller.getCurrentController().getMap().getRootNode(),
+		    scriptContext, false);
+	}
+
+	public Node findFirst(final Closure<Boolean> closure) {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.findFirst(closure, Controller.getCurrentController().getMap().getRootNode(), scriptContext);
+	}
+
+	public int count(final ICondition condition) {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.count(condition, Controller.getCurrentController().getMap().getRootNode());
+	}
+
+	public Number sumAttributeValues(final String attributeName) {
+		if (scriptContext != null)
+			scriptContext.accessAll();
+		return ProxyUtils.sumAttributeValues(attributeName, Controller.getCurrentController().getMap()
+		    .getRootNode(), scriptContext);
+	}
+
 	public Map newMap() {
 		final MapModel oldMap = Controller.getCurrentController().getMap();
 		final MMapIO mapIO = (MMapIO) Controller.getCurrentModeController().getExtension(MapIO.class);
@@ -1,43 +1,220 @@
 package org.freeplane.plugin.script.proxy;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.freeplane.core.extension.IExtension;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.plugin.script.ExecuteScriptException;
 
+/**
+ * Values of the formulas of a map.
+ *
+ * Values are kept per node identity without creating node ids. Most nodes contain a single formula,
+ * so each node has a single slot which is only extended to a list for the formulas of further attributes.
+ * If the number of values exceeds the capacity the least recently used nodes are evicted,
+ * their formulas are evaluated again on the next access. Values may be proxies referencing their own nodes,
+ * so the nodes are held strongly. The values of deleted branches are removed by {@link #removeBranch(NodeModel)}.
+ *
+ * Formulas are evaluated in the event dispatch thread: filters only check conditions on notes and details
+ * in parallel, and these do not evaluate formulas. The methods are synchronized anyway, because scripts
+ * may read formula values from threads of their own.
+ */
 public class FormulaCache implements IExtension{
-	private HashMap<String, LinkedHashMap<String, Object>> cache = new HashMap<String, LinkedHashMap<String, Object>>();
+	public static final String ENTRIES = "entries";
+	public static final String HITS = "hits";
+	public static final String MISSES = "misses";
+	public static final String EVICTIONS = "evictions";
 
-	public Object get(NodeModel nodeModel, String text) {
-		final LinkedHashMap<String, Object> cacheEntry = cache.get(nodeModel.getID());
-		if (cacheEntry == null) return null;
-		final Object object = cacheEntry.get(text);
+	private static class Slot {
+		final String text;
+		Object value;
+		Slot next;
+
+		Slot(String text, Object value, Slot next) {
+			this.text = text;
+			this.value = value;
+			this.next = next;
+		}
+
+		Slot find(String text) {
+			for (Slot slot = this; slot != null; slot = slot.next) {
+				if (slot.text.equals(text))
+					return slot;
+			}
+			return null;
+		}
+
+		int length() {
+			int length = 0;
+			for (Slot slot = this; slot != null; slot = slot.next)
+				length++;
+			return length;
+		}
+	}
+
+	/** in access order, the least recently used node comes first */
+	private final LinkedHashMap<NodeModel, Slot> cache = new LinkedHashMap<NodeModel, Slot>(16, 0.75f, true);
+	/** values computed before, e.g. by a previous session, by node id. They are moved to the cache
+	 * when their nodes are accessed first. As they were not used yet, they are evicted first. */
+	private final LinkedHashMap<String, Slot> storedValues = new LinkedHashMap<String, Slot>();
+	private final int capacity;
+	private int entryCount;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	public FormulaCache(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public synchronized Object get(NodeModel nodeModel, String text) {
+		Slot slot = cache.get(nodeModel);
+		if (slot == null && !storedValues.isEmpty())
+			slot = moveStoredValues(nodeModel);
+		final Slot found = slot == null ? null : slot.find(text);
+		if (found == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		final Object object = found.value;
 		if(object instanceof ExecuteScriptException){
 			throw (ExecuteScriptException)object;
 		}
 		return object;
 	}
 
-	public void put(NodeModel nodeModel, String text, Object value) {
-		getOrAdd(nodeModel).put(text, value);
+	private Slot moveStoredValues(NodeModel nodeModel) {
+		final String id = nodeModel.getID();
+		if (id == null)
+			return null;
+		final Slot slot = storedValues.remove(id);
+		if (slot != null)
+			cache.put(nodeModel, slot);
+		return slot;
+	}
+
+	public synchronized void put(NodeModel nodeModel, String text, Object value) {
+		final Slot slot = cache.get(nodeModel);
+		final Slot found = slot == null ? null : slot.find(text);
+		if (found != null) {
+			found.value = value;
+			return;
+		}
+		cache.put(nodeModel, new Slot(text, value, slot));
+		entryCount++;
+		if (entryCount > capacity)
+			evict();
+	}
+
+	/** drops the values of the least recently used nodes until the capacity is kept again */
+	private void evict() {
+		evict(storedValues.values());
+		evict(cache.values());
+	}
+
+	private void evict(Collection<Slot> slots) {
+		for (Iterator<Slot> iterator = slots.iterator(); entryCount > capacity && iterator.hasNext();) {
+			final int length = iterator.next().length();
+			iterator.remove();
+			entryCount -= length;
+			evictionCount += length;
+		}
+	}
+
+	/** adds a value computed before, e.g. by a previous session */
+	public synchronized void put(String nodeId, String text, Object value) {
+		final Slot slot = storedValues.get(nodeId);
+		final Slot found = slot == null ? null : slot.find(text);
+		if (found != null) {
+			found.value = value;
+			return;
+		}
+		storedValues.put(nodeId, new Slot(text, value, slot));
+		entryCount++;
+		if (entryCount > capacity)
+			evict();
 	}
 
-	private LinkedHashMap<String, Object> getOrAdd(NodeModel node) {
-		LinkedHashMap<String, Object> cacheEntry = cache.get(node.getID());
-		if (cacheEntry == null) {
-			cacheEntry = new LinkedHashMap<String, Object>(8);
-			cache.put(node.getID(), cacheEntry);
+	/** @return the cached values by formula text and node id, nodes without id are skipped */
+	public synchronized Map<String, Map<String, Object>> getValuesByNodeId() {
+		final LinkedHashMap<String, Map<String, Object>> values = new LinkedHashMap<String, Map<String, Object>>();
+		for (Map.Entry<NodeModel, Slot> entry : cache.entrySet()) {
+			final String id = entry.getKey().getID();
+			if (id != null)
+				values.put(id, toMap(entry.getValue()));
+		}
+		for (Map.Entry<String, Slot> entry : storedValues.entrySet()) {
+			if (!values.containsKey(entry.getKey()))
+				values.put(entry.getKey(), toMap(entry.getValue()));
 		}
-		return cacheEntry;
+		return values;
 	}
 
-	public void markAsDirtyIfFormulaNode(NodeModel node) {
-		final LinkedHashMap<String, Object> entry = cache.get(node.getID());
-		if (entry != null) {
+	private Map<String, Object> toMap(Slot slot) {
+		final LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+		for (; slot != null; slot = slot.next)
+			values.put(slot.text, slot.value);
+		return values;
+	}
+
+	public synchronized void markAsDirtyIfFormulaNode(NodeModel node) {
+		Slot slot = cache.remove(node);
+		if (slot == null && !storedValues.isEmpty() && node.getID() != null)
+			slot = storedValues.remove(node.getID());
+		if (slot != null) {
 //			System.out.println("clearing cache for " + node);
-			entry.clear();
+			entryCount -= slot.length();
 		}
 	}
+
+	/** drops the values of the node and of its parsed descendants, e.g. after the branch has been deleted */
+	public synchronized void removeBranch(NodeModel node) {
+		markAsDirtyIfFormulaNode(node);
+		for (NodeModel child : node.getParsedChildren())
+			removeBranch(child);
+	}
+
+	/** drops all values but keeps the statistics */
+	public synchronized void clear() {
+		cache.clear();
+		storedValues.clear();
+		entryCount = 0;
+	}
+
+	/** @return number of cached values */
+	public synchronized int getEntryCount() {
+		return entryCount;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/** @return entries, hits, misses and evictions by the keys {@link #ENTRIES}, {@link #HITS},
+	 * {@link #MISSES} and {@link #EVICTIONS} */
+	public synchronized Map<String, Long> getStatistics() {
+		final LinkedHashMap<String, Long> statistics = new LinkedHashMap<String, Long>();
+		statistics.put(ENTRIES, (long) entryCount);
+		statistics.put(HITS, hitCount);
+		statistics.put(MISSES, missCount);
+		statistics.put(EVICTIONS, evictionCount);
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return "FormulaCache " + getStatistics();
+	}
 }
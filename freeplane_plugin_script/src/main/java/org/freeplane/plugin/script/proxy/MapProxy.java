@@ -16,6 +16,7 @@ import org.freeplane.features.mode.Controller;
 import org.freeplane.features.styles.MapStyle;
 import org.freeplane.features.styles.MapStyleModel;
 import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.plugin.script.FormulaUtils;
 import org.freeplane.plugin.script.ScriptContext;
 import org.freeplane.plugin.script.proxy.Proxy.Map;
 import org.freeplane.plugin.script.proxy.Proxy.Node;
@@ -189,6 +190,11 @@ public class MapProxy extends AbstractProxy<MapModel> implements Map {
 		FilterController.getCurrentFilterController().undo();
     }
 
+    // MapRO: R
+    public java.util.Map<String, Long> getFormulaCacheStatistics() {
+        return FormulaUtils.getFormulaCacheStatistics(getDelegate());
+    }
+
     // Map: RO
     public Proxy.Properties getStorage() {
         return new PropertiesProxy(getDelegate(), getScriptContext());
@@ -594,6 +594,62 @@ class NodeProxy extends AbstractProxy<NodeModel> implements Node {
 		return ProxyUtils.findAll(delegate, getScriptContext(), false);
     }
 
+	// NodeRO: R
+	public Iterable<Node> findLazily(final Closure<Boolean> closure) {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.findLazily(closure, delegate, getScriptContext());
+	}
+
+	// NodeRO: R
+	public Iterable<Node> findLazily(final ICondition condition) {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.findLazily(condition, delegate, getScriptContext(), true);
+	}
+
+	// NodeRO: R
+	public Iterable<Node> findAllLazily() {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.findLazily((ICondition) null, delegate, getScriptContext(), true);
+	}
+
+	// NodeRO: R
+	public Iterable<Node> findAllDepthFirstLazily() {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.findLazily((ICondition) null, delegate, getScriptContext(), false);
+	}
+
+	// NodeRO: R
+	public Node findFirst(final Closure<Boolean> closure) {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.findFirst(closure, delegate, getScriptContext());
+	}
+
+	// NodeRO: R
+	public int count(final ICondition condition) {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.count(condition, delegate);
+	}
+
+	// NodeRO: R
+	public Number sumAttributeValues(final String attributeName) {
+		final NodeModel delegate = getDelegate();
+		if (getScriptContext() != null)
+			getScriptContext().accessBranch(delegate);
+		return ProxyUtils.sumAttributeValues(attributeName, delegate, getScriptContext());
+	}
+
 	// NodeRO: R
 	public Date getLastModifiedAt() {
 		return getDelegate().getHistoryInformation().getLastModifiedAt();
@@ -451,6 +451,52 @@ public interface Proxy {
 		 * @since 1.2 */
 		List<Node> findAllDepthFirst();
 
+		/** Like {@link #find(Closure)} but the nodes are searched only while the result is iterated over,
+		 * so that a search can stop early without checking the whole map:
+		 * <pre>
+		 *    def firstTodo = c.findLazily{ it.text.contains("todo") }.find{ true }
+		 *    for (n in c.findLazily{ it.noteText != null }) {
+		 *        if (n.noteText.contains("stop"))
+		 *            break
+		 *    }
+		 * </pre>
+		 * The map must not be changed while iterating over the result.
+		 * @since 1.5 */
+		Iterable<Node> findLazily(Closure<Boolean> closure);
+
+		/** Like {@link #findLazily(Closure)} but the condition is checked on the nodes directly,
+		 * so that no proxies are created for nodes which don't match.
+		 * @since 1.5 */
+		Iterable<Node> findLazily(ICondition condition);
+
+		/** Like {@link #findAll()} but the nodes are visited only while the result is iterated over.
+		 * @since 1.5 */
+		Iterable<Node> findAllLazily();
+
+		/** Like {@link #findAllDepthFirst()} but the nodes are visited only while the result is iterated over.
+		 * @since 1.5 */
+		Iterable<Node> findAllDepthFirstLazily();
+
+		/** Returns the first node of the map in breadth-first order for which <code>closure.call(node)</code>
+		 * returns true or null if there is none. The search stops at the first match.
+		 * @since 1.5 */
+		Node findFirst(Closure<Boolean> closure);
+
+		/** Returns the number of nodes of the map for which <code>condition.checkNode(node)</code> returns true
+		 * without creating proxies for the nodes. Counts all nodes if condition is null.
+		 * @since 1.5 */
+		int count(ICondition condition);
+
+		/** Sums the numeric values of the attribute <code>attributeName</code> of all nodes of the map without
+		 * creating proxies for the nodes. Values are converted like in <code>node[attributeName].num</code>,
+		 * values which are not numbers and nodes without the attribute are ignored:
+		 * <pre>
+		 *    def totalCost = c.sumAttributeValues('cost')
+		 * </pre>
+		 * @return the sum or 0 if there are no numeric values.
+		 * @since 1.5 */
+		Number sumAttributeValues(String attributeName);
+
 		/** returns the current zoom factor. A value of 1 means 100%.
 		 * @since 1.2 */
 		float getZoom();
@@ -801,6 +847,14 @@ public interface Proxy {
         /** returns HTML color spec like #ff0000 (red) or #222222 (darkgray).
          *  @since 1.2 */
         String getBackgroundColorCode();
+
+        /** returns the number of cached formula values ("entries") and the number of "hits", "misses" and
+         * "evictions" of the formula cache of this map since it was opened:
+         * <pre>
+         * println node.map.formulaCacheStatistics.hits
+         * </pre>
+         *  @since 1.5 */
+        java.util.Map<String, Long> getFormulaCacheStatistics();
 	}
 
 	/** The map a node belongs to: <code>node.map</code> - read-write. */
@@ -1197,6 +1251,41 @@ public interface Proxy {
 		 * @since 1.2 */
 		List<Node> findAllDepthFirst();
 
+		/** Like {@link #find(Closure)} but the branch is searched only while the result is iterated over.
+		 * See {@link Controller#findLazily(Closure)} for details.
+		 * @since 1.5 */
+		Iterable<Node> findLazily(Closure<Boolean> closure);
+
+		/** Like {@link #findLazily(Closure)} but the condition is checked on the nodes directly,
+		 * so that no proxies are created for nodes which don't match.
+		 * @since 1.5 */
+		Iterable<Node> findLazily(ICondition condition);
+
+		/** Like {@link #findAll()} but the nodes are visited only while the result is iterated over.
+		 * @since 1.5 */
+		Iterable<Node> findAllLazily();
+
+		/** Like {@link #findAllDepthFirst()} but the nodes are visited only while the result is iterated over.
+		 * @since 1.5 */
+		Iterable<Node> findAllDepthFirstLazily();
+
+		/** Returns the first node of the branch that starts with this node in breadth-first order for which
+		 * <code>closure.call(node)</code> returns true or null if there is none.
+		 * The search stops at the first match.
+		 * @since 1.5 */
+		Node findFirst(Closure<Boolean> closure);
+
+		/** Returns the number of nodes of the branch that starts with this node for which
+		 * <code>condition.checkNode(node)</code> returns true without creating proxies for the nodes.
+		 * Counts all nodes of the branch if condition is null.
+		 * @since 1.5 */
+		int count(ICondition condition);
+
+		/** Sums the numeric values of the attribute <code>attributeName</code> of all nodes of the branch that
+		 * starts with this node. See {@link Controller#sumAttributeValues(String)} for details.
+		 * @since 1.5 */
+		Number sumAttributeValues(String attributeName);
+
 		Date getLastModifiedAt();
 
 		Date getCreatedAt();
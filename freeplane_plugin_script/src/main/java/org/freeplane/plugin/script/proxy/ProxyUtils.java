@@ -4,6 +4,7 @@ import groovy.lang.Closure;
 
 import java.net.URI;
 import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -15,7 +16,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.codehaus.groovy.runtime.typehandling.NumberMath;
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.attribute.NodeAttributeTableModel;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ICondition;
 import org.freeplane.features.format.FormatController;
@@ -112,6 +115,165 @@ public class ProxyUtils {
 		return matches;
 	}
 
+	/** iterates lazily over the nodes of a branch in the order of {@link #findImpl(ICondition, NodeModel, boolean)}.
+	 * The condition is checked and the proxy is created only for the nodes actually iterated over.
+	 * @param condition if null every node will match. */
+	static Iterable<Node> findLazily(final ICondition condition, final NodeModel node,
+	                                 final ScriptContext scriptContext, final boolean breadthFirst) {
+		return new Iterable<Node>() {
+			public Iterator<Node> iterator() {
+				final Iterator<NodeModel> nodeModels = new BranchIterator(node, condition, breadthFirst);
+				return new Iterator<Node>() {
+					public boolean hasNext() {
+						return nodeModels.hasNext();
+					}
+
+					public Node next() {
+						return new NodeProxy(nodeModels.next(), scriptContext);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	static Iterable<Node> findLazily(final Closure<Boolean> closure, final NodeModel node,
+	                                 final ScriptContext scriptContext) {
+		return findLazily(createCondition(closure, scriptContext), node, scriptContext, true);
+	}
+
+	/** @return the first node of the branch in breadth-first order for which the closure returns true
+	 * or null if there is none. Nodes after the first match are not checked. */
+	static Node findFirst(final Closure<Boolean> closure, final NodeModel node, final ScriptContext scriptContext) {
+		final Iterator<NodeModel> matches = new BranchIterator(node, createCondition(closure, scriptContext), true);
+		return matches.hasNext() ? new NodeProxy(matches.next(), scriptContext) : null;
+	}
+
+	/** counts the matching nodes of the branch without creating proxies.
+	 * @param condition if null every node will match. */
+	static int count(final ICondition condition, final NodeModel node) {
+		int count = 0;
+		for (final Iterator<NodeModel> matches = new BranchIterator(node, condition, true); matches.hasNext(); matches
+		    .next()) {
+			count++;
+		}
+		return count;
+	}
+
+	/** sums the numeric values of the attribute in all nodes of the branch without creating node proxies.
+	 * Values are converted like <code>node[attributeName].num</code>, formulas are evaluated and values
+	 * which are not numbers are ignored.
+	 * @return the sum, 0 if there are no numeric values. */
+	static Number sumAttributeValues(final String attributeName, final NodeModel node,
+	                                 final ScriptContext scriptContext) {
+		Number sum = 0;
+		for (final Iterator<NodeModel> nodes = new BranchIterator(node, null, true); nodes.hasNext();) {
+			final NodeModel nodeModel = nodes.next();
+			final NodeAttributeTableModel attributes = NodeAttributeTableModel.getModel(nodeModel);
+			int index = 0;
+			while (index < attributes.getRowCount() && !attributeName.equals(attributes.getName(index)))
+				index++;
+			if (index == attributes.getRowCount())
+				continue;
+			Object value = attributes.getValue(index);
+			if (value instanceof IFormattedObject)
+				value = ((IFormattedObject) value).getObject();
+			if (!(value instanceof Number)) {
+				final Convertible convertible = attributeValueToConvertible(nodeModel, scriptContext, value);
+				if (!convertible.isNum())
+					continue;
+				try {
+					value = convertible.getNum();
+				}
+				catch (ConversionException e) {
+					continue;
+				}
+			}
+			sum = NumberMath.add(sum, (Number) value);
+		}
+		return sum;
+	}
+
+	/** iterates over a branch without recursion and without copying the nodes, in pre-order if breadthFirst is
+	 * true (like {@link ProxyUtils#findImpl(ICondition, NodeModel, boolean)}) and in post-order otherwise.
+	 * The branch must not be changed during the iteration. */
+	private static class BranchIterator implements Iterator<NodeModel> {
+		private final ICondition condition;
+		private final boolean breadthFirst;
+		private final ArrayDeque<NodeModel> nodes = new ArrayDeque<NodeModel>();
+		private final ArrayDeque<Iterator<NodeModel>> children = new ArrayDeque<Iterator<NodeModel>>();
+		private NodeModel root;
+		private NodeModel next;
+
+		BranchIterator(final NodeModel root, final ICondition condition, final boolean breadthFirst) {
+			this.root = root;
+			this.condition = condition;
+			this.breadthFirst = breadthFirst;
+		}
+
+		public boolean hasNext() {
+			while (next == null) {
+				final NodeModel node = breadthFirst ? nextInPreOrder() : nextInPostOrder();
+				if (node == null)
+					return false;
+				if (condition == null || condition.checkNode(node))
+					next = node;
+			}
+			return true;
+		}
+
+		public NodeModel next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final NodeModel node = next;
+			next = null;
+			return node;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private NodeModel nextInPreOrder() {
+			if (root != null) {
+				final NodeModel node = root;
+				root = null;
+				children.push(node.getChildren().iterator());
+				return node;
+			}
+			while (!children.isEmpty()) {
+				final Iterator<NodeModel> siblings = children.peek();
+				if (siblings.hasNext()) {
+					final NodeModel node = siblings.next();
+					children.push(node.getChildren().iterator());
+					return node;
+				}
+				children.pop();
+			}
+			return null;
+		}
+
+		private NodeModel nextInPostOrder() {
+			if (root != null) {
+				nodes.push(root);
+				children.push(root.getChildren().iterator());
+				root = null;
+			}
+			if (nodes.isEmpty())
+				return null;
+			while (children.peek().hasNext()) {
+				final NodeModel child = children.peek().next();
+				nodes.push(child);
+				children.push(child.getChildren().iterator());
+			}
+			children.pop();
+			return nodes.pop();
+		}
+	}
+
 	public static List<Proxy.Node> createListOfChildren(final NodeModel nodeModel, final ScriptContext scriptContext) {
         return new ArrayList<Proxy.Node>(new AbstractList<Proxy.Node>() {
     		@Override
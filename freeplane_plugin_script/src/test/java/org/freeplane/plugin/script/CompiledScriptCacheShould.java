@@ -0,0 +1,93 @@
+package org.freeplane.plugin.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.mode.Controller;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class CompiledScriptCacheShould {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private CompiledScriptCache cache;
+	private File scriptDir;
+	private final CompilerConfiguration configuration = new CompilerConfiguration();
+
+	@Before
+	public void setup() throws IOException {
+		final Controller controller = Mockito.mock(Controller.class);
+		Mockito.when(controller.getResourceController()).thenReturn(Mockito.mock(ResourceController.class));
+		Controller.setCurrentController(controller);
+		cache = new CompiledScriptCache(folder.newFolder("cache"));
+		scriptDir = folder.newFolder("scripts");
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private List<File> script(final String content) throws IOException {
+		final File script = new File(scriptDir, "Script.groovy");
+		FileUtils.writeStringToFile(script, content, "UTF-8");
+		return Arrays.asList(script);
+	}
+
+	private void createClassFile() throws IOException {
+		FileUtils.writeByteArrayToFile(new File(scriptDir, "Script.class"), new byte[] { 1 });
+	}
+
+	@Test
+	public void reuseCompiledDirectory() throws IOException {
+		final List<File> files = script("println 1");
+		createClassFile();
+		cache.setCompiled(scriptDir, files, Arrays.asList("Script"), configuration);
+		assertThat(cache.isCompiled(scriptDir, files, configuration), equalTo(true));
+	}
+
+	@Test
+	public void compileAgainIfScriptChanged() throws IOException {
+		createClassFile();
+		cache.setCompiled(scriptDir, script("println 1"), Arrays.asList("Script"), configuration);
+		assertThat(cache.isCompiled(scriptDir, script("println 2"), configuration), equalTo(false));
+	}
+
+	@Test
+	public void compileAgainIfClassFileIsMissing() throws IOException {
+		final List<File> files = script("println 1");
+		cache.setCompiled(scriptDir, files, Arrays.asList("Script"), configuration);
+		assertThat(cache.isCompiled(scriptDir, files, configuration), equalTo(false));
+	}
+
+	@Test
+	public void compileAgainIfClasspathJarChanged() throws IOException {
+		final File jar = folder.newFile("library.jar");
+		configuration.setClasspathList(Arrays.asList(jar.getAbsolutePath()));
+		final List<File> files = script("println 1");
+		createClassFile();
+		cache.setCompiled(scriptDir, files, Arrays.asList("Script"), configuration);
+		FileUtils.writeByteArrayToFile(jar, new byte[] { 1, 2 });
+		assertThat(cache.isCompiled(scriptDir, files, configuration), equalTo(false));
+	}
+
+	@Test
+	public void neverCacheScriptsUsingGrape() throws IOException {
+		final List<File> files = script("@Grab('commons-lang:commons-lang:2.6')\nimport org.apache.commons.lang.WordUtils");
+		createClassFile();
+		cache.setCompiled(scriptDir, files, Arrays.asList("Script"), configuration);
+		assertThat(cache.isCompiled(scriptDir, files, configuration), equalTo(false));
+	}
+}
@@ -0,0 +1,105 @@
+package org.freeplane.plugin.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class EvaluationDependenciesShould {
+	private MapModel map;
+	private EvaluationDependencies dependencies;
+	private NodeModel root;
+	private NodeModel accessed;
+	private NodeModel formula;
+
+	@Before
+	public void setup() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ModeController modeController = Mockito.mock(ModeController.class);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		Mockito.when(modeController.getMapController()).thenReturn(Mockito.mock(MapController.class));
+		Controller.setCurrentController(controller);
+		map = new MapModel();
+		dependencies = new EvaluationDependencies();
+		root = createNode("ID_ROOT");
+		accessed = createNode("ID_ACCESSED");
+		formula = createNode("ID_FORMULA");
+		root.insert(accessed, 0);
+		root.insert(formula, 1);
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private NodeModel createNode(final String id) {
+		final NodeModel node = new NodeModel(id, map);
+		node.setID(id);
+		return node;
+	}
+
+	@Test
+	public void findFormulaNodesDependingOnStoredNodeIds() {
+		dependencies.addStoredDependencies("ID_FORMULA", Arrays.asList("ID_ACCESSED"), Collections.<String> emptyList());
+		assertThat(dependencies.getDependencies(Arrays.asList(accessed), false), equalTo(Arrays.asList(formula)));
+	}
+
+	@Test
+	public void findFormulaNodesDependingOnStoredBranchIds() {
+		dependencies.addStoredDependencies("ID_FORMULA", Collections.<String> emptyList(), Arrays.asList("ID_ROOT"));
+		assertThat(dependencies.getDependencies(Arrays.asList(accessed), false), equalTo(Arrays.asList(formula)));
+	}
+
+	@Test
+	public void forgetStoredDependenciesOfFormulaEvaluatedAgain() {
+		dependencies.addStoredDependencies("ID_FORMULA", Arrays.asList("ID_ACCESSED"), Collections.<String> emptyList());
+		dependencies.removeDependencies(formula);
+		assertThat(dependencies.getDependencies(Arrays.asList(accessed), false), equalTo(Collections
+		    .<NodeModel> emptyList()));
+	}
+
+	@Test
+	public void returnStoredIdsWithoutParsingNodes() {
+		dependencies.addStoredDependencies("ID_UNPARSED", Arrays.asList("ID_ACCESSED"), Arrays.asList("ID_ROOT"));
+		final MapModel unparsedMap = Mockito.mock(MapModel.class);
+		final List<String> accessedNodeIds = new ArrayList<String>();
+		final List<String> accessedBranchIds = new ArrayList<String>();
+		assertThat(dependencies.getAccessedIds(unparsedMap, "ID_UNPARSED", accessedNodeIds, accessedBranchIds),
+		    equalTo(true));
+		assertThat(accessedNodeIds, equalTo(Arrays.asList("ID_ACCESSED")));
+		assertThat(accessedBranchIds, equalTo(Arrays.asList("ID_ROOT")));
+		Mockito.verify(unparsedMap, Mockito.never()).getNodeForID(Mockito.anyString());
+	}
+
+	@Test
+	public void combineStoredAndEvaluatedDependencies() {
+		dependencies.addStoredDependencies("ID_FORMULA", Arrays.asList("ID_ACCESSED"), Collections.<String> emptyList());
+		dependencies.accessBranch(formula, root);
+		final List<String> accessedNodeIds = new ArrayList<String>();
+		final List<String> accessedBranchIds = new ArrayList<String>();
+		assertThat(dependencies.getAccessedIds(map, "ID_FORMULA", accessedNodeIds, accessedBranchIds), equalTo(true));
+		assertThat(accessedNodeIds, equalTo(Arrays.asList("ID_ACCESSED")));
+		assertThat(accessedBranchIds, equalTo(Arrays.asList("ID_ROOT")));
+	}
+
+	@Test
+	public void notStoreFormulasAccessingAnyNode() {
+		dependencies.accessAll(formula);
+		assertThat(dependencies.getAccessedIds(map, "ID_FORMULA", new ArrayList<String>(), new ArrayList<String>()),
+		    equalTo(false));
+	}
+}
@@ -0,0 +1,117 @@
+package org.freeplane.plugin.script;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.freeplane.main.application.FreeplaneSecurityManager;
+
+/**
+ * Measures {@link FormulaUtils#eval(NodeModel, ScriptContext, String)} of trivial formulas
+ * whose values are not cached, so that every evaluation runs the formula including the permission checks
+ * and the installation of the security manager.
+ * To compare implementations, run it against each of them.
+ * Needs -Djava.security.manager=allow on Java 18 and later.
+ * Run as application, it is no unit test.
+ */
+public class FormulaEvaluationBenchmark {
+	private static final int NODE_COUNT = 20000;
+	private static final int ROUNDS = 5;
+
+	public static void main(final String[] args) throws IOException {
+		final Properties properties = new Properties();
+		final InputStream defaults = FormulaEvaluationBenchmark.class
+		    .getResourceAsStream(ResourceController.FREEPLANE_PROPERTIES);
+		try {
+			properties.load(defaults);
+		}
+		finally {
+			defaults.close();
+		}
+		final Controller controller = new Controller(new PropertiesResourceController(properties));
+		Controller.setCurrentController(controller);
+		final ModeController modeController = new ModeController(controller);
+		controller.selectModeForBuild(modeController);
+		new MapController(modeController);
+		System.setSecurityManager(new FreeplaneSecurityManager());
+		final MapModel map = new MapModel();
+		final NodeModel root = new NodeModel("root", map);
+		map.setRoot(root);
+		final List<NodeModel> nodes = new ArrayList<NodeModel>(NODE_COUNT);
+		for (int i = 0; i < NODE_COUNT; i++) {
+			final NodeModel node = new NodeModel("node " + i, map);
+			root.insert(node, i);
+			nodes.add(node);
+		}
+		for (int round = 0; round < ROUNDS; round++) {
+			final boolean report = round == ROUNDS - 1;
+			run("simple formula", "1 + 2", map, nodes, report);
+			run("groovy formula", "2 ** 3", map, nodes, report);
+		}
+	}
+
+	private static void run(final String name, final String formula, final MapModel map,
+	                        final List<NodeModel> nodes, final boolean report) {
+		FormulaUtils.clearCache(map);
+		Object firstValue = null;
+		final long start = System.nanoTime();
+		for (final NodeModel node : nodes) {
+			final Object value = FormulaUtils.eval(node, new ScriptContext(), formula);
+			if (firstValue == null) {
+				firstValue = value;
+			}
+			else if (!firstValue.equals(value)) {
+				throw new IllegalStateException("different values: " + firstValue + " / " + value);
+			}
+		}
+		final long nanoseconds = System.nanoTime() - start;
+		if (report) {
+			System.out.println(name + ": " + nanoseconds / nodes.size() + " ns per evaluation, value " + firstValue);
+		}
+	}
+
+	private static class PropertiesResourceController extends ResourceController {
+		private final Properties properties;
+
+		PropertiesResourceController(final Properties properties) {
+			this.properties = properties;
+		}
+
+		@Override
+		public String getFreeplaneUserDirectory() {
+			return System.getProperty("java.io.tmpdir");
+		}
+
+		@Override
+		public Properties getProperties() {
+			return properties;
+		}
+
+		@Override
+		public String getProperty(final String key) {
+			return properties.getProperty(key);
+		}
+
+		@Override
+		public void saveProperties() {
+		}
+
+		@Override
+		public void setDefaultProperty(final String key, final String value) {
+			properties.setProperty(key, value);
+		}
+
+		@Override
+		public void setProperty(final String property, final String value) {
+			properties.setProperty(property, value);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package org.freeplane.plugin.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.freeplane.core.resources.ResourceBundles;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.attribute.Attribute;
+import org.freeplane.features.attribute.NodeAttributeTableModel;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.mindmapmode.MModeController;
+import org.freeplane.features.ui.ViewController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ScriptBatchExecutorShould {
+	private MModeController modeController;
+	private MapController mapController;
+	private MapModel map;
+	private NodeModel root;
+	private final List<String> executedScripts = new ArrayList<String>();
+	private ScriptBatchExecutor executor;
+
+	@Before
+	public void setup() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ResourceController resourceController = Mockito.mock(ResourceController.class);
+		Mockito.when(resourceController.getResources()).thenReturn(Mockito.mock(ResourceBundles.class));
+		Mockito.when(controller.getResourceController()).thenReturn(resourceController);
+		Mockito.when(controller.getViewController()).thenReturn(Mockito.mock(ViewController.class));
+		modeController = Mockito.mock(MModeController.class);
+		mapController = Mockito.mock(MapController.class);
+		Mockito.when(modeController.getMapController()).thenReturn(mapController);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		Controller.setCurrentController(controller);
+		map = new MapModel();
+		root = new NodeModel("root", map);
+		map.setRoot(root);
+		executor = new ScriptBatchExecutor(modeController) {
+			@Override
+			IScript createScript(final String text) {
+				return new IScript() {
+					public Object execute(final NodeModel node) {
+						executedScripts.add(node.getText() + ":" + text);
+						if (text.equals("fail")) {
+							throw new ExecuteScriptException("failed");
+						}
+						if (text.startsWith("delete ")) {
+							node.remove(Integer.parseInt(text.substring(7)));
+						}
+						if (text.startsWith("change ")) {
+							NodeAttributeTableModel.getModel(node.getChildAt(0)).setValue(0, text.substring(7));
+						}
+						return null;
+					}
+
+					public IScript setErrorHandler(final IFreeplaneScriptErrorHandler pErrorHandler) {
+						return this;
+					}
+
+					public IScript setOutStream(final PrintStream outStream) {
+						return this;
+					}
+
+					public IScript setScriptContext(final ScriptContext scriptContext) {
+						return this;
+					}
+
+					public Object getScript() {
+						return text;
+					}
+
+					public boolean permissionsEquals(final ScriptingPermissions permissions) {
+						return permissions == null;
+					}
+				};
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private NodeModel addNode(final NodeModel parent, final String text, final String... scripts) {
+		final NodeModel node = new NodeModel(text, map);
+		parent.insert(node, parent.getChildCount());
+		if (scripts.length > 0) {
+			final NodeAttributeTableModel attributes = new NodeAttributeTableModel(node);
+			for (final String script : scripts) {
+				final String name = ScriptingEngine.SCRIPT_PREFIX + attributes.getRowCount();
+				attributes.addRowNoUndo(new Attribute(name, script));
+			}
+			node.addExtension(attributes);
+		}
+		return node;
+	}
+
+	@Test
+	public void executeAllScriptsInOneTransactionAndOneRefresh() {
+		final NodeModel first = addNode(root, "first", "1", "2");
+		final NodeModel second = addNode(root, "second", "3");
+		executor.addNode(first);
+		executor.addNode(second);
+		executor.execute();
+		assertThat(executedScripts, equalTo(Arrays.asList("first:1", "first:2", "second:3")));
+		final InOrder inOrder = Mockito.inOrder(modeController, mapController);
+		inOrder.verify(modeController).startTransaction();
+		inOrder.verify(mapController).startBatch();
+		inOrder.verify(mapController).finishBatch();
+		inOrder.verify(modeController).delayedCommit();
+		Mockito.verify(modeController, Mockito.times(1)).startTransaction();
+		Mockito.verify(modeController, Mockito.times(1)).delayedCommit();
+		Mockito.verify(mapController, Mockito.times(1)).finishBatch();
+	}
+
+	@Test
+	public void commitAndRefreshAfterFailingScript() {
+		final NodeModel first = addNode(root, "first", "fail");
+		final NodeModel second = addNode(root, "second", "2");
+		executor.addNode(first);
+		executor.addNode(second);
+		try {
+			executor.execute();
+		}
+		catch (final ExecuteScriptException e) {
+		}
+		assertThat(executedScripts, equalTo(Arrays.asList("first:fail")));
+		Mockito.verify(mapController).finishBatch();
+		Mockito.verify(modeController).delayedCommit();
+	}
+
+	@Test
+	public void executeChildrenBeforeTheirParent() {
+		Mockito.when(mapController.childrenUnfolded(Mockito.any(NodeModel.class))).thenAnswer(
+		    new Answer<List<NodeModel>>() {
+			    public List<NodeModel> answer(final InvocationOnMock invocation) {
+				    return ((NodeModel) invocation.getArguments()[0]).getChildren();
+			    }
+		    });
+		final NodeModel parent = addNode(root, "parent", "p");
+		addNode(parent, "first", "1");
+		addNode(parent, "second", "2");
+		executor.addBranch(parent);
+		executor.execute();
+		assertThat(executedScripts, equalTo(Arrays.asList("first:1", "second:2", "parent:p")));
+	}
+
+	@Test
+	public void skipNodesRemovedByPreviousScripts() {
+		final NodeModel parent = addNode(root, "parent", "delete 0");
+		final NodeModel child = addNode(parent, "child", "1");
+		addNode(child, "grandchild", "2");
+		executor.addNode(parent);
+		executor.addNode(child);
+		executor.addNode(child.getChildAt(0));
+		executor.execute();
+		assertThat(executedScripts, equalTo(Arrays.asList("parent:delete 0")));
+	}
+
+	@Test
+	public void readScriptsChangedByPreviousScripts() {
+		final NodeModel parent = addNode(root, "parent", "change 2");
+		final NodeModel child = addNode(parent, "child", "1");
+		executor.addNode(parent);
+		executor.addNode(child);
+		executor.execute();
+		assertThat(executedScripts, equalTo(Arrays.asList("parent:change 2", "child:2")));
+	}
+}
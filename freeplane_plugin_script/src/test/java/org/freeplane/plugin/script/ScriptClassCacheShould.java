@@ -0,0 +1,90 @@
+package org.freeplane.plugin.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import groovy.lang.Script;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class ScriptClassCacheShould {
+	public static class FirstScript extends Script {
+		@Override
+		public Object run() {
+			return null;
+		}
+	}
+
+	public static class SecondScript extends Script {
+		@Override
+		public Object run() {
+			return null;
+		}
+	}
+
+	public static class ThirdScript extends Script {
+		@Override
+		public Object run() {
+			return null;
+		}
+	}
+
+	private static final List<String> NO_CLASSPATH = null;
+	private final ScriptClassCache cache = new ScriptClassCache(2);
+
+	@Test
+	public void returnPutClass() {
+		cache.put("1", null, NO_CLASSPATH, FirstScript.class);
+		assertThat(cache.get("1", null, NO_CLASSPATH), equalTo((Object) FirstScript.class));
+	}
+
+	@Test
+	public void evictLeastRecentlyUsedClass() {
+		cache.put("1", null, NO_CLASSPATH, FirstScript.class);
+		cache.put("2", null, NO_CLASSPATH, SecondScript.class);
+		cache.get("1", null, NO_CLASSPATH);
+		cache.put("3", null, NO_CLASSPATH, ThirdScript.class);
+		assertThat(cache.size(), equalTo(2));
+		assertThat(cache.get("2", null, NO_CLASSPATH), nullValue());
+		assertThat(cache.get("1", null, NO_CLASSPATH), equalTo((Object) FirstScript.class));
+		assertThat(cache.get("3", null, NO_CLASSPATH), equalTo((Object) ThirdScript.class));
+	}
+
+	@Test
+	public void countHitsAndMisses() {
+		cache.get("1", null, NO_CLASSPATH);
+		cache.put("1", null, NO_CLASSPATH, FirstScript.class);
+		cache.get("1", null, NO_CLASSPATH);
+		cache.get("1", null, NO_CLASSPATH);
+		cache.get("2", null, NO_CLASSPATH);
+		assertThat(cache.getHitCount(), equalTo(2L));
+		assertThat(cache.getMissCount(), equalTo(2L));
+		assertThat(cache.getHitRate(), equalTo(0.5));
+	}
+
+	@Test
+	public void haveNoHitRateBeforeLookups() {
+		assertThat(cache.getHitRate(), equalTo(0.0));
+	}
+
+	@Test
+	public void distinguishScriptClasspaths() {
+		cache.put("1", null, NO_CLASSPATH, FirstScript.class);
+		cache.put("1", null, Arrays.asList("lib"), SecondScript.class);
+		assertThat(cache.get("1", null, NO_CLASSPATH), equalTo((Object) FirstScript.class));
+		assertThat(cache.get("1", null, Arrays.asList("lib")), equalTo((Object) SecondScript.class));
+		assertThat(cache.get("1", null, Arrays.asList("other")), nullValue());
+	}
+
+	@Test
+	public void distinguishPermissions() {
+		final ScriptingPermissions permissions = new ScriptingPermissions(new Properties());
+		cache.put("1", null, NO_CLASSPATH, FirstScript.class);
+		assertThat(cache.get("1", permissions, NO_CLASSPATH), nullValue());
+	}
+}
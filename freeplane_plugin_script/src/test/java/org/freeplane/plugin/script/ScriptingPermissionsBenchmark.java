@@ -0,0 +1,117 @@
+package org.freeplane.plugin.script;
+
+import java.util.Properties;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.mode.Controller;
+
+/**
+ * Compares the permission checks done before every script execution:
+ * reading the permissions from the preferences and creating a security manager each time
+ * against reusing the permission snapshot and the shared security managers.
+ * Run as application, it is no unit test.
+ */
+public class ScriptingPermissionsBenchmark {
+	private static final int EXECUTIONS = 1000000;
+	private static final int ROUNDS = 5;
+
+	public static void main(final String[] args) {
+		final Properties properties = new Properties();
+		properties.setProperty(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_ASKING, "true");
+		properties.setProperty(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_READ_RESTRICTION, "true");
+		properties.setProperty(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_WRITE_RESTRICTION, "false");
+		Controller.setCurrentController(new Controller(new PropertiesResourceController(properties)));
+		for (int round = 0; round < ROUNDS; round++) {
+			final boolean report = round == ROUNDS - 1;
+			final int createdManagers = runCreatingPermissions(report);
+			final int sharedManagers = runReusingPermissions(report);
+			if (createdManagers != sharedManagers) {
+				throw new IllegalStateException("different security managers: " + createdManagers + " / "
+				        + sharedManagers);
+			}
+		}
+	}
+
+	/** the checks as they were done before permissions were reused */
+	private static int runCreatingPermissions(final boolean report) {
+		int readPermissions = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < EXECUTIONS; i++) {
+			final Properties properties = ResourceController.getResourceController().getProperties();
+			final ScriptingPermissions permissions = new ScriptingPermissions(properties);
+			permissions.assertScriptExecutionAllowed();
+			final ScriptingSecurityManager securityManager = new ScriptingSecurityManager(
+			    permissions.get(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_READ_RESTRICTION),
+			    permissions.get(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_WRITE_RESTRICTION),
+			    permissions.get(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_NETWORK_RESTRICTION),
+			    permissions.get(ScriptingPermissions.RESOURCES_EXECUTE_SCRIPTS_WITHOUT_EXEC_RESTRICTION));
+			final ScriptingPermissions originalPermissions = new ScriptingPermissions(ResourceController
+			    .getResourceController().getProperties());
+			if (securityManager != null && originalPermissions != null) {
+				readPermissions++;
+			}
+		}
+		report("created permissions", start, report);
+		return readPermissions;
+	}
+
+	private static int runReusingPermissions(final boolean report) {
+		int readPermissions = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < EXECUTIONS; i++) {
+			final ScriptingPermissions permissions = ScriptingPermissions.getCurrentPermissions();
+			permissions.assertScriptExecutionAllowed();
+			final ScriptingSecurityManager securityManager = permissions.getScriptingSecurityManager();
+			final ScriptingPermissions originalPermissions = ScriptingPermissions.getCurrentPermissions();
+			if (securityManager != null && originalPermissions != null) {
+				readPermissions++;
+			}
+		}
+		report("reused permissions", start, report);
+		return readPermissions;
+	}
+
+	private static void report(final String name, final long start, final boolean report) {
+		final long milliseconds = (System.nanoTime() - start) / 1000000;
+		if (report) {
+			System.out.println(name + ": " + milliseconds + " ms for " + EXECUTIONS + " executions");
+		}
+	}
+
+	private static class PropertiesResourceController extends ResourceController {
+		private final Properties properties;
+
+		PropertiesResourceController(final Properties properties) {
+			this.properties = properties;
+		}
+
+		@Override
+		public String getFreeplaneUserDirectory() {
+			return System.getProperty("java.io.tmpdir");
+		}
+
+		@Override
+		public Properties getProperties() {
+			return properties;
+		}
+
+		@Override
+		public String getProperty(final String key) {
+			return properties.getProperty(key);
+		}
+
+		@Override
+		public void saveProperties() {
+		}
+
+		@Override
+		public void setDefaultProperty(final String key, final String value) {
+			properties.setProperty(key, value);
+		}
+
+		@Override
+		public void setProperty(final String property, final String value) {
+			properties.setProperty(property, value);
+		}
+	}
+}
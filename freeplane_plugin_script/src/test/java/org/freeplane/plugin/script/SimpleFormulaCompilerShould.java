@@ -0,0 +1,124 @@
+package org.freeplane.plugin.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.freeplane.plugin.script.proxy.Proxy;
+import org.freeplane.plugin.script.proxy.ProxyFactory;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SimpleFormulaCompilerShould {
+	private Object evaluate(final String formula) {
+		return SimpleFormulaCompiler.compile(formula).evaluate(null);
+	}
+
+	private Object evaluateOnNodeWithoutChildren(final String formula) {
+		final Proxy.Node node = Mockito.mock(Proxy.Node.class);
+		Mockito.when(node.getChildren()).thenReturn(Collections.<Proxy.Node> emptyList());
+		return SimpleFormulaCompiler.compile(formula).evaluate(node);
+	}
+
+	@Test
+	public void compileSmallIntegerLiteralToInteger() {
+		assertThat(evaluate("42"), equalTo((Object) Integer.valueOf(42)));
+	}
+
+	@Test
+	public void compileLargeIntegerLiteralToLong() {
+		assertThat(evaluate("3000000000"), equalTo((Object) Long.valueOf(3000000000L)));
+	}
+
+	@Test
+	public void compileHugeIntegerLiteralToBigInteger() {
+		assertThat(evaluate("100000000000000000000"), equalTo((Object) new BigInteger("100000000000000000000")));
+	}
+
+	@Test
+	public void compileDecimalLiteralToBigDecimal() {
+		assertThat(evaluate("1.50"), equalTo((Object) new BigDecimal("1.50")));
+	}
+
+	@Test
+	public void negateLiteral() {
+		assertThat(evaluate("-(2 + 3)"), equalTo((Object) Integer.valueOf(-5)));
+	}
+
+	@Test
+	public void multiplyBeforeAdding() {
+		assertThat(evaluate("1 + 2 * 3"), equalTo((Object) Integer.valueOf(7)));
+	}
+
+	@Test
+	public void divideIntegersToBigDecimal() {
+		final Object quotient = evaluate("1 / 2");
+		assertThat(quotient, instanceOf(BigDecimal.class));
+		assertThat(((BigDecimal) quotient).compareTo(new BigDecimal("0.5")), equalTo(0));
+	}
+
+	@Test
+	public void returnNullForSumOfNoChildren() {
+		assertThat(evaluateOnNodeWithoutChildren("children.sum{it.to.num}"), nullValue());
+	}
+
+	@Test
+	public void returnNullForMinimumOfNoChildren() {
+		assertThat(evaluateOnNodeWithoutChildren("node.children.collect{it['a'].num}.min()"), nullValue());
+	}
+
+	@Test
+	public void returnNullForMaximumOfNoChildren() {
+		assertThat(evaluateOnNodeWithoutChildren("children.collect{it.value.num0}.max()"), nullValue());
+	}
+
+	@Test
+	public void countNoChildren() {
+		assertThat(evaluateOnNodeWithoutChildren("children.size()"), equalTo((Object) Integer.valueOf(0)));
+	}
+
+	@Test
+	public void recordAccessedChildrenThroughNodeProxies() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ModeController modeController = Mockito.mock(ModeController.class);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		Mockito.when(modeController.getMapController()).thenReturn(Mockito.mock(MapController.class));
+		Controller.setCurrentController(controller);
+		try {
+			final MapModel map = new MapModel();
+			final NodeModel formulaNode = new NodeModel("formula", map);
+			final NodeModel first = new NodeModel(Integer.valueOf(2), map);
+			final NodeModel second = new NodeModel(Integer.valueOf(3), map);
+			formulaNode.insert(first, 0);
+			formulaNode.insert(second, 1);
+			final ScriptContext scriptContext = Mockito.mock(ScriptContext.class);
+			final Object sum = SimpleFormulaCompiler.compile("children.sum{it.to.num}").evaluate(
+			    ProxyFactory.createNode(formulaNode, scriptContext));
+			assertThat(sum, equalTo((Object) Integer.valueOf(5)));
+			Mockito.verify(scriptContext).accessNode(formulaNode);
+			Mockito.verify(scriptContext).accessNode(first);
+			Mockito.verify(scriptContext).accessNode(second);
+		}
+		finally {
+			Controller.setCurrentController(null);
+		}
+	}
+
+	@Test
+	public void leaveOtherFormulasToGroovy() {
+		assertThat(SimpleFormulaCompiler.compile("node.text"), nullValue());
+		assertThat(SimpleFormulaCompiler.compile("println 1"), nullValue());
+		assertThat(SimpleFormulaCompiler.compile("1; 2"), nullValue());
+		assertThat(SimpleFormulaCompiler.compile("1L"), nullValue());
+	}
+}
@@ -0,0 +1,58 @@
+package org.freeplane.plugin.script.proxy;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.freeplane.features.map.NodeModel;
+import org.junit.Test;
+
+public class FormulaCacheShould {
+	private final FormulaCache cache = new FormulaCache(2);
+	private final NodeModel first = new NodeModel("first", null);
+	private final NodeModel second = new NodeModel("second", null);
+	private final NodeModel third = new NodeModel("third", null);
+
+	@Test
+	public void evictLeastRecentlyUsedNode() {
+		cache.put(first, "=1", 1);
+		cache.put(second, "=2", 2);
+		cache.get(first, "=1");
+		cache.put(third, "=3", 3);
+		assertThat(cache.get(first, "=1"), equalTo((Object) 1));
+		assertThat(cache.get(second, "=2"), nullValue());
+		assertThat(cache.get(third, "=3"), equalTo((Object) 3));
+		assertThat(cache.getEvictionCount(), equalTo(1L));
+		assertThat(cache.getEntryCount(), equalTo(2));
+	}
+
+	@Test
+	public void evictStoredValuesFirst() {
+		cache.put("ID_1", "=1", 1);
+		cache.put(first, "=2", 2);
+		cache.put(second, "=3", 3);
+		assertThat(cache.getValuesByNodeId().containsKey("ID_1"), equalTo(false));
+		assertThat(cache.get(first, "=2"), equalTo((Object) 2));
+	}
+
+	@Test
+	public void removeValuesOfBranch() {
+		first.insert(second, 0);
+		cache.put(first, "=1", 1);
+		cache.put(second, "=2", 2);
+		cache.removeBranch(first);
+		assertThat(cache.getEntryCount(), equalTo(0));
+		assertThat(cache.get(second, "=2"), nullValue());
+	}
+
+	@Test
+	public void keepValuesOfSeveralFormulasOfANode() {
+		cache.put(first, "=1", 1);
+		cache.put(first, "=2", 2);
+		assertThat(cache.get(first, "=1"), equalTo((Object) 1));
+		assertThat(cache.get(first, "=2"), equalTo((Object) 2));
+		cache.markAsDirtyIfFormulaNode(first);
+		assertThat(cache.get(first, "=1"), nullValue());
+		assertThat(cache.getEntryCount(), equalTo(0));
+	}
+}
@@ -0,0 +1,141 @@
+package org.freeplane.plugin.script.proxy;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import groovy.lang.Closure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.freeplane.core.resources.ResourceBundles;
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.attribute.Attribute;
+import org.freeplane.features.attribute.NodeAttributeTableModel;
+import org.freeplane.features.filter.condition.ICondition;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class LazyNodeQueriesShould {
+	private MapModel map;
+	private NodeModel root;
+	private int checkedNodeCount;
+
+	@Before
+	public void setup() {
+		final Controller controller = Mockito.mock(Controller.class);
+		final ModeController modeController = Mockito.mock(ModeController.class);
+		Mockito.when(controller.getModeController()).thenReturn(modeController);
+		Mockito.when(modeController.getMapController()).thenReturn(Mockito.mock(MapController.class));
+		final ResourceController resourceController = Mockito.mock(ResourceController.class);
+		Mockito.when(resourceController.getResources()).thenReturn(Mockito.mock(ResourceBundles.class));
+		Mockito.when(controller.getResourceController()).thenReturn(resourceController);
+		Controller.setCurrentController(controller);
+		map = new MapModel();
+		root = new NodeModel("root", map);
+		map.setRoot(root);
+		final NodeModel a = addNode(root, "a", Integer.valueOf(1));
+		addNode(a, "a1", "2");
+		addNode(a, "a2", "x");
+		addNode(root, "b", null);
+		addNode(root, "c", Integer.valueOf(4));
+	}
+
+	@After
+	public void tearDown() {
+		Controller.setCurrentController(null);
+	}
+
+	private NodeModel addNode(final NodeModel parent, final String text, final Object cost) {
+		final NodeModel node = new NodeModel(text, map);
+		parent.insert(node, parent.getChildCount());
+		if (cost != null) {
+			final NodeAttributeTableModel attributes = new NodeAttributeTableModel(node);
+			attributes.addRowNoUndo(new Attribute("cost", cost));
+			node.addExtension(attributes);
+		}
+		return node;
+	}
+
+	private Closure<Boolean> textStartsWith(final String prefix) {
+		return new Closure<Boolean>(null) {
+			private static final long serialVersionUID = 1L;
+
+			@SuppressWarnings("unused")
+			public Boolean doCall(final Proxy.Node node) {
+				checkedNodeCount++;
+				return ((NodeProxy) node).getDelegate().getText().startsWith(prefix);
+			}
+		};
+	}
+
+	private List<String> texts(final Iterable<Proxy.Node> nodes) {
+		final List<String> texts = new ArrayList<String>();
+		for (final Proxy.Node node : nodes)
+			texts.add(((NodeProxy) node).getDelegate().getText());
+		return texts;
+	}
+
+	@Test
+	public void findNodesInBreadthFirstOrder() {
+		assertThat(texts(ProxyUtils.findLazily(textStartsWith("a"), root, null)), equalTo(Arrays.asList("a", "a1",
+		    "a2")));
+	}
+
+	@Test
+	public void checkOnlyNodesIteratedOver() {
+		final Iterator<Proxy.Node> nodes = ProxyUtils.findLazily(textStartsWith("a"), root, null).iterator();
+		assertThat(checkedNodeCount, equalTo(0));
+		nodes.next();
+		assertThat(checkedNodeCount, equalTo(2));
+	}
+
+	@Test
+	public void findAllNodesInDepthFirstOrder() {
+		assertThat(texts(ProxyUtils.findLazily((ICondition) null, root, null, false)), equalTo(Arrays.asList("a1",
+		    "a2", "a", "b", "c", "root")));
+	}
+
+	@Test
+	public void findFirstMatchOnly() {
+		final Proxy.Node first = ProxyUtils.findFirst(textStartsWith("a"), root, null);
+		assertThat(((NodeProxy) first).getDelegate().getText(), equalTo("a"));
+		assertThat(checkedNodeCount, equalTo(2));
+	}
+
+	@Test
+	public void findNoFirstNodeWithoutMatch() {
+		assertThat(ProxyUtils.findFirst(textStartsWith("z"), root, null), nullValue());
+		assertThat(checkedNodeCount, equalTo(6));
+	}
+
+	@Test
+	public void countMatchingNodes() {
+		assertThat(ProxyUtils.count(null, root), equalTo(6));
+		assertThat(ProxyUtils.count(new ICondition() {
+			public boolean checkNode(final NodeModel node) {
+				return node.getChildCount() == 0;
+			}
+		}, root), equalTo(4));
+	}
+
+	@Test
+	public void sumNumericAttributeValues() {
+		assertThat(ProxyUtils.sumAttributeValues("cost", root, null), equalTo((Number) Long.valueOf(7)));
+	}
+
+	@Test
+	public void sumToZeroWithoutAttributeValues() {
+		assertThat(ProxyUtils.sumAttributeValues("price", root, null), equalTo((Number) Integer.valueOf(0)));
+	}
+}